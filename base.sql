@@ -4,13 +4,13 @@ USE base;
 
 -- Tabla categorias
 CREATE TABLE IF NOT EXISTS categoria (
-	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	id BIGINT NOT NULL PRIMARY KEY,
 	nombre VARCHAR(255) NOT NULL
 );
 
 -- Tabla productos
 CREATE TABLE IF NOT EXISTS producto (
-	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	id BIGINT NOT NULL PRIMARY KEY,
 	activo BOOLEAN DEFAULT TRUE,
 	descripcion TEXT,
 	nombre VARCHAR(255),
@@ -23,7 +23,7 @@ CREATE TABLE IF NOT EXISTS producto (
 
 -- Tabla usuarios
 CREATE TABLE IF NOT EXISTS usuario (
-	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	id BIGINT NOT NULL PRIMARY KEY,
 	nombre VARCHAR(255) NOT NULL,
 	email VARCHAR(255) NOT NULL UNIQUE,
 	contrasena VARCHAR(255) NOT NULL,
@@ -33,29 +33,29 @@ CREATE TABLE IF NOT EXISTS usuario (
 );
 
 -- Seed: categorias (5)
-INSERT INTO categoria (nombre) VALUES ('Electrónica'),('Hogar'),('Moda'),('Accesorios'),('Juguetes');
+INSERT INTO categoria (id, nombre) VALUES (1, 'Electrónica'),(2, 'Hogar'),(3, 'Moda'),(4, 'Accesorios'),(5, 'Juguetes');
 
 -- Seed: productos (15)
-INSERT INTO producto (activo, descripcion, nombre, precio, stock, imagen_url, categoria_id) VALUES
- (true, 'Teléfono inteligente con pantalla OLED', 'Smartphone X1', 350000, 10, '/img/smartphone.svg', 1),
- (true, 'Auriculares inalámbricos con cancelación de ruido', 'Auriculares Pro', 75000, 25, '/img/auriculares.svg', 1),
- (true, 'Portátil ligero 14" para trabajo y estudio', 'Notebook Slim', 450000, 5, '/img/notebook.svg', 1),
- (true, 'Juego de sábanas 200 hilos', 'Sábanas Deluxe', 30000, 12, '/img/sabanas.svg', 2),
- (true, 'Lámpara de escritorio LED', 'Lámpara LED', 12000, 20, '/img/lampara.svg', 2),
- (true, 'Chaqueta impermeable talla M', 'Chaqueta Storm', 85000, 8, '/img/chaqueta.svg', 3),
- (true, 'Reloj de pulsera elegante', 'Reloj Classic', 55000, 4, '/img/reloj.svg', 3),
- (true, 'Bolso de cuero sintético', 'Bolso Urbana', 42000, 15, '/img/bolso.svg', 4),
- (true, 'Gorra de moda', 'Gorra Snap', 8000, 30, '/img/gorra.svg', 4),
- (true, 'Coche de juguete control remoto', 'RC Racer', 22000, 7, '/img/rc.svg', 5),
- (true, 'Construcción magnética 200 piezas', 'Bloques Magnéticos', 18000, 3, '/img/bloques.svg', 5),
- (true, 'Kit de pintura para niños', 'PintaKids', 6000, 18, '/img/pintakids.svg', 5),
- (true, 'Cargador portátil 10000mAh', 'PowerBank 10k', 15000, 22, '/img/powerbank.svg', 1),
- (true, 'Teclado mecánico RGB', 'KeyMaster', 68000, 6, '/img/teclado.svg', 1),
- (true, 'Mouse óptico ergonómico', 'ErgoMouse', 12000, 9, '/img/mouse.svg', 1);
+INSERT INTO producto (id, activo, descripcion, nombre, precio, stock, imagen_url, categoria_id) VALUES
+ (1, true, 'Teléfono inteligente con pantalla OLED', 'Smartphone X1', 350000, 10, '/img/smartphone.svg', 1),
+ (2, true, 'Auriculares inalámbricos con cancelación de ruido', 'Auriculares Pro', 75000, 25, '/img/auriculares.svg', 1),
+ (3, true, 'Portátil ligero 14" para trabajo y estudio', 'Notebook Slim', 450000, 5, '/img/notebook.svg', 1),
+ (4, true, 'Juego de sábanas 200 hilos', 'Sábanas Deluxe', 30000, 12, '/img/sabanas.svg', 2),
+ (5, true, 'Lámpara de escritorio LED', 'Lámpara LED', 12000, 20, '/img/lampara.svg', 2),
+ (6, true, 'Chaqueta impermeable talla M', 'Chaqueta Storm', 85000, 8, '/img/chaqueta.svg', 3),
+ (7, true, 'Reloj de pulsera elegante', 'Reloj Classic', 55000, 4, '/img/reloj.svg', 3),
+ (8, true, 'Bolso de cuero sintético', 'Bolso Urbana', 42000, 15, '/img/bolso.svg', 4),
+ (9, true, 'Gorra de moda', 'Gorra Snap', 8000, 30, '/img/gorra.svg', 4),
+ (10, true, 'Coche de juguete control remoto', 'RC Racer', 22000, 7, '/img/rc.svg', 5),
+ (11, true, 'Construcción magnética 200 piezas', 'Bloques Magnéticos', 18000, 3, '/img/bloques.svg', 5),
+ (12, true, 'Kit de pintura para niños', 'PintaKids', 6000, 18, '/img/pintakids.svg', 5),
+ (13, true, 'Cargador portátil 10000mAh', 'PowerBank 10k', 15000, 22, '/img/powerbank.svg', 1),
+ (14, true, 'Teclado mecánico RGB', 'KeyMaster', 68000, 6, '/img/teclado.svg', 1),
+ (15, true, 'Mouse óptico ergonómico', 'ErgoMouse', 12000, 9, '/img/mouse.svg', 1);
 
 -- Seed: usuario admin (contraseña en texto: admin123) - recomendamos cambiar y encriptar en producción
-INSERT INTO usuario (nombre, email, contrasena, rol, activo, fecha_creacion) VALUES
- ('Administrador', 'admin@tienda.com', 'admin123', 'superadmin', true, NOW());
+INSERT INTO usuario (id, nombre, email, contrasena, rol, activo, fecha_creacion) VALUES
+ (1, 'Administrador', 'admin@tienda.com', 'admin123', 'superadmin', true, NOW());
 
 SELECT COUNT(*) as categorias FROM categoria;
 SELECT COUNT(*) as productos FROM producto;
@@ -63,15 +63,17 @@ SELECT COUNT(*) as usuarios FROM usuario;
  
 -- Tablas para órdenes y items de orden
 CREATE TABLE IF NOT EXISTS orden (
-	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	id BIGINT NOT NULL PRIMARY KEY,
 	usuario_id BIGINT NOT NULL,
 	fecha DATETIME,
 	total DOUBLE,
-	CONSTRAINT fk_orden_usuario FOREIGN KEY (usuario_id) REFERENCES usuario(id)
+	CONSTRAINT fk_orden_usuario FOREIGN KEY (usuario_id) REFERENCES usuario(id),
+	INDEX idx_orden_fecha_id (fecha, id),
+	INDEX idx_orden_usuario_fecha_id (usuario_id, fecha, id)
 );
 
 CREATE TABLE IF NOT EXISTS orden_item (
-	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	id BIGINT NOT NULL PRIMARY KEY,
 	orden_id BIGINT NOT NULL,
 	producto_id BIGINT NOT NULL,
 	cantidad INT NOT NULL,
@@ -80,9 +82,31 @@ CREATE TABLE IF NOT EXISTS orden_item (
 	CONSTRAINT fk_item_producto FOREIGN KEY (producto_id) REFERENCES producto(id)
 );
 
+-- Claves Idempotency-Key de POST /api/ordenes (solo con ordenes.idempotencia.persistente=true)
+CREATE TABLE IF NOT EXISTS clave_idempotencia (
+	clave VARCHAR(100) PRIMARY KEY,
+	orden_id BIGINT,
+	creada DATETIME
+);
+
+-- Próximo id libre de cada tabla; los ids no son AUTO_INCREMENT, los reparte la aplicación
+CREATE TABLE IF NOT EXISTS secuencia_id (
+	tabla VARCHAR(64) NOT NULL PRIMARY KEY,
+	siguiente BIGINT NOT NULL
+);
+
+INSERT INTO secuencia_id (tabla, siguiente)
+SELECT 'categoria', COALESCE(MAX(id), 0) + 1 FROM categoria
+UNION ALL SELECT 'producto', COALESCE(MAX(id), 0) + 1 FROM producto
+UNION ALL SELECT 'usuario', COALESCE(MAX(id), 0) + 1 FROM usuario
+UNION ALL SELECT 'orden', COALESCE(MAX(id), 0) + 1 FROM orden
+UNION ALL SELECT 'orden_item', COALESCE(MAX(id), 0) + 1 FROM orden_item
+ON DUPLICATE KEY UPDATE siguiente = GREATEST(siguiente, VALUES(siguiente));
+
 -- Ejemplo: insertar una orden de prueba (descomentar si quieres cargar datos de ejemplo)
 /*
-INSERT INTO orden (usuario_id, fecha, total) VALUES (1, NOW(), 45000);
-INSERT INTO orden_item (orden_id, producto_id, cantidad, precio_unitario) VALUES (1, 2, 1, 45000);
+INSERT INTO orden (id, usuario_id, fecha, total) VALUES (1, 1, NOW(), 45000);
+INSERT INTO orden_item (id, orden_id, producto_id, cantidad, precio_unitario) VALUES (1, 1, 2, 1, 45000);
+UPDATE secuencia_id SET siguiente = GREATEST(siguiente, 2) WHERE tabla IN ('orden', 'orden_item');
 */
 
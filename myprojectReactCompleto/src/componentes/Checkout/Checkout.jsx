@@ -3,6 +3,25 @@ import { CartContext } from '../../context/CartContext';
 import { useNavigate } from 'react-router-dom';
 import './Checkout.css';
 
+// Clave Idempotency-Key del intento de pago en curso. Se guarda junto al
+// cuerpo enviado: si el pago falla y se reintenta con el mismo carrito se
+// reusa la clave y el backend devuelve la orden ya creada en vez de otra
+const CLAVE_CHECKOUT = 'checkoutIdempotencia';
+
+const claveDelIntento = (body) => {
+    try {
+        const guardada = JSON.parse(sessionStorage.getItem(CLAVE_CHECKOUT));
+        if (guardada && guardada.body === body) {
+            return guardada.clave;
+        }
+    } catch (err) {
+        console.warn('No se pudo leer la clave del checkout anterior', err);
+    }
+    const clave = crypto.randomUUID();
+    sessionStorage.setItem(CLAVE_CHECKOUT, JSON.stringify({ clave, body }));
+    return clave;
+};
+
 const Checkout = () => {
     const { items: cart, getTotal, clearCart } = useContext(CartContext);
     const navigate = useNavigate();
@@ -55,49 +74,37 @@ const Checkout = () => {
                 throw new Error('Usuario no autenticado');
             }
 
-            // Crear la orden
+            // Crear la orden; la fecha la pone el backend para que un reintento mande el mismo cuerpo
             const orderData = {
                 usuario: { id: userData.id },
                 total: getTotal(),
-                fecha: new Date().toISOString(),
                 items: cart.map(item => ({
                     producto: { id: item.id },
                     cantidad: item.quantity,
                     precioUnitario: item.precio
                 }))
             };
+            const body = JSON.stringify(orderData);
+            const idempotencyKey = claveDelIntento(body);
 
-            // Enviar la orden al backend
+            // Enviar la orden al backend; la reducción del stock se hace ahí mismo
             const response = await fetch('http://localhost:8080/api/ordenes', {
                 method: 'POST',
                 headers: {
-                    'Content-Type': 'application/json'
+                    'Content-Type': 'application/json',
+                    'Idempotency-Key': idempotencyKey
                 },
-                body: JSON.stringify(orderData)
+                body
             });
 
             if (!response.ok) {
                 throw new Error('Error al crear la orden');
             }
+            const orden = await response.json();
 
-            // La reducción del stock se maneja automáticamente en el backend al crear la orden
-            await fetch('http://localhost:8080/api/ordenes', {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json'
-                },
-                body: JSON.stringify({
-                    usuario: { id: userData.id },
-                    items: cart.map(item => ({
-                        producto: { id: item.id },
-                        cantidad: item.quantity,
-                        precioUnitario: item.precio
-                    }))
-                })
-            });
-            
+            sessionStorage.removeItem(CLAVE_CHECKOUT);
             clearCart();
-            navigate('/payment-success');
+            navigate('/payment-success', { state: { ordenId: orden.id } });
         } catch (error) {
             console.error('Error al procesar el pago:', error);
             navigate('/payment-error');
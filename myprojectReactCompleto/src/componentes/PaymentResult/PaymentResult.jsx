@@ -1,8 +1,41 @@
-import React from 'react';
-import { Link } from 'react-router-dom';
+import React, { useEffect, useState } from 'react';
+import { Link, useLocation } from 'react-router-dom';
 import './PaymentResult.css';
 
+const INTENTOS_BOLETA = 10;
+
 export const PaymentSuccess = () => {
+    const location = useLocation();
+    const ordenId = location.state?.ordenId;
+    const [boletaLista, setBoletaLista] = useState(false);
+
+    // La boleta se genera en segundo plano después de la compra; se consulta hasta que esté.
+    // Si sigue PENDIENTE (o se acaban los intentos) se ofrece igual: se genera al descargarla
+    useEffect(() => {
+        if (!ordenId) {
+            return;
+        }
+        let intentos = 0;
+        let timer;
+        const consultar = async () => {
+            intentos++;
+            try {
+                const response = await fetch(`http://localhost:8080/api/ordenes/${ordenId}/boleta/estado`);
+                const estado = response.ok ? await response.json() : null;
+                if (!estado || estado.lista || estado.estado === 'PENDIENTE' || intentos >= INTENTOS_BOLETA) {
+                    setBoletaLista(true);
+                    return;
+                }
+            } catch (error) {
+                setBoletaLista(true);
+                return;
+            }
+            timer = setTimeout(consultar, 1000);
+        };
+        consultar();
+        return () => clearTimeout(timer);
+    }, [ordenId]);
+
     return (
         <div className="payment-result success">
             <div className="result-content">
@@ -10,9 +43,20 @@ export const PaymentSuccess = () => {
                 <h2>¡Pago exitoso!</h2>
                 <p>Tu pedido ha sido procesado correctamente.</p>
                 <p>Recibirás un email con los detalles de tu compra.</p>
-                <Link to="/" className="btn btn-primary">
-                    Volver a la tienda
-                </Link>
+                <div className="d-flex gap-2 justify-content-center">
+                    {ordenId && (boletaLista ? (
+                        <a href={`http://localhost:8080/api/ordenes/${ordenId}/boleta`} className="btn btn-outline-success">
+                            Descargar boleta
+                        </a>
+                    ) : (
+                        <button className="btn btn-outline-success" disabled>
+                            Preparando boleta...
+                        </button>
+                    ))}
+                    <Link to="/" className="btn btn-primary">
+                        Volver a la tienda
+                    </Link>
+                </div>
             </div>
         </div>
     );
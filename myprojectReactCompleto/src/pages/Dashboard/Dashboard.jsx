@@ -12,33 +12,34 @@ export function Dashboard() {
         totalDinero: 0
     });
     const [loading, setLoading] = useState(true);
+    // Cursores de las páginas visitadas; el de la primera es null
+    const [cursores, setCursores] = useState([null]);
+    const [indice, setIndice] = useState(0);
+    const [siguienteCursor, setSiguienteCursor] = useState(null);
     const navigate = useNavigate();
+    const cursor = cursores[indice];
 
     useEffect(() => {
         const cargarOrdenes = async () => {
             try {
-                const response = await fetch('http://localhost:8080/api/ordenes');
-                if (!response.ok) {
+                // Una página con sus items; los totales los calcula el backend
+                const params = new URLSearchParams({ expand: 'items', tamano: '50' });
+                if (cursor) {
+                    params.set('cursor', cursor);
+                }
+                const [response, responseStats] = await Promise.all([
+                    fetch(`http://localhost:8080/api/ordenes/pagina?${params}`),
+                    fetch('http://localhost:8080/api/ordenes/estadisticas')
+                ]);
+                if (!response.ok || !responseStats.ok) {
                     throw new Error('Error al cargar las órdenes');
                 }
-                const data = await response.json();
-
-                // Ordenar por fecha (desc)
-                const ordenesOrdenadas = (data || []).slice().sort((a, b) => new Date(b.fecha) - new Date(a.fecha));
-                setOrdenes(ordenesOrdenadas);
-
-                // Calcular estadísticas
-                const stats = (ordenesOrdenadas || []).reduce((acc, orden) => {
-                    const items = orden.items || [];
-                    const productosVendidos = items.reduce((s, it) => s + (it.cantidad || 0), 0);
-                    const totalOrden = typeof orden.total === 'number' ? orden.total : items.reduce((s, it) => s + ((it.cantidad || 0) * (it.precioUnitario || 0)), 0);
-                    return {
-                        totalCompras: acc.totalCompras + 1,
-                        totalProductos: acc.totalProductos + productosVendidos,
-                        totalDinero: acc.totalDinero + totalOrden
-                    };
-                }, { totalCompras: 0, totalProductos: 0, totalDinero: 0 });
+                const pagina = await response.json();
+                const stats = await responseStats.json();
 
+                // El backend ya las entrega de la más reciente a la más antigua
+                setOrdenes(pagina.contenido || []);
+                setSiguienteCursor(pagina.hayMas ? pagina.siguienteCursor : null);
                 setEstadisticas(stats);
             } catch (error) {
                 toast.error('Error al cargar las órdenes');
@@ -51,7 +52,16 @@ export function Dashboard() {
         cargarOrdenes();
         const interval = setInterval(cargarOrdenes, 60000);
         return () => clearInterval(interval);
-    }, []);
+    }, [cursor]);
+
+    const paginaSiguiente = () => {
+        setCursores((anteriores) => [...anteriores.slice(0, indice + 1), siguienteCursor]);
+        setIndice(indice + 1);
+    };
+
+    const paginaAnterior = () => {
+        setIndice(indice - 1);
+    };
 
     return (
         <>
@@ -93,9 +103,9 @@ export function Dashboard() {
                                     </thead>
                                     <tbody>
                                         {ordenes.map((orden) => (
-                                            orden.items.map((item, index) => (
+                                            (orden.items || []).map((item, index) => (
                                                 <tr key={`${orden.id}-${index}`}>
-                                                    <td>{orden.usuario.nombre}</td>
+                                                    <td>{orden.usuarioNombre}</td>
                                                     <td>{item.producto.nombre}</td>
                                                     <td>{item.cantidad}</td>
                                                     <td>${(item.cantidad * item.producto.precio).toLocaleString()}</td>
@@ -106,6 +116,15 @@ export function Dashboard() {
                                     </tbody>
                                 </table>
                             </div>
+                            <div className="pagination-controls">
+                                <button onClick={paginaAnterior} disabled={indice === 0}>
+                                    Anteriores
+                                </button>
+                                <span>Página {indice + 1}</span>
+                                <button onClick={paginaSiguiente} disabled={!siguienteCursor}>
+                                    Siguientes
+                                </button>
+                            </div>
                         </div>
                     </>
                 )}
@@ -1,6 +1,7 @@
 -- Script SQL para crear tablas (MySQL)
+-- Los ids no son AUTO_INCREMENT: los reparte la aplicación desde secuencia_id
 CREATE TABLE usuario (
-  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id BIGINT NOT NULL PRIMARY KEY,
   nombre VARCHAR(100) NOT NULL,
   email VARCHAR(255) NOT NULL UNIQUE,
   contrasena VARCHAR(255) NOT NULL,
@@ -10,12 +11,12 @@ CREATE TABLE usuario (
 );
 
 CREATE TABLE categoria (
-  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id BIGINT NOT NULL PRIMARY KEY,
   nombre VARCHAR(255)
 );
 
 CREATE TABLE producto (
-  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id BIGINT NOT NULL PRIMARY KEY,
   nombre VARCHAR(255),
   descripcion TEXT,
   precio BIGINT,
@@ -23,19 +24,31 @@ CREATE TABLE producto (
   imagen_url VARCHAR(255),
   activo BOOLEAN DEFAULT TRUE,
   categoria_id BIGINT,
+  umbral_stock INT,
   CONSTRAINT fk_producto_categoria FOREIGN KEY (categoria_id) REFERENCES categoria(id) ON DELETE SET NULL
 );
 
+-- Índices para la paginación keyset y los filtros de /api/productos/paginado
+CREATE INDEX idx_producto_precio_id ON producto (precio, id);
+CREATE INDEX idx_producto_categoria_id ON producto (categoria_id, id);
+CREATE INDEX idx_producto_activo_id ON producto (activo, id);
+-- Respaldo de /api/productos/low-stock mientras se carga el índice en memoria
+CREATE INDEX idx_producto_stock_id ON producto (stock, id);
+
 CREATE TABLE orden (
-  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id BIGINT NOT NULL PRIMARY KEY,
   usuario_id BIGINT,
   fecha DATETIME,
   total DOUBLE,
   CONSTRAINT fk_orden_usuario FOREIGN KEY (usuario_id) REFERENCES usuario(id) ON DELETE SET NULL
 );
 
+-- Listado paginado de /api/ordenes (fecha, id) y filtrado por usuario
+CREATE INDEX idx_orden_fecha_id ON orden (fecha, id);
+CREATE INDEX idx_orden_usuario_fecha_id ON orden (usuario_id, fecha, id);
+
 CREATE TABLE orden_item (
-  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id BIGINT NOT NULL PRIMARY KEY,
   orden_id BIGINT,
   producto_id BIGINT,
   cantidad INT,
@@ -43,3 +56,9 @@ CREATE TABLE orden_item (
   CONSTRAINT fk_item_orden FOREIGN KEY (orden_id) REFERENCES orden(id) ON DELETE CASCADE,
   CONSTRAINT fk_item_producto FOREIGN KEY (producto_id) REFERENCES producto(id) ON DELETE SET NULL
 );
+
+-- Contadores de ids por bloques (ver migracion_ids_por_bloques.sql)
+CREATE TABLE secuencia_id (
+  tabla VARCHAR(64) NOT NULL PRIMARY KEY,
+  siguiente BIGINT NOT NULL
+);
@@ -0,0 +1,29 @@
+-- Migración: ids por bloques desde secuencia_id en vez de AUTO_INCREMENT (MySQL)
+-- Correr con la aplicación detenida, antes de levantar la versión que reparte
+-- ids por bloques: las versiones anteriores insertan sin id.
+-- Cada fila guarda el próximo id libre de su tabla. La aplicación también crea
+-- la tabla y ajusta cada fila al id más alto la primera vez que reserva un
+-- bloque (BloquesIds), pero no toca las columnas.
+CREATE TABLE IF NOT EXISTS secuencia_id (
+  tabla VARCHAR(64) NOT NULL PRIMARY KEY,
+  siguiente BIGINT NOT NULL
+);
+
+INSERT INTO secuencia_id (tabla, siguiente)
+SELECT 'categoria', COALESCE(MAX(id), 0) + 1 FROM categoria
+UNION ALL SELECT 'producto', COALESCE(MAX(id), 0) + 1 FROM producto
+UNION ALL SELECT 'usuario', COALESCE(MAX(id), 0) + 1 FROM usuario
+UNION ALL SELECT 'orden', COALESCE(MAX(id), 0) + 1 FROM orden
+UNION ALL SELECT 'orden_item', COALESCE(MAX(id), 0) + 1 FROM orden_item
+ON DUPLICATE KEY UPDATE siguiente = GREATEST(siguiente, VALUES(siguiente));
+
+-- Sin AUTO_INCREMENT, un INSERT sin id falla en vez de tomar un id de un bloque
+-- ya reservado. MySQL no deja cambiar una columna referenciada por una FK con el
+-- chequeo activo; el tipo no cambia, así que las FK siguen siendo válidas.
+SET FOREIGN_KEY_CHECKS = 0;
+ALTER TABLE categoria MODIFY id BIGINT NOT NULL;
+ALTER TABLE producto MODIFY id BIGINT NOT NULL;
+ALTER TABLE usuario MODIFY id BIGINT NOT NULL;
+ALTER TABLE orden MODIFY id BIGINT NOT NULL;
+ALTER TABLE orden_item MODIFY id BIGINT NOT NULL;
+SET FOREIGN_KEY_CHECKS = 1;
@@ -1,29 +1,33 @@
 -- Seed data de ejemplo
 -- Usuarios
-INSERT INTO usuario (nombre, email, contrasena, rol, activo, creado_en) VALUES
-('Administrador', 'admin@mail.com', 'admin123', 'ADMIN', TRUE, NOW()),
-('Cliente', 'cliente@mail.com', '123456', 'CLIENTE', TRUE, NOW());
+INSERT INTO usuario (id, nombre, email, contrasena, rol, activo, creado_en) VALUES
+(1, 'Administrador', 'admin@mail.com', 'admin123', 'ADMIN', TRUE, NOW()),
+(2, 'Cliente', 'cliente@mail.com', '123456', 'CLIENTE', TRUE, NOW());
 
 -- Categorías
-INSERT INTO categoria (nombre) VALUES
-('Electronica'),
-('Ropa'),
-('Hogar');
+INSERT INTO categoria (id, nombre) VALUES
+(1, 'Electronica'),
+(2, 'Ropa'),
+(3, 'Hogar');
 
 -- Productos
-INSERT INTO producto (nombre, descripcion, precio, stock, imagen_url, activo, categoria_id) VALUES
-('Auriculares Bluetooth', 'Auriculares inalámbricos con cancelación de ruido', 49990, 10, NULL, TRUE, 1),
-('Camiseta Algodón', 'Camiseta unisex 100% algodón', 12990, 25, NULL, TRUE, 2),
-('Set de Ollas', 'Set 5 piezas antiadherente', 89990, 5, NULL, TRUE, 3);
+INSERT INTO producto (id, nombre, descripcion, precio, stock, imagen_url, activo, categoria_id) VALUES
+(1, 'Auriculares Bluetooth', 'Auriculares inalámbricos con cancelación de ruido', 49990, 10, NULL, TRUE, 1),
+(2, 'Camiseta Algodón', 'Camiseta unisex 100% algodón', 12990, 25, NULL, TRUE, 2),
+(3, 'Set de Ollas', 'Set 5 piezas antiadherente', 89990, 5, NULL, TRUE, 3);
 
 -- Orden de ejemplo
-INSERT INTO orden (usuario_id, fecha, total) VALUES
-(2, NOW(), 62980);
+INSERT INTO orden (id, usuario_id, fecha, total) VALUES
+(1, 2, NOW(), 62980);
 
--- Items de la orden (suponiendo ids asignados por insert previos)
-INSERT INTO orden_item (orden_id, producto_id, cantidad, precio_unitario) VALUES
-(1, 1, 1, 49990.0),
-(1, 2, 1, 12990.0);
+-- Items de la orden
+INSERT INTO orden_item (id, orden_id, producto_id, cantidad, precio_unitario) VALUES
+(1, 1, 1, 1, 49990.0),
+(2, 1, 2, 1, 12990.0);
+
+-- Próximo id libre de cada tabla, después de los ids de arriba
+INSERT INTO secuencia_id (tabla, siguiente) VALUES
+('usuario', 3), ('categoria', 4), ('producto', 4), ('orden', 2), ('orden_item', 3);
 
 -- Nota: las contraseñas en este seed son texto plano para pruebas. Si tu aplicación espera hashes,
 -- reemplaza `contrasena` por un hash válido (BCrypt) o registra usuarios vía la API.
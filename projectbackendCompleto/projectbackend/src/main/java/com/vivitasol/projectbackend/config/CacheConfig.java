@@ -0,0 +1,18 @@
+package com.vivitasol.projectbackend.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cachés del catálogo y de "mis órdenes". El tamaño y la expiración se
+ * configuran en application.properties (spring.cache.caffeine.spec).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String CATEGORIAS = "categorias";
+    // Clave: id del usuario. Valor: sus páginas ya leídas, por cursor y tamaño
+    public static final String ORDENES_USUARIO = "ordenesUsuario";
+}
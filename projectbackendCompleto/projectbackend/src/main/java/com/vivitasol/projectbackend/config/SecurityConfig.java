@@ -1,5 +1,6 @@
 package com.vivitasol.projectbackend.config;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,6 +9,9 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import com.vivitasol.projectbackend.security.JwtAuthFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -21,9 +25,11 @@ public class SecurityConfig {
 
     // 2. FILTRO DE SEGURIDAD
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtAuthFilter jwtAuthFilter) throws Exception {
         http
             .csrf(AbstractHttpConfigurer::disable)
+            // El token se lee antes de evaluar las reglas, así hasRole ve el rol del token
+            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(auth -> auth
                 // Permitir preflight OPTIONS para todas las rutas /api/**
                 .requestMatchers("OPTIONS", "/api/**").permitAll()
@@ -44,4 +50,12 @@ public class SecurityConfig {
             );
         return http.build();
     }
+
+    // 3. EL FILTRO JWT SOLO CORRE DENTRO DE LA CADENA DE SEGURIDAD, NO COMO FILTRO SUELTO DEL SERVLET
+    @Bean
+    public FilterRegistrationBean<JwtAuthFilter> registroJwtAuthFilter(JwtAuthFilter jwtAuthFilter) {
+        FilterRegistrationBean<JwtAuthFilter> registro = new FilterRegistrationBean<>(jwtAuthFilter);
+        registro.setEnabled(false);
+        return registro;
+    }
 }
\ No newline at end of file
@@ -1,17 +1,24 @@
 package com.vivitasol.projectbackend.controllers;
 
+import com.vivitasol.projectbackend.dto.EstadoBoleta;
 import com.vivitasol.projectbackend.entities.Orden;
-import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.services.CacheBoletas;
+import com.vivitasol.projectbackend.services.ExportadorBoletas;
 import com.vivitasol.projectbackend.services.OrdenService;
-import com.lowagie.text.*;
-import com.lowagie.text.pdf.PdfWriter;
+import com.vivitasol.projectbackend.services.PreGeneracionBoletas;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
 
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
 @RestController
@@ -21,36 +28,110 @@ public class BoletaController {
     @Autowired
     private OrdenService ordenService;
 
+    @Autowired
+    private CacheBoletas cacheBoletas;
+
+    @Autowired
+    private ExportadorBoletas exportadorBoletas;
+
+    @Autowired
+    private PreGeneracionBoletas preGeneracionBoletas;
+
+    // Para que la página de pago muestre la descarga cuando la boleta ya está generada
+    @GetMapping("/{id}/boleta/estado")
+    public ResponseEntity<EstadoBoleta> estadoBoleta(@PathVariable Long id) {
+        EstadoBoleta estado = preGeneracionBoletas.estado(id);
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.notFound().build();
+    }
+
+    // Todas las boletas de un rango de fechas (hasta inclusive), en un ZIP que se escribe mientras se generan
+    @GetMapping("/boletas.zip")
+    public ResponseEntity<?> exportarBoletas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            ExportadorBoletas.validarRango(desde, hasta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+        StreamingResponseBody cuerpo = salida -> exportadorBoletas.exportar(desde, hasta, salida);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"boletas_" + desde + "_" + hasta + ".zip\"")
+                .body(cuerpo);
+    }
+
+    // La boleta sale de la caché en disco (o se genera y se guarda ahí). El ETag cambia
+    // solo si cambia lo impreso; con Range se envía un solo tramo. Lo impreso se lee
+    // en una sola consulta de columnas, sin cargar la orden con sus items
     @GetMapping("/{id}/boleta")
-    public ResponseEntity<byte[]> generarBoleta(@PathVariable Long id) {
-        Orden orden = ordenService.obtenerOrden(id);
+    public ResponseEntity<StreamingResponseBody> generarBoleta(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rango) {
+        Orden orden = ordenService.ordenParaBoleta(id);
         if (orden == null) {
             return ResponseEntity.notFound().build();
         }
+        String etag = cacheBoletas.etag(orden);
+        if (CacheBoletas.noModificado(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        CacheBoletas.BoletaEnDisco boleta;
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Document document = new Document();
-            PdfWriter.getInstance(document, baos);
-            document.open();
-            document.add(new Paragraph("Boleta de Compra"));
-            document.add(new Paragraph("Orden N°: " + orden.getId()));
-            document.add(new Paragraph("Fecha: " + orden.getFecha()));
-            document.add(new Paragraph("Cliente: " + (orden.getUsuario() != null ? orden.getUsuario().getNombre() : "")));
-            document.add(new Paragraph(" "));
-            document.add(new Paragraph("Items:"));
-            for (OrdenItem item : orden.getItems()) {
-                document.add(new Paragraph("- " + item.getProducto().getNombre() + " x" + item.getCantidad() + " = $" + item.getSubtotal()));
-            }
-            document.add(new Paragraph(" "));
-            document.add(new Paragraph("Total: $" + orden.getTotal()));
-            document.close();
-            byte[] pdfBytes = baos.toByteArray();
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=boleta_orden_" + id + ".pdf")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdfBytes);
-        } catch (Exception e) {
+            boleta = cacheBoletas.abrir(orden);
+        } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
+        long tamano = boleta.tamano();
+        long desde = 0;
+        long hasta = tamano - 1;
+        boolean parcial = false;
+        if (rango != null) {
+            try {
+                List<HttpRange> rangos = HttpRange.parseRanges(rango);
+                // Varios tramos no se piden en la práctica: se responde el archivo completo
+                if (rangos.size() == 1) {
+                    desde = rangos.get(0).getRangeStart(tamano);
+                    hasta = rangos.get(0).getRangeEnd(tamano);
+                    if (desde >= tamano) {
+                        throw new IllegalArgumentException("Rango fuera del archivo");
+                    }
+                    parcial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                cerrar(boleta);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + tamano)
+                        .build();
+            }
+        }
+
+        long inicio = desde;
+        long cantidad = hasta - desde + 1;
+        StreamingResponseBody cuerpo = salida -> {
+            try (boleta) {
+                cacheBoletas.enviar(boleta, inicio, cantidad, salida);
+            }
+        };
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.status(parcial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .eTag(etag)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=boleta_orden_" + id + ".pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .contentLength(cantidad);
+        if (parcial) {
+            respuesta.header(HttpHeaders.CONTENT_RANGE, "bytes " + desde + "-" + hasta + "/" + tamano);
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    private static void cerrar(CacheBoletas.BoletaEnDisco boleta) {
+        try {
+            boleta.close();
+        } catch (IOException e) {
+            // Solo se leyó el tamaño
+        }
     }
 }
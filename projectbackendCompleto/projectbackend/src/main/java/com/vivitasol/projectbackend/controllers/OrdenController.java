@@ -1,11 +1,25 @@
 package com.vivitasol.projectbackend.controllers;
 
+import com.vivitasol.projectbackend.dto.EstadisticasOrdenes;
+import com.vivitasol.projectbackend.dto.EstadoOrdenAsincrona;
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
 import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.vivitasol.projectbackend.security.JwtPrincipal;
+import com.vivitasol.projectbackend.services.AceptacionOrdenes;
+import com.vivitasol.projectbackend.services.IdempotenciaOrdenes;
 import com.vivitasol.projectbackend.services.OrdenService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
 @RestController
@@ -15,19 +29,94 @@ public class OrdenController {
     @Autowired
     private OrdenService ordenService;
 
+    @Autowired
+    private IdempotenciaOrdenes idempotenciaOrdenes;
+
+    @Autowired
+    private AceptacionOrdenes aceptacionOrdenes;
+
     @GetMapping
     public ResponseEntity<List<Orden>> listarOrdenes() {
         return ResponseEntity.ok(ordenService.listarOrdenes());
     }
 
+    // Página de órdenes, más recientes primero. Sin expand=items no se leen los items;
+    // la página siguiente se pide con el siguienteCursor de la respuesta
+    @GetMapping("/pagina")
+    public ResponseEntity<?> listarPagina(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) Double totalMin,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer tamano,
+            @RequestParam(required = false) String expand) {
+        if (expand != null && !expand.isBlank() && !"items".equals(expand)) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Expansión no soportada: " + expand));
+        }
+        try {
+            OrdenFiltro filtro = new OrdenFiltro(desde, hasta, usuarioId, totalMin);
+            return ResponseEntity.ok(ordenService.listarPaginado(filtro, cursor, tamano, "items".equals(expand)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    // Totales de todas las órdenes para el dashboard, sin traer las filas
+    @GetMapping("/estadisticas")
+    public ResponseEntity<EstadisticasOrdenes> estadisticas() {
+        return ResponseEntity.ok(ordenService.estadisticas());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Orden> obtenerOrden(@PathVariable Long id) {
         return ResponseEntity.ok(ordenService.obtenerOrden(id));
     }
 
+    // Con Idempotency-Key, los reintentos del mismo checkout devuelven la orden ya creada;
+    // la clave es del usuario del token y repetirla con otro cuerpo responde 422.
+    // Con async=true se responde 202 y la orden se crea en segundo plano
     @PostMapping
-    public ResponseEntity<Orden> crearOrden(@RequestBody Orden orden) {
-        return ResponseEntity.ok(ordenService.crearOrden(orden));
+    public ResponseEntity<?> crearOrden(@RequestBody Orden orden,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @RequestParam(defaultValue = "false") boolean async, Authentication authentication) {
+        Long usuarioId = authentication != null && authentication.getPrincipal() instanceof JwtPrincipal principal
+                ? principal.id() : null;
+        if (async) {
+            try {
+                EstadoOrdenAsincrona estado = aceptacionOrdenes.encolar(orden, usuarioId, claveIdempotencia);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/ordenes/" + estado.getHandle() + "/status"))
+                        .body(estado);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+            } catch (ClaveIdempotenciaReutilizadaException e) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ErrorResponse(e.getMessage()));
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(new ErrorResponse(e.getMessage()));
+            }
+        }
+        if (claveIdempotencia == null) {
+            return ResponseEntity.ok(ordenService.crearOrden(orden));
+        }
+        try {
+            IdempotenciaOrdenes.Resultado resultado = idempotenciaOrdenes.crearOrden(usuarioId, claveIdempotencia, orden);
+            return ResponseEntity.ok()
+                    .header("Idempotent-Replayed", String.valueOf(resultado.repetida()))
+                    .body(resultado.orden());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        } catch (ClaveIdempotenciaReutilizadaException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{handle}/status")
+    public ResponseEntity<EstadoOrdenAsincrona> estadoOrden(@PathVariable String handle) {
+        EstadoOrdenAsincrona estado = aceptacionOrdenes.estado(handle);
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.notFound().build();
     }
 
     @DeleteMapping("/{id}")
@@ -1,6 +1,7 @@
 package com.vivitasol.projectbackend.controllers;
 
 import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.services.OrdenService;
 import com.vivitasol.projectbackend.services.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +16,9 @@ public class PerfilController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private OrdenService ordenService;
+
     // Obtener perfil del usuario autenticado
     @GetMapping
     public ResponseEntity<?> getPerfil(Authentication authentication) {
@@ -42,4 +46,22 @@ public class PerfilController {
         usuarioService.actualizar(usuario.getId(), usuario);
         return ResponseEntity.ok(usuario);
     }
+
+    // Órdenes del usuario autenticado, más recientes primero; la página siguiente
+    // se pide con el siguienteCursor de la respuesta
+    @GetMapping("/ordenes")
+    public ResponseEntity<?> getMisOrdenes(Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer tamano) {
+        String email = authentication.getName();
+        Usuario usuario = usuarioService.encontrarPorEmail(email);
+        if (usuario == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(ordenService.listarDeUsuario(usuario.getId(), cursor, tamano));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
 }
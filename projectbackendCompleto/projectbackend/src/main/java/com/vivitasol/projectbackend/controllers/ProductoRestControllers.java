@@ -1,11 +1,18 @@
 package com.vivitasol.projectbackend.controllers;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,9 +22,23 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import com.vivitasol.projectbackend.dto.CambiosCatalogo;
+import com.vivitasol.projectbackend.dto.ConteoStockBajo;
+import com.vivitasol.projectbackend.dto.DisponibilidadProducto;
+import com.vivitasol.projectbackend.dto.EstadoStockCaliente;
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
+import com.vivitasol.projectbackend.dto.ProductosConFacetas;
+import com.vivitasol.projectbackend.dto.Sugerencia;
 import com.vivitasol.projectbackend.entities.Producto;
 import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.search.IndiceSugerencias;
+import com.vivitasol.projectbackend.search.SugerenciasProductos;
+import com.vivitasol.projectbackend.services.CatalogoProductos;
+import com.vivitasol.projectbackend.services.ExportadorProductos;
 import com.vivitasol.projectbackend.services.ProductoServices;
+import com.vivitasol.projectbackend.services.StockCaliente;
 
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"})
 @RestController
@@ -25,9 +46,23 @@ import com.vivitasol.projectbackend.services.ProductoServices;
 @Tag(name = "Productos", description = "API para la gestión de productos")
 public class ProductoRestControllers {
 
+    private static final int LIMITE_BUSQUEDA_APROXIMADA = 50;
+
     @Autowired
     private ProductoServices productoServices;
 
+    @Autowired
+    private SugerenciasProductos sugerenciasProductos;
+
+    @Autowired
+    private CatalogoProductos catalogoProductos;
+
+    @Autowired
+    private ExportadorProductos exportadorProductos;
+
+    @Autowired
+    private StockCaliente stockCaliente;
+
     @Operation(summary = "Crear un nuevo producto", description = "Crea un nuevo producto en el sistema")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Producto creado exitosamente",
@@ -71,6 +106,19 @@ public class ProductoRestControllers {
         }
     }
 
+    @PostMapping("/{id}/umbral-stock")
+    public ResponseEntity<?> actualizarUmbralStock(@PathVariable Long id, @RequestBody UmbralRequest request) {
+        try {
+            // Un umbral nulo vuelve al umbral general
+            Producto producto = productoServices.actualizarUmbralStock(id, request.getUmbral());
+            return ResponseEntity.ok(producto);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @PostMapping("/{id}/reducir-stock")
     public ResponseEntity<?> reducirStock(@PathVariable Long id, @RequestBody StockRequest request) {
         try {
@@ -79,7 +127,7 @@ public class ProductoRestControllers {
             }
             Producto producto = productoServices.reducirStock(id, request.getCantidad());
             return ResponseEntity.ok(producto);
-        } catch (StockInsuficienteException e) {
+        } catch (StockInsuficienteException | IllegalArgumentException e) {
             return ResponseEntity
                 .status(400)
                 .body(new ErrorResponse(e.getMessage()));
@@ -95,38 +143,207 @@ public class ProductoRestControllers {
     }
 
  
-    @Operation(summary = "Listar productos", description = "Obtiene la lista de productos con filtros opcionales")
+    @Operation(summary = "Listar productos",
+             description = "Obtiene la lista de productos con filtros opcionales. Sin filtros responde el catálogo "
+                     + "completo ya serializado, con ETag y soporte de If-None-Match")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Lista de productos obtenida exitosamente",
                 content = { @Content(mediaType = "application/json", 
-                schema = @Schema(implementation = Producto.class)) })
+                schema = @Schema(implementation = Producto.class)) }),
+        @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag enviado")
     })
     @GetMapping
-    public ResponseEntity<List<Producto>> listarProductos(
+    public ResponseEntity<?> listarProductos(
             @Parameter(description = "Texto para buscar en nombre o descripción") 
             @RequestParam(required = false) String search,
             @Parameter(description = "ID de la categoría para filtrar") 
-            @RequestParam(required = false) Long categoriaId) {
+            @RequestParam(required = false) Long categoriaId,
+            @Parameter(description = "Tolerar errores de tipeo en la búsqueda (por trigramas)")
+            @RequestParam(required = false, defaultValue = "false") boolean fuzzy,
+            @Parameter(description = "Incluir conteos por categoría, precio y stock (la respuesta pasa a ser un objeto)")
+            @RequestParam(required = false, defaultValue = "false") boolean facets,
+            @Parameter(hidden = true)
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true)
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
-        List<Producto> productos = productoServices.listarTodas();
+        boolean conTexto = search != null && !search.trim().isEmpty();
+        if (!conTexto && categoriaId == null) {
+            if (!facets) {
+                return catalogoCompleto(ifNoneMatch, acceptEncoding);
+            }
+            // Sin filtros no hace falta cargar el catálogo: el snapshot y el índice de facetas bastan
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(catalogoProductos.conFacetas(productoServices.facetas(null, null)));
+        }
+        List<Producto> productos;
+        if (fuzzy && conTexto) {
+            productos = productoServices.buscarAproximado(search, categoriaId, LIMITE_BUSQUEDA_APROXIMADA);
+        } else {
+            // Los filtros se resuelven en la base de datos
+            productos = productoServices.buscar(new ProductoFiltro(search, categoriaId, null, null, null));
+        }
+        if (facets) {
+            return ResponseEntity.ok(new ProductosConFacetas(productos, productoServices.facetas(search, categoriaId)));
+        }
+        return ResponseEntity.ok(productos);
+    }
 
-        // Filtrar por búsqueda si se provee
-        if (search != null && !search.trim().isEmpty()) {
-            String s = search.trim().toLowerCase();
-            productos = productos.stream()
-                    .filter(p -> (p.getNombre() != null && p.getNombre().toLowerCase().contains(s))
-                            || (p.getDescripcion() != null && p.getDescripcion().toLowerCase().contains(s)))
-                    .collect(Collectors.toList());
+    // Bytes ya serializados (y comprimidos) de la versión actual del catálogo
+    private ResponseEntity<?> catalogoCompleto(String ifNoneMatch, String acceptEncoding) {
+        CatalogoProductos.Snapshot snapshot = catalogoProductos.snapshot();
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = gzip ? snapshot.etagGzip() : snapshot.etag();
+        if (snapshot.noModificado(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
         }
+        return respuesta.body(snapshot.json());
+    }
 
-        // Filtrar por categoría si se provee
-        if (categoriaId != null) {
-            productos = productos.stream()
-                    .filter(p -> p.getCategoria() != null && categoriaId.equals(p.getCategoria().getId()))
-                    .collect(Collectors.toList());
+    @Operation(summary = "Exportar catálogo",
+             description = "Descarga todos los productos en NDJSON o CSV, escritos a medida que se leen de la base de datos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación en curso"),
+        @ApiResponse(responseCode = "400", description = "Formato no soportado")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @Parameter(description = "Formato: ndjson o csv (por defecto: ndjson)")
+            @RequestParam(required = false, defaultValue = "ndjson") String format) {
+        if (!ExportadorProductos.formatoValido(format)) {
+            return ResponseEntity.badRequest().build();
         }
+        StreamingResponseBody cuerpo = salida -> exportadorProductos.exportar(format, salida);
+        MediaType tipo = ExportadorProductos.CSV.equals(format)
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+        return ResponseEntity.ok()
+                .contentType(tipo)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"productos." + format + "\"")
+                .body(cuerpo);
+    }
 
-        return ResponseEntity.ok(productos);
+    @Operation(summary = "Conteos para filtros",
+             description = "Cantidad de productos activos por categoría, rango de precio y con stock. Sin búsqueda "
+                     + "se responde con contadores en memoria; con búsqueda, sobre sus resultados")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Conteos obtenidos exitosamente",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = Facetas.class)) })
+    })
+    @GetMapping("/facets")
+    public ResponseEntity<Facetas> facetas(
+            @Parameter(description = "Texto de búsqueda actual")
+            @RequestParam(required = false) String search,
+            @Parameter(description = "Categoría seleccionada; los conteos por categoría no se filtran")
+            @RequestParam(required = false) Long categoriaId) {
+        return ResponseEntity.ok(productoServices.facetas(search, categoriaId));
+    }
+
+    @Operation(summary = "Cambios del catálogo desde una versión",
+             description = "Devuelve los productos creados o modificados y los ids eliminados desde la versión "
+                     + "indicada. Si la versión es demasiado antigua responde el catálogo completo (completo = true)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cambios obtenidos exitosamente",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = CambiosCatalogo.class)) })
+    })
+    @GetMapping("/changes")
+    public ResponseEntity<CambiosCatalogo> cambiosCatalogo(
+            @Parameter(description = "Versión recibida en la respuesta anterior; 0 para pedir todo")
+            @RequestParam(required = false, defaultValue = "0") long since) {
+        return ResponseEntity.ok(catalogoProductos.cambiosDesde(since));
+    }
+
+    @Operation(summary = "Buscar productos por relevancia",
+             description = "Búsqueda de texto sin tildes ni plurales, ordenada por relevancia. El último término se trata como prefijo")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Productos encontrados, el más relevante primero"),
+        @ApiResponse(responseCode = "400", description = "Modo o límite inválidos")
+    })
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscarProductos(
+            @Parameter(description = "Texto a buscar")
+            @RequestParam String q,
+            @Parameter(description = "ID de la categoría para filtrar")
+            @RequestParam(required = false) Long categoriaId,
+            @Parameter(description = "and = todos los términos, or = cualquiera (por defecto: and)")
+            @RequestParam(required = false, defaultValue = "and") String modo,
+            @Parameter(description = "Cantidad máxima de resultados (por defecto: 20)")
+            @RequestParam(required = false, defaultValue = "20") Integer limite) {
+        if (!"and".equalsIgnoreCase(modo) && !"or".equalsIgnoreCase(modo)) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Modo no soportado: " + modo));
+        }
+        try {
+            return ResponseEntity.ok(productoServices.buscarRelevantes(q, categoriaId, "and".equalsIgnoreCase(modo), limite));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Autocompletar nombres de productos y categorías",
+             description = "Sugerencias por prefijo de cualquier palabra, ordenadas por unidades vendidas")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Sugerencias obtenidas exitosamente")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Sugerencia>> sugerir(
+            @Parameter(description = "Texto escrito hasta ahora")
+            @RequestParam(required = false, defaultValue = "") String q,
+            @Parameter(description = "Cantidad máxima de sugerencias (por defecto: 8)")
+            @RequestParam(required = false, defaultValue = "8") Integer limite) {
+        int tope = Math.max(0, Math.min(limite, 50));
+        List<Sugerencia> sugerencias = sugerenciasProductos.sugerir(q, tope).stream()
+                .map(e -> new Sugerencia(e.tipo() == IndiceSugerencias.CATEGORIA ? "categoria" : "producto",
+                        e.id(), e.texto(), e.popularidad()))
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(sugerencias);
+    }
+
+    @Operation(summary = "Listar productos paginados",
+             description = "Paginación keyset por id o por precio. Devuelve un cursor para pedir la página siguiente")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Página de productos obtenida exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Cursor, orden o tamaño inválidos")
+    })
+    @GetMapping("/paginado")
+    public ResponseEntity<?> listarProductosPaginado(
+            @Parameter(description = "Texto para buscar en nombre o descripción")
+            @RequestParam(required = false) String search,
+            @Parameter(description = "ID de la categoría para filtrar")
+            @RequestParam(required = false) Long categoriaId,
+            @Parameter(description = "Filtrar por productos activos o inactivos")
+            @RequestParam(required = false) Boolean activo,
+            @Parameter(description = "Precio mínimo (inclusive)")
+            @RequestParam(required = false) Long precioMin,
+            @Parameter(description = "Precio máximo (inclusive)")
+            @RequestParam(required = false) Long precioMax,
+            @Parameter(description = "Criterio de orden: id o precio (por defecto: id)")
+            @RequestParam(required = false, defaultValue = "id") String orden,
+            @Parameter(description = "Cursor devuelto por la página anterior")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de productos por página (por defecto: 20)")
+            @RequestParam(required = false, defaultValue = "20") Integer tamano) {
+        try {
+            ProductoFiltro filtro = new ProductoFiltro(search, categoriaId, activo, precioMin, precioMax);
+            PaginaCursor<Producto> pagina = productoServices.listarPaginado(filtro, orden, cursor, tamano);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
     }
 
     @Operation(summary = "Listar productos con stock bajo", 
@@ -137,14 +354,90 @@ public class ProductoRestControllers {
                 schema = @Schema(implementation = Producto.class)) })
     })
     @GetMapping("/low-stock")
-    public ResponseEntity<List<Producto>> productosLowStock(
-            @Parameter(description = "Umbral de stock bajo (por defecto: 3)") 
+    public ResponseEntity<?> productosLowStock(
+            @Parameter(description = "Umbral de stock bajo (por defecto: 3); los productos con umbral propio usan el suyo") 
             @RequestParam(required = false, defaultValue = "3") Integer threshold) {
-        List<Producto> productos = productoServices.listarTodas();
-        List<Producto> low = productos.stream()
-                .filter(p -> p.getStock() != null && p.getStock() <= threshold)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(low);
+        try {
+            return ResponseEntity.ok(productoServices.listarStockBajo(threshold));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Contar productos con stock bajo",
+             description = "Devuelve solo la cantidad de productos con stock bajo, sin la lista")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cantidad obtenida exitosamente",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = ConteoStockBajo.class)) }),
+        @ApiResponse(responseCode = "400", description = "Umbral inválido")
+    })
+    @GetMapping("/low-stock/count")
+    public ResponseEntity<?> contarLowStock(
+            @Parameter(description = "Umbral de stock bajo (por defecto: 3)")
+            @RequestParam(required = false, defaultValue = "3") Integer threshold) {
+        try {
+            return ResponseEntity.ok(new ConteoStockBajo(threshold, productoServices.contarStockBajo(threshold)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Listar productos en stock caliente",
+             description = "Productos cuyo stock se lleva en memoria, con lo disponible y lo que falta escribir en la base de datos")
+    @GetMapping("/stock-caliente")
+    public ResponseEntity<List<EstadoStockCaliente>> listarStockCaliente() {
+        return ResponseEntity.ok(stockCaliente.estado());
+    }
+
+    @Operation(summary = "Pasar un producto a stock caliente",
+             description = "Las compras del producto se reservan en memoria sin bloquear su fila y se descuentan "
+                     + "en la base de datos en lotes. Pensado para ofertas con mucha demanda")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Producto en stock caliente"),
+        @ApiResponse(responseCode = "404", description = "Producto no encontrado")
+    })
+    @PostMapping("/{id}/stock-caliente")
+    public ResponseEntity<?> promoverStockCaliente(@PathVariable Long id) {
+        try {
+            stockCaliente.promover(id);
+            return ResponseEntity.ok(stockCaliente.estado());
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(summary = "Quitar un producto de stock caliente",
+             description = "Escribe lo reservado pendiente y vuelve a descontar el stock directamente en la base de datos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Producto fuera de stock caliente"),
+        @ApiResponse(responseCode = "409", description = "No se pudo escribir el stock pendiente; el producto sigue en stock caliente")
+    })
+    @DeleteMapping("/{id}/stock-caliente")
+    public ResponseEntity<?> degradarStockCaliente(@PathVariable Long id) {
+        try {
+            stockCaliente.degradar(id);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Consultar el stock disponible para la venta",
+             description = "Stock del producto menos las unidades retenidas en carritos que todavía no vencen")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Disponibilidad obtenida exitosamente",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = DisponibilidadProducto.class)) }),
+        @ApiResponse(responseCode = "404", description = "Producto no encontrado")
+    })
+    @GetMapping("/{id}/disponible")
+    public ResponseEntity<DisponibilidadProducto> obtenerDisponibilidad(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(productoServices.disponibilidad(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
   
@@ -179,6 +472,12 @@ public class ProductoRestControllers {
         public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
     }
 
+    public static class UmbralRequest {
+        private Integer umbral;
+        public Integer getUmbral() { return umbral; }
+        public void setUmbral(Integer umbral) { this.umbral = umbral; }
+    }
+
     public static class ImagenRequest {
         private String imagenUrl;
         public String getImagenUrl() { return imagenUrl; }
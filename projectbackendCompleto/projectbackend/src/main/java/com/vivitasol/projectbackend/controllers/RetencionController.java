@@ -0,0 +1,110 @@
+package com.vivitasol.projectbackend.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import com.vivitasol.projectbackend.dto.RetencionRequest;
+import com.vivitasol.projectbackend.dto.RetencionStock;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.services.OrdenService;
+import com.vivitasol.projectbackend.services.RetencionesStock;
+
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174"}, allowCredentials = "true")
+@RestController
+@RequestMapping("/api/retenciones")
+@Tag(name = "Retenciones", description = "Stock apartado en el carrito por un tiempo limitado")
+public class RetencionController {
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Operation(summary = "Retener stock para un carrito",
+             description = "Aparta las cantidades por unos minutos (por defecto 10). Si no se confirma antes, "
+                     + "la retención vence y las unidades vuelven a estar disponibles")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stock retenido",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = RetencionStock.class)) }),
+        @ApiResponse(responseCode = "400", description = "Cantidades o duración inválidas, o stock insuficiente"),
+        @ApiResponse(responseCode = "404", description = "Algún producto no existe")
+    })
+    @PostMapping
+    public ResponseEntity<?> crearRetencion(@RequestBody RetencionRequest request, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(retencionesStock.crear(authentication.getName(), request.getItems(),
+                    request.getMinutos()));
+        } catch (StockInsuficienteException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Consultar una retención",
+             description = "Líneas retenidas y hora de vencimiento. Solo la ve el usuario que la creó")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Retención activa"),
+        @ApiResponse(responseCode = "404", description = "Retención no encontrada o vencida")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<RetencionStock> obtenerRetencion(@PathVariable String id, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(retencionesStock.obtener(id, authentication.getName()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(summary = "Liberar una retención", description = "Devuelve las unidades antes de que venza la retención")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Retención liberada"),
+        @ApiResponse(responseCode = "404", description = "Retención no encontrada o vencida"),
+        @ApiResponse(responseCode = "409", description = "La retención se está confirmando")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> liberarRetencion(@PathVariable String id, Authentication authentication) {
+        try {
+            retencionesStock.liberar(id, authentication.getName());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(summary = "Confirmar una retención como orden",
+             description = "Crea la orden del usuario que creó la retención, con las líneas retenidas "
+                     + "y el precio actual de cada producto")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Orden creada",
+                content = { @Content(mediaType = "application/json",
+                schema = @Schema(implementation = Orden.class)) }),
+        @ApiResponse(responseCode = "404", description = "Retención no encontrada o vencida"),
+        @ApiResponse(responseCode = "409", description = "La retención ya se está confirmando")
+    })
+    @PostMapping("/{id}/confirmar")
+    public ResponseEntity<?> confirmarRetencion(@PathVariable String id, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(ordenService.confirmarRetencion(id, authentication.getName()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+}
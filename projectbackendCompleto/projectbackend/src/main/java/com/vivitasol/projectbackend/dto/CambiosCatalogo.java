@@ -0,0 +1,19 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.util.List;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CambiosCatalogo {
+    // Versión a enviar como "since" en la próxima consulta
+    private Long version;
+    // true: el cliente estaba muy atrasado y "productos" es el catálogo completo
+    private Boolean completo;
+    private List<Producto> productos;
+    private List<Long> eliminados;
+}
@@ -0,0 +1,11 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConteoStockBajo {
+    private Integer umbral;
+    private Long total;
+}
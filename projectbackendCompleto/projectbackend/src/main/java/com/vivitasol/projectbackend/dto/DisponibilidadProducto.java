@@ -0,0 +1,16 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DisponibilidadProducto {
+    private Long productoId;
+    // Unidades físicas: lo disponible más lo retenido
+    private Integer stock;
+    // Unidades apartadas en carritos que todavía no vencen
+    private Integer retenido;
+    // Lo que se puede vender: stock menos lo retenido
+    private Integer disponible;
+}
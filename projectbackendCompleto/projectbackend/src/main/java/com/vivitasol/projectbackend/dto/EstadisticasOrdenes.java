@@ -0,0 +1,12 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EstadisticasOrdenes {
+    private long totalCompras;
+    private long totalProductos;
+    private double totalDinero;
+}
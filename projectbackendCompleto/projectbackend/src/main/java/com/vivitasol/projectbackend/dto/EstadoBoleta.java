@@ -0,0 +1,14 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EstadoBoleta {
+    private Long ordenId;
+    // LISTA, GENERANDO o PENDIENTE (se genera al descargarla)
+    private String estado;
+    // Descargarla ahora no espera la generación
+    private boolean lista;
+}
@@ -0,0 +1,20 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EstadoOrdenAsincrona {
+    private String handle;
+    // EN_COLA, PROCESANDO, CREADA o RECHAZADA
+    private String estado;
+    // Solo cuando la orden quedó creada
+    private Long ordenId;
+    // Motivo del rechazo
+    private String mensaje;
+    private LocalDateTime recibida;
+    private LocalDateTime terminada;
+}
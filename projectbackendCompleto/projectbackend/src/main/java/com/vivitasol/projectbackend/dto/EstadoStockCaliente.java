@@ -0,0 +1,13 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EstadoStockCaliente {
+    private Long productoId;
+    private Integer disponible;
+    // Unidades reservadas que todavía no se descuentan en la base de datos
+    private Integer pendiente;
+}
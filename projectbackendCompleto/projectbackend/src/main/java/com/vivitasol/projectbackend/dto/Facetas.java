@@ -0,0 +1,33 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Conteos de productos activos para los filtros de la tienda. */
+@Data
+@AllArgsConstructor
+public class Facetas {
+    private Long total;
+    private Long enStock;
+    private List<FacetaCategoria> categorias;
+    private List<RangoPrecio> precios;
+
+    @Data
+    @AllArgsConstructor
+    public static class FacetaCategoria {
+        private Long id;
+        private String nombre;
+        private Long cantidad;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RangoPrecio {
+        // desde inclusive, hasta exclusivo; null = sin límite
+        private Long desde;
+        private Long hasta;
+        private Long cantidad;
+    }
+}
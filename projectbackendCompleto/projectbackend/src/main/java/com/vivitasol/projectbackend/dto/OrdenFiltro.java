@@ -0,0 +1,18 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenFiltro {
+    // Rango de días, ambos inclusive
+    private LocalDate desde;
+    private LocalDate hasta;
+    private Long usuarioId;
+    private Double totalMin;
+}
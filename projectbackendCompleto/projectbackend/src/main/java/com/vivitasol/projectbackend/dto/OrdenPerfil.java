@@ -0,0 +1,16 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Fila de "mis órdenes": se arma en la consulta, sin cargar la orden ni sus items
+@Data
+@AllArgsConstructor
+public class OrdenPerfil {
+    private Long id;
+    private LocalDateTime fecha;
+    private Double total;
+    private long cantidadItems;
+}
@@ -0,0 +1,21 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.vivitasol.projectbackend.entities.OrdenItem;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class OrdenResumen {
+    private Long id;
+    private LocalDateTime fecha;
+    private Double total;
+    private Long usuarioId;
+    private String usuarioNombre;
+    // Solo con expand=items; si no, null
+    private List<OrdenItem> items;
+}
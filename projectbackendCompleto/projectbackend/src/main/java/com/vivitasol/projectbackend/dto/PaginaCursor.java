@@ -0,0 +1,37 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PaginaCursor<T> {
+    private List<T> contenido;
+    private int tamano;
+    private boolean hayMas;
+    // Se envía de vuelta como ?cursor= para pedir la siguiente página
+    private String siguienteCursor;
+
+    /**
+     * Filas a pedir para una página de {@code tamano}: se pide un registro
+     * extra para saber si hay otra página sin ejecutar un COUNT.
+     */
+    public static int limite(int tamano) {
+        return tamano + 1;
+    }
+
+    /**
+     * Arma la página con lo que devolvió una consulta de
+     * {@link #limite(int)} filas. La fila extra no se devuelve; el cursor
+     * sale de la última fila de la página.
+     */
+    public static <T> PaginaCursor<T> de(List<T> filas, int tamano, Function<T, String> cursor) {
+        boolean hayMas = filas.size() > tamano;
+        List<T> contenido = List.copyOf(hayMas ? filas.subList(0, tamano) : filas);
+        String siguiente = hayMas ? cursor.apply(contenido.get(contenido.size() - 1)) : null;
+        return new PaginaCursor<>(contenido, contenido.size(), hayMas, siguiente);
+    }
+}
@@ -0,0 +1,21 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoFiltro {
+    private String search;
+    private Long categoriaId;
+    private Boolean activo;
+    private Long precioMin;
+    private Long precioMax;
+
+    public boolean estaVacio() {
+        return (search == null || search.trim().isEmpty())
+                && categoriaId == null && activo == null && precioMin == null && precioMax == null;
+    }
+}
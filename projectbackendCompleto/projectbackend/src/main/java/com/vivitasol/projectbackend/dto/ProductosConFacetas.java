@@ -0,0 +1,15 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.util.List;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductosConFacetas {
+    private List<Producto> productos;
+    private Facetas facetas;
+}
@@ -0,0 +1,12 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class RetencionRequest {
+    private List<ItemRetencion> items;
+    // Opcional; si no viene se usa la duración por defecto
+    private Integer minutos;
+}
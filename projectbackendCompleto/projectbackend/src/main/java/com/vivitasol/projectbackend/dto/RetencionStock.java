@@ -0,0 +1,15 @@
+package com.vivitasol.projectbackend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RetencionStock {
+    private String id;
+    private List<ItemRetencion> items;
+    private LocalDateTime vence;
+}
@@ -0,0 +1,14 @@
+package com.vivitasol.projectbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class Sugerencia {
+    // "producto" o "categoria"
+    private String tipo;
+    private Long id;
+    private String texto;
+    private Long popularidad;
+}
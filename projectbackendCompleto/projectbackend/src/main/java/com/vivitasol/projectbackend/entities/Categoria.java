@@ -1,7 +1,5 @@
 package com.vivitasol.projectbackend.entities;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -21,7 +19,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class Categoria {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdPorBloques("categoria")
     private Long id;
     private String nombre;
 
@@ -0,0 +1,32 @@
+package com.vivitasol.projectbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Clave Idempotency-Key ya usada y la orden que creó. Solo se escribe con
+ * ordenes.idempotencia.persistente=true, para que varias instancias
+ * compartan las claves. La clave lleva adelante el id del usuario.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "clave_idempotencia")
+public class ClaveIdempotencia {
+    @Id
+    @Column(length = 130)
+    private String clave;
+
+    // Nulo mientras la orden se está creando
+    private Long ordenId;
+
+    private LocalDateTime creada;
+
+    // SHA-256 del cuerpo con que se creó la orden
+    @Column(length = 64)
+    private String huella;
+}
@@ -0,0 +1,24 @@
+package com.vivitasol.projectbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Último segmento del diario de stock caliente ya descontado en la base de
+ * datos, por carpeta del diario. Se guarda en la misma transacción que los
+ * descuentos: al reaplicar el diario se saltan los segmentos ya aplicados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "diario_stock_caliente")
+public class DiarioStockCaliente {
+    @Id
+    @Column(length = 255)
+    private String directorio;
+
+    private Long ultimoSegmento;
+}
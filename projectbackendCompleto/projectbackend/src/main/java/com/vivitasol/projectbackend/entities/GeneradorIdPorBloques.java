@@ -0,0 +1,39 @@
+package com.vivitasol.projectbackend.entities;
+
+import java.lang.reflect.Member;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+
+import com.vivitasol.projectbackend.repositories.BloquesIds;
+
+/**
+ * Generador de {@link IdPorBloques}. Los bloques los reparte {@link BloquesIds},
+ * que Hibernate obtiene del contenedor de Spring la primera vez que se usa.
+ */
+public class GeneradorIdPorBloques implements IdentifierGenerator, AnnotationBasedGenerator<IdPorBloques> {
+
+    private String tabla;
+    private volatile BloquesIds bloques;
+
+    @Override
+    public void initialize(IdPorBloques config, Member miembro, GeneratorCreationContext contexto) {
+        this.tabla = config.value();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entidad) {
+        BloquesIds actual = bloques;
+        if (actual == null) {
+            actual = session.getFactory().getServiceRegistry()
+                    .requireService(ManagedBeanRegistry.class)
+                    .getBean(BloquesIds.class)
+                    .getBeanInstance();
+            bloques = actual;
+        }
+        return actual.siguiente(tabla);
+    }
+}
@@ -0,0 +1,23 @@
+package com.vivitasol.projectbackend.entities;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Id sacado por bloques de la tabla secuencia_id en vez de IDENTITY. Con
+ * IDENTITY Hibernate necesita el id de cada fila recién insertada y no
+ * puede juntar los INSERT en un lote JDBC; con el id ya asignado sí.
+ * El valor es el nombre de la tabla de la entidad.
+ */
+@IdGeneratorType(GeneradorIdPorBloques.class)
+@Retention(RUNTIME)
+@Target({ FIELD, METHOD })
+public @interface IdPorBloques {
+    String value();
+}
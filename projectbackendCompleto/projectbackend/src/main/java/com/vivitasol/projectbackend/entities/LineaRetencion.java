@@ -0,0 +1,38 @@
+package com.vivitasol.projectbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Línea de una retención de carrito. Las unidades ya se descontaron del
+ * stock al retener; la fila permite devolverlas si la retención vence
+ * después de un reinicio.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "retencion_stock", indexes = @Index(name = "idx_retencion_stock_retencion", columnList = "retencion_id"))
+public class LineaRetencion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 36, nullable = false)
+    private String retencionId;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    // Email del usuario que retuvo; solo él puede consultarla, liberarla o confirmarla
+    @Column(nullable = false)
+    private String propietario;
+
+    private LocalDateTime vence;
+}
@@ -11,9 +11,14 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+// Listado paginado de /api/ordenes/pagina: por fecha, y por usuario y fecha
+@Table(indexes = {
+    @Index(name = "idx_orden_fecha_id", columnList = "fecha, id"),
+    @Index(name = "idx_orden_usuario_fecha_id", columnList = "usuario_id, fecha, id")
+})
 public class Orden {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdPorBloques("orden")
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -23,7 +28,10 @@ public class Orden {
     private LocalDateTime fecha;
     private Double total;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "orden", fetch = FetchType.EAGER)
+    // LAZY: el listado no necesita los items; con expand=items se cargan en una sola consulta.
+    // Siempre por id: la huella de la boleta depende del orden de los items
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "orden", fetch = FetchType.LAZY)
+    @OrderBy("id")
     private List<OrdenItem> items;
 
     @PrePersist
@@ -3,7 +3,11 @@ package com.vivitasol.projectbackend.entities;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Data
 @NoArgsConstructor
@@ -11,10 +15,14 @@ import lombok.NoArgsConstructor;
 @Entity
 public class OrdenItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdPorBloques("orden_item")
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    // Referencia de vuelta: no se serializa ni entra en equals/toString para no recorrer el ciclo
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "orden_id")
     private Orden orden;
 
@@ -1,11 +1,11 @@
 package com.vivitasol.projectbackend.entities;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,10 +14,16 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_producto_precio_id", columnList = "precio, id"),
+    @Index(name = "idx_producto_categoria_id", columnList = "categoria_id, id"),
+    @Index(name = "idx_producto_activo_id", columnList = "activo, id"),
+    @Index(name = "idx_producto_stock_id", columnList = "stock, id")
+})
 public class Producto {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @IdPorBloques("producto")
     private Long id;
     private String nombre;
     private String descripcion;
@@ -30,4 +36,12 @@ public class Producto {
     @JoinColumn(name="categoria_id")
     private Categoria categoria;
 
+    // Umbral de stock bajo propio; null usa el umbral general de la consulta
+    private Integer umbralStock;
+
+    public Producto(Long id, String nombre, String descripcion, Long precio, Integer stock, String imagenUrl,
+            Boolean activo, Categoria categoria) {
+        this(id, nombre, descripcion, precio, stock, imagenUrl, activo, categoria, null);
+    }
+
 }
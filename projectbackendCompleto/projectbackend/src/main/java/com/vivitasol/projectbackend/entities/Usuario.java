@@ -16,7 +16,7 @@ import lombok.NoArgsConstructor;
 public class Usuario {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdPorBloques("usuario")
     private Long id;
 
     @NotBlank
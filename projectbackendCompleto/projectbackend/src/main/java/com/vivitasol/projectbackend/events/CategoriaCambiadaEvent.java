@@ -0,0 +1,15 @@
+package com.vivitasol.projectbackend.events;
+
+/**
+ * Se publica después de crear, renombrar o eliminar una categoría. Los
+ * productos serializados incluyen su categoría, así que también cambia el
+ * catálogo.
+ */
+public record CategoriaCambiadaEvent(Tipo tipo, Long categoriaId) {
+
+    public enum Tipo {
+        CREADA,
+        ACTUALIZADA,
+        ELIMINADA
+    }
+}
@@ -0,0 +1,10 @@
+package com.vivitasol.projectbackend.events;
+
+import com.vivitasol.projectbackend.entities.Orden;
+
+/**
+ * Se publica al guardar una orden. Los listeners transaccionales lo
+ * reciben recién después del commit.
+ */
+public record OrdenCreadaEvent(Orden orden) {
+}
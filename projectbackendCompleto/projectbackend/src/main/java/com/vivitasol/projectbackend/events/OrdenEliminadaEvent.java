@@ -0,0 +1,8 @@
+package com.vivitasol.projectbackend.events;
+
+/**
+ * Se publica al borrar una orden, para sacarla de las cachés (páginas de
+ * "mis órdenes" de su dueño y su boleta en disco).
+ */
+public record OrdenEliminadaEvent(Long ordenId, Long usuarioId) {
+}
@@ -0,0 +1,34 @@
+package com.vivitasol.projectbackend.events;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+/**
+ * Se publica después de cada mutación de un producto para que los índices
+ * y cachés en memoria se actualicen de forma incremental.
+ */
+public record ProductoCambiadoEvent(Tipo tipo, Long productoId, Producto producto) {
+
+    public enum Tipo {
+        CREADO,
+        ACTUALIZADO,
+        // Solo cambió el stock: los índices de texto pueden ignorarlo
+        STOCK,
+        ELIMINADO
+    }
+
+    public static ProductoCambiadoEvent creado(Producto producto) {
+        return new ProductoCambiadoEvent(Tipo.CREADO, producto.getId(), producto);
+    }
+
+    public static ProductoCambiadoEvent actualizado(Producto producto) {
+        return new ProductoCambiadoEvent(Tipo.ACTUALIZADO, producto.getId(), producto);
+    }
+
+    public static ProductoCambiadoEvent stock(Producto producto) {
+        return new ProductoCambiadoEvent(Tipo.STOCK, producto.getId(), producto);
+    }
+
+    public static ProductoCambiadoEvent eliminado(Long productoId) {
+        return new ProductoCambiadoEvent(Tipo.ELIMINADO, productoId, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.vivitasol.projectbackend.exceptions;
+
+public class ClaveIdempotenciaReutilizadaException extends RuntimeException {
+    public ClaveIdempotenciaReutilizadaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,175 @@
+package com.vivitasol.projectbackend.repositories;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Reparte ids por bloques de la tabla secuencia_id (una fila por tabla,
+ * con el próximo id libre). Cada bloque se reserva en su propia
+ * transacción con SELECT ... FOR UPDATE, así que varias instancias no
+ * reciben el mismo bloque; los ids que quedan sin usar al apagar se
+ * pierden.
+ *
+ * Las reservas usan un pool aparte de dos conexiones. Con el pool
+ * principal, una orden que agota el bloque esperaría una conexión libre
+ * mientras las demás transacciones, cada una con su conexión, esperan
+ * ese mismo bloque.
+ *
+ * La primera reserva de cada tabla sube el contador por encima del id más
+ * alto, por si la tabla se cargó por fuera de la aplicación. Las columnas
+ * id no llevan AUTO_INCREMENT (sql/migracion_ids_por_bloques.sql lo quita
+ * en las bases que venían con él): así un INSERT sin id falla en vez de
+ * tomar un id de un bloque ya reservado.
+ *
+ * No es un @Component: lo crea Hibernate con el contenedor de Spring
+ * desde {@link com.vivitasol.projectbackend.entities.GeneradorIdPorBloques}.
+ */
+public class BloquesIds {
+
+    private static final Logger log = LoggerFactory.getLogger(BloquesIds.class);
+
+    static final int BLOQUE = 50;
+
+    private static final class Bloque {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Ids disponibles: [siguiente, limite)
+        private long siguiente;
+        private long limite;
+    }
+
+    private final DataSource dataSource;
+    private final HikariDataSource poolPropio;
+    private final Map<String, Bloque> bloques = new ConcurrentHashMap<>();
+    private volatile boolean tablaCreada;
+
+    public BloquesIds(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource principal) {
+            HikariConfig config = new HikariConfig();
+            principal.copyStateTo(config);
+            config.setPoolName("secuencia-id");
+            config.setMaximumPoolSize(2);
+            config.setMinimumIdle(0);
+            poolPropio = new HikariDataSource(config);
+            this.dataSource = poolPropio;
+        } else {
+            // Sin pool (por ejemplo la base embebida de las pruebas) cada conexión es nueva
+            poolPropio = null;
+            this.dataSource = dataSource;
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (poolPropio != null) {
+            poolPropio.close();
+        }
+    }
+
+    public long siguiente(String tabla) {
+        Bloque bloque = bloques.computeIfAbsent(tabla, t -> new Bloque());
+        bloque.lock.lock();
+        try {
+            if (bloque.siguiente == bloque.limite) {
+                bloque.siguiente = reservar(tabla, bloque.limite == 0);
+                bloque.limite = bloque.siguiente + BLOQUE;
+            }
+            return bloque.siguiente++;
+        } finally {
+            bloque.lock.unlock();
+        }
+    }
+
+    // Devuelve el primer id del bloque reservado
+    private long reservar(String tabla, boolean primeraVez) {
+        try (Connection conexion = dataSource.getConnection()) {
+            crearTablaSiFalta(conexion);
+            boolean autoCommit = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+            try {
+                long inicio = reservarEnTransaccion(conexion, tabla, primeraVez);
+                conexion.commit();
+                return inicio;
+            } catch (SQLException | RuntimeException e) {
+                conexion.rollback();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(autoCommit);
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Otra instancia creó la fila de la tabla al mismo tiempo: ahora existe
+            if (primeraVez) {
+                return reservar(tabla, false);
+            }
+            throw new IllegalStateException("No se pudo reservar un bloque de ids para " + tabla, e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo reservar un bloque de ids para " + tabla, e);
+        }
+    }
+
+    private long reservarEnTransaccion(Connection conexion, String tabla, boolean primeraVez) throws SQLException {
+        Long actual = null;
+        try (PreparedStatement ps = conexion.prepareStatement(
+                "select siguiente from secuencia_id where tabla = ? for update")) {
+            ps.setString(1, tabla);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    actual = rs.getLong(1);
+                }
+            }
+        }
+        long inicio = actual != null ? actual : 1;
+        if (actual == null || primeraVez) {
+            long libre = maximoId(conexion, tabla) + 1;
+            if (libre > inicio) {
+                log.info("secuencia_id.{} sube de {} a {} (id más alto de la tabla)", tabla, inicio, libre);
+                inicio = libre;
+            }
+        }
+        String sql = actual == null
+                ? "insert into secuencia_id (siguiente, tabla) values (?, ?)"
+                : "update secuencia_id set siguiente = ? where tabla = ?";
+        try (PreparedStatement ps = conexion.prepareStatement(sql)) {
+            ps.setLong(1, inicio + BLOQUE);
+            ps.setString(2, tabla);
+            ps.executeUpdate();
+        }
+        return inicio;
+    }
+
+    // Las tablas vienen de @IdPorBloques, no de datos del usuario
+    private static long maximoId(Connection conexion, String tabla) throws SQLException {
+        try (Statement st = conexion.createStatement();
+                ResultSet rs = st.executeQuery("select coalesce(max(id), 0) from " + tabla)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void crearTablaSiFalta(Connection conexion) throws SQLException {
+        if (tablaCreada) {
+            return;
+        }
+        try (Statement st = conexion.createStatement()) {
+            st.execute("create table if not exists secuencia_id ("
+                    + "tabla varchar(64) not null primary key, siguiente bigint not null)");
+        }
+        tablaCreada = true;
+    }
+}
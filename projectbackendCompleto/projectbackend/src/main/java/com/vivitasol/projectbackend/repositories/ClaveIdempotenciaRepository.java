@@ -0,0 +1,36 @@
+package com.vivitasol.projectbackend.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vivitasol.projectbackend.entities.ClaveIdempotencia;
+
+public interface ClaveIdempotenciaRepository extends CrudRepository<ClaveIdempotencia, String> {
+
+    // INSERT explícito: save() haría merge y pisaría la fila de otra instancia.
+    // Con la clave ya insertada por una transacción abierta, la base de datos
+    // espera a que termine y después falla por clave duplicada
+    @Modifying
+    @Query(value = "insert into clave_idempotencia (clave, creada, huella) values (:clave, :creada, :huella)",
+            nativeQuery = true)
+    int registrar(@Param("clave") String clave, @Param("creada") LocalDateTime creada, @Param("huella") String huella);
+
+    @Modifying
+    @Query("update ClaveIdempotencia c set c.ordenId = :ordenId where c.clave = :clave")
+    int asignarOrden(@Param("clave") String clave, @Param("ordenId") Long ordenId);
+
+    // Una clave vencida se puede volver a usar
+    @Modifying
+    @Query("delete from ClaveIdempotencia c where c.clave = :clave and c.creada < :limite")
+    int borrarSiVencio(@Param("clave") String clave, @Param("limite") LocalDateTime limite);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ClaveIdempotencia c where c.creada < :limite")
+    int borrarAnteriores(@Param("limite") LocalDateTime limite);
+}
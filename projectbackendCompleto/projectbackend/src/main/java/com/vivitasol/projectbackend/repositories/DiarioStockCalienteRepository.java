@@ -0,0 +1,8 @@
+package com.vivitasol.projectbackend.repositories;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.vivitasol.projectbackend.entities.DiarioStockCaliente;
+
+public interface DiarioStockCalienteRepository extends CrudRepository<DiarioStockCaliente, String> {
+}
@@ -0,0 +1,21 @@
+package com.vivitasol.projectbackend.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.vivitasol.projectbackend.entities.LineaRetencion;
+
+public interface LineaRetencionRepository extends CrudRepository<LineaRetencion, Long> {
+
+    @Override
+    List<LineaRetencion> findAll();
+
+    // Devuelve las filas borradas: 0 si otra transacción ya se llevó la retención
+    @Modifying
+    @Query("delete from LineaRetencion l where l.retencionId = :retencionId")
+    int borrarRetencion(@Param("retencionId") String retencionId);
+}
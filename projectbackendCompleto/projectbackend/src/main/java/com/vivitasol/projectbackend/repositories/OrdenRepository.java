@@ -1,9 +1,86 @@
 package com.vivitasol.projectbackend.repositories;
 
+import com.vivitasol.projectbackend.dto.OrdenPerfil;
 import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
-public interface OrdenRepository extends CrudRepository<Orden, Long> {
-}
\ No newline at end of file
+public interface OrdenRepository extends CrudRepository<Orden, Long>, JpaSpecificationExecutor<Orden> {
+
+    // Filas [productoId, unidades vendidas]
+    @Query("select i.producto.id, sum(i.cantidad) from OrdenItem i where i.producto is not null group by i.producto.id")
+    List<Object[]> unidadesVendidasPorProducto();
+
+    // Items de una página de órdenes en una sola consulta, con su producto
+    @Query("select i from OrdenItem i left join fetch i.producto p left join fetch p.categoria "
+            + "where i.orden.id in :ordenes order by i.orden.id, i.id")
+    List<OrdenItem> itemsDeOrdenes(@Param("ordenes") Collection<Long> ordenes);
+
+    // Órdenes de un usuario, más recientes primero, sobre el índice (usuario_id, fecha, id).
+    // La cantidad de items es una subconsulta por fila de la página, no un JOIN con GROUP BY
+    @Query("select new com.vivitasol.projectbackend.dto.OrdenPerfil(o.id, o.fecha, o.total, "
+            + "(select count(i) from OrdenItem i where i.orden = o)) "
+            + "from Orden o where o.usuario.id = :usuarioId order by o.fecha desc, o.id desc")
+    List<OrdenPerfil> ordenesDeUsuario(@Param("usuarioId") Long usuarioId, Limit limite);
+
+    // Página siguiente: fecha < f OR (fecha = f AND id < ultimoId)
+    @Query("select new com.vivitasol.projectbackend.dto.OrdenPerfil(o.id, o.fecha, o.total, "
+            + "(select count(i) from OrdenItem i where i.orden = o)) "
+            + "from Orden o where o.usuario.id = :usuarioId "
+            + "and (o.fecha < :fecha or (o.fecha = :fecha and o.id < :ultimoId)) "
+            + "order by o.fecha desc, o.id desc")
+    List<OrdenPerfil> ordenesDeUsuarioAntesDe(@Param("usuarioId") Long usuarioId, @Param("fecha") LocalDateTime fecha,
+            @Param("ultimoId") Long ultimoId, Limit limite);
+
+    // Todas las órdenes con usuario, items y productos en una sola consulta
+    @Query("select distinct o from Orden o left join fetch o.usuario left join fetch o.items i "
+            + "left join fetch i.producto p left join fetch p.categoria order by o.id")
+    List<Orden> todasConItems();
+
+    // La orden con lo que imprime la boleta: usuario, items y productos
+    @Query("select distinct o from Orden o left join fetch o.usuario left join fetch o.items i "
+            + "left join fetch i.producto where o.id = :id")
+    Optional<Orden> conItems(@Param("id") Long id);
+
+    // Filas [fecha, usuarioId, usuarioNombre, total, itemId, productoId, productoNombre, cantidad,
+    // precioUnitario]: lo que imprime la boleta, una fila por item (o una sin item si no tiene)
+    @Query("select o.fecha, u.id, u.nombre, o.total, i.id, p.id, p.nombre, i.cantidad, i.precioUnitario "
+            + "from Orden o left join o.usuario u left join o.items i left join i.producto p "
+            + "where o.id = :id order by i.id")
+    List<Object[]> datosBoleta(@Param("id") Long id);
+
+    // Cursor de solo avance por [desde, hasta) sobre el índice (fecha, id), con el usuario;
+    // requiere una transacción abierta y cerrar el Stream
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select o from Orden o left join fetch o.usuario "
+            + "where o.fecha >= :desde and o.fecha < :hasta order by o.fecha, o.id")
+    Stream<Orden> recorrerEntre(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    // Fila [cantidad de órdenes, suma de totales]
+    @Query("select count(o), coalesce(sum(o.total), 0) from Orden o")
+    List<Object[]> totalesOrdenes();
+
+    @Query("select coalesce(sum(i.cantidad), 0) from OrdenItem i")
+    long unidadesVendidas();
+}
@@ -0,0 +1,57 @@
+package com.vivitasol.projectbackend.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
+import com.vivitasol.projectbackend.entities.Orden;
+
+import jakarta.persistence.criteria.JoinType;
+
+public final class OrdenSpecs {
+
+    private OrdenSpecs() {
+    }
+
+    public static Specification<Orden> conFiltro(OrdenFiltro filtro) {
+        Specification<Orden> spec = (root, query, cb) -> cb.conjunction();
+        if (filtro == null) {
+            return spec;
+        }
+        if (filtro.getDesde() != null) {
+            spec = spec.and((root, query, cb) ->
+                    cb.greaterThanOrEqualTo(root.get("fecha"), filtro.getDesde().atStartOfDay()));
+        }
+        if (filtro.getHasta() != null) {
+            // hasta es inclusive: todo lo anterior al día siguiente
+            spec = spec.and((root, query, cb) ->
+                    cb.lessThan(root.get("fecha"), filtro.getHasta().plusDays(1).atStartOfDay()));
+        }
+        if (filtro.getUsuarioId() != null) {
+            // usuario_id es columna de orden: no hace falta JOIN
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("usuario").get("id"), filtro.getUsuarioId()));
+        }
+        if (filtro.getTotalMin() != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("total"), filtro.getTotalMin()));
+        }
+        return spec;
+    }
+
+    // Keyset descendente por (fecha, id): fecha < f OR (fecha = f AND id < ultimoId)
+    public static Specification<Orden> antesDe(LocalDateTime fecha, Long ultimoId) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("fecha"), fecha),
+                cb.and(cb.equal(root.get("fecha"), fecha), cb.lessThan(root.get("id"), ultimoId)));
+    }
+
+    // Trae el usuario en la misma consulta en vez de un SELECT por usuario distinto
+    public static Specification<Orden> conUsuario() {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("usuario", JoinType.LEFT);
+            }
+            return cb.conjunction();
+        };
+    }
+}
@@ -1,9 +1,51 @@
 package com.vivitasol.projectbackend.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.vivitasol.projectbackend.entities.Producto;
 
-public interface  ProductoRepositories extends CrudRepository <Producto, Long>{
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+public interface  ProductoRepositories extends JpaRepository <Producto, Long>, JpaSpecificationExecutor<Producto> {
+
+    // Cursor de solo avance para exportar; requiere una transacción abierta y cerrar el Stream
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select p from Producto p left join fetch p.categoria order by p.id")
+    Stream<Producto> recorrerTodos();
+
+    // Descuento condicional en una sola sentencia; devuelve 0 si no existe o no alcanza el stock.
+    // No limpia el contexto: quien relea el producto lo refresca
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Producto p set p.stock = p.stock - :cantidad where p.id = :id and p.stock >= :cantidad")
+    int descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+    // Descuento sin validar (negativo devuelve unidades) para el stock caliente, que ya validó en memoria
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Producto p set p.stock = p.stock - :cantidad where p.id = :id")
+    int ajustarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
 
+    // SELECT ... FOR UPDATE en orden de id: dos órdenes con los mismos productos
+    // toman los bloqueos en el mismo orden y no se cruzan. Solo bloquea las filas de producto
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Producto p left join fetch p.categoria where p.id in :ids order by p.id")
+    List<Producto> bloquearParaReserva(@Param("ids") Collection<Long> ids);
 }
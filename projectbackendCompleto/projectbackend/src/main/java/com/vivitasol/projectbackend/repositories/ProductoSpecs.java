@@ -0,0 +1,71 @@
+package com.vivitasol.projectbackend.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
+import com.vivitasol.projectbackend.entities.Producto;
+
+public final class ProductoSpecs {
+
+    private ProductoSpecs() {
+    }
+
+    public static Specification<Producto> conFiltro(ProductoFiltro filtro) {
+        Specification<Producto> spec = (root, query, cb) -> cb.conjunction();
+        if (filtro == null) {
+            return spec;
+        }
+        if (filtro.getSearch() != null && !filtro.getSearch().trim().isEmpty()) {
+            spec = spec.and(texto(filtro.getSearch()));
+        }
+        if (filtro.getCategoriaId() != null) {
+            spec = spec.and(categoria(filtro.getCategoriaId()));
+        }
+        if (filtro.getActivo() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("activo"), filtro.getActivo()));
+        }
+        if (filtro.getPrecioMin() != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("precio"), filtro.getPrecioMin()));
+        }
+        if (filtro.getPrecioMax() != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("precio"), filtro.getPrecioMax()));
+        }
+        return spec;
+    }
+
+    public static Specification<Producto> texto(String search) {
+        String patron = "%" + search.trim().toLowerCase()
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("nombre")), patron, '\\'),
+                cb.like(cb.lower(root.get("descripcion")), patron, '\\'));
+    }
+
+    public static Specification<Producto> categoria(Long categoriaId) {
+        return (root, query, cb) -> cb.equal(root.get("categoria").get("id"), categoriaId);
+    }
+
+    // Keyset por id: id > ultimoId
+    public static Specification<Producto> despuesDeId(Long ultimoId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), ultimoId);
+    }
+
+    // Keyset por (precio, id): precio > p OR (precio = p AND id > ultimoId)
+    public static Specification<Producto> despuesDePrecio(Long precio, Long ultimoId) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("precio"), precio),
+                cb.and(cb.equal(root.get("precio"), precio), cb.greaterThan(root.get("id"), ultimoId)));
+    }
+
+    public static Specification<Producto> conPrecio() {
+        return (root, query, cb) -> cb.isNotNull(root.get("precio"));
+    }
+
+    // stock <= coalesce(umbralStock, umbral)
+    public static Specification<Producto> stockBajo(int umbral) {
+        return (root, query, cb) -> cb.and(
+                cb.isNotNull(root.get("stock")),
+                cb.lessThanOrEqualTo(root.<Integer>get("stock"),
+                        cb.coalesce(root.<Integer>get("umbralStock"), umbral)));
+    }
+}
@@ -0,0 +1,123 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+/**
+ * Base de los índices que se cargan con el recorrido del catálogo y luego
+ * se mantienen con los eventos de cambio. Mientras se reconstruye, cada
+ * cambio se aplica al estado vigente y se guarda para reaplicarlo sobre el
+ * nuevo antes de publicarlo.
+ *
+ * @param <E> estado del índice; se modifica con el lock de escritura tomado
+ */
+public abstract class IndiceCatalogo<E> implements ReconstruiblePorCatalogo {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile E estado;
+    private volatile boolean listo = false;
+
+    // Cambios recibidos mientras se reconstruye; se reaplican sobre el estado nuevo
+    private final Object mutex = new Object();
+    private List<Consumer<E>> pendientes = null;
+
+    protected IndiceCatalogo(E inicial) {
+        this.estado = inicial;
+    }
+
+    /** Estado vacío sobre el que se carga el catálogo. */
+    protected abstract E nuevoEstado();
+
+    protected abstract void agregar(E destino, List<Producto> lote);
+
+    /** Texto para el log al terminar, por ejemplo la cantidad de productos. */
+    protected abstract String resumen(E estado);
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    @Override
+    public Reconstruccion empezarReconstruccion() {
+        synchronized (mutex) {
+            if (pendientes != null) {
+                return null;
+            }
+            pendientes = new ArrayList<>();
+        }
+        long inicio = System.nanoTime();
+        E nuevo = nuevoEstado();
+        return new Reconstruccion() {
+
+            @Override
+            public void agregar(List<Producto> lote) {
+                IndiceCatalogo.this.agregar(nuevo, lote);
+            }
+
+            @Override
+            public void terminar() {
+                synchronized (mutex) {
+                    pendientes.forEach(cambio -> cambio.accept(nuevo));
+                    lock.writeLock().lock();
+                    try {
+                        estado = nuevo;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    pendientes = null;
+                    listo = true;
+                }
+                log.info("{} en {} ms", resumen(nuevo), (System.nanoTime() - inicio) / 1_000_000);
+            }
+
+            @Override
+            public void cancelar(RuntimeException causa) {
+                synchronized (mutex) {
+                    pendientes = null;
+                }
+                log.warn("No se pudo reconstruir {}; se seguirá consultando la base de datos",
+                        IndiceCatalogo.this.getClass().getSimpleName(), causa);
+            }
+        };
+    }
+
+    /** Aplica un cambio al estado vigente y, si hay reconstrucción en curso, también al nuevo. */
+    protected final void registrar(Consumer<E> cambio) {
+        synchronized (mutex) {
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+            lock.writeLock().lock();
+            try {
+                cambio.accept(estado);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Lectura con el lock de lectura tomado, para estados que no son seguros entre hilos. */
+    protected final <T> T leer(Function<? super E, ? extends T> lectura) {
+        lock.readLock().lock();
+        try {
+            return lectura.apply(estado);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Estado vigente sin lock, para estados que se sincronizan por su cuenta. */
+    protected final E estado() {
+        return estado;
+    }
+}
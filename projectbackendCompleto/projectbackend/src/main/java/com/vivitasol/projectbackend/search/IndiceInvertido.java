@@ -0,0 +1,386 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido de productos: cada término normalizado apunta a una
+ * lista ordenada de ids (int[]) con su peso. Las consultas toman el lock de
+ * lectura, las altas/bajas el de escritura.
+ */
+public class IndiceInvertido {
+
+    public static final int PESO_NOMBRE = 3;
+    public static final int PESO_DESCRIPCION = 1;
+
+    // Cantidad máxima de términos en que se expande el prefijo del último token
+    static final int MAX_EXPANSION_PREFIJO = 64;
+
+    private final TreeMap<String, Postings> terminos = new TreeMap<>();
+    private final Map<Integer, Documento> documentos = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record Documento(long categoriaId, boolean activo, String[] terminos) {
+    }
+
+    /** Lista de ids ordenada ascendente con pesos paralelos. */
+    static final class Postings {
+        int[] docs = new int[4];
+        byte[] pesos = new byte[4];
+        int size;
+
+        void agregar(int doc, int peso) {
+            int pos = Arrays.binarySearch(docs, 0, size, doc);
+            if (pos >= 0) {
+                pesos[pos] = (byte) Math.min(Byte.MAX_VALUE, peso);
+                return;
+            }
+            pos = -pos - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                pesos = Arrays.copyOf(pesos, size * 2);
+            }
+            // Los ids nuevos suelen ser los mayores, así que casi siempre se agrega al final
+            System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+            System.arraycopy(pesos, pos, pesos, pos + 1, size - pos);
+            docs[pos] = doc;
+            pesos[pos] = (byte) Math.min(Byte.MAX_VALUE, peso);
+            size++;
+        }
+
+        void quitar(int doc) {
+            int pos = Arrays.binarySearch(docs, 0, size, doc);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+            System.arraycopy(pesos, pos + 1, pesos, pos, size - pos - 1);
+            size--;
+        }
+
+        int buscar(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+    }
+
+    public void indexar(long id, String nombre, String descripcion, Long categoriaId, boolean activo) {
+        indexarTokens(id, NormalizadorTexto.tokens(nombre), NormalizadorTexto.tokens(descripcion), categoriaId, activo);
+    }
+
+    /**
+     * Variante que recibe los tokens ya calculados, para poder normalizar
+     * en paralelo durante la reconstrucción.
+     */
+    public void indexarTokens(long id, List<String> tokensNombre, List<String> tokensDescripcion,
+            Long categoriaId, boolean activo) {
+        int doc = Math.toIntExact(id);
+        Map<String, Integer> pesos = new HashMap<>();
+        for (String t : tokensNombre) {
+            pesos.merge(t, PESO_NOMBRE, Integer::sum);
+        }
+        for (String t : tokensDescripcion) {
+            pesos.merge(t, PESO_DESCRIPCION, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            quitarSinLock(doc);
+            for (Map.Entry<String, Integer> e : pesos.entrySet()) {
+                terminos.computeIfAbsent(e.getKey(), k -> new Postings()).agregar(doc, e.getValue());
+            }
+            documentos.put(doc, new Documento(categoriaId != null ? categoriaId : -1L, activo,
+                    pesos.keySet().toArray(new String[0])));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void quitar(long id) {
+        lock.writeLock().lock();
+        try {
+            quitarSinLock(Math.toIntExact(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void quitarSinLock(int doc) {
+        Documento anterior = documentos.remove(doc);
+        if (anterior == null) {
+            return;
+        }
+        for (String t : anterior.terminos()) {
+            Postings p = terminos.get(t);
+            if (p != null) {
+                p.quitar(doc);
+                if (p.size == 0) {
+                    terminos.remove(t);
+                }
+            }
+        }
+    }
+
+    public int tamano() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los productos que coinciden con la consulta, ordenados por
+     * relevancia. El último token se interpreta como prefijo para que
+     * "choco" encuentre "chocolate".
+     *
+     * @param todos       true = AND entre los términos, false = OR
+     * @param categoriaId filtra por categoría si no es null
+     * @param activo      filtra por estado si no es null
+     * @return ids de producto, el más relevante primero
+     */
+    public long[] buscar(String consulta, boolean todos, Long categoriaId, Boolean activo, int limite) {
+        List<String> tokens = NormalizadorTexto.tokens(consulta);
+        if (tokens.isEmpty() || limite <= 0) {
+            return new long[0];
+        }
+        boolean ultimoEsPrefijo = consulta != null && !consulta.isEmpty()
+                && Character.isLetterOrDigit(consulta.charAt(consulta.length() - 1));
+
+        lock.readLock().lock();
+        try {
+            int n = Math.max(1, documentos.size());
+            List<Postings> listas = new ArrayList<>(tokens.size());
+            List<Float> idfs = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean prefijo = ultimoEsPrefijo && i == tokens.size() - 1;
+                Postings p = prefijo ? expandirPrefijo(tokens.get(i)) : terminos.get(tokens.get(i));
+                if (p == null || p.size == 0) {
+                    if (todos) {
+                        return new long[0];
+                    }
+                    continue;
+                }
+                listas.add(p);
+                idfs.add((float) Math.log(1.0 + (double) n / p.size));
+            }
+            if (listas.isEmpty()) {
+                return new long[0];
+            }
+
+            TopK top = new TopK(limite);
+            if (todos) {
+                intersectar(listas, idfs, categoriaId, activo, top);
+            } else {
+                unir(listas, idfs, categoriaId, activo, top);
+            }
+            return top.ordenados();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Postings expandirPrefijo(String prefijo) {
+        NavigableMap<String, Postings> rango = terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+        if (rango.isEmpty()) {
+            return null;
+        }
+        if (rango.size() == 1) {
+            return rango.firstEntry().getValue();
+        }
+        // Unión de las listas de los términos que comparten el prefijo, con el peso máximo
+        Postings union = new Postings();
+        int expandidos = 0;
+        for (Postings p : rango.values()) {
+            if (expandidos++ == MAX_EXPANSION_PREFIJO) {
+                break;
+            }
+            union = mezclar(union, p);
+        }
+        return union;
+    }
+
+    private static Postings mezclar(Postings a, Postings b) {
+        Postings r = new Postings();
+        r.docs = new int[a.size + b.size];
+        r.pesos = new byte[a.size + b.size];
+        int i = 0, j = 0, k = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.docs[i] < b.docs[j])) {
+                r.docs[k] = a.docs[i];
+                r.pesos[k++] = a.pesos[i++];
+            } else if (i == a.size || b.docs[j] < a.docs[i]) {
+                r.docs[k] = b.docs[j];
+                r.pesos[k++] = b.pesos[j++];
+            } else {
+                r.docs[k] = a.docs[i];
+                r.pesos[k++] = (byte) Math.max(a.pesos[i++], b.pesos[j++]);
+            }
+        }
+        r.size = k;
+        return r;
+    }
+
+    private void intersectar(List<Postings> listas, List<Float> idfs, Long categoriaId, Boolean activo, TopK top) {
+        // Se recorre la lista más corta y se busca cada id en las demás
+        int menor = 0;
+        for (int i = 1; i < listas.size(); i++) {
+            if (listas.get(i).size < listas.get(menor).size) {
+                menor = i;
+            }
+        }
+        Postings base = listas.get(menor);
+        siguiente:
+        for (int d = 0; d < base.size; d++) {
+            int doc = base.docs[d];
+            float score = idfs.get(menor) * base.pesos[d];
+            for (int i = 0; i < listas.size(); i++) {
+                if (i == menor) {
+                    continue;
+                }
+                int pos = listas.get(i).buscar(doc);
+                if (pos < 0) {
+                    continue siguiente;
+                }
+                score += idfs.get(i) * listas.get(i).pesos[pos];
+            }
+            if (pasaFiltros(doc, categoriaId, activo)) {
+                top.ofrecer(doc, score);
+            }
+        }
+    }
+
+    private void unir(List<Postings> listas, List<Float> idfs, Long categoriaId, Boolean activo, TopK top) {
+        int[] cursores = new int[listas.size()];
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = 0; i < listas.size(); i++) {
+                Postings p = listas.get(i);
+                if (cursores[i] < p.size && p.docs[cursores[i]] < doc) {
+                    doc = p.docs[cursores[i]];
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                return;
+            }
+            float score = 0;
+            for (int i = 0; i < listas.size(); i++) {
+                Postings p = listas.get(i);
+                if (cursores[i] < p.size && p.docs[cursores[i]] == doc) {
+                    score += idfs.get(i) * p.pesos[cursores[i]];
+                    cursores[i]++;
+                }
+            }
+            if (pasaFiltros(doc, categoriaId, activo)) {
+                top.ofrecer(doc, score);
+            }
+        }
+    }
+
+    private boolean pasaFiltros(int doc, Long categoriaId, Boolean activo) {
+        if (categoriaId == null && activo == null) {
+            return true;
+        }
+        Documento d = documentos.get(doc);
+        if (d == null) {
+            return false;
+        }
+        if (categoriaId != null && d.categoriaId() != categoriaId) {
+            return false;
+        }
+        return activo == null || d.activo() == activo;
+    }
+
+    /** Min-heap acotado de (score, doc) sin boxing. */
+    static final class TopK {
+        private final int capacidad;
+        private int[] docs;
+        private float[] scores;
+        private int size;
+
+        TopK(int limite) {
+            this.capacidad = limite;
+            this.docs = new int[Math.min(limite, 1024)];
+            this.scores = new float[docs.length];
+        }
+
+        // Verdadero si (s1, d1) es "peor" que (s2, d2): menor score, o mismo score e id mayor
+        private static boolean peor(float s1, int d1, float s2, int d2) {
+            return s1 < s2 || (s1 == s2 && d1 > d2);
+        }
+
+        void ofrecer(int doc, float score) {
+            if (size < capacidad) {
+                if (size == docs.length) {
+                    int nuevo = (int) Math.min((long) capacidad, (long) size * 2);
+                    docs = Arrays.copyOf(docs, nuevo);
+                    scores = Arrays.copyOf(scores, nuevo);
+                }
+                docs[size] = doc;
+                scores[size] = score;
+                subir(size++);
+            } else if (peor(scores[0], docs[0], score, doc)) {
+                docs[0] = doc;
+                scores[0] = score;
+                bajar(0);
+            }
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int padre = (i - 1) >>> 1;
+                if (!peor(scores[i], docs[i], scores[padre], docs[padre])) {
+                    break;
+                }
+                intercambiar(i, padre);
+                i = padre;
+            }
+        }
+
+        private void bajar(int i) {
+            while (true) {
+                int izq = 2 * i + 1;
+                int der = izq + 1;
+                int menor = i;
+                if (izq < size && peor(scores[izq], docs[izq], scores[menor], docs[menor])) {
+                    menor = izq;
+                }
+                if (der < size && peor(scores[der], docs[der], scores[menor], docs[menor])) {
+                    menor = der;
+                }
+                if (menor == i) {
+                    return;
+                }
+                intercambiar(i, menor);
+                i = menor;
+            }
+        }
+
+        private void intercambiar(int a, int b) {
+            int td = docs[a];
+            docs[a] = docs[b];
+            docs[b] = td;
+            float ts = scores[a];
+            scores[a] = scores[b];
+            scores[b] = ts;
+        }
+
+        long[] ordenados() {
+            long[] resultado = new long[size];
+            // Se vacía el heap: sale primero el peor, así que se llena desde el final
+            for (int i = size - 1; i >= 0; i--) {
+                resultado[i] = docs[0];
+                size--;
+                docs[0] = docs[size];
+                scores[0] = scores[size];
+                bajar(0);
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+/**
+ * Mantiene los índices de texto de productos (invertido y de trigramas)
+ * sincronizados con la base de datos: se cargan con {@link RecorridoCatalogo}
+ * y luego se actualizan con cada {@link ProductoCambiadoEvent}.
+ */
+@Component
+public class IndiceProductos extends IndiceCatalogo<IndiceProductos.Indices> {
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    // Los dos índices se sincronizan por su cuenta; se leen sin el lock de la base
+    record Indices(IndiceInvertido invertido, IndiceTrigramas trigramas) {
+    }
+
+    public IndiceProductos() {
+        super(new Indices(new IndiceInvertido(), new IndiceTrigramas()));
+    }
+
+    public long[] buscar(String consulta, boolean todos, Long categoriaId, Boolean activo, int limite) {
+        return estado().invertido().buscar(consulta, todos, categoriaId, activo, limite);
+    }
+
+    public long[] buscarSubcadena(String consulta, Long categoriaId, Boolean activo, int limite) {
+        return estado().trigramas().buscarSubcadena(consulta, categoriaId, activo, limite);
+    }
+
+    public long[] buscarAproximado(String consulta, Long categoriaId, Boolean activo, int limite) {
+        return estado().trigramas().buscar(consulta, categoriaId, activo, limite);
+    }
+
+    public void reconstruir() {
+        RecorridoCatalogo.recorrer(productoRepositories, List.of(this));
+    }
+
+    @Override
+    protected Indices nuevoEstado() {
+        return new Indices(new IndiceInvertido(), new IndiceTrigramas());
+    }
+
+    // Cada lote se normaliza en paralelo; las consultas siguen usando el índice anterior hasta el reemplazo
+    @Override
+    protected void agregar(Indices destino, List<Producto> lote) {
+        List<Entrada> entradas = lote.parallelStream().map(Entrada::de).toList();
+        for (Entrada e : entradas) {
+            destino.invertido().indexarTokens(e.id(), e.tokensNombre(), e.tokensDescripcion(), e.categoriaId(), e.activo());
+            destino.trigramas().indexarTrigramas(e.id(), e.trigramas(), e.textos(), e.categoriaId(), e.activo());
+        }
+    }
+
+    @Override
+    protected String resumen(Indices estado) {
+        return "Índice de productos reconstruido: " + estado.invertido().tamano() + " productos";
+    }
+
+    // Después del commit: un guardado que se revierte no cambia las búsquedas
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.STOCK) {
+            return;
+        }
+        registrar(destino -> aplicar(destino, evento));
+    }
+
+    private static void aplicar(Indices destino, ProductoCambiadoEvent evento) {
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.ELIMINADO || evento.producto() == null) {
+            destino.invertido().quitar(evento.productoId());
+            destino.trigramas().quitar(evento.productoId());
+            return;
+        }
+        Producto p = evento.producto();
+        Long categoriaId = p.getCategoria() != null ? p.getCategoria().getId() : null;
+        boolean activo = !Boolean.FALSE.equals(p.getActivo());
+        destino.invertido().indexar(p.getId(), p.getNombre(), p.getDescripcion(), categoriaId, activo);
+        destino.trigramas().indexar(p.getId(), p.getNombre(), p.getDescripcion(), categoriaId, activo);
+    }
+
+    private record Entrada(long id, List<String> tokensNombre, List<String> tokensDescripcion, int[] trigramas,
+            String[] textos, Long categoriaId, boolean activo) {
+
+        static Entrada de(Producto p) {
+            return new Entrada(p.getId(), NormalizadorTexto.tokens(p.getNombre()),
+                    NormalizadorTexto.tokens(p.getDescripcion()),
+                    IndiceTrigramas.trigramas(p.getNombre() + " " + (p.getDescripcion() != null ? p.getDescripcion() : "")),
+                    IndiceTrigramas.textos(p.getNombre(), p.getDescripcion()),
+                    p.getCategoria() != null ? p.getCategoria().getId() : null,
+                    !Boolean.FALSE.equals(p.getActivo()));
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.vivitasol.projectbackend.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Índice inmutable para autocompletar. Las claves (nombre normalizado
+ * desde cada palabra) se guardan ordenadas y concatenadas en un byte[];
+ * un árbol de segmentos sobre la popularidad permite sacar los k más
+ * populares de un rango de prefijo en O(k log n) sin recorrer el rango.
+ */
+public final class IndiceSugerencias {
+
+    public static final byte PRODUCTO = 0;
+    public static final byte CATEGORIA = 1;
+
+    public record Entrada(byte tipo, long id, String texto, long popularidad) {
+    }
+
+    private static final IndiceSugerencias VACIO = construir(List.of());
+
+    // Claves ordenadas: claves[offsets[i] .. offsets[i+1])
+    private final byte[] claves;
+    private final int[] offsets;
+    private final int[] entradaDeClave;
+    private final int n;
+
+    // Entradas ordenadas por (tipo, id)
+    private final byte[] tipos;
+    private final long[] ids;
+    private final long[] popularidad;
+    private final byte[] textos;
+    private final int[] offsetsTexto;
+
+    // Árbol de segmentos: cada nodo guarda la posición de clave con mayor popularidad
+    private final int[] arbol;
+    private final int hojas;
+
+    private IndiceSugerencias(byte[] claves, int[] offsets, int[] entradaDeClave, byte[] tipos, long[] ids,
+            long[] popularidad, byte[] textos, int[] offsetsTexto) {
+        this.claves = claves;
+        this.offsets = offsets;
+        this.entradaDeClave = entradaDeClave;
+        this.n = entradaDeClave.length;
+        this.tipos = tipos;
+        this.ids = ids;
+        this.popularidad = popularidad;
+        this.textos = textos;
+        this.offsetsTexto = offsetsTexto;
+
+        int h = 1;
+        while (h < Math.max(1, n)) {
+            h <<= 1;
+        }
+        this.hojas = h;
+        this.arbol = new int[2 * h];
+        Arrays.fill(arbol, -1);
+        for (int i = 0; i < n; i++) {
+            arbol[h + i] = i;
+        }
+        for (int i = h - 1; i >= 1; i--) {
+            arbol[i] = mejor(arbol[2 * i], arbol[2 * i + 1]);
+        }
+    }
+
+    public static IndiceSugerencias vacio() {
+        return VACIO;
+    }
+
+    public static IndiceSugerencias construir(Collection<Entrada> entradas) {
+        Entrada[] ordenadas = entradas.toArray(new Entrada[0]);
+        Arrays.sort(ordenadas, Comparator.comparingInt((Entrada e) -> e.tipo()).thenComparingLong(Entrada::id));
+
+        // Textos y nombres normalizados de todas las entradas, concatenados en dos byte[]
+        int m = ordenadas.length;
+        byte[] tipos = new byte[m];
+        long[] ids = new long[m];
+        long[] popularidad = new long[m];
+        int[] offsetsTexto = new int[m + 1];
+        int[] offsetsBase = new int[m + 1];
+        ByteArrayOutputStream textos = new ByteArrayOutputStream();
+        ByteArrayOutputStream bases = new ByteArrayOutputStream();
+        for (int i = 0; i < m; i++) {
+            Entrada e = ordenadas[i];
+            tipos[i] = e.tipo();
+            ids[i] = e.id();
+            popularidad[i] = e.popularidad();
+            textos.writeBytes((e.texto() != null ? e.texto() : "").getBytes(StandardCharsets.UTF_8));
+            offsetsTexto[i + 1] = textos.size();
+            bases.writeBytes(normalizarClave(e.texto()).getBytes(StandardCharsets.US_ASCII));
+            offsetsBase[i + 1] = bases.size();
+        }
+        byte[] base = bases.toByteArray();
+
+        // Una clave por palabra (ver claves()): el nombre normalizado desde el inicio de cada palabra.
+        // Cada una es un tramo [inicio, fin de su entrada) de base, sin crear Strings
+        int total = 0;
+        for (int i = 0; i < m; i++) {
+            if (offsetsBase[i + 1] > offsetsBase[i]) {
+                total++;
+                for (int j = offsetsBase[i]; j < offsetsBase[i + 1]; j++) {
+                    if (base[j] == ' ') {
+                        total++;
+                    }
+                }
+            }
+        }
+        int[] inicio = new int[total];
+        int[] entradaDeTramo = new int[total];
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            if (offsetsBase[i + 1] > offsetsBase[i]) {
+                inicio[k] = offsetsBase[i];
+                entradaDeTramo[k++] = i;
+                for (int j = offsetsBase[i]; j < offsetsBase[i + 1]; j++) {
+                    if (base[j] == ' ') {
+                        inicio[k] = j + 1;
+                        entradaDeTramo[k++] = i;
+                    }
+                }
+            }
+        }
+
+        int[] orden = new int[total];
+        for (int i = 0; i < total; i++) {
+            orden[i] = i;
+        }
+        ordenarTramos(orden, base, inicio, entradaDeTramo, offsetsBase);
+
+        int[] offsets = new int[total + 1];
+        int[] entradaDeClave = new int[total];
+        for (int i = 0; i < total; i++) {
+            int t = orden[i];
+            offsets[i + 1] = offsets[i] + offsetsBase[entradaDeTramo[t] + 1] - inicio[t];
+            entradaDeClave[i] = entradaDeTramo[t];
+        }
+        byte[] claves = new byte[offsets[total]];
+        for (int i = 0; i < total; i++) {
+            int t = orden[i];
+            System.arraycopy(base, inicio[t], claves, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+        return new IndiceSugerencias(claves, offsets, entradaDeClave, tipos, ids, popularidad,
+                textos.toByteArray(), offsetsTexto);
+    }
+
+    /**
+     * Ordena las posiciones de los tramos por sus bytes. Merge sort de abajo
+     * hacia arriba sobre int[]: estable, como el Arrays.sort de objetos, pero
+     * sin un Integer por clave.
+     */
+    private static void ordenarTramos(int[] orden, byte[] base, int[] inicio, int[] entradaDeTramo, int[] offsetsBase) {
+        int n = orden.length;
+        int[] aux = new int[n];
+        for (int ancho = 1; ancho < n; ancho <<= 1) {
+            for (int lo = 0; lo < n - ancho; lo += 2 * ancho) {
+                int medio = lo + ancho;
+                int hi = Math.min(lo + 2 * ancho, n);
+                System.arraycopy(orden, lo, aux, lo, hi - lo);
+                int i = lo;
+                int j = medio;
+                int k = lo;
+                while (i < medio && j < hi) {
+                    int a = aux[i];
+                    int b = aux[j];
+                    // Solo se toma el de la derecha si es estrictamente menor: así queda estable
+                    int cmp = Arrays.compare(base, inicio[b], offsetsBase[entradaDeTramo[b] + 1],
+                            base, inicio[a], offsetsBase[entradaDeTramo[a] + 1]);
+                    orden[k++] = cmp < 0 ? aux[j++] : aux[i++];
+                }
+                while (i < medio) {
+                    orden[k++] = aux[i++];
+                }
+                while (j < hi) {
+                    orden[k++] = aux[j++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Texto normalizado en ASCII: minúsculas, sin tildes y con un único
+     * espacio entre palabras.
+     */
+    public static String normalizarClave(String texto) {
+        String normalizado = NormalizadorTexto.normalizar(texto);
+        StringBuilder sb = new StringBuilder(normalizado.length());
+        boolean espacio = false;
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (espacio && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                espacio = false;
+            } else {
+                espacio = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Una clave por cada palabra: "galletas chocolate" y "chocolate". */
+    public static List<String> claves(String texto) {
+        String base = normalizarClave(texto);
+        List<String> resultado = new ArrayList<>();
+        if (base.isEmpty()) {
+            return resultado;
+        }
+        resultado.add(base);
+        for (int i = 0; i < base.length(); i++) {
+            if (base.charAt(i) == ' ') {
+                resultado.add(base.substring(i + 1));
+            }
+        }
+        return resultado;
+    }
+
+    public int tamano() {
+        return ids.length;
+    }
+
+    public List<Entrada> entradas() {
+        List<Entrada> resultado = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            resultado.add(entrada(i));
+        }
+        return resultado;
+    }
+
+    /** Popularidad actual de una entrada, o -1 si no está en el índice. */
+    public long popularidad(byte tipo, long id) {
+        int pos = posicion(tipo, id);
+        return pos >= 0 ? popularidad[pos] : -1;
+    }
+
+    private int posicion(byte tipo, long id) {
+        int lo = 0;
+        int hi = ids.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = tipos[mid] != tipo ? Byte.compare(tipos[mid], tipo) : Long.compare(ids[mid], id);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Las {@code limite} entradas más populares cuya clave empieza con el
+     * prefijo, sin repetir entradas.
+     */
+    public List<Entrada> sugerir(String prefijo, int limite) {
+        byte[] p = normalizarClave(prefijo).getBytes(StandardCharsets.US_ASCII);
+        List<Entrada> resultado = new ArrayList<>(Math.max(0, limite));
+        if (p.length == 0 || limite <= 0 || n == 0) {
+            return resultado;
+        }
+        int desde = limiteInferior(p);
+        int hasta = limiteSuperior(p, desde);
+        if (desde >= hasta) {
+            return resultado;
+        }
+
+        // Cola de intervalos ordenada por la popularidad de su máximo
+        PriorityQueue<int[]> cola = new PriorityQueue<>((a, b) -> mejor(a[0], b[0]) == a[0] ? -1 : 1);
+        cola.add(new int[] {maximo(desde, hasta), desde, hasta});
+        BitSet vistas = new BitSet();
+        while (!cola.isEmpty() && resultado.size() < limite) {
+            int[] intervalo = cola.poll();
+            int pos = intervalo[0];
+            int entrada = entradaDeClave[pos];
+            if (!vistas.get(entrada)) {
+                vistas.set(entrada);
+                resultado.add(entrada(entrada));
+            }
+            if (intervalo[1] < pos) {
+                cola.add(new int[] {maximo(intervalo[1], pos), intervalo[1], pos});
+            }
+            if (pos + 1 < intervalo[2]) {
+                cola.add(new int[] {maximo(pos + 1, intervalo[2]), pos + 1, intervalo[2]});
+            }
+        }
+        return resultado;
+    }
+
+    private Entrada entrada(int i) {
+        String texto = new String(textos, offsetsTexto[i], offsetsTexto[i + 1] - offsetsTexto[i], StandardCharsets.UTF_8);
+        return new Entrada(tipos[i], ids[i], texto, popularidad[i]);
+    }
+
+    // Mayor popularidad; a igual popularidad gana la clave menor (orden alfabético)
+    private int mejor(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        long pa = popularidad[entradaDeClave[a]];
+        long pb = popularidad[entradaDeClave[b]];
+        if (pa != pb) {
+            return pa > pb ? a : b;
+        }
+        return a < b ? a : b;
+    }
+
+    // Posición con mayor popularidad en [desde, hasta)
+    private int maximo(int desde, int hasta) {
+        int resultado = -1;
+        for (int l = desde + hojas, r = hasta + hojas; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                resultado = mejor(resultado, arbol[l++]);
+            }
+            if ((r & 1) == 1) {
+                resultado = mejor(resultado, arbol[--r]);
+            }
+        }
+        return resultado;
+    }
+
+    // Compara la clave i con el prefijo, mirando solo los primeros p.length bytes
+    private int compararPrefijo(int i, byte[] p) {
+        int inicio = offsets[i];
+        int largo = offsets[i + 1] - inicio;
+        int m = Math.min(largo, p.length);
+        for (int k = 0; k < m; k++) {
+            int c = (claves[inicio + k] & 0xff) - (p[k] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return largo >= p.length ? 0 : -1;
+    }
+
+    private int limiteInferior(byte[] p) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compararPrefijo(mid, p) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int limiteSuperior(byte[] p, int desde) {
+        int lo = desde;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compararPrefijo(mid, p) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,383 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de trigramas para búsquedas tolerantes a errores de tipeo
+ * ("chocolte", "yougurt") y para búsquedas por subcadena ("colat" encuentra
+ * "Chocolate", como el LIKE '%colat%'). Todo es primitivo: cada trigrama se
+ * codifica como int (37^3 combinaciones) y apunta a un int[] ordenado de ids.
+ */
+public class IndiceTrigramas {
+
+    // Alfabeto: espacio, a-z, 0-9
+    private static final int ALFABETO = 37;
+    static final int TOTAL_TRIGRAMAS = ALFABETO * ALFABETO * ALFABETO;
+
+    // Fracción mínima de los trigramas de la consulta que debe tener un producto
+    static final double COBERTURA_MINIMA = 0.5;
+
+    private final int[][] postings = new int[TOTAL_TRIGRAMAS][];
+    private final int[] tamanos = new int[TOTAL_TRIGRAMAS];
+
+    // Datos por id de producto
+    private int[][] trigramasPorDoc = new int[1024][];
+    // Nombre y descripción normalizados, para confirmar las subcadenas
+    private String[][] textosPorDoc = new String[1024][];
+    private long[] categoriaPorDoc = new long[1024];
+    private final BitSet activos = new BitSet();
+    private int documentos;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Trigramas distintos del texto, al estilo pg_trgm: cada palabra se
+     * rellena con dos espacios adelante y uno atrás.
+     */
+    public static int[] trigramas(String texto) {
+        String clave = IndiceSugerencias.normalizarClave(texto);
+        if (clave.isEmpty()) {
+            return new int[0];
+        }
+        BitSet vistos = new BitSet(TOTAL_TRIGRAMAS);
+        for (String palabra : clave.split(" ")) {
+            String p = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= p.length(); i++) {
+                vistos.set(codigo(p.charAt(i)) * ALFABETO * ALFABETO + codigo(p.charAt(i + 1)) * ALFABETO
+                        + codigo(p.charAt(i + 2)));
+            }
+        }
+        return vistos.stream().toArray();
+    }
+
+    private static int codigo(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1 + (c - 'a');
+        }
+        if (c >= '0' && c <= '9') {
+            return 27 + (c - '0');
+        }
+        return 0;
+    }
+
+    /**
+     * Trigramas de cada palabra de la consulta sin relleno: la subcadena
+     * puede empezar o terminar a mitad de una palabra del producto.
+     */
+    static int[] trigramasInternos(String clave) {
+        BitSet vistos = new BitSet(TOTAL_TRIGRAMAS);
+        for (String palabra : clave.split(" ")) {
+            for (int i = 0; i + 3 <= palabra.length(); i++) {
+                vistos.set(codigo(palabra.charAt(i)) * ALFABETO * ALFABETO + codigo(palabra.charAt(i + 1)) * ALFABETO
+                        + codigo(palabra.charAt(i + 2)));
+            }
+        }
+        return vistos.stream().toArray();
+    }
+
+    public static String[] textos(String nombre, String descripcion) {
+        return new String[] {IndiceSugerencias.normalizarClave(nombre), IndiceSugerencias.normalizarClave(descripcion)};
+    }
+
+    public void indexar(long id, String nombre, String descripcion, Long categoriaId, boolean activo) {
+        indexarTrigramas(id, trigramas(nombre + " " + (descripcion != null ? descripcion : "")),
+                textos(nombre, descripcion), categoriaId, activo);
+    }
+
+    public void indexarTrigramas(long id, int[] trigramas, String[] textos, Long categoriaId, boolean activo) {
+        int doc = Math.toIntExact(id);
+        lock.writeLock().lock();
+        try {
+            quitarSinLock(doc);
+            asegurarCapacidad(doc);
+            for (int t : trigramas) {
+                agregarPosting(t, doc);
+            }
+            trigramasPorDoc[doc] = trigramas;
+            textosPorDoc[doc] = textos;
+            categoriaPorDoc[doc] = categoriaId != null ? categoriaId : -1L;
+            activos.set(doc, activo);
+            documentos++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void quitar(long id) {
+        lock.writeLock().lock();
+        try {
+            quitarSinLock(Math.toIntExact(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        lock.readLock().lock();
+        try {
+            return documentos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void quitarSinLock(int doc) {
+        if (doc >= trigramasPorDoc.length || trigramasPorDoc[doc] == null) {
+            return;
+        }
+        for (int t : trigramasPorDoc[doc]) {
+            int[] lista = postings[t];
+            int pos = Arrays.binarySearch(lista, 0, tamanos[t], doc);
+            if (pos >= 0) {
+                System.arraycopy(lista, pos + 1, lista, pos, tamanos[t] - pos - 1);
+                tamanos[t]--;
+            }
+        }
+        trigramasPorDoc[doc] = null;
+        textosPorDoc[doc] = null;
+        activos.clear(doc);
+        documentos--;
+    }
+
+    private void asegurarCapacidad(int doc) {
+        if (doc >= trigramasPorDoc.length) {
+            int nuevo = Math.max(doc + 1, trigramasPorDoc.length * 2);
+            trigramasPorDoc = Arrays.copyOf(trigramasPorDoc, nuevo);
+            textosPorDoc = Arrays.copyOf(textosPorDoc, nuevo);
+            categoriaPorDoc = Arrays.copyOf(categoriaPorDoc, nuevo);
+        }
+    }
+
+    private void agregarPosting(int t, int doc) {
+        int[] lista = postings[t];
+        int size = tamanos[t];
+        if (lista == null) {
+            lista = new int[4];
+        }
+        int pos = Arrays.binarySearch(lista, 0, size, doc);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (size == lista.length) {
+            lista = Arrays.copyOf(lista, size * 2);
+        }
+        System.arraycopy(lista, pos, lista, pos + 1, size - pos);
+        lista[pos] = doc;
+        postings[t] = lista;
+        tamanos[t] = size + 1;
+    }
+
+    /**
+     * Productos con al menos {@link #COBERTURA_MINIMA} de los trigramas de
+     * la consulta, ordenados por cobertura y luego por similitud de Jaccard
+     * (a igual cobertura gana el texto más corto).
+     */
+    public long[] buscar(String consulta, Long categoriaId, Boolean activo, int limite) {
+        int[] q = trigramas(consulta);
+        if (q.length == 0 || limite <= 0) {
+            return new long[0];
+        }
+        int minimo = (int) Math.ceil(q.length * COBERTURA_MINIMA);
+
+        lock.readLock().lock();
+        try {
+            // Mezcla de k listas ordenadas con un heap de (doc << 32 | lista)
+            int k = 0;
+            int[] listas = new int[q.length];
+            for (int t : q) {
+                if (tamanos[t] > 0) {
+                    listas[k++] = t;
+                }
+            }
+            if (k < minimo) {
+                return new long[0];
+            }
+            int[] cursores = new int[k];
+            long[] heap = new long[k];
+            int heapSize = 0;
+            for (int i = 0; i < k; i++) {
+                heapSize = push(heap, heapSize, ((long) postings[listas[i]][0] << 32) | i);
+            }
+
+            int capacidad = Math.min(limite, 1024);
+            long[] mejores = new long[capacidad];
+            double[] puntajes = new double[capacidad];
+            double[] desempates = new double[capacidad];
+            int encontrados = 0;
+
+            while (heapSize > 0) {
+                int doc = (int) (heap[0] >>> 32);
+                int comunes = 0;
+                while (heapSize > 0 && (int) (heap[0] >>> 32) == doc) {
+                    int lista = (int) heap[0];
+                    heapSize = pop(heap, heapSize);
+                    comunes++;
+                    int siguiente = ++cursores[lista];
+                    if (siguiente < tamanos[listas[lista]]) {
+                        heapSize = push(heap, heapSize, ((long) postings[listas[lista]][siguiente] << 32) | lista);
+                    }
+                }
+                if (comunes < minimo || !pasaFiltros(doc, categoriaId, activo)) {
+                    continue;
+                }
+                double cobertura = (double) comunes / q.length;
+                double jaccard = (double) comunes / (q.length + trigramasPorDoc[doc].length - comunes);
+
+                // Inserción ordenada en el top (limite suele ser chico)
+                if (encontrados == limite && !mejor(cobertura, jaccard, doc, puntajes[encontrados - 1],
+                        desempates[encontrados - 1], (int) mejores[encontrados - 1])) {
+                    continue;
+                }
+                if (encontrados == mejores.length && encontrados < limite) {
+                    int nuevo = Math.min(limite, encontrados * 2);
+                    mejores = Arrays.copyOf(mejores, nuevo);
+                    puntajes = Arrays.copyOf(puntajes, nuevo);
+                    desempates = Arrays.copyOf(desempates, nuevo);
+                }
+                int pos = encontrados < limite ? encontrados++ : encontrados - 1;
+                while (pos > 0 && mejor(cobertura, jaccard, doc, puntajes[pos - 1], desempates[pos - 1],
+                        (int) mejores[pos - 1])) {
+                    mejores[pos] = mejores[pos - 1];
+                    puntajes[pos] = puntajes[pos - 1];
+                    desempates[pos] = desempates[pos - 1];
+                    pos--;
+                }
+                mejores[pos] = doc;
+                puntajes[pos] = cobertura;
+                desempates[pos] = jaccard;
+            }
+            return Arrays.copyOf(mejores, encontrados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Si la consulta tiene alguna palabra de tres letras, que es lo que acota los candidatos
+    public static boolean acotaSubcadena(String consulta) {
+        return trigramasInternos(IndiceSugerencias.normalizarClave(consulta)).length > 0;
+    }
+
+    /**
+     * Productos cuyo nombre o descripción contiene la consulta, en orden de
+     * id: la misma semántica que el LIKE '%texto%' de la base de datos, sin
+     * distinguir mayúsculas ni tildes. Los trigramas de la consulta solo
+     * acotan los candidatos; cada uno se confirma con contains. Una consulta
+     * sin palabras de tres letras no acota nada y recorre todo el índice
+     * (ver {@link #acotaSubcadena}).
+     */
+    public long[] buscarSubcadena(String consulta, Long categoriaId, Boolean activo, int limite) {
+        String clave = IndiceSugerencias.normalizarClave(consulta);
+        if (clave.isEmpty() || limite <= 0) {
+            return new long[0];
+        }
+        int[] q = trigramasInternos(clave);
+
+        lock.readLock().lock();
+        try {
+            // Se recorre la lista más corta y se busca cada id en las demás
+            int[] candidatos;
+            int total;
+            if (q.length == 0) {
+                candidatos = null;
+                total = trigramasPorDoc.length;
+            } else {
+                int menor = q[0];
+                for (int t : q) {
+                    if (tamanos[t] == 0) {
+                        return new long[0];
+                    }
+                    if (tamanos[t] < tamanos[menor]) {
+                        menor = t;
+                    }
+                }
+                candidatos = postings[menor];
+                total = tamanos[menor];
+            }
+            long[] resultado = new long[Math.min(limite, 1024)];
+            int encontrados = 0;
+            siguiente:
+            for (int i = 0; i < total && encontrados < limite; i++) {
+                int doc = candidatos != null ? candidatos[i] : i;
+                if (textosPorDoc[doc] == null || !pasaFiltros(doc, categoriaId, activo)) {
+                    continue;
+                }
+                for (int t : q) {
+                    if (Arrays.binarySearch(postings[t], 0, tamanos[t], doc) < 0) {
+                        continue siguiente;
+                    }
+                }
+                String[] textos = textosPorDoc[doc];
+                if (!textos[0].contains(clave) && !textos[1].contains(clave)) {
+                    continue;
+                }
+                if (encontrados == resultado.length) {
+                    resultado = Arrays.copyOf(resultado, Math.min(limite, encontrados * 2));
+                }
+                resultado[encontrados++] = doc;
+            }
+            return Arrays.copyOf(resultado, encontrados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean mejor(double c1, double j1, int d1, double c2, double j2, int d2) {
+        if (c1 != c2) {
+            return c1 > c2;
+        }
+        if (j1 != j2) {
+            return j1 > j2;
+        }
+        return d1 < d2;
+    }
+
+    private boolean pasaFiltros(int doc, Long categoriaId, Boolean activo) {
+        if (categoriaId != null && categoriaPorDoc[doc] != categoriaId) {
+            return false;
+        }
+        return activo == null || activos.get(doc) == activo;
+    }
+
+    private static int push(long[] heap, int size, long valor) {
+        int i = size;
+        heap[i] = valor;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (heap[padre] <= heap[i]) {
+                break;
+            }
+            long tmp = heap[padre];
+            heap[padre] = heap[i];
+            heap[i] = tmp;
+            i = padre;
+        }
+        return size + 1;
+    }
+
+    private static int pop(long[] heap, int size) {
+        int n = size - 1;
+        heap[0] = heap[n];
+        int i = 0;
+        while (true) {
+            int izq = 2 * i + 1;
+            int der = izq + 1;
+            int menor = i;
+            if (izq < n && heap[izq] < heap[menor]) {
+                menor = izq;
+            }
+            if (der < n && heap[der] < heap[menor]) {
+                menor = der;
+            }
+            if (menor == i) {
+                return n;
+            }
+            long tmp = heap[menor];
+            heap[menor] = heap[i];
+            heap[i] = tmp;
+            i = menor;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.vivitasol.projectbackend.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de texto para las búsquedas: minúsculas, sin tildes
+ * ("lácteos" == "lacteos") y un stemming liviano para español.
+ */
+public final class NormalizadorTexto {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "de", "del", "la", "las", "el", "los", "en", "y", "o", "con", "sin",
+            "para", "por", "un", "una", "unos", "unas", "al", "a");
+
+    private NormalizadorTexto() {
+    }
+
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String minusculas = texto.toLowerCase(Locale.ROOT);
+        return MARCAS.matcher(Normalizer.normalize(minusculas, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /**
+     * Tokens normalizados y reducidos a su raíz, sin repetidos y en el orden
+     * en que aparecen.
+     */
+    public static List<String> tokens(String texto) {
+        Set<String> resultado = new LinkedHashSet<>();
+        for (String palabra : SEPARADORES.split(normalizar(texto))) {
+            if (palabra.isEmpty() || STOPWORDS.contains(palabra)) {
+                continue;
+            }
+            resultado.add(raiz(palabra));
+        }
+        return new ArrayList<>(resultado);
+    }
+
+    /**
+     * Stemming liviano: quita el plural y la vocal final, de modo que
+     * "galletas", "galleta" y "galletitas" no colapsan pero "leche"/"leches"
+     * y "lacteo"/"lacteos" sí. Los tokens con dígitos ("500ml") no se tocan.
+     */
+    public static String raiz(String palabra) {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (!Character.isLetter(palabra.charAt(i))) {
+                return palabra;
+            }
+        }
+        String r = palabra;
+        if (r.length() > 3 && r.endsWith("s")) {
+            r = r.substring(0, r.length() - 1);
+        }
+        if (r.length() > 3) {
+            char ultima = r.charAt(r.length() - 1);
+            if (ultima == 'a' || ultima == 'e' || ultima == 'o') {
+                r = r.substring(0, r.length() - 1);
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,30 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.List;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+/**
+ * Estructura en memoria que se reconstruye leyendo el catálogo completo.
+ * {@link RecorridoCatalogo} hace una sola lectura por lotes y se la entrega
+ * a todas las que estén pendientes.
+ */
+public interface ReconstruiblePorCatalogo {
+
+    /**
+     * Empieza una reconstrucción, o devuelve null si ya hay una en curso.
+     */
+    Reconstruccion empezarReconstruccion();
+
+    interface Reconstruccion {
+
+        /** Lote de productos ordenado por id. */
+        void agregar(List<Producto> lote);
+
+        /** Se leyó todo el catálogo; se publica el resultado. */
+        void terminar();
+
+        /** Falló la lectura; se conserva lo que había. */
+        void cancelar(RuntimeException causa);
+    }
+}
@@ -0,0 +1,91 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.repositories.ProductoSpecs;
+
+/**
+ * Lee el catálogo por lotes (keyset por id) y entrega cada lote a todos los
+ * índices en memoria. Al iniciar se reconstruyen todos con un solo
+ * recorrido de la tabla.
+ */
+@Component
+public class RecorridoCatalogo {
+
+    public static final int TAMANO_LOTE = 5000;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private List<ReconstruiblePorCatalogo> indices;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        Thread.ofVirtual().name("recorrido-catalogo").start(() -> recorrer(productoRepositories, indices));
+    }
+
+    /**
+     * Reconstruye los índices indicados con una lectura del catálogo. Si uno
+     * falla al procesar un lote, los demás siguen.
+     */
+    public static void recorrer(ProductoRepositories productoRepositories,
+            List<? extends ReconstruiblePorCatalogo> indices) {
+        List<ReconstruiblePorCatalogo.Reconstruccion> activas = new ArrayList<>();
+        for (ReconstruiblePorCatalogo indice : indices) {
+            ReconstruiblePorCatalogo.Reconstruccion r = indice.empezarReconstruccion();
+            if (r != null) {
+                activas.add(r);
+            }
+        }
+        try {
+            long ultimoId = 0;
+            while (!activas.isEmpty()) {
+                long desde = ultimoId;
+                List<Producto> lote = productoRepositories.findBy(ProductoSpecs.despuesDeId(desde),
+                        q -> q.sortBy(Sort.by("id")).limit(TAMANO_LOTE).all());
+                if (lote.isEmpty()) {
+                    break;
+                }
+                entregar(activas, lote);
+                if (lote.size() < TAMANO_LOTE) {
+                    break;
+                }
+                ultimoId = lote.get(lote.size() - 1).getId();
+            }
+        } catch (RuntimeException e) {
+            activas.forEach(r -> r.cancelar(e));
+            return;
+        }
+        for (ReconstruiblePorCatalogo.Reconstruccion r : activas) {
+            try {
+                r.terminar();
+            } catch (RuntimeException e) {
+                r.cancelar(e);
+            }
+        }
+    }
+
+    private static void entregar(List<ReconstruiblePorCatalogo.Reconstruccion> activas, List<Producto> lote) {
+        Iterator<ReconstruiblePorCatalogo.Reconstruccion> it = activas.iterator();
+        while (it.hasNext()) {
+            ReconstruiblePorCatalogo.Reconstruccion r = it.next();
+            try {
+                r.agregar(lote);
+            } catch (RuntimeException e) {
+                r.cancelar(e);
+                it.remove();
+            }
+        }
+    }
+}
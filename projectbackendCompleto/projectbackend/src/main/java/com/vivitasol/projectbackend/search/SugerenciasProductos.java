@@ -0,0 +1,316 @@
+package com.vivitasol.projectbackend.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.CategoriaRepositories;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.search.IndiceSugerencias.Entrada;
+
+/**
+ * Autocompletado de nombres de productos y categorías ordenado por unidades
+ * vendidas. El índice es inmutable; los cambios recientes quedan en una capa
+ * pequeña que se consulta junto al índice y se compacta en segundo plano.
+ * Cuando cambia una categoría la compactación vuelve a leer las categorías.
+ */
+@Component
+public class SugerenciasProductos implements ReconstruiblePorCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(SugerenciasProductos.class);
+
+    // La capa de cambios se compacta al llegar a una fracción del catálogo, con un mínimo:
+    // con un tope fijo, un catálogo grande se reconstruiría entero cada pocos cambios
+    static final int MIN_CAMBIOS = 256;
+    static final int FRACCION_CAMBIOS = 100;
+    static final long MAX_ESPERA_VENTAS_MS = 5 * 60 * 1000L;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private CategoriaRepositories categoriaRepositories;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    private volatile IndiceSugerencias indice = IndiceSugerencias.vacio();
+
+    // Cambios de productos aún no compactados; un Cambio sin entrada indica baja
+    private final ConcurrentHashMap<Long, Cambio> cambios = new ConcurrentHashMap<>();
+    // Unidades vendidas aún no reflejadas en la popularidad del índice
+    private final ConcurrentHashMap<Long, Long> ventasPendientes = new ConcurrentHashMap<>();
+    private final AtomicBoolean compactando = new AtomicBoolean(false);
+    // Alguna categoría se creó, renombró o eliminó; la compactación relee la tabla (es chica)
+    private final AtomicBoolean categoriasCambiadas = new AtomicBoolean(false);
+    private volatile long ultimaCompactacion = System.currentTimeMillis();
+
+    private record Cambio(Entrada entrada, List<String> claves) {
+
+        boolean eliminado() {
+            return entrada == null;
+        }
+    }
+
+    /** Reconstrucción completa desde la base de datos. */
+    public void reconstruir() {
+        RecorridoCatalogo.recorrer(productoRepositories, List.of(this));
+    }
+
+    @Override
+    public Reconstruccion empezarReconstruccion() {
+        if (!compactando.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return new Lectura();
+        } catch (RuntimeException e) {
+            compactando.set(false);
+            log.warn("No se pudo reconstruir el índice de sugerencias", e);
+            return null;
+        }
+    }
+
+    private final class Lectura implements Reconstruccion {
+        // Lo que llegue durante la lectura se conserva para la próxima compactación
+        private final Map<Long, Cambio> previos = new HashMap<>(cambios);
+        private final Map<Long, Long> ventasPrevias = new HashMap<>(ventasPendientes);
+        private final Map<Long, Long> vendidos = new HashMap<>();
+        private final Map<Long, Long> porCategoria = new HashMap<>();
+        private final List<Entrada> entradas = new ArrayList<>();
+
+        Lectura() {
+            categoriasCambiadas.set(false);
+            for (Object[] fila : ordenRepository.unidadesVendidasPorProducto()) {
+                vendidos.put((Long) fila[0], ((Number) fila[1]).longValue());
+            }
+        }
+
+        @Override
+        public void agregar(List<Producto> lote) {
+            for (Producto p : lote) {
+                long unidades = vendidos.getOrDefault(p.getId(), 0L);
+                if (!Boolean.FALSE.equals(p.getActivo())) {
+                    entradas.add(new Entrada(IndiceSugerencias.PRODUCTO, p.getId(), p.getNombre(), unidades));
+                }
+                if (p.getCategoria() != null) {
+                    porCategoria.merge(p.getCategoria().getId(), unidades, Long::sum);
+                }
+            }
+        }
+
+        @Override
+        public void terminar() {
+            try {
+                for (Categoria c : categoriaRepositories.findAll()) {
+                    entradas.add(new Entrada(IndiceSugerencias.CATEGORIA, c.getId(), c.getNombre(),
+                            porCategoria.getOrDefault(c.getId(), 0L)));
+                }
+                indice = IndiceSugerencias.construir(entradas);
+                previos.forEach(cambios::remove);
+                descontarVentas(ventasPrevias);
+                ultimaCompactacion = System.currentTimeMillis();
+                log.info("Índice de sugerencias reconstruido: {} entradas", indice.tamano());
+            } catch (RuntimeException e) {
+                log.warn("No se pudo reconstruir el índice de sugerencias", e);
+            } finally {
+                compactando.set(false);
+            }
+        }
+
+        @Override
+        public void cancelar(RuntimeException causa) {
+            compactando.set(false);
+            log.warn("No se pudo reconstruir el índice de sugerencias", causa);
+        }
+    }
+
+    public List<Entrada> sugerir(String prefijo, int limite) {
+        String clave = IndiceSugerencias.normalizarClave(prefijo);
+        if (clave.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+        IndiceSugerencias actual = indice;
+        if (cambios.isEmpty()) {
+            return actual.sugerir(clave, limite);
+        }
+        // Se piden de más para compensar las entradas reemplazadas por la capa de cambios
+        List<Entrada> resultado = new ArrayList<>(limite);
+        for (Entrada e : actual.sugerir(clave, limite + cambios.size())) {
+            if (e.tipo() != IndiceSugerencias.PRODUCTO || !cambios.containsKey(e.id())) {
+                resultado.add(e);
+            }
+        }
+        for (Cambio c : cambios.values()) {
+            if (!c.eliminado() && coincide(c.claves(), clave)) {
+                resultado.add(c.entrada());
+            }
+        }
+        resultado.sort(Comparator.comparingLong(Entrada::popularidad).reversed()
+                .thenComparing(Entrada::texto, Comparator.nullsLast(Comparator.naturalOrder())));
+        return resultado.size() > limite ? new ArrayList<>(resultado.subList(0, limite)) : resultado;
+    }
+
+    private static boolean coincide(List<String> claves, String prefijo) {
+        for (String c : claves) {
+            if (c.startsWith(prefijo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @EventListener
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.STOCK) {
+            return;
+        }
+        Producto p = evento.producto();
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.ELIMINADO || p == null || Boolean.FALSE.equals(p.getActivo())) {
+            cambios.put(evento.productoId(), new Cambio(null, List.of()));
+        } else {
+            long popularidad = Math.max(0, indice.popularidad(IndiceSugerencias.PRODUCTO, p.getId()));
+            Entrada e = new Entrada(IndiceSugerencias.PRODUCTO, p.getId(), p.getNombre(), popularidad);
+            cambios.put(p.getId(), new Cambio(e, IndiceSugerencias.claves(p.getNombre())));
+        }
+        compactarSiCorresponde();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearOrden(OrdenCreadaEvent evento) {
+        if (evento.orden() == null || evento.orden().getItems() == null) {
+            return;
+        }
+        for (OrdenItem item : evento.orden().getItems()) {
+            if (item.getProducto() != null && item.getProducto().getId() != null && item.getCantidad() != null) {
+                ventasPendientes.merge(item.getProducto().getId(), item.getCantidad().longValue(), Long::sum);
+            }
+        }
+        compactarSiCorresponde();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCategoria(CategoriaCambiadaEvent evento) {
+        categoriasCambiadas.set(true);
+        compactarSiCorresponde();
+    }
+
+    private void compactarSiCorresponde() {
+        boolean muchosCambios = cambios.size() >= maxCambios();
+        boolean ventasViejas = !ventasPendientes.isEmpty()
+                && System.currentTimeMillis() - ultimaCompactacion > MAX_ESPERA_VENTAS_MS;
+        if ((muchosCambios || ventasViejas || categoriasCambiadas.get()) && !compactando.get()) {
+            Thread.ofVirtual().name("sugerencias-compactacion").start(this::compactar);
+        }
+    }
+
+    int maxCambios() {
+        return Math.max(MIN_CAMBIOS, indice.tamano() / FRACCION_CAMBIOS);
+    }
+
+    /**
+     * Integra la capa de cambios y las ventas pendientes en un índice nuevo
+     * sin ir a la base de datos.
+     */
+    void compactar() {
+        if (!compactando.compareAndSet(false, true)) {
+            return;
+        }
+        boolean releerCategorias = categoriasCambiadas.getAndSet(false);
+        boolean completa = false;
+        try {
+            IndiceSugerencias actual = indice;
+            Map<Long, Cambio> aplicados = new HashMap<>(cambios);
+            Map<Long, Long> ventas = new HashMap<>(ventasPendientes);
+
+            Map<Long, Long> porCategoria = new HashMap<>();
+            Set<Long> productosVistos = new HashSet<>();
+            List<Entrada> entradas = new ArrayList<>(actual.tamano() + aplicados.size());
+            for (Entrada e : actual.entradas()) {
+                if (e.tipo() != IndiceSugerencias.PRODUCTO) {
+                    if (!releerCategorias) {
+                        entradas.add(e);
+                    }
+                    continue;
+                }
+                productosVistos.add(e.id());
+                Cambio c = aplicados.get(e.id());
+                Entrada vigente = c != null ? c.entrada() : e;
+                if (vigente != null) {
+                    entradas.add(conVentas(vigente, ventas));
+                }
+            }
+            for (Map.Entry<Long, Cambio> c : aplicados.entrySet()) {
+                if (!productosVistos.contains(c.getKey()) && !c.getValue().eliminado()) {
+                    entradas.add(conVentas(c.getValue().entrada(), ventas));
+                }
+            }
+            if (releerCategorias) {
+                // Se conserva la popularidad acumulada; una categoría nueva empieza en cero
+                for (Categoria c : categoriaRepositories.findAll()) {
+                    entradas.add(new Entrada(IndiceSugerencias.CATEGORIA, c.getId(), c.getNombre(),
+                            Math.max(0, actual.popularidad(IndiceSugerencias.CATEGORIA, c.getId()))));
+                }
+            }
+            // Las ventas de la categoría se suman por producto; se necesita saber la categoría de cada uno
+            if (!ventas.isEmpty()) {
+                for (Producto p : productoRepositories.findAllById(ventas.keySet())) {
+                    if (p.getCategoria() != null) {
+                        porCategoria.merge(p.getCategoria().getId(), ventas.get(p.getId()), Long::sum);
+                    }
+                }
+                entradas.replaceAll(e -> e.tipo() == IndiceSugerencias.CATEGORIA && porCategoria.containsKey(e.id())
+                        ? new Entrada(e.tipo(), e.id(), e.texto(), e.popularidad() + porCategoria.get(e.id()))
+                        : e);
+            }
+
+            indice = IndiceSugerencias.construir(entradas);
+            // remove(clave, valor): si llegó un cambio más nuevo durante la compactación, se conserva
+            aplicados.forEach(cambios::remove);
+            descontarVentas(ventas);
+            ultimaCompactacion = System.currentTimeMillis();
+            completa = true;
+        } catch (RuntimeException e) {
+            if (releerCategorias) {
+                categoriasCambiadas.set(true);
+            }
+            log.warn("No se pudo compactar el índice de sugerencias", e);
+        } finally {
+            compactando.set(false);
+        }
+        // Una categoría cambiada durante la compactación no tiene quien la aplique
+        if (completa && categoriasCambiadas.get()) {
+            compactarSiCorresponde();
+        }
+    }
+
+    private void descontarVentas(Map<Long, Long> aplicadas) {
+        aplicadas.forEach((id, unidades) ->
+                ventasPendientes.computeIfPresent(id, (k, v) -> v - unidades == 0 ? null : v - unidades));
+    }
+
+    private static Entrada conVentas(Entrada e, Map<Long, Long> ventas) {
+        Long extra = ventas.get(e.id());
+        return extra == null ? e : new Entrada(e.tipo(), e.id(), e.texto(), e.popularidad() + extra);
+    }
+}
@@ -7,18 +7,17 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
 
+// Va dentro de la cadena de Spring Security (SecurityConfig), antes de las reglas de acceso
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
-    private JwtUtil jwtUtil;
+    private TokensVerificados tokensVerificados;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -28,10 +27,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (header != null && header.startsWith("Bearer ")) {
             token = header.substring(7);
         }
-        if (token != null && jwtUtil.validateToken(token)) {
-            String username = jwtUtil.getUsernameFromToken(token);
+        // Una sola verificación (o ninguna si el token ya está en caché); el rol sale del token
+        JwtPrincipal principal = token != null ? tokensVerificados.verificar(token) : null;
+        if (principal != null) {
             UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                    new User(username, "", Collections.emptyList()), null, Collections.emptyList());
+                    principal, null, principal.autoridades());
             auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             SecurityContextHolder.getContext().setAuthentication(auth);
         }
@@ -0,0 +1,29 @@
+package com.vivitasol.projectbackend.security;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Datos de un token ya verificado. Es el principal de la autenticación:
+ * authentication.getName() devuelve el subject (el email), igual que antes.
+ */
+public record JwtPrincipal(String subject, Long id, String rol, String nombre, Instant expiracion)
+        implements Principal {
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    // ROLE_ + rol en mayúsculas, para que hasRole("ADMIN") no tenga que ir a la base de datos
+    public List<GrantedAuthority> autoridades() {
+        if (rol == null || rol.isBlank()) {
+            return List.of();
+        }
+        return List.of(new SimpleGrantedAuthority("ROLE_" + rol.trim().toUpperCase()));
+    }
+}
@@ -4,6 +4,7 @@ import io.jsonwebtoken.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,6 +27,27 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * Verifica la firma y la expiración y extrae los datos en una sola
+     * pasada. Null si el token no es válido.
+     */
+    public JwtPrincipal verificar(String token) {
+        try {
+            Claims claims = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+            Object id = claims.get("id");
+            Object rol = claims.get("rol");
+            Object nombre = claims.get("nombre");
+            Date expiracion = claims.getExpiration();
+            return new JwtPrincipal(claims.getSubject(),
+                    id instanceof Number n ? n.longValue() : null,
+                    rol != null ? rol.toString() : null,
+                    nombre != null ? nombre.toString() : null,
+                    expiracion != null ? expiracion.toInstant() : Instant.MAX);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public String getUsernameFromToken(String token) {
         return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
     }
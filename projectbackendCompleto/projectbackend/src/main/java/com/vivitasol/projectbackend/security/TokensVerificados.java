@@ -0,0 +1,108 @@
+package com.vivitasol.projectbackend.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Tokens ya verificados, para que las peticiones siguientes de la misma
+ * sesión no vuelvan a decodificar el token ni a calcular el HMAC. La clave
+ * es el SHA-256 del token (no se guarda el token en memoria) y cada
+ * entrada vence cuando vence el token. Los tokens inválidos no se guardan:
+ * no se puede llenar la caché con basura.
+ *
+ * Métricas: cache.* con cache=jwt.verificados.
+ */
+@Component
+public class TokensVerificados {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.cache.maximo:10000}")
+    private long maximo;
+
+    private Cache<String, JwtPrincipal> verificados;
+
+    @PostConstruct
+    public void iniciar() {
+        verificados = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String clave, JwtPrincipal principal, long ahora) {
+                        return hastaQueVence(principal);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, JwtPrincipal principal, long ahora, long restante) {
+                        return hastaQueVence(principal);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, JwtPrincipal principal, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verificados, "jwt.verificados");
+    }
+
+    /** El principal del token, o null si la firma no coincide o ya venció. */
+    public JwtPrincipal verificar(String token) {
+        String clave = huella(token);
+        JwtPrincipal principal = verificados.getIfPresent(clave);
+        if (principal == null) {
+            principal = jwtUtil.verificar(token);
+            if (principal == null) {
+                return null;
+            }
+            verificados.put(clave, principal);
+        }
+        // Caffeine vence las entradas con su propio reloj; esto cubre el borde
+        if (!principal.expiracion().isAfter(Instant.now())) {
+            verificados.invalidate(clave);
+            return null;
+        }
+        return principal;
+    }
+
+    public long cantidad() {
+        return verificados.estimatedSize();
+    }
+
+    private static long hastaQueVence(JwtPrincipal principal) {
+        Duration restante = Duration.between(Instant.now(), principal.expiracion());
+        // toNanos se satura en Long.MAX_VALUE si el token no vence
+        return restante.isNegative() ? 0 : TimeUnit.SECONDS.toNanos(restante.getSeconds());
+    }
+
+    private static String huella(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.vivitasol.projectbackend.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vivitasol.projectbackend.dto.EstadoOrdenAsincrona;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Creación de órdenes fuera del hilo de la petición. La orden se valida
+ * por encima, entra a una cola acotada y se responde 202 con un handle;
+ * hilos virtuales toman la cola y crean la orden con la misma lógica que
+ * el camino síncrono. Con la cola llena la orden se rechaza de inmediato
+ * en vez de acumular espera.
+ *
+ * Con Idempotency-Key la clave se revisa antes de encolar y un reintento
+ * con la misma clave recibe el handle que ya está en curso, en vez de
+ * encolar la orden otra vez. Repetir la clave con otra orden lanza
+ * ClaveIdempotenciaReutilizadaException.
+ *
+ * Los estados se guardan en memoria un tiempo limitado. Al detener la
+ * aplicación no se aceptan órdenes nuevas y las encoladas se terminan.
+ *
+ * Métricas: ordenes.async.cola (largo de la cola), ordenes.async.espera
+ * (tiempo en cola), ordenes.async.proceso (tiempo de creación, por
+ * resultado) y ordenes.async.saturada (rechazos por cola llena).
+ */
+@Component
+public class AceptacionOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(AceptacionOrdenes.class);
+
+    public static final String EN_COLA = "EN_COLA";
+    public static final String PROCESANDO = "PROCESANDO";
+    public static final String CREADA = "CREADA";
+    public static final String RECHAZADA = "RECHAZADA";
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private IdempotenciaOrdenes idempotenciaOrdenes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ordenes.async.capacidad:1000}")
+    private int capacidad;
+
+    @Value("${ordenes.async.trabajadores:16}")
+    private int trabajadores;
+
+    @Value("${ordenes.async.estados-ttl-minutos:60}")
+    private long ttlEstadosMinutos;
+
+    @Value("${ordenes.async.estados-maximo:100000}")
+    private long maximoEstados;
+
+    private record Solicitud(String handle, Orden orden, Long usuarioId, String claveIdempotencia, long recibidaNanos) {
+    }
+
+    private record ClaveUsuario(Long usuarioId, String clave) {
+    }
+
+    private record Encolada(String handle, String huella) {
+    }
+
+    private BlockingQueue<Solicitud> cola;
+    private Cache<String, EstadoOrdenAsincrona> estados;
+    private Cache<ClaveUsuario, Encolada> porClave;
+    private final List<Thread> hilos = new ArrayList<>();
+    private volatile boolean aceptando;
+
+    private Timer espera;
+    private Timer procesoCreada;
+    private Timer procesoRechazada;
+    private Counter saturada;
+
+    @PostConstruct
+    public void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        // Con una ráfaga grande se pierden los estados más viejos (el handle da 404), no la memoria
+        estados = Caffeine.newBuilder()
+                .maximumSize(maximoEstados)
+                .expireAfterWrite(Duration.ofMinutes(ttlEstadosMinutos))
+                .build();
+        porClave = Caffeine.newBuilder()
+                .maximumSize(maximoEstados)
+                .expireAfterWrite(Duration.ofMinutes(ttlEstadosMinutos))
+                .build();
+        Gauge.builder("ordenes.async.cola", cola, BlockingQueue::size)
+                .description("Órdenes esperando un hilo")
+                .register(meterRegistry);
+        espera = Timer.builder("ordenes.async.espera")
+                .description("Tiempo desde que la orden entra a la cola hasta que se empieza a crear")
+                .register(meterRegistry);
+        procesoCreada = Timer.builder("ordenes.async.proceso").tag("resultado", "creada").register(meterRegistry);
+        procesoRechazada = Timer.builder("ordenes.async.proceso").tag("resultado", "rechazada").register(meterRegistry);
+        saturada = Counter.builder("ordenes.async.saturada")
+                .description("Órdenes rechazadas con 429 porque la cola estaba llena")
+                .register(meterRegistry);
+
+        aceptando = true;
+        for (int i = 0; i < trabajadores; i++) {
+            hilos.add(Thread.ofVirtual().name("ordenes-async-" + i).start(this::trabajar));
+        }
+    }
+
+    // Un solo plazo para todos los hilos: el apagado espera 30 segundos en total, no 30 por hilo
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        aceptando = false;
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (Thread hilo : hilos) {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0 || !hilo.join(Duration.ofNanos(restante))) {
+                log.warn("Quedaron órdenes asíncronas sin terminar al detener la aplicación");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Valida la orden sin consultar la base de datos y la deja en la cola.
+     * Lanza RejectedExecutionException si la cola está llena.
+     */
+    public EstadoOrdenAsincrona encolar(Orden orden, Long usuarioId, String claveIdempotencia) {
+        validar(orden);
+        if (claveIdempotencia == null) {
+            return meterEnCola(orden, usuarioId, null);
+        }
+        IdempotenciaOrdenes.validarClave(claveIdempotencia);
+        String huella = IdempotenciaOrdenes.huella(orden);
+        EstadoOrdenAsincrona[] estado = new EstadoOrdenAsincrona[1];
+        // compute bloquea la clave: dos reintentos simultáneos no encolan la orden dos veces.
+        // Un handle rechazado o vencido deja la clave libre para volver a intentar
+        porClave.asMap().compute(new ClaveUsuario(usuarioId, claveIdempotencia), (clave, anterior) -> {
+            EstadoOrdenAsincrona previo = anterior != null ? estados.getIfPresent(anterior.handle()) : null;
+            if (previo != null && !RECHAZADA.equals(previo.getEstado())) {
+                IdempotenciaOrdenes.comprobarHuella(anterior.huella(), huella);
+                estado[0] = previo;
+                return anterior;
+            }
+            estado[0] = meterEnCola(orden, usuarioId, claveIdempotencia);
+            return new Encolada(estado[0].getHandle(), huella);
+        });
+        return estado[0];
+    }
+
+    private EstadoOrdenAsincrona meterEnCola(Orden orden, Long usuarioId, String claveIdempotencia) {
+        if (!aceptando) {
+            throw new RejectedExecutionException("El servicio de órdenes se está deteniendo");
+        }
+        String handle = UUID.randomUUID().toString();
+        EstadoOrdenAsincrona estado = new EstadoOrdenAsincrona(handle, EN_COLA, null, null, LocalDateTime.now(), null);
+        estados.put(handle, estado);
+        if (!cola.offer(new Solicitud(handle, orden, usuarioId, claveIdempotencia, System.nanoTime()))) {
+            estados.invalidate(handle);
+            saturada.increment();
+            throw new RejectedExecutionException("La cola de órdenes está llena");
+        }
+        return estado;
+    }
+
+    /** Estado de la orden, o null si el handle no existe o ya venció. */
+    public EstadoOrdenAsincrona estado(String handle) {
+        return estados.getIfPresent(handle);
+    }
+
+    public int enCola() {
+        return cola.size();
+    }
+
+    // Las mismas reglas que crearOrden revisa antes de tocar el stock
+    private static void validar(Orden orden) {
+        if (orden == null || orden.getItems() == null) {
+            throw new IllegalArgumentException("La orden debe traer sus ítems");
+        }
+        for (OrdenItem item : orden.getItems()) {
+            if (item.getProducto() == null || item.getProducto().getId() == null
+                    || item.getCantidad() == null || item.getCantidad() <= 0) {
+                throw new IllegalArgumentException("Cada ítem debe indicar producto y cantidad");
+            }
+        }
+    }
+
+    private void trabajar() {
+        while (aceptando || !cola.isEmpty()) {
+            Solicitud solicitud;
+            try {
+                solicitud = cola.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (solicitud != null) {
+                procesar(solicitud);
+            }
+        }
+    }
+
+    private void procesar(Solicitud solicitud) {
+        long inicio = System.nanoTime();
+        espera.record(inicio - solicitud.recibidaNanos(), TimeUnit.NANOSECONDS);
+        actualizar(solicitud.handle(), PROCESANDO, null, null);
+        try {
+            Orden creada = solicitud.claveIdempotencia() != null
+                    ? idempotenciaOrdenes.crearOrden(solicitud.usuarioId(), solicitud.claveIdempotencia(),
+                            solicitud.orden()).orden()
+                    : ordenService.crearOrden(solicitud.orden());
+            procesoCreada.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            actualizar(solicitud.handle(), CREADA, creada.getId(), null);
+        } catch (RuntimeException e) {
+            procesoRechazada.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            log.debug("Orden asíncrona {} rechazada", solicitud.handle(), e);
+            actualizar(solicitud.handle(), RECHAZADA, null, e.getMessage());
+        } catch (Throwable e) {
+            // Un Error no puede matar al hilo ni dejar el estado en PROCESANDO para siempre
+            procesoRechazada.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            log.error("Falló la orden asíncrona {}", solicitud.handle(), e);
+            actualizar(solicitud.handle(), RECHAZADA, null, "Error interno al crear la orden");
+        }
+    }
+
+    private void actualizar(String handle, String estado, Long ordenId, String mensaje) {
+        boolean terminada = CREADA.equals(estado) || RECHAZADA.equals(estado);
+        estados.asMap().computeIfPresent(handle, (h, anterior) -> new EstadoOrdenAsincrona(h, estado, ordenId, mensaje,
+                anterior.getRecibida(), terminada ? LocalDateTime.now() : null));
+    }
+}
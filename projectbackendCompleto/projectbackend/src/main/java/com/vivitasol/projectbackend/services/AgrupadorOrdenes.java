@@ -0,0 +1,169 @@
+package com.vivitasol.projectbackend.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vivitasol.projectbackend.entities.Orden;
+
+/**
+ * Commit agrupado: junta las órdenes que llegan dentro de una ventana
+ * corta (o hasta un máximo) y las crea en una sola transacción, con un
+ * solo commit. Cada llamador espera su propio resultado.
+ *
+ * Un solo hilo despacha los grupos, uno detrás de otro; lo que llega
+ * mientras un grupo se confirma entra en el siguiente. Si el grupo entero
+ * falla (por ejemplo una orden rompe una restricción al insertarse), cada
+ * orden se reintenta sola para que el error quede en la que lo causó.
+ *
+ * Ningún llamador espera para siempre: la espera tiene un máximo, y al
+ * detenerse o si el despachador falla, lo pendiente termina con error.
+ */
+final class AgrupadorOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(AgrupadorOrdenes.class);
+
+    private record Pendiente(Orden orden, CompletableFuture<Orden> resultado) {
+    }
+
+    private final long ventanaNanos;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    // Por cada orden del grupo devuelve la orden creada o la excepción que la rechazó
+    private final Function<List<Orden>, List<Object>> crearGrupo;
+    private final Function<Orden, Orden> crearSola;
+
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private final Thread despachador;
+    private volatile boolean activo = true;
+
+    AgrupadorOrdenes(long ventanaMs, int maximo, long esperaMaximaMs, Function<List<Orden>, List<Object>> crearGrupo,
+            Function<Orden, Orden> crearSola) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("El grupo debe admitir al menos una orden");
+        }
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(ventanaMs);
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.crearGrupo = crearGrupo;
+        this.crearSola = crearSola;
+        this.despachador = Thread.ofVirtual().name("ordenes-grupo").start(this::despachar);
+    }
+
+    Orden crear(Orden orden) {
+        if (!activo) {
+            throw new RejectedExecutionException("El servicio de órdenes se está deteniendo");
+        }
+        Pendiente pendiente = new Pendiente(orden, new CompletableFuture<>());
+        cola.add(pendiente);
+        try {
+            return pendiente.resultado().get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Falló la creación de la orden", e.getCause());
+        } catch (TimeoutException e) {
+            // Si seguía en la cola no se creó; si ya estaba en un grupo no se sabe
+            if (cola.remove(pendiente)) {
+                throw new RejectedExecutionException("La orden no se alcanzó a procesar");
+            }
+            throw new IllegalStateException("No se confirmó a tiempo si la orden se creó");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cola.remove(pendiente);
+            throw new RejectedExecutionException("Se interrumpió la espera de la orden");
+        }
+    }
+
+    /** Deja de aceptar órdenes y termina las que ya están en la cola. */
+    void detener() throws InterruptedException {
+        activo = false;
+        despachador.join(Duration.ofSeconds(30));
+        // Lo que no se alcanzó a despachar se rechaza en vez de esperar el máximo
+        rechazarCola();
+    }
+
+    private void despachar() {
+        List<Pendiente> grupo = new ArrayList<>(maximo);
+        try {
+            while (activo || !cola.isEmpty()) {
+                Pendiente primera = cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                grupo.add(primera);
+                long limite = System.nanoTime() + ventanaNanos;
+                while (grupo.size() < maximo) {
+                    long resta = limite - System.nanoTime();
+                    Pendiente otra = resta > 0 ? cola.poll(resta, TimeUnit.NANOSECONDS) : cola.poll();
+                    if (otra == null) {
+                        break;
+                    }
+                    grupo.add(otra);
+                }
+                try {
+                    ejecutar(grupo);
+                } catch (Throwable e) {
+                    // Un Error a mitad del grupo no deja a los llamadores esperando; el hilo sigue
+                    log.error("Falló el despacho de un grupo de {} órdenes", grupo.size(), e);
+                    grupo.forEach(p -> p.resultado().completeExceptionally(e));
+                }
+                grupo.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activo = false;
+            RejectedExecutionException detenido = new RejectedExecutionException("El servicio de órdenes se detuvo");
+            grupo.forEach(p -> p.resultado().completeExceptionally(detenido));
+            rechazarCola();
+        }
+    }
+
+    private void rechazarCola() {
+        List<Pendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        RejectedExecutionException detenido = new RejectedExecutionException("El servicio de órdenes se detuvo");
+        restantes.forEach(p -> p.resultado().completeExceptionally(detenido));
+    }
+
+    private void ejecutar(List<Pendiente> grupo) {
+        List<Object> resultados;
+        try {
+            resultados = crearGrupo.apply(grupo.stream().map(Pendiente::orden).toList());
+        } catch (RuntimeException e) {
+            if (grupo.size() == 1) {
+                grupo.get(0).resultado().completeExceptionally(e);
+                return;
+            }
+            log.warn("Falló el commit de un grupo de {} órdenes; se crean una por una", grupo.size(), e);
+            for (Pendiente p : grupo) {
+                try {
+                    p.resultado().complete(crearSola.apply(p.orden()));
+                } catch (RuntimeException error) {
+                    p.resultado().completeExceptionally(error);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < grupo.size(); i++) {
+            if (resultados.get(i) instanceof Orden creada) {
+                grupo.get(i).resultado().complete(creada);
+            } else {
+                grupo.get(i).resultado().completeExceptionally((RuntimeException) resultados.get(i));
+            }
+        }
+    }
+}
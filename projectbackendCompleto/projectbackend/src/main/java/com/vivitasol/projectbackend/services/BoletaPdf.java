@@ -0,0 +1,190 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.stereotype.Component;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfTemplate;
+import com.lowagie.text.pdf.PdfWriter;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+
+/**
+ * Arma la boleta de una orden y la escribe directo en la salida que se le
+ * pase: PdfWriter vacía cada página al terminarla, así que el PDF nunca
+ * queda entero en memoria. {@link #huella} resume todo lo que se imprime,
+ * así que dos órdenes con la misma huella dan el mismo PDF.
+ *
+ * Las fuentes se cargan una sola vez y se comparten entre hilos (OpenPDF
+ * solo las lee). Los items se dibujan como tabla directamente sobre la
+ * página, fila por fila; la cabecera de columnas es una plantilla que se
+ * arma una vez por boleta y se repite en cada página. Con PdfPTable cada
+ * celda pasa por su propio ColumnText y una boleta de 500 items reservaba
+ * unas 20 veces más memoria que con un párrafo por item.
+ */
+@Component
+public class BoletaPdf {
+
+    // Subir al cambiar el diseño: las boletas ya guardadas dejan de coincidir
+    static final int VERSION_DISENO = 2;
+
+    private static final float TAMANO_LETRA = 10;
+    private static final float ALTO_FILA = 16;
+    private static final float RELLENO = 4;
+    private static final String[] COLUMNAS = { "Producto", "Cantidad", "Precio", "Subtotal" };
+    // Proporción del ancho de la página para cada columna
+    private static final float[] ANCHOS = { 0.48f, 0.12f, 0.2f, 0.2f };
+
+    private final BaseFont helvetica;
+    private final BaseFont helveticaNegrita;
+    private final Font titulo;
+    private final Font normal;
+
+    public BoletaPdf() {
+        try {
+            // Cp1252 cubre tildes, ñ y °; las 14 fuentes estándar no se incrustan
+            helvetica = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+            helveticaNegrita = BaseFont.createFont(BaseFont.HELVETICA_BOLD, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+        } catch (DocumentException | IOException e) {
+            throw new IllegalStateException("No se pudieron cargar las fuentes de la boleta", e);
+        }
+        titulo = new Font(helveticaNegrita, 16);
+        normal = new Font(helvetica, TAMANO_LETRA);
+    }
+
+    public void escribir(Orden orden, OutputStream salida) throws IOException {
+        try {
+            Document document = new Document();
+            PdfWriter writer = PdfWriter.getInstance(document, salida);
+            document.open();
+            document.add(new Paragraph("Boleta de Compra", titulo));
+            document.add(new Paragraph("Orden N°: " + orden.getId(), normal));
+            document.add(new Paragraph("Fecha: " + orden.getFecha(), normal));
+            document.add(new Paragraph("Cliente: " + cliente(orden), normal));
+
+            float izquierda = document.left();
+            float ancho = document.right() - document.left();
+            // Borde derecho de cada columna; la primera se alinea a la izquierda y el resto a la derecha
+            float[] bordes = new float[ANCHOS.length];
+            float x = izquierda;
+            for (int i = 0; i < ANCHOS.length; i++) {
+                x += ANCHOS[i] * ancho;
+                bordes[i] = x;
+            }
+            PdfContentByte pagina = writer.getDirectContent();
+            PdfTemplate cabecera = cabecera(pagina, ancho, bordes, izquierda);
+
+            float y = writer.getVerticalPosition(true) - ALTO_FILA;
+            pagina.addTemplate(cabecera, izquierda, y);
+            if (orden.getItems() != null) {
+                for (OrdenItem item : orden.getItems()) {
+                    if (y - ALTO_FILA < document.bottom()) {
+                        document.newPage();
+                        y = document.top() - ALTO_FILA;
+                        pagina.addTemplate(cabecera, izquierda, y);
+                    }
+                    y -= ALTO_FILA;
+                    String producto = item.getProducto() != null && item.getProducto().getNombre() != null
+                            ? item.getProducto().getNombre() : "";
+                    pagina.beginText();
+                    pagina.setFontAndSize(helvetica, TAMANO_LETRA);
+                    pagina.showTextAligned(Element.ALIGN_LEFT,
+                            recortar(producto, bordes[0] - izquierda - 2 * RELLENO), izquierda + RELLENO, y + RELLENO, 0);
+                    pagina.showTextAligned(Element.ALIGN_RIGHT,
+                            String.valueOf(item.getCantidad()), bordes[1] - RELLENO, y + RELLENO, 0);
+                    pagina.showTextAligned(Element.ALIGN_RIGHT,
+                            "$" + item.getPrecioUnitario(), bordes[2] - RELLENO, y + RELLENO, 0);
+                    pagina.showTextAligned(Element.ALIGN_RIGHT,
+                            "$" + item.getSubtotal(), bordes[3] - RELLENO, y + RELLENO, 0);
+                    pagina.endText();
+                    pagina.moveTo(izquierda, y);
+                    pagina.lineTo(bordes[3], y);
+                    pagina.stroke();
+                }
+            }
+
+            if (y - 2 * ALTO_FILA < document.bottom()) {
+                document.newPage();
+                y = document.top();
+            }
+            pagina.beginText();
+            pagina.setFontAndSize(helveticaNegrita, TAMANO_LETRA);
+            pagina.showTextAligned(Element.ALIGN_RIGHT,
+                    "Total: $" + orden.getTotal(), bordes[3] - RELLENO, y - ALTO_FILA - RELLENO, 0);
+            pagina.endText();
+            document.close();
+        } catch (DocumentException e) {
+            throw new IOException("No se pudo generar la boleta de la orden " + orden.getId(), e);
+        }
+    }
+
+    // Fila de títulos con fondo gris; se escribe una vez en el PDF aunque se repita en cada página
+    private PdfTemplate cabecera(PdfContentByte pagina, float ancho, float[] bordes, float izquierda) {
+        PdfTemplate cabecera = pagina.createTemplate(ancho, ALTO_FILA);
+        cabecera.setGrayFill(0.9f);
+        cabecera.rectangle(0, 0, ancho, ALTO_FILA);
+        cabecera.fill();
+        cabecera.setGrayFill(0f);
+        cabecera.beginText();
+        cabecera.setFontAndSize(helveticaNegrita, TAMANO_LETRA);
+        cabecera.showTextAligned(Element.ALIGN_LEFT, COLUMNAS[0], RELLENO, RELLENO, 0);
+        for (int i = 1; i < COLUMNAS.length; i++) {
+            cabecera.showTextAligned(Element.ALIGN_RIGHT, COLUMNAS[i], bordes[i] - izquierda - RELLENO, RELLENO, 0);
+        }
+        cabecera.endText();
+        return cabecera;
+    }
+
+    // Los nombres que no caben en la columna se cortan con puntos suspensivos en vez de pisar la siguiente
+    private String recortar(String texto, float anchoMaximo) {
+        if (helvetica.getWidthPoint(texto, TAMANO_LETRA) <= anchoMaximo) {
+            return texto;
+        }
+        float disponible = anchoMaximo - helvetica.getWidthPoint("…", TAMANO_LETRA);
+        int fin = texto.length();
+        while (fin > 0 && helvetica.getWidthPoint(texto.substring(0, fin), TAMANO_LETRA) > disponible) {
+            fin--;
+        }
+        return texto.substring(0, fin) + "…";
+    }
+
+    // SHA-256 de los datos impresos, en hexadecimal (32 caracteres bastan para distinguirlas)
+    public String huella(Orden orden) {
+        StringBuilder datos = new StringBuilder()
+                .append(VERSION_DISENO).append('\n')
+                .append(orden.getId()).append('\n')
+                .append(orden.getFecha()).append('\n')
+                .append(cliente(orden)).append('\n')
+                .append(orden.getTotal()).append('\n');
+        if (orden.getItems() != null) {
+            for (OrdenItem item : orden.getItems()) {
+                datos.append(item.getProducto() != null ? item.getProducto().getNombre() : null).append('\t')
+                        .append(item.getCantidad()).append('\t')
+                        .append(item.getPrecioUnitario()).append('\t')
+                        .append(item.getSubtotal()).append('\n');
+            }
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(datos.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String cliente(Orden orden) {
+        return orden.getUsuario() != null ? orden.getUsuario().getNombre() : "";
+    }
+}
@@ -0,0 +1,325 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.events.OrdenEliminadaEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Boletas ya generadas, guardadas en disco como boleta-{orden}-{huella}.pdf.
+ * La huella ({@link BoletaPdf#huella}) cambia si cambia algo de lo que se
+ * imprime, así que un archivo nunca queda desactualizado: se genera otro y
+ * el anterior de esa orden se borra.
+ *
+ * Cuando la carpeta pasa de boletas.cache.tamano-maximo se borran las menos usadas
+ * (LRU). Al arrancar se vuelve a leer la carpeta; ahí el orden de uso se
+ * aproxima por la fecha de modificación de cada archivo.
+ */
+@Component
+public class CacheBoletas {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheBoletas.class);
+
+    private static final Pattern NOMBRE = Pattern.compile("boleta-(\\d+)-([0-9a-f]+)\\.pdf");
+
+    @Autowired
+    private BoletaPdf boletaPdf;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${boletas.cache.directorio:boletas-cache}")
+    private String directorio;
+
+    @Value("${boletas.cache.tamano-maximo:256MB}")
+    private DataSize tamanoMaximo;
+
+    private record Entrada(Long ordenId, long tamano) {
+    }
+
+    /**
+     * Boleta abierta para enviar. El canal se abre antes de soltar el
+     * bloqueo, así que sigue siendo legible aunque el archivo se desaloje
+     * mientras se envía; hay que cerrarla.
+     */
+    public record BoletaEnDisco(FileChannel canal, long tamano, String etag) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    // Nombre de archivo -> entrada, del menos al más usado. Se protege con synchronized (archivos)
+    private final LinkedHashMap<String, Entrada> archivos = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, String> porOrden = new HashMap<>();
+    private long bytesEnCache;
+
+    private Path carpeta;
+    private Counter aciertos;
+    private Counter fallos;
+    private Counter bytesServidos;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        carpeta = Paths.get(directorio);
+        Files.createDirectories(carpeta);
+        aciertos = Counter.builder("boletas.cache.consultas").tag("resultado", "acierto")
+                .description("Boletas servidas desde el disco")
+                .register(meterRegistry);
+        fallos = Counter.builder("boletas.cache.consultas").tag("resultado", "fallo")
+                .description("Boletas que hubo que generar")
+                .register(meterRegistry);
+        bytesServidos = Counter.builder("boletas.cache.bytes.servidos")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("boletas.cache.bytes", this, c -> c.bytesEnCache())
+                .baseUnit("bytes")
+                .description("Tamaño de las boletas guardadas en disco")
+                .register(meterRegistry);
+        cargarCarpeta();
+    }
+
+    public String etag(Orden orden) {
+        return "\"" + orden.getId() + "-" + boletaPdf.huella(orden) + "\"";
+    }
+
+    public BoletaEnDisco abrir(Orden orden) throws IOException {
+        return abrir(orden, true);
+    }
+
+    /**
+     * Como {@link #abrir}, pero una boleta que no estaba en disco se genera
+     * en un temporal que se borra enseguida: no entra a la caché ni
+     * desaloja a las que se piden seguido. Para recorridos de una sola vez,
+     * como la exportación por rango.
+     */
+    public BoletaEnDisco abrirSinGuardar(Orden orden) throws IOException {
+        return abrir(orden, false);
+    }
+
+    private BoletaEnDisco abrir(Orden orden, boolean guardar) throws IOException {
+        String huella = boletaPdf.huella(orden);
+        String nombre = "boleta-" + orden.getId() + "-" + huella + ".pdf";
+        String etag = "\"" + orden.getId() + "-" + huella + "\"";
+        Path ruta = carpeta.resolve(nombre);
+
+        synchronized (archivos) {
+            if (archivos.get(nombre) != null) {
+                try {
+                    FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ);
+                    aciertos.increment();
+                    return new BoletaEnDisco(canal, canal.size(), etag);
+                } catch (NoSuchFileException e) {
+                    // Alguien lo borró por fuera: se vuelve a generar
+                    quitar(nombre);
+                }
+            }
+        }
+
+        // Se genera sin bloqueo, en un temporal; dos pedidos simultáneos generan lo mismo
+        fallos.increment();
+        Path temporal = Files.createTempFile(carpeta, "boleta-", ".tmp");
+        try {
+            try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal))) {
+                boletaPdf.escribir(orden, salida);
+            }
+            if (!guardar) {
+                // El finally borra el temporal; el canal abierto lo sigue leyendo,
+                // igual que cuando se desaloja una boleta mientras se envía
+                FileChannel canal = FileChannel.open(temporal, StandardOpenOption.READ);
+                return new BoletaEnDisco(canal, canal.size(), etag);
+            }
+            // Mover y abrir con el bloqueo tomado: si no, el desalojo de otro pedido
+            // podría borrar el archivo entre el rename y la apertura
+            synchronized (archivos) {
+                Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ);
+                long tamano = canal.size();
+                registrar(nombre, new Entrada(orden.getId(), tamano));
+                desalojar();
+                return new BoletaEnDisco(canal, tamano, etag);
+            }
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /** Compara con If-None-Match etiqueta por etiqueta (comparación débil, como pide HTTP para GET). */
+    public static boolean noModificado(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String valor : ifNoneMatch.split(",")) {
+            String e = valor.trim();
+            if (e.startsWith("W/")) {
+                e = e.substring(2);
+            }
+            if (e.equals("*") || e.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copia [desde, desde + cantidad) de la boleta con FileChannel.transferTo.
+     * Detrás de la API de servlets el destino no es un socket, así que el JDK
+     * pasa por un buffer directo chico; el PDF nunca queda entero en el heap.
+     */
+    public void enviar(BoletaEnDisco boleta, long desde, long cantidad, OutputStream salida) throws IOException {
+        WritableByteChannel destino = Channels.newChannel(salida);
+        long enviados = 0;
+        while (enviados < cantidad) {
+            long n = boleta.canal().transferTo(desde + enviados, cantidad - enviados, destino);
+            if (n <= 0) {
+                break;
+            }
+            enviados += n;
+        }
+        bytesServidos.increment(enviados);
+    }
+
+    public void eliminar(Long ordenId) {
+        synchronized (archivos) {
+            String nombre = porOrden.get(ordenId);
+            if (nombre != null) {
+                quitar(nombre);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alEliminarOrden(OrdenEliminadaEvent evento) {
+        eliminar(evento.ordenId());
+    }
+
+    // Hay una boleta en disco para la orden (de la versión que se haya pedido última)
+    public boolean contiene(Long ordenId) {
+        synchronized (archivos) {
+            return porOrden.containsKey(ordenId);
+        }
+    }
+
+    public long bytesEnCache() {
+        synchronized (archivos) {
+            return bytesEnCache;
+        }
+    }
+
+    public int cantidad() {
+        synchronized (archivos) {
+            return archivos.size();
+        }
+    }
+
+    // Con el bloqueo tomado
+    private void registrar(String nombre, Entrada entrada) {
+        String anterior = porOrden.put(entrada.ordenId(), nombre);
+        if (anterior != null && !anterior.equals(nombre)) {
+            // La orden cambió de huella: la boleta vieja ya no se va a pedir
+            quitar(anterior);
+        }
+        Entrada reemplazada = archivos.put(nombre, entrada);
+        bytesEnCache += entrada.tamano() - (reemplazada != null ? reemplazada.tamano() : 0);
+    }
+
+    // Con el bloqueo tomado. Siempre queda al menos la última boleta, aunque sola pase el límite
+    private void desalojar() {
+        long maximo = tamanoMaximo.toBytes();
+        Iterator<Map.Entry<String, Entrada>> it = archivos.entrySet().iterator();
+        while (bytesEnCache > maximo && archivos.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Entrada> masVieja = it.next();
+            it.remove();
+            bytesEnCache -= masVieja.getValue().tamano();
+            porOrden.remove(masVieja.getValue().ordenId(), masVieja.getKey());
+            borrar(masVieja.getKey());
+        }
+    }
+
+    // Con el bloqueo tomado
+    private void quitar(String nombre) {
+        Entrada entrada = archivos.remove(nombre);
+        if (entrada != null) {
+            bytesEnCache -= entrada.tamano();
+            porOrden.remove(entrada.ordenId(), nombre);
+        }
+        borrar(nombre);
+    }
+
+    private void borrar(String nombre) {
+        try {
+            Files.deleteIfExists(carpeta.resolve(nombre));
+        } catch (IOException e) {
+            log.warn("No se pudo borrar la boleta {}: {}", nombre, e.getMessage());
+        }
+    }
+
+    private void cargarCarpeta() throws IOException {
+        List<Path> encontrados;
+        try (Stream<Path> contenido = Files.list(carpeta)) {
+            encontrados = contenido.filter(Files::isRegularFile).toList();
+        }
+        List<Path> ordenados = encontrados.stream()
+                .sorted(Comparator.comparing(CacheBoletas::modificado))
+                .toList();
+        synchronized (archivos) {
+            for (Path ruta : ordenados) {
+                String nombre = ruta.getFileName().toString();
+                Matcher m = NOMBRE.matcher(nombre);
+                if (m.matches()) {
+                    registrar(nombre, new Entrada(Long.valueOf(m.group(1)), Files.size(ruta)));
+                } else if (nombre.endsWith(".tmp")) {
+                    // Quedó a medio escribir en una caída
+                    borrar(nombre);
+                }
+            }
+            desalojar();
+        }
+        if (!archivos.isEmpty()) {
+            log.info("Caché de boletas: {} archivos, {} bytes", cantidad(), bytesEnCache());
+        }
+    }
+
+    private static long modificado(Path ruta) {
+        try {
+            return Files.getLastModifiedTime(ruta).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivitasol.projectbackend.dto.CambiosCatalogo;
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+/**
+ * Versión del catálogo y listado completo ya serializado. Cada cambio de
+ * producto o categoría sube la versión; el JSON (y su variante gzip) se
+ * rearma recién en la primera lectura de una versión nueva. Los últimos
+ * cambios de productos quedan en un registro circular para responder
+ * sincronizaciones incrementales.
+ *
+ * Cada venta cambia el stock. Si desde el listado solo cambió stock, el
+ * listado se sigue sirviendo hasta que tenga catalogo.stock.retraso-ms de
+ * antigüedad, y mientras un hilo lo rearma los demás reciben el anterior.
+ * Así, con muchas compras, se rearma a lo sumo una vez por intervalo. El
+ * stock exacto está en /api/productos/{id}/disponible y en /changes.
+ */
+@Component
+public class CatalogoProductos {
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    static final int CAPACIDAD_REGISTRO = 10_000;
+
+    @Value("${catalogo.stock.retraso-ms:1000}")
+    private long retrasoStockMs;
+
+    // Arranca en la hora actual para que una versión de antes de un reinicio
+    // quede por debajo del registro y el cliente reciba el catálogo completo
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    private volatile Snapshot snapshot;
+    private final ReentrantLock construccion = new ReentrantLock();
+    // Versión del último cambio que no fue solo de stock: un listado anterior ya no sirve
+    private volatile long versionSinStock = version.get();
+
+    // Registro circular de cambios: (versión, id de producto, baja)
+    private final Object registro = new Object();
+    private final long[] versiones = new long[CAPACIDAD_REGISTRO];
+    private final long[] productosCambiados = new long[CAPACIDAD_REGISTRO];
+    private final boolean[] bajas = new boolean[CAPACIDAD_REGISTRO];
+    private int inicio = 0;
+    private int cantidad = 0;
+    // Versión anterior al cambio más antiguo que sigue en el registro
+    private long versionBase = version.get();
+    // Las categorías vienen dentro de cada producto: un cambio obliga a enviar todo
+    private long versionCategorias = version.get();
+
+    /**
+     * Listado inmutable de una versión. El ETag sale del contenido, así que
+     * sigue siendo válido para los clientes aunque la aplicación se reinicie.
+     */
+    public record Snapshot(long version, String etag, byte[] json, byte[] gzip, long construidoNanos) {
+
+        public String etagGzip() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        /** Compara con If-None-Match (comparación débil, como pide HTTP para GET). */
+        public boolean noModificado(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String valor : ifNoneMatch.split(",")) {
+                String e = valor.trim();
+                if (e.startsWith("W/")) {
+                    e = e.substring(2);
+                }
+                if (e.equals("*") || e.equals(etag) || e.equals(etagGzip())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public Snapshot snapshot() {
+        // La versión se lee antes que versionSinStock (los eventos escriben en el orden inverso)
+        long v = version.get();
+        Snapshot actual = snapshot;
+        if (actual != null && vigente(actual, v, versionSinStock)) {
+            return actual;
+        }
+        if (actual != null && actual.version() >= versionSinStock) {
+            // Solo cambió stock y otro hilo ya lo está rearmando
+            if (!construccion.tryLock()) {
+                return actual;
+            }
+        } else {
+            construccion.lock();
+        }
+        try {
+            // La versión se lee antes que la base de datos: si cambia durante la
+            // lectura, la próxima consulta vuelve a construir
+            v = version.get();
+            actual = snapshot;
+            if (actual == null || !vigente(actual, v, versionSinStock)) {
+                actual = construir(v);
+                snapshot = actual;
+            }
+            return actual;
+        } finally {
+            construccion.unlock();
+        }
+    }
+
+    private boolean vigente(Snapshot s, long v, long sinStock) {
+        if (s.version() == v) {
+            return true;
+        }
+        return s.version() >= sinStock
+                && System.nanoTime() - s.construidoNanos() < TimeUnit.MILLISECONDS.toNanos(retrasoStockMs);
+    }
+
+    private Snapshot construir(long v) {
+        List<Producto> productos = productoRepositories.findAll(Sort.by("id"));
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(productos);
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+                gzip.write(json);
+            }
+            return new Snapshot(v, etag(json), json, comprimido.toByteArray(), System.nanoTime());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo serializar el catálogo", e);
+        }
+    }
+
+    /**
+     * Catálogo completo con sus facetas, con la forma de {@code ProductosConFacetas}.
+     * Los productos salen del snapshot ya serializado.
+     */
+    public byte[] conFacetas(Facetas facetas) {
+        byte[] productos = snapshot().json();
+        try {
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(productos.length + 1024);
+            salida.write("{\"productos\":".getBytes(StandardCharsets.UTF_8));
+            salida.write(productos);
+            salida.write(",\"facetas\":".getBytes(StandardCharsets.UTF_8));
+            objectMapper.writeValue(salida, facetas);
+            salida.write('}');
+            return salida.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo serializar el catálogo", e);
+        }
+    }
+
+    private static String etag(byte[] json) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 12)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Productos creados o modificados y bajas desde la versión indicada. Si
+     * el cliente está más atrás que el registro, se envía el catálogo
+     * completo.
+     */
+    public CambiosCatalogo cambiosDesde(long desde) {
+        long actual;
+        Map<Long, Boolean> ultimos = new HashMap<>();
+        boolean completo;
+        synchronized (registro) {
+            actual = version.get();
+            completo = desde > actual || desde < versionBase || desde < versionCategorias;
+            if (!completo) {
+                // Del más nuevo al más viejo: vale el último estado de cada producto
+                for (int i = cantidad - 1; i >= 0; i--) {
+                    int pos = (inicio + i) % CAPACIDAD_REGISTRO;
+                    if (versiones[pos] <= desde) {
+                        break;
+                    }
+                    ultimos.putIfAbsent(productosCambiados[pos], bajas[pos]);
+                }
+            }
+        }
+        // Los datos se leen después de la versión: pueden ser más nuevos, nunca más viejos
+        if (completo) {
+            return new CambiosCatalogo(actual, true, productoRepositories.findAll(Sort.by("id")), List.of());
+        }
+        List<Long> vigentes = new ArrayList<>();
+        List<Long> eliminados = new ArrayList<>();
+        ultimos.forEach((id, baja) -> (baja ? eliminados : vigentes).add(id));
+        List<Producto> productos = vigentes.isEmpty()
+                ? new ArrayList<>()
+                : new ArrayList<>(productoRepositories.findAllById(vigentes));
+        productos.sort(Comparator.comparing(Producto::getId));
+        if (productos.size() < vigentes.size()) {
+            // Borrados después de leer el registro
+            Set<Long> encontrados = productos.stream().map(Producto::getId).collect(Collectors.toSet());
+            vigentes.stream().filter(id -> !encontrados.contains(id)).forEach(eliminados::add);
+        }
+        eliminados.sort(null);
+        return new CambiosCatalogo(actual, false, productos, eliminados);
+    }
+
+    // Después del commit, para que la versión nueva no se construya con datos viejos
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        synchronized (registro) {
+            long v = version.get() + 1;
+            if (evento.tipo() != ProductoCambiadoEvent.Tipo.STOCK) {
+                versionSinStock = v;
+            }
+            version.set(v);
+            int pos;
+            if (cantidad == CAPACIDAD_REGISTRO) {
+                pos = inicio;
+                versionBase = versiones[pos];
+                inicio = (inicio + 1) % CAPACIDAD_REGISTRO;
+            } else {
+                pos = (inicio + cantidad++) % CAPACIDAD_REGISTRO;
+            }
+            versiones[pos] = v;
+            productosCambiados[pos] = evento.productoId();
+            bajas[pos] = evento.tipo() == ProductoCambiadoEvent.Tipo.ELIMINADO;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCategoria(CategoriaCambiadaEvent evento) {
+        synchronized (registro) {
+            long v = version.get() + 1;
+            versionSinStock = v;
+            version.set(v);
+            versionCategorias = v;
+        }
+    }
+}
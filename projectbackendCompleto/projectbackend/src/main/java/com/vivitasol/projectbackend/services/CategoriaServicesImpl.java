@@ -2,9 +2,14 @@ package com.vivitasol.projectbackend.services;
 
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import com.vivitasol.projectbackend.config.CacheConfig;
 import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
 
 import com.vivitasol.projectbackend.repositories.CategoriaRepositories;
 
@@ -14,9 +19,15 @@ public class CategoriaServicesImpl implements CategoriaServices {
     @Autowired
     private CategoriaRepositories categoriaRepositories;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public Categoria crear(Categoria categoria){
-        return categoriaRepositories.save(categoria);
+        Categoria guardada = categoriaRepositories.save(categoria);
+        eventPublisher.publishEvent(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.CREADA, guardada.getId()));
+        return guardada;
     }
 
 
@@ -27,23 +38,30 @@ public class CategoriaServicesImpl implements CategoriaServices {
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.CATEGORIAS, key = "'todas'", sync = true)
     public List<Categoria> listarTodas() {
         return (List<Categoria>) categoriaRepositories.findAll();
     }
 
+    // Los productos en caché incluyen su categoría; esos los invalida InvalidacionCacheProductos
     @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public void eliminar(Long id) {
         if (!categoriaRepositories.existsById(id)) {
             throw new RuntimeException("Categoría no encontrada");
         }
         categoriaRepositories.deleteById(id);
+        eventPublisher.publishEvent(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ELIMINADA, id));
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIAS, allEntries = true)
     public Categoria actualizar(Long id, Categoria categoriaActualizada) {
         Categoria existente = obtenerId(id);
         existente.setNombre(categoriaActualizada.getNombre());
-        return categoriaRepositories.save(existente);
+        Categoria guardada = categoriaRepositories.save(existente);
+        eventPublisher.publishEvent(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ACTUALIZADA, id));
+        return guardada;
     }
 
 
@@ -0,0 +1,184 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Boletas de un rango de fechas en un ZIP, escrito a medida que se generan.
+ * Las órdenes salen de un cursor de la base de datos en lotes de
+ * boletas.exportacion.ventana; los items de cada lote se cargan en una sola
+ * consulta. Cada boleta se pide a {@link CacheBoletas} en un pool acotado:
+ * las que ya estaban en disco no se vuelven a generar, y las que faltaban
+ * no se guardan, para que un rango largo no desaloje a las de uso diario.
+ *
+ * Las entradas se escriben en el orden de las órdenes: se espera la más
+ * antigua de las que están en curso, y nunca hay más de una ventana en curso
+ * ni más de un lote cargado. La memoria no depende del largo del rango: lo
+ * que se generó queda en archivos y se copia al ZIP desde el disco.
+ */
+@Component
+public class ExportadorBoletas {
+
+    static final int TAMANO_BUFFER = 64 * 1024;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private CacheBoletas cacheBoletas;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 0: un hilo por procesador
+    @Value("${boletas.exportacion.hilos:0}")
+    private int hilos;
+
+    @Value("${boletas.exportacion.ventana:16}")
+    private int ventana;
+
+    private ExecutorService generadores;
+
+    private record Pendiente(Long ordenId, LocalDateTime fecha, Future<CacheBoletas.BoletaEnDisco> boleta) {
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        int cantidad = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        // Generar un PDF es trabajo de CPU: hilos de plataforma, compartidos por todas las exportaciones
+        generadores = Executors.newFixedThreadPool(cantidad,
+                Thread.ofPlatform().name("boletas-zip-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        generadores.shutdownNow();
+        generadores.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // Se llama antes de empezar a escribir la respuesta: después ya no se puede contestar 400
+    public static void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+    }
+
+    // El rango ya viene validado con validarRango; uno al revés no encuentra órdenes
+    @Transactional(readOnly = true)
+    public void exportar(LocalDate desde, LocalDate hasta, OutputStream salida) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(salida, TAMANO_BUFFER));
+        // Los PDF ya vienen comprimidos: comprimir más no achica casi nada
+        zip.setLevel(Deflater.BEST_SPEED);
+        ArrayDeque<Pendiente> enCurso = new ArrayDeque<>(ventana);
+        try (Stream<Orden> ordenes = ordenRepository.recorrerEntre(desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay())) {
+            Iterator<Orden> it = ordenes.iterator();
+            List<Orden> lote = new ArrayList<>(ventana);
+            while (it.hasNext()) {
+                lote.add(it.next());
+                if (lote.size() == ventana) {
+                    generarLote(lote, enCurso, zip);
+                }
+            }
+            generarLote(lote, enCurso, zip);
+            while (!enCurso.isEmpty()) {
+                escribir(enCurso.poll(), zip);
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            descartar(enCurso);
+        }
+    }
+
+    private void generarLote(List<Orden> lote, ArrayDeque<Pendiente> enCurso, ZipOutputStream zip) throws IOException {
+        if (lote.isEmpty()) {
+            return;
+        }
+        Map<Long, List<OrdenItem>> items = ordenRepository.itemsDeOrdenes(lote.stream().map(Orden::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(i -> i.getOrden().getId()));
+        for (Orden orden : lote) {
+            if (enCurso.size() >= ventana) {
+                escribir(enCurso.poll(), zip);
+            }
+            // Copia suelta con los items ya cargados: los hilos del pool no tocan la sesión
+            Orden copia = new Orden(orden.getId(), orden.getUsuario(), orden.getFecha(), orden.getTotal(),
+                    items.getOrDefault(orden.getId(), List.of()));
+            enCurso.add(new Pendiente(orden.getId(), orden.getFecha(), generadores.submit(() -> cacheBoletas.abrirSinGuardar(copia))));
+        }
+        lote.clear();
+        entityManager.clear();
+    }
+
+    private void escribir(Pendiente pendiente, ZipOutputStream zip) throws IOException {
+        try (CacheBoletas.BoletaEnDisco boleta = esperar(pendiente.boleta())) {
+            ZipEntry entrada = new ZipEntry("boleta_orden_" + pendiente.ordenId() + ".pdf");
+            if (pendiente.fecha() != null) {
+                entrada.setTimeLocal(pendiente.fecha());
+            }
+            zip.putNextEntry(entrada);
+            cacheBoletas.enviar(boleta, 0, boleta.tamano(), zip);
+            zip.closeEntry();
+        }
+    }
+
+    private static CacheBoletas.BoletaEnDisco esperar(Future<CacheBoletas.BoletaEnDisco> boleta) throws IOException {
+        try {
+            return boleta.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Exportación de boletas interrumpida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("No se pudo generar una boleta", e.getCause());
+        }
+    }
+
+    // Si la exportación se cortó (por ejemplo, el cliente cerró la conexión) se esperan
+    // las boletas en curso para cerrar sus archivos; son a lo más una ventana
+    private static void descartar(ArrayDeque<Pendiente> enCurso) {
+        for (Pendiente pendiente : enCurso) {
+            try {
+                esperar(pendiente.boleta()).close();
+            } catch (IOException | RuntimeException e) {
+                // Ya se está reportando el error que cortó la exportación
+            }
+        }
+        enCurso.clear();
+    }
+}
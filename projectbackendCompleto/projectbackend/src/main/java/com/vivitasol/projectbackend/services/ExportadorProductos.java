@@ -0,0 +1,132 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Exporta el catálogo fila por fila desde un cursor de la base de datos. La
+ * memoria usada no depende del tamaño del catálogo: el buffer de escritura
+ * es fijo y el contexto de persistencia se vacía cada {@link #FILAS_POR_LOTE}
+ * productos.
+ */
+@Component
+public class ExportadorProductos {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    static final int FILAS_POR_LOTE = 1000;
+    static final int TAMANO_BUFFER = 64 * 1024;
+
+    private static final String CABECERA_CSV = "id,nombre,descripcion,precio,stock,activo,categoria_id,categoria,imagen_url";
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public static boolean formatoValido(String formato) {
+        return NDJSON.equals(formato) || CSV.equals(formato);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportar(String formato, OutputStream salida) throws IOException {
+        if (!formatoValido(formato)) {
+            throw new IllegalArgumentException("Formato no soportado: " + formato);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        try (Stream<Producto> productos = productoRepositories.recorrerTodos()) {
+            if (NDJSON.equals(formato)) {
+                escribirNdjson(productos.iterator(), writer);
+            } else {
+                escribirCsv(productos.iterator(), writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private void escribirNdjson(Iterator<Producto> productos, Writer writer) throws IOException {
+        // El writer de salida lo cierra el contenedor, no Jackson
+        try (SequenceWriter secuencia = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(writer)) {
+            int filas = 0;
+            while (productos.hasNext()) {
+                secuencia.write(productos.next());
+                if (++filas % FILAS_POR_LOTE == 0) {
+                    entityManager.clear();
+                }
+            }
+            if (filas > 0) {
+                writer.write('\n');
+            }
+        }
+    }
+
+    private void escribirCsv(Iterator<Producto> productos, Writer writer) throws IOException {
+        writer.write(CABECERA_CSV);
+        writer.write("\r\n");
+        int filas = 0;
+        while (productos.hasNext()) {
+            Producto p = productos.next();
+            writer.write(String.valueOf(p.getId()));
+            writer.write(',');
+            writer.write(campoCsv(p.getNombre()));
+            writer.write(',');
+            writer.write(campoCsv(p.getDescripcion()));
+            writer.write(',');
+            writer.write(p.getPrecio() != null ? p.getPrecio().toString() : "");
+            writer.write(',');
+            writer.write(p.getStock() != null ? p.getStock().toString() : "");
+            writer.write(',');
+            writer.write(p.getActivo() != null ? p.getActivo().toString() : "");
+            writer.write(',');
+            writer.write(p.getCategoria() != null ? String.valueOf(p.getCategoria().getId()) : "");
+            writer.write(',');
+            writer.write(campoCsv(p.getCategoria() != null ? p.getCategoria().getNombre() : null));
+            writer.write(',');
+            writer.write(campoCsv(p.getImagenUrl()));
+            writer.write("\r\n");
+            if (++filas % FILAS_POR_LOTE == 0) {
+                entityManager.clear();
+            }
+        }
+    }
+
+    // RFC 4180: entre comillas si tiene separadores, comillas o saltos de línea
+    static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        boolean citar = false;
+        for (int i = 0; i < valor.length() && !citar; i++) {
+            char c = valor.charAt(i);
+            citar = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return citar ? "\"" + valor.replace("\"", "\"\"") + "\"" : valor;
+    }
+}
@@ -0,0 +1,225 @@
+package com.vivitasol.projectbackend.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
+import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.repositories.ProductoSpecs;
+import com.vivitasol.projectbackend.search.IndiceCatalogo;
+import com.vivitasol.projectbackend.search.RecorridoCatalogo;
+
+/**
+ * Conteos de productos activos por categoría, rango de precio y stock. Los
+ * globales se mantienen con contadores que se ajustan en cada cambio de
+ * producto, así que responderlos no recorre la tabla.
+ */
+@Component
+public class FacetasProductos extends IndiceCatalogo<FacetasProductos.Conteos> {
+
+    // Límites de los rangos de precio (CLP): [0, 1000), [1000, 2500), ... [10000, ∞)
+    static final long[] LIMITES_PRECIO = {1000, 2500, 5000, 10000};
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private CategoriaServices categoriaServices;
+
+    // Lo que aporta un producto activo a los contadores
+    private record Aporte(Long categoriaId, int rango, boolean enStock) {
+
+        static Aporte de(Producto p) {
+            return new Aporte(p.getCategoria() != null ? p.getCategoria().getId() : null,
+                    rangoDePrecio(p.getPrecio()), p.getStock() != null && p.getStock() > 0);
+        }
+    }
+
+    private static final class Contadores {
+        long total;
+        long enStock;
+        final long[] precios = new long[LIMITES_PRECIO.length + 1];
+
+        void sumar(Aporte a, int signo) {
+            total += signo;
+            if (a.enStock()) {
+                enStock += signo;
+            }
+            if (a.rango() >= 0) {
+                precios[a.rango()] += signo;
+            }
+        }
+
+        void sumar(Contadores otros) {
+            total += otros.total;
+            enStock += otros.enStock;
+            for (int i = 0; i < precios.length; i++) {
+                precios[i] += otros.precios[i];
+            }
+        }
+    }
+
+    static final class Conteos {
+        final Map<Long, Aporte> porProducto = new HashMap<>();
+        final Map<Long, Contadores> porCategoria = new HashMap<>();
+
+        void actualizar(Long id, Producto p) {
+            Aporte anterior = porProducto.remove(id);
+            if (anterior != null) {
+                restar(anterior);
+            }
+            if (p != null && !Boolean.FALSE.equals(p.getActivo())) {
+                Aporte nuevo = Aporte.de(p);
+                porProducto.put(id, nuevo);
+                porCategoria.computeIfAbsent(nuevo.categoriaId(), k -> new Contadores()).sumar(nuevo, 1);
+            }
+        }
+
+        void aplicar(ProductoCambiadoEvent evento) {
+            actualizar(evento.productoId(),
+                    evento.tipo() == ProductoCambiadoEvent.Tipo.ELIMINADO ? null : evento.producto());
+        }
+
+        // La base de datos deja categoria_id en NULL al borrar la categoría
+        void quitarCategoria(Long categoriaId) {
+            Contadores c = porCategoria.remove(categoriaId);
+            if (c == null) {
+                return;
+            }
+            porCategoria.computeIfAbsent(null, k -> new Contadores()).sumar(c);
+            porProducto.replaceAll((id, a) -> categoriaId.equals(a.categoriaId())
+                    ? new Aporte(null, a.rango(), a.enStock())
+                    : a);
+        }
+
+        private void restar(Aporte a) {
+            Contadores c = porCategoria.get(a.categoriaId());
+            c.sumar(a, -1);
+            if (c.total == 0) {
+                porCategoria.remove(a.categoriaId());
+            }
+        }
+    }
+
+    public FacetasProductos() {
+        super(new Conteos());
+    }
+
+    public void reconstruir() {
+        RecorridoCatalogo.recorrer(productoRepositories, List.of(this));
+    }
+
+    @Override
+    protected Conteos nuevoEstado() {
+        return new Conteos();
+    }
+
+    @Override
+    protected void agregar(Conteos destino, List<Producto> lote) {
+        for (Producto p : lote) {
+            destino.actualizar(p.getId(), p);
+        }
+    }
+
+    @Override
+    protected String resumen(Conteos estado) {
+        return "Facetas de productos reconstruidas: " + estado.porProducto.size() + " productos activos";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        registrar(c -> c.aplicar(evento));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCategoria(CategoriaCambiadaEvent evento) {
+        if (evento.tipo() == CategoriaCambiadaEvent.Tipo.ELIMINADA) {
+            registrar(c -> c.quitarCategoria(evento.categoriaId()));
+        }
+    }
+
+    /**
+     * Facetas de todo el catálogo. Con categoría, el total, el stock y los
+     * precios son de esa categoría; los conteos por categoría no se filtran
+     * para que la barra lateral siga mostrando las demás.
+     */
+    public Facetas globales(Long categoriaId) {
+        if (!isListo()) {
+            ProductoFiltro activos = new ProductoFiltro(null, null, true, null, null);
+            return calcular(productoRepositories.findAll(ProductoSpecs.conFiltro(activos)), categoriaId);
+        }
+        Map<Long, Contadores> copia = leer(conteos -> {
+            Map<Long, Contadores> m = new HashMap<>();
+            conteos.porCategoria.forEach((id, c) -> {
+                Contadores nuevo = new Contadores();
+                nuevo.sumar(c);
+                m.put(id, nuevo);
+            });
+            return m;
+        });
+        return armar(copia, categoriaId);
+    }
+
+    /** Facetas de un resultado de búsqueda ya filtrado por texto. */
+    public Facetas calcular(Collection<Producto> productos, Long categoriaId) {
+        Conteos c = new Conteos();
+        for (Producto p : productos) {
+            c.actualizar(p.getId(), p);
+        }
+        return armar(c.porCategoria, categoriaId);
+    }
+
+    private Facetas armar(Map<Long, Contadores> porCategoria, Long categoriaId) {
+        Contadores seleccion = new Contadores();
+        if (categoriaId != null) {
+            Contadores c = porCategoria.get(categoriaId);
+            if (c != null) {
+                seleccion.sumar(c);
+            }
+        } else {
+            porCategoria.values().forEach(seleccion::sumar);
+        }
+
+        List<Facetas.FacetaCategoria> categorias = new ArrayList<>();
+        for (Categoria categoria : categoriaServices.listarTodas()) {
+            Contadores c = porCategoria.get(categoria.getId());
+            categorias.add(new Facetas.FacetaCategoria(categoria.getId(), categoria.getNombre(), c != null ? c.total : 0L));
+        }
+        Contadores sinCategoria = porCategoria.get(null);
+        if (sinCategoria != null && sinCategoria.total > 0) {
+            categorias.add(new Facetas.FacetaCategoria(null, "Sin categoría", sinCategoria.total));
+        }
+
+        List<Facetas.RangoPrecio> precios = new ArrayList<>(seleccion.precios.length);
+        for (int i = 0; i < seleccion.precios.length; i++) {
+            Long desde = i == 0 ? 0L : LIMITES_PRECIO[i - 1];
+            Long hasta = i < LIMITES_PRECIO.length ? LIMITES_PRECIO[i] : null;
+            precios.add(new Facetas.RangoPrecio(desde, hasta, seleccion.precios[i]));
+        }
+        return new Facetas(seleccion.total, seleccion.enStock, categorias, precios);
+    }
+
+    // Índice del rango de precio, o -1 si el producto no tiene precio
+    static int rangoDePrecio(Long precio) {
+        if (precio == null) {
+            return -1;
+        }
+        int i = 0;
+        while (i < LIMITES_PRECIO.length && precio >= LIMITES_PRECIO[i]) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,221 @@
+package com.vivitasol.projectbackend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vivitasol.projectbackend.entities.ClaveIdempotencia;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.vivitasol.projectbackend.repositories.ClaveIdempotenciaRepository;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Claves Idempotency-Key para crear órdenes. El cliente manda la misma
+ * clave en cada reintento de un checkout; la primera petición crea la
+ * orden y las demás reciben esa misma orden sin volver a la base de datos.
+ * Las claves son de cada usuario: dos usuarios con la misma clave no se
+ * pisan. Con la clave se guarda la huella del cuerpo; repetir la clave con
+ * otro cuerpo es un error del cliente y no devuelve la orden anterior.
+ *
+ * Las claves viven en una caché Caffeine con tamaño máximo y vencimiento.
+ * Cada entrada es la orden por venir: una repetición que llega mientras
+ * la primera sigue en curso espera su resultado en vez de crear otra
+ * orden. Si la primera falla, las que esperaban reciben el mismo error y
+ * la clave queda libre para reintentar.
+ *
+ * Con ordenes.idempotencia.persistente=true la clave también se registra
+ * en clave_idempotencia, para que otra instancia reconozca la repetición.
+ */
+@Component
+public class IdempotenciaOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaOrdenes.class);
+
+    static final int LARGO_MAXIMO_CLAVE = 100;
+
+    public record Resultado(Orden orden, boolean repetida) {
+    }
+
+    private record ClaveUsuario(Long usuarioId, String clave) {
+    }
+
+    private record EnCurso(String huella, CompletableFuture<Orden> orden) {
+    }
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @Value("${ordenes.idempotencia.maximo:100000}")
+    private long maximo;
+
+    @Value("${ordenes.idempotencia.ttl-minutos:1440}")
+    private long ttlMinutos;
+
+    @Value("${ordenes.idempotencia.persistente:false}")
+    private boolean persistente;
+
+    private Cache<ClaveUsuario, EnCurso> claves;
+
+    // Las filas vencidas de clave_idempotencia se borran como mucho una vez por hora
+    private volatile long proximaLimpieza;
+
+    @PostConstruct
+    public void iniciar() {
+        claves = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .build();
+    }
+
+    public Resultado crearOrden(Long usuarioId, String clave, Orden orden) {
+        validarClave(clave);
+        ClaveUsuario claveUsuario = new ClaveUsuario(usuarioId, clave);
+        String huella = huella(orden);
+        EnCurso nueva = new EnCurso(huella, new CompletableFuture<>());
+        EnCurso enCurso = claves.asMap().putIfAbsent(claveUsuario, nueva);
+        if (enCurso != null) {
+            comprobarHuella(enCurso.huella(), huella);
+            return new Resultado(esperar(enCurso.orden()), true);
+        }
+        try {
+            Resultado resultado = persistente
+                    ? crearRegistrando(claveUsuario, huella, orden)
+                    : new Resultado(ordenService.crearOrden(orden), false);
+            nueva.orden().complete(resultado.orden());
+            return resultado;
+        } catch (RuntimeException e) {
+            // Los errores no se guardan: el próximo reintento vuelve a intentar
+            claves.asMap().remove(claveUsuario, nueva);
+            nueva.orden().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Resultado crearRegistrando(ClaveUsuario claveUsuario, String huella, Orden orden) {
+        String clave = claveRegistrada(claveUsuario);
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(ttlMinutos);
+        Orden anterior = ordenRegistrada(clave, huella, limite);
+        if (anterior != null) {
+            return new Resultado(anterior, true);
+        }
+        try {
+            Orden creada = ordenService.crearOrden(orden, clave, huella);
+            limpiarVencidas(limite);
+            return new Resultado(creada, false);
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia registró la clave primero y ya confirmó su orden;
+            // si no hay fila, el error venía de la orden misma
+            anterior = ordenRegistrada(clave, huella, limite);
+            if (anterior == null) {
+                throw e;
+            }
+            return new Resultado(anterior, true);
+        }
+    }
+
+    private Orden ordenRegistrada(String clave, String huella, LocalDateTime limite) {
+        return claveIdempotenciaRepository.findById(clave)
+                .filter(c -> c.getOrdenId() != null && c.getCreada() != null && c.getCreada().isAfter(limite))
+                .map(c -> {
+                    comprobarHuella(c.getHuella(), huella);
+                    return c.getOrdenId();
+                })
+                .flatMap(ordenRepository::findById)
+                .orElse(null);
+    }
+
+    // En clave_idempotencia la clave va con el usuario adelante: "7:checkout-42"
+    private static String claveRegistrada(ClaveUsuario claveUsuario) {
+        return (claveUsuario.usuarioId() != null ? claveUsuario.usuarioId() : "-") + ":" + claveUsuario.clave();
+    }
+
+    // También la usa AceptacionOrdenes, para que el camino asíncrono responda 400 igual que el síncrono
+    static void validarClave(String clave) {
+        if (clave == null || clave.isBlank() || clave.length() > LARGO_MAXIMO_CLAVE) {
+            throw new IllegalArgumentException(
+                    "Idempotency-Key debe tener entre 1 y " + LARGO_MAXIMO_CLAVE + " caracteres");
+        }
+    }
+
+    static void comprobarHuella(String anterior, String huella) {
+        if (anterior != null && !anterior.equals(huella)) {
+            throw new ClaveIdempotenciaReutilizadaException(
+                    "La Idempotency-Key ya se usó con otra orden");
+        }
+    }
+
+    /**
+     * SHA-256 de lo que el cliente manda de la orden: usuario, fecha, total
+     * y cada línea en su orden. Dos cuerpos con el mismo contenido dan la
+     * misma huella aunque el JSON venga con otro formato.
+     */
+    static String huella(Orden orden) {
+        StringBuilder texto = new StringBuilder();
+        texto.append(orden.getUsuario() != null ? orden.getUsuario().getId() : null)
+                .append('|').append(orden.getFecha())
+                .append('|').append(orden.getTotal());
+        if (orden.getItems() != null) {
+            for (OrdenItem item : orden.getItems()) {
+                texto.append('|').append(item.getProducto() != null ? item.getProducto().getId() : null)
+                        .append('x').append(item.getCantidad())
+                        .append('@').append(item.getPrecioUnitario());
+            }
+        }
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(texto.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void limpiarVencidas(LocalDateTime limite) {
+        long ahora = System.currentTimeMillis();
+        if (ahora < proximaLimpieza) {
+            return;
+        }
+        proximaLimpieza = ahora + TimeUnit.HOURS.toMillis(1);
+        // La orden ya está creada: un fallo aquí no puede liberar la clave
+        try {
+            claveIdempotenciaRepository.borrarAnteriores(limite);
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron borrar las claves de idempotencia vencidas", e);
+        }
+    }
+
+    private static Orden esperar(CompletableFuture<Orden> enCurso) {
+        try {
+            return enCurso.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.vivitasol.projectbackend.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.search.IndiceCatalogo;
+import com.vivitasol.projectbackend.search.RecorridoCatalogo;
+
+/**
+ * Índice ordenado de stock para consultar el stock bajo sin recorrer el
+ * catálogo. Cada producto se guarda como una clave (valor << 32 | id):
+ * los que usan el umbral general ordenados por stock, y los que tienen
+ * umbral propio ordenados por margen (stock - umbral).
+ */
+@Component
+public class IndiceStock extends IndiceCatalogo<IndiceStock.Estado> {
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    private record Posicion(boolean umbralPropio, long clave) {
+    }
+
+    static final class Estado {
+        final NavigableSet<Long> porStock = new TreeSet<>();
+        final NavigableSet<Long> porMargen = new TreeSet<>();
+        // Clave vigente de cada producto y en qué conjunto está
+        final Map<Long, Posicion> posiciones = new HashMap<>();
+
+        void actualizar(Long id, Producto p) {
+            Posicion anterior = posiciones.remove(id);
+            if (anterior != null) {
+                (anterior.umbralPropio() ? porMargen : porStock).remove(anterior.clave());
+            }
+            if (p == null || p.getStock() == null) {
+                return;
+            }
+            int doc = Math.toIntExact(id);
+            Posicion nueva = p.getUmbralStock() != null
+                    ? new Posicion(true, clave(p.getStock() - p.getUmbralStock(), doc))
+                    : new Posicion(false, clave(p.getStock(), doc));
+            (nueva.umbralPropio() ? porMargen : porStock).add(nueva.clave());
+            posiciones.put(id, nueva);
+        }
+
+        void aplicar(ProductoCambiadoEvent evento) {
+            actualizar(evento.productoId(),
+                    evento.tipo() == ProductoCambiadoEvent.Tipo.ELIMINADO ? null : evento.producto());
+        }
+    }
+
+    public IndiceStock() {
+        super(new Estado());
+    }
+
+    public void reconstruir() {
+        RecorridoCatalogo.recorrer(productoRepositories, List.of(this));
+    }
+
+    @Override
+    protected Estado nuevoEstado() {
+        return new Estado();
+    }
+
+    @Override
+    protected void agregar(Estado destino, List<Producto> lote) {
+        for (Producto p : lote) {
+            destino.actualizar(p.getId(), p);
+        }
+    }
+
+    @Override
+    protected String resumen(Estado estado) {
+        return "Índice de stock reconstruido: " + estado.posiciones.size() + " productos";
+    }
+
+    /**
+     * Se aplica después del commit: si la orden que redujo el stock se
+     * revierte, el índice no queda adelantado a la base de datos.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        registrar(e -> e.aplicar(evento));
+    }
+
+    // El id ocupa los 32 bits bajos, así que el orden de la clave es (valor, id)
+    private static long clave(long valor, int id) {
+        return (valor << 32) | id;
+    }
+
+    /**
+     * Ids con stock bajo, del más urgente al menos urgente según la
+     * distancia a su umbral (propio o el general).
+     */
+    public long[] stockBajo(int umbral) {
+        return leer(estado -> {
+            // margen <= 0 equivale a stock <= umbral
+            Iterator<Long> generales = estado.porStock.headSet(clave(umbral + 1L, 0)).iterator();
+            Iterator<Long> propios = estado.porMargen.headSet(clave(1, 0)).iterator();
+            long[] resultado = new long[16];
+            int n = 0;
+            long g = generales.hasNext() ? desplazar(generales.next(), umbral) : Long.MAX_VALUE;
+            long pr = propios.hasNext() ? propios.next() : Long.MAX_VALUE;
+            while (g != Long.MAX_VALUE || pr != Long.MAX_VALUE) {
+                if (n == resultado.length) {
+                    resultado = Arrays.copyOf(resultado, n * 2);
+                }
+                if (g <= pr) {
+                    resultado[n++] = (int) g;
+                    g = generales.hasNext() ? desplazar(generales.next(), umbral) : Long.MAX_VALUE;
+                } else {
+                    resultado[n++] = (int) pr;
+                    pr = propios.hasNext() ? propios.next() : Long.MAX_VALUE;
+                }
+            }
+            return Arrays.copyOf(resultado, n);
+        });
+    }
+
+    // Lleva una clave (stock, id) a (stock - umbral, id) para mezclarla con las de margen
+    private static long desplazar(long clave, int umbral) {
+        return clave - ((long) umbral << 32);
+    }
+
+    public int contarStockBajo(int umbral) {
+        return leer(estado -> estado.porStock.headSet(clave(umbral + 1L, 0)).size()
+                + estado.porMargen.headSet(clave(1, 0)).size());
+    }
+}
@@ -0,0 +1,47 @@
+package com.vivitasol.projectbackend.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.events.OrdenEliminadaEvent;
+
+/**
+ * Borra las páginas de "mis órdenes" del usuario que acaba de comprar (o
+ * al que le borraron una orden). Va después del commit, igual que
+ * InvalidacionCacheProductos: antes, una lectura concurrente podría volver
+ * a guardar la lista sin el cambio.
+ */
+@Component
+public class InvalidacionCacheOrdenes {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearOrden(OrdenCreadaEvent evento) {
+        if (evento.orden() == null || evento.orden().getUsuario() == null
+                || evento.orden().getUsuario().getId() == null) {
+            return;
+        }
+        invalidar(evento.orden().getUsuario().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alEliminarOrden(OrdenEliminadaEvent evento) {
+        if (evento.usuarioId() != null) {
+            invalidar(evento.usuarioId());
+        }
+    }
+
+    private void invalidar(Long usuarioId) {
+        Cache cache = cacheManager.getCache(CacheConfig.ORDENES_USUARIO);
+        if (cache != null) {
+            cache.evict(usuarioId);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.vivitasol.projectbackend.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+
+/**
+ * Invalida la entrada de un producto cuando cambia. Se hace después del
+ * commit: si se invalidara antes, una lectura concurrente podría volver a
+ * cargar el stock anterior mientras la orden todavía no termina.
+ *
+ * Una lectura que empezó antes del commit todavía puede guardar la versión
+ * anterior después de la invalidación. Para detectarlo cada producto tiene
+ * una generación que sube antes de invalidar: quien carga la entrada compara
+ * la generación de antes y de después de leer (ver ProductoServicesImpl).
+ */
+@Component
+public class InvalidacionCacheProductos {
+
+    // Generaciones repartidas por id; dos productos pueden compartir una y eso solo descarta de más
+    private static final int FRANJAS = 1024;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final AtomicLongArray generaciones = new AtomicLongArray(FRANJAS);
+    // Sube con cada cambio de categoría: los productos guardados incluyen su categoría
+    private final AtomicLong generacionCategorias = new AtomicLong();
+
+    public long generacion(Long productoId) {
+        return generaciones.get(franja(productoId)) + generacionCategorias.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        generaciones.incrementAndGet(franja(evento.productoId()));
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        if (cache != null) {
+            cache.evict(evento.productoId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarCategoria(CategoriaCambiadaEvent evento) {
+        if (evento.tipo() == CategoriaCambiadaEvent.Tipo.CREADA) {
+            return;
+        }
+        generacionCategorias.incrementAndGet();
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static int franja(Long productoId) {
+        return productoId == null ? 0 : (int) Math.floorMod(productoId, (long) FRANJAS);
+    }
+}
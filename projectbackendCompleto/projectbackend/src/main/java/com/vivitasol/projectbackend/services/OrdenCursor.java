@@ -0,0 +1,33 @@
+package com.vivitasol.projectbackend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de una página keyset de órdenes (más recientes primero). Se
+ * serializa como texto opaco (Base64 URL) con el formato "id:fecha".
+ */
+public record OrdenCursor(LocalDateTime fecha, Long id) {
+
+    public String codificar() {
+        String raw = id + ":" + fecha;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrdenCursor decodificar(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // La fecha lleva ':' propios, por eso el id va primero
+            String[] partes = raw.split(":", 2);
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new OrdenCursor(LocalDateTime.parse(partes[1]), Long.valueOf(partes[0]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // NumberFormatException y errores de Base64 también caen aquí
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
@@ -1,11 +1,22 @@
 package com.vivitasol.projectbackend.services;
 
+import com.vivitasol.projectbackend.dto.EstadisticasOrdenes;
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
+import com.vivitasol.projectbackend.dto.OrdenPerfil;
+import com.vivitasol.projectbackend.dto.OrdenResumen;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
 import com.vivitasol.projectbackend.entities.Orden;
 import java.util.List;
 
 public interface OrdenService {
     List<Orden> listarOrdenes();
+    PaginaCursor<OrdenResumen> listarPaginado(OrdenFiltro filtro, String cursor, int tamano, boolean conItems);
+    PaginaCursor<OrdenPerfil> listarDeUsuario(Long usuarioId, String cursor, int tamano);
+    EstadisticasOrdenes estadisticas();
     Orden obtenerOrden(Long id);
+    Orden ordenParaBoleta(Long id);
     Orden crearOrden(Orden orden);
+    Orden crearOrden(Orden orden, String claveIdempotencia, String huella);
+    Orden confirmarRetencion(String retencionId, String propietario);
     void eliminarOrden(Long id);
 }
\ No newline at end of file
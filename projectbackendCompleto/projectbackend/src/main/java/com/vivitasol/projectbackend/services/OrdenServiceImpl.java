@@ -1,13 +1,48 @@
 package com.vivitasol.projectbackend.services;
 
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.dto.EstadisticasOrdenes;
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
+import com.vivitasol.projectbackend.dto.OrdenPerfil;
+import com.vivitasol.projectbackend.dto.OrdenResumen;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
 import com.vivitasol.projectbackend.entities.Orden;
 import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.events.OrdenEliminadaEvent;
+import com.vivitasol.projectbackend.repositories.ClaveIdempotenciaRepository;
 import com.vivitasol.projectbackend.repositories.OrdenRepository;
+import com.vivitasol.projectbackend.repositories.OrdenSpecs;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.repositories.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class OrdenServiceImpl implements OrdenService {
@@ -17,7 +52,112 @@ public class OrdenServiceImpl implements OrdenService {
 
     @Override
     public List<Orden> listarOrdenes() {
-        return (List<Orden>) ordenRepository.findAll();
+        return ordenRepository.todasConItems();
+    }
+
+    static final int TAMANO_MAXIMO_PAGINA = 200;
+
+    /**
+     * Órdenes más recientes primero, paginadas por (fecha, id). El resumen
+     * no carga los items; con conItems se traen los de toda la página en
+     * una sola consulta.
+     */
+    @Override
+    public PaginaCursor<OrdenResumen> listarPaginado(OrdenFiltro filtro, String cursor, int tamano, boolean conItems) {
+        if (tamano < 1 || tamano > TAMANO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        if (filtro != null && filtro.getDesde() != null && filtro.getHasta() != null
+                && filtro.getDesde().isAfter(filtro.getHasta())) {
+            throw new IllegalArgumentException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+
+        Specification<Orden> spec = OrdenSpecs.conFiltro(filtro).and(OrdenSpecs.conUsuario());
+        if (cursor != null && !cursor.isBlank()) {
+            OrdenCursor posicion = OrdenCursor.decodificar(cursor);
+            spec = spec.and(OrdenSpecs.antesDe(posicion.fecha(), posicion.id()));
+        }
+        Sort sort = Sort.by(Sort.Direction.DESC, "fecha", "id");
+
+        List<Orden> filas = ordenRepository.findBy(spec,
+                q -> q.sortBy(sort).limit(PaginaCursor.limite(tamano)).all());
+        PaginaCursor<Orden> pagina = PaginaCursor.de(filas, tamano,
+                ultima -> new OrdenCursor(ultima.getFecha(), ultima.getId()).codificar());
+
+        Map<Long, List<OrdenItem>> items = conItems ? itemsPorOrden(pagina.getContenido()) : Map.of();
+        List<OrdenResumen> resumenes = new ArrayList<>(pagina.getTamano());
+        for (Orden orden : pagina.getContenido()) {
+            resumenes.add(new OrdenResumen(orden.getId(), orden.getFecha(), orden.getTotal(),
+                    orden.getUsuario() != null ? orden.getUsuario().getId() : null,
+                    orden.getUsuario() != null ? orden.getUsuario().getNombre() : null,
+                    conItems ? items.getOrDefault(orden.getId(), List.of()) : null));
+        }
+        return new PaginaCursor<>(resumenes, resumenes.size(), pagina.isHayMas(), pagina.getSiguienteCursor());
+    }
+
+    private Map<Long, List<OrdenItem>> itemsPorOrden(List<Orden> ordenes) {
+        Map<Long, List<OrdenItem>> porOrden = new LinkedHashMap<>();
+        if (ordenes.isEmpty()) {
+            return porOrden;
+        }
+        List<Long> ids = ordenes.stream().map(Orden::getId).toList();
+        for (OrdenItem item : ordenRepository.itemsDeOrdenes(ids)) {
+            // getId() del proxy de la orden no la carga
+            porOrden.computeIfAbsent(item.getOrden().getId(), k -> new ArrayList<>()).add(item);
+        }
+        return porOrden;
+    }
+
+    // Páginas guardadas por usuario; las que pasan de aquí se leen siempre de la base
+    static final int MAX_PAGINAS_POR_USUARIO = 20;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Órdenes del usuario, más recientes primero. Las páginas quedan en la
+     * caché ordenesUsuario bajo el id del usuario, y InvalidacionCacheOrdenes
+     * las borra todas juntas cuando ese usuario crea una orden.
+     */
+    @Override
+    public PaginaCursor<OrdenPerfil> listarDeUsuario(Long usuarioId, String cursor, int tamano) {
+        if (tamano < 1 || tamano > TAMANO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        OrdenCursor posicion = cursor != null && !cursor.isBlank() ? OrdenCursor.decodificar(cursor) : null;
+        String clave = (posicion != null ? cursor : "") + ":" + tamano;
+
+        // El mapa se toma antes de consultar: si una orden nueva lo invalida mientras tanto,
+        // la página vieja queda en un mapa que ya no está en la caché
+        Cache cache = cacheManager.getCache(CacheConfig.ORDENES_USUARIO);
+        @SuppressWarnings("unchecked")
+        Map<String, PaginaCursor<OrdenPerfil>> paginas = cache != null
+                ? cache.get(usuarioId, ConcurrentHashMap::new)
+                : null;
+        PaginaCursor<OrdenPerfil> pagina = paginas != null ? paginas.get(clave) : null;
+        if (pagina != null) {
+            return pagina;
+        }
+
+        Limit limite = Limit.of(PaginaCursor.limite(tamano));
+        List<OrdenPerfil> filas = posicion == null
+                ? ordenRepository.ordenesDeUsuario(usuarioId, limite)
+                : ordenRepository.ordenesDeUsuarioAntesDe(usuarioId, posicion.fecha(), posicion.id(), limite);
+        pagina = PaginaCursor.de(filas, tamano,
+                ultima -> new OrdenCursor(ultima.getFecha(), ultima.getId()).codificar());
+
+        if (paginas != null && paginas.size() < MAX_PAGINAS_POR_USUARIO) {
+            paginas.put(clave, pagina);
+        }
+        return pagina;
+    }
+
+    @Override
+    public EstadisticasOrdenes estadisticas() {
+        List<Object[]> filas = ordenRepository.totalesOrdenes();
+        Object[] fila = filas.isEmpty() ? new Object[] { 0L, 0.0 } : filas.get(0);
+        return new EstadisticasOrdenes(((Number) fila[0]).longValue(), ordenRepository.unidadesVendidas(),
+                ((Number) fila[1]).doubleValue());
     }
 
     @Override
@@ -26,17 +166,240 @@ public class OrdenServiceImpl implements OrdenService {
                 .orElseThrow(() -> new RuntimeException("Orden no encontrada"));
     }
 
+    /**
+     * La orden con solo lo que imprime la boleta, armada desde una consulta de
+     * columnas: no pasa por el contexto de persistencia ni carga entidades.
+     * Alcanza para la huella y para generar el PDF; null si no existe.
+     */
+    @Override
+    public Orden ordenParaBoleta(Long id) {
+        List<Object[]> filas = ordenRepository.datosBoleta(id);
+        if (filas.isEmpty()) {
+            return null;
+        }
+        Object[] primera = filas.get(0);
+        Usuario usuario = null;
+        if (primera[1] != null) {
+            usuario = new Usuario();
+            usuario.setId((Long) primera[1]);
+            usuario.setNombre((String) primera[2]);
+        }
+        Orden orden = new Orden(id, usuario, (LocalDateTime) primera[0], (Double) primera[3], new ArrayList<>());
+        for (Object[] fila : filas) {
+            if (fila[4] == null) {
+                continue;
+            }
+            Producto producto = null;
+            if (fila[5] != null) {
+                producto = new Producto();
+                producto.setId((Long) fila[5]);
+                producto.setNombre((String) fila[6]);
+            }
+            orden.getItems().add(new OrdenItem((Long) fila[4], orden, producto, (Integer) fila[7], (Double) fila[8]));
+        }
+        return orden;
+    }
+
     @Autowired
     private ProductoServices productoServices;
 
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @Value("${ordenes.idempotencia.ttl-minutos:1440}")
+    private long ttlIdempotenciaMinutos;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Commit agrupado: ventana en milisegundos y máximo de órdenes por transacción
+    @Value("${ordenes.grupo.activo:false}")
+    private boolean grupoActivo;
+
+    @Value("${ordenes.grupo.ventana-ms:3}")
+    private long ventanaGrupoMs;
+
+    @Value("${ordenes.grupo.maximo:64}")
+    private int maximoGrupo;
+
+    // Lo más que un llamador espera el commit de su grupo
+    @Value("${ordenes.grupo.espera-maxima-ms:30000}")
+    private long esperaMaximaGrupoMs;
+
+    private AgrupadorOrdenes agrupador;
+
+    @PostConstruct
+    public void iniciar() {
+        if (grupoActivo) {
+            agrupador = new AgrupadorOrdenes(ventanaGrupoMs, maximoGrupo, esperaMaximaGrupoMs,
+                    this::crearGrupo, this::crearSola);
+        }
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        if (agrupador != null) {
+            agrupador.detener();
+        }
+    }
+
+    /**
+     * Con ordenes.grupo.activo=true la orden se confirma junto a las que
+     * llegan en la misma ventana; si ya hay una transacción en curso (por
+     * ejemplo la de la clave de idempotencia) se crea dentro de ella.
+     */
     @Override
-    @Transactional
     public Orden crearOrden(Orden orden) {
-        // Validar y reducir el stock de cada producto
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return crearEnTransaccion(orden);
+        }
+        if (agrupador != null) {
+            return agrupador.crear(orden);
+        }
+        return crearSola(orden);
+    }
+
+    private Orden crearSola(Orden orden) {
+        return new TransactionTemplate(transactionManager).execute(s -> crearEnTransaccion(orden));
+    }
+
+    private Orden crearEnTransaccion(Orden orden) {
+        productoServices.reservarStock(cantidades(orden));
+        return guardar(orden);
+    }
+
+    // Reservar el stock de todas las líneas juntas; un producto repetido suma sus cantidades
+    private static Map<Long, Integer> cantidades(Orden orden) {
+        Map<Long, Integer> cantidades = new HashMap<>();
         for (OrdenItem item : orden.getItems()) {
-            productoServices.reducirStock(item.getProducto().getId(), item.getCantidad());
+            if (item.getProducto() == null || item.getProducto().getId() == null || item.getCantidad() == null) {
+                throw new IllegalArgumentException("Cada ítem debe indicar producto y cantidad");
+            }
+            cantidades.merge(item.getProducto().getId(), item.getCantidad(), Integer::sum);
         }
-        
+        return cantidades;
+    }
+
+    /**
+     * Crea un grupo de órdenes en una transacción: una reserva de stock para
+     * todas y los INSERT de las que la pasaron. Devuelve, por posición, la
+     * orden creada o la excepción que la rechazó. Si falla la transacción
+     * entera, las órdenes vuelven sin id para que puedan reintentarse solas.
+     */
+    private List<Object> crearGrupo(List<Orden> ordenes) {
+        try {
+            return new TransactionTemplate(transactionManager).execute(s -> {
+                List<Object> resultados = new ArrayList<>(ordenes.size());
+                List<Map<Long, Integer>> pedidos = new ArrayList<>(ordenes.size());
+                for (Orden orden : ordenes) {
+                    try {
+                        pedidos.add(cantidades(orden));
+                        resultados.add(null);
+                    } catch (RuntimeException e) {
+                        resultados.add(e);
+                    }
+                }
+                List<RuntimeException> errores = productoServices.reservarStockEnGrupo(pedidos);
+                int siguiente = 0;
+                for (int i = 0; i < ordenes.size(); i++) {
+                    if (resultados.get(i) == null) {
+                        RuntimeException error = errores.get(siguiente++);
+                        resultados.set(i, error != null ? error : guardar(ordenes.get(i)));
+                    }
+                }
+                return resultados;
+            });
+        } catch (RuntimeException e) {
+            for (Orden orden : ordenes) {
+                orden.setId(null);
+                if (orden.getItems() != null) {
+                    orden.getItems().forEach(item -> item.setId(null));
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Crea la orden registrando antes la clave en clave_idempotencia, en la
+     * misma transacción. Otra instancia con la misma clave queda esperando
+     * el INSERT y, cuando esta confirma, falla por clave duplicada sin
+     * haber descontado stock.
+     */
+    @Override
+    @Transactional
+    public Orden crearOrden(Orden orden, String claveIdempotencia, String huella) {
+        claveIdempotenciaRepository.borrarSiVencio(claveIdempotencia,
+                LocalDateTime.now().minusMinutes(ttlIdempotenciaMinutos));
+        claveIdempotenciaRepository.registrar(claveIdempotencia, LocalDateTime.now(), huella);
+        Orden guardada = crearOrden(orden);
+        claveIdempotenciaRepository.asignarOrden(claveIdempotencia, guardada.getId());
+        return guardada;
+    }
+
+    /**
+     * Convierte una retención de carrito en orden a nombre de su
+     * propietario: las líneas salen de la retención y los precios del
+     * catálogo; del cliente no se toma nada. Las unidades ya se descontaron
+     * al retener, así que no se vuelve a reservar stock: las filas de la
+     * retención se borran en la misma transacción que guarda la orden. Si
+     * la orden se revierte, la retención sigue activa hasta su vencimiento.
+     */
+    @Override
+    @Transactional
+    public Orden confirmarRetencion(String retencionId, String propietario) {
+        Map<Long, Integer> cantidades = retencionesStock.iniciarConfirmacion(retencionId, propietario);
+        boolean enTransaccion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (enTransaccion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    retencionesStock.terminarConfirmacion(retencionId, status == STATUS_COMMITTED);
+                }
+            });
+        }
+        try {
+            Orden nueva = new Orden();
+            nueva.setUsuario(usuarioRepository.findByEmail(propietario)
+                    .orElseThrow(() -> new RuntimeException("Usuario no encontrado")));
+            List<Producto> productos = new ArrayList<>(productoRepositories.findAllById(cantidades.keySet()));
+            if (productos.size() < cantidades.size()) {
+                throw new RuntimeException("Productos no encontrados");
+            }
+            productos.sort(Comparator.comparing(Producto::getId));
+            List<OrdenItem> items = new ArrayList<>();
+            for (Producto producto : productos) {
+                double precio = producto.getPrecio() != null ? producto.getPrecio().doubleValue() : 0;
+                items.add(new OrdenItem(null, null, producto, cantidades.get(producto.getId()), precio));
+            }
+            nueva.setItems(items);
+            retencionesStock.consumir(retencionId);
+            Orden guardada = guardar(nueva);
+            if (!enTransaccion) {
+                retencionesStock.terminarConfirmacion(retencionId, true);
+            }
+            return guardada;
+        } catch (RuntimeException e) {
+            if (!enTransaccion) {
+                retencionesStock.terminarConfirmacion(retencionId, false);
+            }
+            throw e;
+        }
+    }
+
+    private Orden guardar(Orden orden) {
         // Establecer la fecha actual si no se proporcionó
         if (orden.getFecha() == null) {
             orden.setFecha(LocalDateTime.now());
@@ -49,15 +412,23 @@ public class OrdenServiceImpl implements OrdenService {
                 .sum();
             orden.setTotal(total);
         }
-        
-        return ordenRepository.save(orden);
+
+        // Sin la referencia de vuelta orden_id queda en null y los items no se pueden leer después
+        if (orden.getItems() != null) {
+            orden.getItems().forEach(item -> item.setOrden(orden));
+        }
+
+        Orden guardada = ordenRepository.save(orden);
+        eventPublisher.publishEvent(new OrdenCreadaEvent(guardada));
+        return guardada;
     }
 
     @Override
     public void eliminarOrden(Long id) {
-        if (!ordenRepository.existsById(id)) {
-            throw new RuntimeException("Orden no encontrada");
-        }
+        Orden orden = ordenRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Orden no encontrada"));
         ordenRepository.deleteById(id);
+        eventPublisher.publishEvent(new OrdenEliminadaEvent(id,
+                orden.getUsuario() != null ? orden.getUsuario().getId() : null));
     }
 }
\ No newline at end of file
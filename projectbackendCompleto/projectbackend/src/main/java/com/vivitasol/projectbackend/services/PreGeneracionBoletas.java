@@ -0,0 +1,170 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.vivitasol.projectbackend.dto.EstadoBoleta;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Genera la boleta apenas se confirma la orden, para que la primera
+ * descarga (la de la página de pago exitoso) la encuentre en
+ * {@link CacheBoletas}. Corre en un pool propio con una cola acotada; si
+ * la cola está llena la orden no se encola y su boleta se genera al
+ * descargarla, como antes.
+ *
+ * La orden se vuelve a leer de la base de datos en vez de usar la del
+ * evento: la que llega a crearOrden trae solo los ids de usuario y
+ * productos, y la fecha con más decimales de los que guarda la columna,
+ * así que su huella no coincidiría con la de la descarga.
+ *
+ * Métricas: boletas.pregeneracion{resultado=generada|fallida|descartada}
+ * y boletas.pregeneracion.cola.
+ */
+@Component
+public class PreGeneracionBoletas {
+
+    private static final Logger log = LoggerFactory.getLogger(PreGeneracionBoletas.class);
+
+    public static final String LISTA = "LISTA";
+    public static final String GENERANDO = "GENERANDO";
+    public static final String PENDIENTE = "PENDIENTE";
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private CacheBoletas cacheBoletas;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${boletas.pregeneracion.activo:true}")
+    private boolean activo;
+
+    @Value("${boletas.pregeneracion.hilos:2}")
+    private int hilos;
+
+    @Value("${boletas.pregeneracion.capacidad:200}")
+    private int capacidad;
+
+    private ThreadPoolExecutor generadores;
+    // Órdenes encoladas o generándose
+    private final Set<Long> enCurso = ConcurrentHashMap.newKeySet();
+
+    private Counter generadas;
+    private Counter fallidas;
+    private Counter descartadas;
+
+    @PostConstruct
+    public void iniciar() {
+        generadas = Counter.builder("boletas.pregeneracion").tag("resultado", "generada")
+                .description("Boletas generadas después del commit de la orden")
+                .register(meterRegistry);
+        fallidas = Counter.builder("boletas.pregeneracion").tag("resultado", "fallida")
+                .register(meterRegistry);
+        descartadas = Counter.builder("boletas.pregeneracion").tag("resultado", "descartada")
+                .description("Órdenes que no entraron a la cola; su boleta se genera al descargarla")
+                .register(meterRegistry);
+        if (!activo) {
+            return;
+        }
+        // AbortPolicy: con la cola llena execute lanza RejectedExecutionException
+        generadores = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidad),
+                Thread.ofPlatform().name("boletas-pre-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("boletas.pregeneracion.cola", generadores, e -> e.getQueue().size())
+                .description("Órdenes esperando que se genere su boleta")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        if (generadores != null) {
+            // Lo que quede en la cola se generará al descargarlo
+            generadores.shutdownNow();
+            generadores.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearOrden(OrdenCreadaEvent evento) {
+        if (generadores == null || evento.orden() == null || evento.orden().getId() == null) {
+            return;
+        }
+        encolar(evento.orden().getId());
+    }
+
+    // false si la cola estaba llena (o la orden ya estaba encolada)
+    boolean encolar(Long ordenId) {
+        if (!enCurso.add(ordenId)) {
+            return false;
+        }
+        try {
+            generadores.execute(() -> generar(ordenId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            enCurso.remove(ordenId);
+            descartadas.increment();
+            return false;
+        }
+    }
+
+    private void generar(Long ordenId) {
+        try {
+            Orden orden = ordenRepository.conItems(ordenId).orElse(null);
+            if (orden == null) {
+                // Se borró antes de llegar a generarla
+                return;
+            }
+            try (CacheBoletas.BoletaEnDisco boleta = cacheBoletas.abrir(orden)) {
+                generadas.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            fallidas.increment();
+            log.warn("No se pudo generar por adelantado la boleta de la orden {}: {}", ordenId, e.getMessage());
+        } finally {
+            enCurso.remove(ordenId);
+        }
+    }
+
+    /**
+     * Si la boleta ya se puede descargar sin esperar, o null si la orden no
+     * existe. La base de datos solo se consulta cuando la boleta no está en
+     * disco ni en curso.
+     */
+    public EstadoBoleta estado(Long ordenId) {
+        // Primero enCurso: la generación registra el archivo antes de salir de enCurso
+        if (enCurso.contains(ordenId)) {
+            return new EstadoBoleta(ordenId, GENERANDO, false);
+        }
+        if (cacheBoletas.contiene(ordenId)) {
+            return new EstadoBoleta(ordenId, LISTA, true);
+        }
+        if (!ordenRepository.existsById(ordenId)) {
+            return null;
+        }
+        return new EstadoBoleta(ordenId, PENDIENTE, false);
+    }
+}
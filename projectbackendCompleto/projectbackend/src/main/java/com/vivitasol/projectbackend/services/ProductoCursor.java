@@ -0,0 +1,41 @@
+package com.vivitasol.projectbackend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición de una página keyset. Se serializa como texto opaco (Base64 URL)
+ * con el formato "orden:precio:id".
+ */
+public record ProductoCursor(String orden, Long precio, Long id) {
+
+    public static final String ORDEN_ID = "id";
+    public static final String ORDEN_PRECIO = "precio";
+
+    public String codificar() {
+        String raw = orden + ":" + (precio != null ? precio : "") + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductoCursor decodificar(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = raw.split(":", -1);
+            if (partes.length != 3) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            String orden = partes[0];
+            if (!ORDEN_ID.equals(orden) && !ORDEN_PRECIO.equals(orden)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            Long precio = partes[1].isEmpty() ? null : Long.valueOf(partes[1]);
+            if (ORDEN_PRECIO.equals(orden) && precio == null) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new ProductoCursor(orden, precio, Long.valueOf(partes[2]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException y errores de Base64 también caen aquí
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
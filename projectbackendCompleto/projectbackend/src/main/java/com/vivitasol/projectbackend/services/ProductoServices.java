@@ -1,6 +1,12 @@
 package com.vivitasol.projectbackend.services;
 
 import java.util.List;
+import java.util.Map;
+
+import com.vivitasol.projectbackend.dto.DisponibilidadProducto;
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
 import com.vivitasol.projectbackend.entities.Producto;
 
 public interface ProductoServices {
@@ -8,6 +14,11 @@ public interface ProductoServices {
     Producto crear(Producto producto);
     Producto obtenerId(Long id);
     List<Producto> listarTodas();    
+    List<Producto> buscar(ProductoFiltro filtro);
+    List<Producto> buscarRelevantes(String consulta, Long categoriaId, boolean todos, int limite);
+    List<Producto> buscarAproximado(String consulta, Long categoriaId, int limite);
+    Facetas facetas(String search, Long categoriaId);
+    PaginaCursor<Producto> listarPaginado(ProductoFiltro filtro, String orden, String cursor, int tamano);
     void eliminar(Long id);
     Producto actualizar(Long id, Producto productoActualizado);
     Producto desactivar(Long id);
@@ -15,4 +26,10 @@ public interface ProductoServices {
     Producto actualizarImagen(Long id, String imagenUrl);
     Producto actualizarStock(Long id, Integer cantidad);
     Producto reducirStock(Long id, Integer cantidad);
+    List<Producto> reservarStock(Map<Long, Integer> cantidades);
+    List<RuntimeException> reservarStockEnGrupo(List<Map<Long, Integer>> pedidos);
+    DisponibilidadProducto disponibilidad(Long id);
+    Producto actualizarUmbralStock(Long id, Integer umbral);
+    List<Producto> listarStockBajo(int umbral);
+    long contarStockBajo(int umbral);
 }
@@ -1,35 +1,131 @@
 package com.vivitasol.projectbackend.services;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.dto.DisponibilidadProducto;
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
 import com.vivitasol.projectbackend.entities.Categoria;
 import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
 import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
 import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.repositories.ProductoSpecs;
+import com.vivitasol.projectbackend.search.IndiceProductos;
+import com.vivitasol.projectbackend.search.IndiceTrigramas;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Service
 public class ProductoServicesImpl implements ProductoServices{
 
+    static final int TAMANO_MAXIMO_PAGINA = 200;
+
     @Autowired
     private ProductoRepositories productoRepositories;
     
     @Autowired
     private CategoriaServices categoriaServices;
 
+    @Autowired
+    private IndiceProductos indiceProductos;
+
+    @Autowired
+    private IndiceStock indiceStock;
+
+    @Autowired
+    private FacetasProductos facetasProductos;
+
+    @Autowired
+    private StockCaliente stockCaliente;
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private InvalidacionCacheProductos invalidacionCacheProductos;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public Producto crear(Producto producto){
         if (producto.getCategoria() != null && producto.getCategoria().getId() != null) {
             Categoria categoria = categoriaServices.obtenerId(producto.getCategoria().getId());
             producto.setCategoria(categoria);
         }
-        return productoRepositories.save(producto);
+        Producto guardado = productoRepositories.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.creado(guardado));
+        return guardado;
     }
 
 
+    /**
+     * Lectura con caché (se invalida por id en InvalidacionCacheProductos).
+     * La caché guarda una copia sin entidades y cada llamada recibe un
+     * Producto nuevo: modificarlo no toca la caché ni el contexto de
+     * persistencia. Las escrituras no pasan por aquí, usan cargar().
+     *
+     * Dentro de una transacción la caché no se lee ni se llena: la lectura
+     * puede ver una foto anterior a un commit ya invalidado, o un cambio
+     * propio que todavía no se confirmó y que la copia en caché no tiene.
+     */
     @Override
     public Producto obtenerId(Long id) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return ProductoCacheado.de(cargar(id)).aProducto();
+        }
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        long[] generacion = {-1};
+        ProductoCacheado cacheado;
+        try {
+            cacheado = cache.get(id, () -> {
+                generacion[0] = invalidacionCacheProductos.generacion(id);
+                return ProductoCacheado.de(cargar(id));
+            });
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+        // Si el producto cambió mientras se leía, lo guardado puede ser la versión anterior
+        if (generacion[0] >= 0 && invalidacionCacheProductos.generacion(id) != generacion[0]) {
+            cache.evict(id);
+        }
+        return cacheado.aProducto();
+    }
+
+    // La entidad administrada, para modificarla y guardarla
+    private Producto cargar(Long id) {
         return productoRepositories.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
@@ -39,41 +135,166 @@ public class ProductoServicesImpl implements ProductoServices{
         return (List<Producto>) productoRepositories.findAll();
     }
 
+    @Override
+    public List<Producto> buscar(ProductoFiltro filtro) {
+        if (filtro == null || filtro.estaVacio()) {
+            return listarTodas();
+        }
+        boolean conTexto = filtro.getSearch() != null && !filtro.getSearch().trim().isEmpty();
+        // Con menos de tres letras los trigramas no acotan nada: va el LIKE de la base de datos
+        if (conTexto && indiceProductos.isListo() && IndiceTrigramas.acotaSubcadena(filtro.getSearch())) {
+            // Subcadena, igual que el LIKE de ProductoSpecs.texto: "colat" encuentra "Chocolate".
+            // Con más de una página máxima de coincidencias el IN sería enorme y también va el LIKE
+            long[] ids = indiceProductos.buscarSubcadena(filtro.getSearch(), filtro.getCategoriaId(),
+                    filtro.getActivo(), TAMANO_MAXIMO_PAGINA + 1);
+            if (ids.length <= TAMANO_MAXIMO_PAGINA) {
+                return cargarEnOrden(ids).stream()
+                        .filter(p -> filtro.getPrecioMin() == null || (p.getPrecio() != null && p.getPrecio() >= filtro.getPrecioMin()))
+                        .filter(p -> filtro.getPrecioMax() == null || (p.getPrecio() != null && p.getPrecio() <= filtro.getPrecioMax()))
+                        .collect(Collectors.toList());
+            }
+        }
+        return productoRepositories.findAll(ProductoSpecs.conFiltro(filtro));
+    }
+
+    @Override
+    public List<Producto> buscarRelevantes(String consulta, Long categoriaId, boolean todos, int limite) {
+        if (limite < 1 || limite > TAMANO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        if (consulta == null || consulta.trim().isEmpty()) {
+            return List.of();
+        }
+        if (!indiceProductos.isListo()) {
+            // Mientras el índice se construye se responde desde la base de datos, sin ranking
+            ProductoFiltro filtro = new ProductoFiltro(consulta, categoriaId, true, null, null);
+            return productoRepositories.findBy(ProductoSpecs.conFiltro(filtro),
+                    q -> q.sortBy(Sort.by("id")).limit(limite).all());
+        }
+        return cargarEnOrden(indiceProductos.buscar(consulta, todos, categoriaId, true, limite));
+    }
+
+    @Override
+    public List<Producto> buscarAproximado(String consulta, Long categoriaId, int limite) {
+        if (limite < 1 || limite > TAMANO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        if (consulta == null || consulta.trim().isEmpty()) {
+            return List.of();
+        }
+        if (!indiceProductos.isListo()) {
+            return buscar(new ProductoFiltro(consulta, categoriaId, null, null, null));
+        }
+        return cargarEnOrden(indiceProductos.buscarAproximado(consulta, categoriaId, null, limite));
+    }
+
+    @Override
+    public Facetas facetas(String search, Long categoriaId) {
+        if (search == null || search.trim().isEmpty()) {
+            return facetasProductos.globales(categoriaId);
+        }
+        // La búsqueda no se filtra por categoría para contar también las demás
+        List<Producto> resultado = buscar(new ProductoFiltro(search, null, true, null, null));
+        return facetasProductos.calcular(resultado, categoriaId);
+    }
+
+    // findAllById no respeta el orden de los ids, así que se reordena según el ranking
+    private List<Producto> cargarEnOrden(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> lista = Arrays.stream(ids).boxed().collect(Collectors.toList());
+        Map<Long, Producto> porId = productoRepositories.findAllById(lista).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        List<Producto> resultado = new ArrayList<>(ids.length);
+        for (Long id : lista) {
+            Producto p = porId.get(id);
+            if (p != null) {
+                resultado.add(p);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public PaginaCursor<Producto> listarPaginado(ProductoFiltro filtro, String orden, String cursor, int tamano) {
+        if (tamano < 1 || tamano > TAMANO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        String criterio = orden == null ? ProductoCursor.ORDEN_ID : orden;
+        if (!ProductoCursor.ORDEN_ID.equals(criterio) && !ProductoCursor.ORDEN_PRECIO.equals(criterio)) {
+            throw new IllegalArgumentException("Orden no soportado: " + orden);
+        }
+
+        Specification<Producto> spec = ProductoSpecs.conFiltro(filtro);
+        Sort sort;
+        if (ProductoCursor.ORDEN_PRECIO.equals(criterio)) {
+            spec = spec.and(ProductoSpecs.conPrecio());
+            sort = Sort.by("precio", "id");
+        } else {
+            sort = Sort.by("id");
+        }
+
+        if (cursor != null && !cursor.isBlank()) {
+            ProductoCursor posicion = ProductoCursor.decodificar(cursor);
+            if (!criterio.equals(posicion.orden())) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+            }
+            spec = spec.and(ProductoCursor.ORDEN_PRECIO.equals(criterio)
+                    ? ProductoSpecs.despuesDePrecio(posicion.precio(), posicion.id())
+                    : ProductoSpecs.despuesDeId(posicion.id()));
+        }
+
+        List<Producto> filas = productoRepositories.findBy(spec,
+                q -> q.sortBy(sort).limit(PaginaCursor.limite(tamano)).all());
+        return PaginaCursor.de(filas, tamano, ultimo -> new ProductoCursor(criterio,
+                ProductoCursor.ORDEN_PRECIO.equals(criterio) ? ultimo.getPrecio() : null, ultimo.getId()).codificar());
+    }
+
     @Override
     public void eliminar(Long id) {
         if (!productoRepositories.existsById(id)) {
             throw new RuntimeException("Producto no encontrado");
         }
        productoRepositories.deleteById(id);
+       eventPublisher.publishEvent(ProductoCambiadoEvent.eliminado(id));
     }
 
     @Override
     public Producto actualizar(Long id, Producto productoActualizado) {
-        Producto existente = obtenerId(id);
+        Producto existente = cargar(id);
         existente.setDescripcion(productoActualizado.getDescripcion());
         existente.setPrecio(productoActualizado.getPrecio());
-        return productoRepositories.save(existente);
+        Producto guardado = productoRepositories.save(existente);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.actualizado(guardado));
+        return guardado;
     }
 
     @Override
     public Producto desactivar(Long id){
-        Producto producto = obtenerId(id);
+        Producto producto = cargar(id);
         producto.setActivo(false);
-        return productoRepositories.save(producto);
+        Producto guardado = productoRepositories.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.actualizado(guardado));
+        return guardado;
     }
 
     @Override
     public Producto activar(Long id) {
-        Producto producto = obtenerId(id);
+        Producto producto = cargar(id);
         producto.setActivo(true);
-        return productoRepositories.save(producto);
+        Producto guardado = productoRepositories.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.actualizado(guardado));
+        return guardado;
     }
 
     @Override
     public Producto actualizarImagen(Long id, String imagenUrl) {
-        Producto producto = obtenerId(id);
+        Producto producto = cargar(id);
         producto.setImagenUrl(imagenUrl);
-        return productoRepositories.save(producto);
+        Producto guardado = productoRepositories.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.actualizado(guardado));
+        return guardado;
     }
 
     @Override
@@ -81,18 +302,323 @@ public class ProductoServicesImpl implements ProductoServices{
         if (cantidad < 0) {
             throw new IllegalArgumentException("La cantidad no puede ser negativa");
         }
-        Producto producto = obtenerId(id);
-        producto.setStock(cantidad);
-        return productoRepositories.save(producto);
+        return stockCaliente.fijar(id, cantidad, () -> {
+            Producto producto = cargar(id);
+            producto.setStock(cantidad);
+            Producto guardado = productoRepositories.save(producto);
+            eventPublisher.publishEvent(ProductoCambiadoEvent.stock(guardado));
+            return guardado;
+        });
     }
     
     @Override
     public Producto reducirStock(Long id, Integer cantidad) {
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero");
+        }
+        return stockCaliente.sinCambioDeModo(() -> {
+            if (stockCaliente.esCaliente(id)) {
+                if (!stockCaliente.reservar(id, cantidad)) {
+                    throw new StockInsuficienteException("No hay suficiente stock disponible");
+                }
+                devolverSiSeRevierte(Map.of(id, cantidad));
+                Producto producto = productoRepositories.findById(id)
+                        .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+                return conStockCaliente(producto);
+            }
+            // La validación y el descuento van en el mismo UPDATE: dos compras
+            // simultáneas no pueden pasar ambas con el mismo stock
+            if (productoRepositories.descontarStock(id, cantidad) == 0) {
+                if (!productoRepositories.existsById(id)) {
+                    throw new RuntimeException("Producto no encontrado");
+                }
+                throw new StockInsuficienteException("No hay suficiente stock disponible");
+            }
+            Producto producto = productoRepositories.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            // Dentro de una transacción el producto puede venir del contexto con el stock anterior
+            if (entityManager.contains(producto)) {
+                entityManager.refresh(producto);
+            }
+            eventPublisher.publishEvent(ProductoCambiadoEvent.stock(producto));
+            return producto;
+        });
+    }
+
+    /**
+     * Descuenta el stock de varios productos a la vez: una consulta que
+     * bloquea todas las filas en orden de id, la validación de todas las
+     * líneas y un solo lote JDBC con los UPDATE. Si falta stock en alguna
+     * línea no se descuenta nada y el error las nombra todas. Los productos
+     * en stock caliente se reservan en memoria y no se bloquean.
+     */
+    @Override
+    @Transactional
+    public List<Producto> reservarStock(Map<Long, Integer> cantidades) {
+        Map<Long, Integer> pedidas = new TreeMap<>();
+        cantidades.forEach((id, cantidad) -> {
+            if (id == null || cantidad == null || cantidad <= 0) {
+                throw new IllegalArgumentException("Cada producto debe tener una cantidad mayor que cero");
+            }
+            pedidas.put(id, cantidad);
+        });
+        if (pedidas.isEmpty()) {
+            return List.of();
+        }
+        return stockCaliente.sinCambioDeModo(() -> reservarEnModoActual(pedidas));
+    }
+
+    private List<Producto> reservarEnModoActual(Map<Long, Integer> pedidas) {
+        Map<Long, Integer> porBase = new TreeMap<>();
+        Map<Long, Integer> calientes = new TreeMap<>();
+        pedidas.forEach((id, cantidad) -> (stockCaliente.esCaliente(id) ? calientes : porBase).put(id, cantidad));
+
+        List<Producto> productos = porBase.isEmpty() ? List.of() : productoRepositories.bloquearParaReserva(porBase.keySet());
+        List<Producto> productosCalientes = calientes.isEmpty() ? List.of() : productoRepositories.findAllById(calientes.keySet());
+        if (productos.size() + productosCalientes.size() < pedidas.size()) {
+            Set<Long> encontrados = new HashSet<>();
+            productos.forEach(p -> encontrados.add(p.getId()));
+            productosCalientes.forEach(p -> encontrados.add(p.getId()));
+            List<Long> faltan = pedidas.keySet().stream().filter(id -> !encontrados.contains(id)).toList();
+            throw new RuntimeException("Productos no encontrados: " + faltan);
+        }
+
+        List<String> sinStock = new ArrayList<>();
+        for (Producto p : productos) {
+            int disponible = p.getStock() != null ? p.getStock() : 0;
+            int pedida = pedidas.get(p.getId());
+            if (disponible < pedida) {
+                sinStock.add(faltante(p, pedida, disponible));
+            }
+        }
+        Map<Long, Integer> reservadas = new TreeMap<>();
+        for (Producto p : productosCalientes) {
+            int pedida = pedidas.get(p.getId());
+            if (stockCaliente.reservar(p.getId(), pedida)) {
+                reservadas.put(p.getId(), pedida);
+            } else {
+                sinStock.add(faltante(p, pedida, stockCaliente.disponible(p.getId())));
+            }
+        }
+        if (!sinStock.isEmpty()) {
+            reservadas.forEach(stockCaliente::devolver);
+            throw new StockInsuficienteException("No hay suficiente stock disponible: " + String.join("; ", sinStock));
+        }
+        devolverSiSeRevierte(reservadas);
+
+        List<Producto> resultado = new ArrayList<>(productos.size() + productosCalientes.size());
+        if (!productos.isEmpty()) {
+            for (Producto p : productos) {
+                p.setStock(p.getStock() - pedidas.get(p.getId()));
+            }
+            flushEnUnLote(productos.size());
+            productos.forEach(p -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(p)));
+            resultado.addAll(productos);
+        }
+        productosCalientes.forEach(p -> resultado.add(conStockCaliente(p)));
+        resultado.sort(Comparator.comparing(Producto::getId));
+        return resultado;
+    }
+
+    /**
+     * Reserva el stock de varias órdenes en una sola pasada, para el modo
+     * de commit agrupado: un bloqueo de todas las filas, cada orden se
+     * valida contra lo que dejaron las anteriores del grupo y un solo lote
+     * con los UPDATE (uno por producto, aunque lo pidan varias órdenes).
+     * Una orden sin stock no se descuenta y no afecta a las demás; su
+     * posición en la lista devuelta trae el error, o null si se reservó.
+     */
+    @Override
+    @Transactional
+    public List<RuntimeException> reservarStockEnGrupo(List<Map<Long, Integer>> pedidos) {
+        return stockCaliente.sinCambioDeModo(() -> reservarGrupoEnModoActual(pedidos));
+    }
+
+    private List<RuntimeException> reservarGrupoEnModoActual(List<Map<Long, Integer>> pedidos) {
+        Set<Long> porBase = new TreeSet<>();
+        Set<Long> calientes = new TreeSet<>();
+        pedidos.forEach(pedido -> pedido.keySet().forEach(id -> {
+            if (id != null) {
+                (stockCaliente.esCaliente(id) ? calientes : porBase).add(id);
+            }
+        }));
+        Map<Long, Producto> productos = new HashMap<>();
+        if (!porBase.isEmpty()) {
+            productoRepositories.bloquearParaReserva(porBase).forEach(p -> productos.put(p.getId(), p));
+        }
+        Map<Long, Producto> productosCalientes = new HashMap<>();
+        if (!calientes.isEmpty()) {
+            productoRepositories.findAllById(calientes).forEach(p -> productosCalientes.put(p.getId(), p));
+        }
+
+        List<RuntimeException> errores = new ArrayList<>(pedidos.size());
+        Map<Long, Producto> descontados = new TreeMap<>();
+        Map<Long, Integer> reservadasCalientes = new TreeMap<>();
+        for (Map<Long, Integer> pedido : pedidos) {
+            errores.add(reservarDelGrupo(pedido, productos, productosCalientes, descontados, reservadasCalientes));
+        }
+        devolverSiSeRevierte(reservadasCalientes);
+        if (!descontados.isEmpty()) {
+            flushEnUnLote(descontados.size());
+            descontados.values().forEach(p -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(p)));
+        }
+        return errores;
+    }
+
+    private RuntimeException reservarDelGrupo(Map<Long, Integer> pedido, Map<Long, Producto> productos,
+            Map<Long, Producto> productosCalientes, Map<Long, Producto> descontados,
+            Map<Long, Integer> reservadasCalientes) {
+        List<Long> faltan = new ArrayList<>();
+        for (Map.Entry<Long, Integer> linea : pedido.entrySet()) {
+            if (linea.getKey() == null || linea.getValue() == null || linea.getValue() <= 0) {
+                return new IllegalArgumentException("Cada producto debe tener una cantidad mayor que cero");
+            }
+            if (!productos.containsKey(linea.getKey()) && !productosCalientes.containsKey(linea.getKey())) {
+                faltan.add(linea.getKey());
+            }
+        }
+        if (!faltan.isEmpty()) {
+            return new RuntimeException("Productos no encontrados: " + faltan);
+        }
+
+        // El stock de las filas ya trae descontado lo de las órdenes anteriores del grupo
+        List<String> sinStock = new ArrayList<>();
+        for (Map.Entry<Long, Integer> linea : pedido.entrySet()) {
+            Producto p = productos.get(linea.getKey());
+            if (p != null) {
+                int disponible = p.getStock() != null ? p.getStock() : 0;
+                if (disponible < linea.getValue()) {
+                    sinStock.add(faltante(p, linea.getValue(), disponible));
+                }
+            }
+        }
+        Map<Long, Integer> reservadas = new TreeMap<>();
+        if (sinStock.isEmpty()) {
+            for (Map.Entry<Long, Integer> linea : pedido.entrySet()) {
+                Producto p = productosCalientes.get(linea.getKey());
+                if (p == null) {
+                    continue;
+                }
+                if (!stockCaliente.reservar(p.getId(), linea.getValue())) {
+                    sinStock.add(faltante(p, linea.getValue(), stockCaliente.disponible(p.getId())));
+                    break;
+                }
+                reservadas.put(p.getId(), linea.getValue());
+            }
+        }
+        if (!sinStock.isEmpty()) {
+            reservadas.forEach(stockCaliente::devolver);
+            return new StockInsuficienteException("No hay suficiente stock disponible: " + String.join("; ", sinStock));
+        }
+
+        pedido.forEach((id, pedida) -> {
+            Producto p = productos.get(id);
+            if (p != null) {
+                p.setStock(p.getStock() - pedida);
+                descontados.put(id, p);
+            }
+        });
+        reservadas.forEach((id, cantidad) -> reservadasCalientes.merge(id, cantidad, Integer::sum));
+        return null;
+    }
+
+    private static String faltante(Producto p, int pedida, int disponible) {
+        return p.getNombre() + " (id " + p.getId() + "): pedidas " + pedida + ", disponibles " + Math.max(0, disponible);
+    }
+
+    // Las filas ya están bloqueadas; el flush manda todos los UPDATE en un lote
+    private void flushEnUnLote(int filas) {
+        Session session = entityManager.unwrap(Session.class);
+        Integer loteAnterior = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(filas);
+        try {
+            entityManager.flush();
+        } finally {
+            session.setJdbcBatchSize(loteAnterior);
+        }
+    }
+
+    // Las reservas en memoria no se deshacen con el rollback de la orden
+    private void devolverSiSeRevierte(Map<Long, Integer> reservadas) {
+        if (reservadas.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    reservadas.forEach(stockCaliente::devolver);
+                }
+            }
+        });
+    }
+
+    // Lo que guarda la caché de productos: valores, sin referencias a entidades
+    private record ProductoCacheado(Long id, String nombre, String descripcion, Long precio, Integer stock,
+            String imagenUrl, Boolean activo, Long categoriaId, String categoriaNombre, Integer umbralStock) {
+
+        static ProductoCacheado de(Producto p) {
+            Categoria c = p.getCategoria();
+            return new ProductoCacheado(p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio(), p.getStock(),
+                    p.getImagenUrl(), p.getActivo(), c != null ? c.getId() : null, c != null ? c.getNombre() : null,
+                    p.getUmbralStock());
+        }
+
+        Producto aProducto() {
+            Categoria categoria = categoriaId != null ? new Categoria(categoriaId, categoriaNombre, null) : null;
+            return new Producto(id, nombre, descripcion, precio, stock, imagenUrl, activo, categoria, umbralStock);
+        }
+    }
+
+    // Copia con el stock del libro; la entidad no se modifica para no escribirlo por error
+    private Producto conStockCaliente(Producto p) {
+        Integer disponible = stockCaliente.disponible(p.getId());
+        return new Producto(p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio(),
+                disponible != null ? disponible : p.getStock(), p.getImagenUrl(), p.getActivo(), p.getCategoria(),
+                p.getUmbralStock());
+    }
+
+    @Override
+    public DisponibilidadProducto disponibilidad(Long id) {
         Producto producto = obtenerId(id);
-        if (producto.getStock() < cantidad) {
-            throw new StockInsuficienteException("No hay suficiente stock disponible");
+        Integer caliente = stockCaliente.disponible(id);
+        int disponible = caliente != null ? caliente : (producto.getStock() != null ? producto.getStock() : 0);
+        // Lo retenido ya salió del stock; el total físico lo suma de vuelta
+        int retenido = retencionesStock.retenido(id);
+        return new DisponibilidadProducto(id, disponible + retenido, retenido, Math.max(0, disponible));
+    }
+
+    @Override
+    public Producto actualizarUmbralStock(Long id, Integer umbral) {
+        if (umbral != null && umbral < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo");
+        }
+        Producto producto = cargar(id);
+        producto.setUmbralStock(umbral);
+        Producto guardado = productoRepositories.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.actualizado(guardado));
+        return guardado;
+    }
+
+    @Override
+    public List<Producto> listarStockBajo(int umbral) {
+        if (umbral < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo");
+        }
+        if (!indiceStock.isListo()) {
+            return productoRepositories.findAll(ProductoSpecs.stockBajo(umbral), Sort.by("stock", "id"));
+        }
+        return cargarEnOrden(indiceStock.stockBajo(umbral));
+    }
+
+    @Override
+    public long contarStockBajo(int umbral) {
+        if (umbral < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo");
+        }
+        if (!indiceStock.isListo()) {
+            return productoRepositories.count(ProductoSpecs.stockBajo(umbral));
         }
-        producto.setStock(producto.getStock() - cantidad);
-        return productoRepositories.save(producto);
+        return indiceStock.contarStockBajo(umbral);
     }
 }
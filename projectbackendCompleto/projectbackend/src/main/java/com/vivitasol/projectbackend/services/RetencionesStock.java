@@ -0,0 +1,378 @@
+package com.vivitasol.projectbackend.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vivitasol.projectbackend.dto.ItemRetencion;
+import com.vivitasol.projectbackend.dto.RetencionStock;
+import com.vivitasol.projectbackend.entities.LineaRetencion;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.repositories.LineaRetencionRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Unidades apartadas en carritos por unos minutos. Retener descuenta el
+ * stock en el momento, con el mismo UPDATE condicional de una venta (o la
+ * reserva del libro si el producto está en stock caliente), y guarda las
+ * líneas en retencion_stock en la misma transacción. Así ninguna venta
+ * tiene que descontar lo retenido por otros: las unidades ya no están.
+ * Al vencer o liberar se borran las filas y después se devuelven las
+ * unidades; si la aplicación se cae entre medio, el stock queda por
+ * debajo, nunca por encima. Al arrancar las retenciones se recargan de la
+ * tabla.
+ *
+ * Los vencimientos van en una rueda de tiempo ({@link RuedaTemporizadora}):
+ * cada tick revisa una ranura, sin recorrer todas las retenciones ni
+ * consultar la base de datos.
+ */
+@Component
+public class RetencionesStock {
+
+    private static final Logger log = LoggerFactory.getLogger(RetencionesStock.class);
+
+    // Con ticks de un segundo, una vuelta son unos ocho minutos y medio
+    static final int RANURAS = 512;
+
+    private static final String NO_ENCONTRADA = "Retención no encontrada o vencida";
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private LineaRetencionRepository lineaRetencionRepository;
+
+    @Autowired
+    private StockCaliente stockCaliente;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${retenciones.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${retenciones.minutos-por-defecto:10}")
+    private int minutosPorDefecto;
+
+    @Value("${retenciones.minutos-maximos:30}")
+    private int minutosMaximos;
+
+    private static final class Retencion {
+        final String id;
+        final String propietario;
+        final Map<Long, Integer> items;
+        final long vence;
+        RuedaTemporizadora.Tarea<String> tarea;
+        // Mientras se crea la orden no vence; si la orden falla vuelve a la rueda
+        boolean confirmando;
+
+        Retencion(String id, String propietario, Map<Long, Integer> items, long vence) {
+            this.id = id;
+            this.propietario = propietario;
+            this.items = items;
+            this.vence = vence;
+        }
+    }
+
+    // Las retenciones, la rueda y el total por producto se cambian bajo este lock
+    private final Object lock = new Object();
+    private final Map<String, Retencion> activas = new HashMap<>();
+    private final Map<Long, Integer> retenidoPorProducto = new ConcurrentHashMap<>();
+    private RuedaTemporizadora<String> rueda;
+
+    private volatile boolean activo;
+    private Thread reloj;
+
+    @PostConstruct
+    public void iniciar() {
+        rueda = new RuedaTemporizadora<>(RANURAS, tickMs, System.currentTimeMillis());
+        cargar();
+        activo = true;
+        reloj = Thread.ofVirtual().name("retenciones-stock").start(() -> {
+            while (activo) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tickMs));
+                try {
+                    vencer(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    log.warn("No se pudieron vencer las retenciones de stock", e);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        if (reloj != null) {
+            LockSupport.unpark(reloj);
+            reloj.join();
+        }
+    }
+
+    // Las retenciones de antes del reinicio vuelven a la rueda; las ya vencidas caen en el primer tick
+    private void cargar() {
+        Map<String, Retencion> guardadas = new HashMap<>();
+        for (LineaRetencion linea : lineaRetencionRepository.findAll()) {
+            Retencion r = guardadas.computeIfAbsent(linea.getRetencionId(), id -> new Retencion(id,
+                    linea.getPropietario(), new TreeMap<>(),
+                    linea.getVence().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+            r.items.merge(linea.getProductoId(), linea.getCantidad(), Integer::sum);
+        }
+        synchronized (lock) {
+            for (Retencion r : guardadas.values()) {
+                r.items.forEach((id, cantidad) -> retenidoPorProducto.merge(id, cantidad, Integer::sum));
+                r.tarea = rueda.programar(r.id, r.vence);
+                activas.put(r.id, r);
+            }
+        }
+        if (!guardadas.isEmpty()) {
+            log.info("{} retenciones de stock recuperadas", guardadas.size());
+        }
+    }
+
+    /**
+     * Aparta las cantidades por los minutos indicados a nombre del
+     * propietario. Descuenta cada línea con un UPDATE condicional; si
+     * alguna no alcanza se revierte todo y el error las nombra todas.
+     */
+    public RetencionStock crear(String propietario, List<ItemRetencion> items, Integer minutos) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("La retención debe tener al menos un producto");
+        }
+        Map<Long, Integer> pedidas = new TreeMap<>();
+        for (ItemRetencion item : items) {
+            if (item.getProductoId() == null || item.getCantidad() == null || item.getCantidad() <= 0) {
+                throw new IllegalArgumentException("Cada producto debe tener una cantidad mayor que cero");
+            }
+            pedidas.merge(item.getProductoId(), item.getCantidad(), Integer::sum);
+        }
+        int duracion = minutos != null ? minutos : minutosPorDefecto;
+        if (duracion < 1 || duracion > minutosMaximos) {
+            throw new IllegalArgumentException("La retención debe durar entre 1 y " + minutosMaximos + " minutos");
+        }
+
+        Map<Long, Producto> productos = new HashMap<>();
+        productoRepositories.findAllById(pedidas.keySet()).forEach(p -> productos.put(p.getId(), p));
+        if (productos.size() < pedidas.size()) {
+            List<Long> faltan = pedidas.keySet().stream().filter(id -> !productos.containsKey(id)).toList();
+            throw new RuntimeException("Productos no encontrados: " + faltan);
+        }
+
+        long vence = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(duracion);
+        Retencion r = new Retencion(UUID.randomUUID().toString(), propietario, pedidas, vence);
+        List<Long> descontados = new ArrayList<>();
+        stockCaliente.sinCambioDeModo(() -> {
+            Map<Long, Integer> reservadas = new TreeMap<>();
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+                    List<String> sinStock = new ArrayList<>();
+                    pedidas.forEach((id, pedida) -> {
+                        if (stockCaliente.esCaliente(id)) {
+                            if (stockCaliente.reservar(id, pedida)) {
+                                reservadas.put(id, pedida);
+                            } else {
+                                sinStock.add(faltante(productos.get(id), pedida, stockCaliente.disponible(id)));
+                            }
+                        } else if (productoRepositories.descontarStock(id, pedida) == 1) {
+                            descontados.add(id);
+                        } else {
+                            sinStock.add(faltante(productos.get(id), pedida, productos.get(id).getStock()));
+                        }
+                    });
+                    if (!sinStock.isEmpty()) {
+                        throw new StockInsuficienteException("No hay suficiente stock disponible: " + String.join("; ", sinStock));
+                    }
+                    LocalDateTime hasta = LocalDateTime.ofInstant(Instant.ofEpochMilli(vence), ZoneId.systemDefault());
+                    pedidas.forEach((id, cantidad) -> lineaRetencionRepository.save(
+                            new LineaRetencion(null, r.id, id, cantidad, propietario, hasta)));
+                });
+            } catch (RuntimeException e) {
+                // El rollback deshace los UPDATE, no las reservas del libro
+                reservadas.forEach(stockCaliente::devolver);
+                throw e;
+            }
+            return null;
+        });
+        if (!descontados.isEmpty()) {
+            productoRepositories.findAllById(descontados)
+                    .forEach(p -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(p)));
+        }
+
+        synchronized (lock) {
+            pedidas.forEach((id, cantidad) -> retenidoPorProducto.merge(id, cantidad, Integer::sum));
+            r.tarea = rueda.programar(r.id, vence);
+            activas.put(r.id, r);
+            return aDto(r);
+        }
+    }
+
+    public RetencionStock obtener(String id, String propietario) {
+        synchronized (lock) {
+            return aDto(buscar(id, propietario));
+        }
+    }
+
+    /** Suelta la retención antes de que venza, por ejemplo al vaciar el carrito. */
+    public void liberar(String id, String propietario) {
+        Retencion r;
+        synchronized (lock) {
+            r = buscar(id, propietario);
+            if (r.confirmando) {
+                throw new IllegalStateException("La retención se está confirmando");
+            }
+            quitar(r);
+        }
+        devolverUnidades(r);
+    }
+
+    /** Unidades de un producto en retenciones activas; ya están descontadas del stock. */
+    public int retenido(Long productoId) {
+        return retenidoPorProducto.getOrDefault(productoId, 0);
+    }
+
+    /**
+     * Marca la retención para convertirla en orden y devuelve sus líneas.
+     * Mientras tanto no vence; se termina con {@link #terminarConfirmacion}.
+     */
+    public Map<Long, Integer> iniciarConfirmacion(String id, String propietario) {
+        synchronized (lock) {
+            Retencion r = buscar(id, propietario);
+            if (r.confirmando) {
+                throw new IllegalStateException("La retención ya se está confirmando");
+            }
+            r.confirmando = true;
+            r.tarea.cancelar();
+            return new TreeMap<>(r.items);
+        }
+    }
+
+    /**
+     * Borra las filas dentro de la transacción de la orden: al confirmarse,
+     * las unidades retenidas pasan a ser las de la orden. Falla si otra
+     * instancia ya la venció o la confirmó.
+     */
+    public void consumir(String id) {
+        if (lineaRetencionRepository.borrarRetencion(id) == 0) {
+            throw new RuntimeException(NO_ENCONTRADA);
+        }
+    }
+
+    /**
+     * Con la orden guardada la retención se quita de memoria. Si la orden
+     * falló vuelve a la rueda con su vencimiento original, o vence en el
+     * próximo tick si ya pasó.
+     */
+    public void terminarConfirmacion(String id, boolean confirmada) {
+        synchronized (lock) {
+            Retencion r = activas.get(id);
+            if (r == null) {
+                return;
+            }
+            if (confirmada) {
+                quitar(r);
+            } else {
+                r.confirmando = false;
+                r.tarea = rueda.programar(r.id, r.vence);
+            }
+        }
+    }
+
+    /** Cantidad de retenciones activas. */
+    public int activas() {
+        synchronized (lock) {
+            return activas.size();
+        }
+    }
+
+    // Lo llama el hilo de la rueda con cada tick; las pruebas lo llaman con la hora que quieran
+    int vencer(long ahoraMs) {
+        List<Retencion> vencidas = new ArrayList<>();
+        synchronized (lock) {
+            for (String id : rueda.avanzar(ahoraMs)) {
+                Retencion r = activas.get(id);
+                if (r != null && !r.confirmando) {
+                    quitar(r);
+                    vencidas.add(r);
+                }
+            }
+        }
+        // La base de datos se toca fuera del lock
+        for (Retencion r : vencidas) {
+            try {
+                devolverUnidades(r);
+            } catch (RuntimeException e) {
+                log.warn("No se pudieron devolver las unidades de la retención {}", r.id, e);
+            }
+        }
+        if (!vencidas.isEmpty()) {
+            log.debug("{} retenciones de stock vencidas", vencidas.size());
+        }
+        return vencidas.size();
+    }
+
+    // Las filas se borran primero; solo quien las borra devuelve las unidades,
+    // así otra instancia con la misma retención no las devuelve dos veces
+    private void devolverUnidades(Retencion r) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Integer borradas = tx.execute(s -> lineaRetencionRepository.borrarRetencion(r.id));
+        if (borradas != null && borradas > 0) {
+            r.items.forEach(stockCaliente::devolver);
+        }
+    }
+
+    // Una retención de otro usuario se trata como inexistente
+    private Retencion buscar(String id, String propietario) {
+        Retencion r = activas.get(id);
+        if (r == null || !r.propietario.equals(propietario)) {
+            throw new RuntimeException(NO_ENCONTRADA);
+        }
+        return r;
+    }
+
+    private void quitar(Retencion r) {
+        activas.remove(r.id);
+        r.tarea.cancelar();
+        r.items.forEach((id, cantidad) ->
+                retenidoPorProducto.computeIfPresent(id, (k, total) -> total > cantidad ? total - cantidad : null));
+    }
+
+    private static String faltante(Producto p, int pedida, Integer disponible) {
+        return p.getNombre() + " (id " + p.getId() + "): pedidas " + pedida
+                + ", disponibles " + Math.max(0, disponible != null ? disponible : 0);
+    }
+
+    private static RetencionStock aDto(Retencion r) {
+        List<ItemRetencion> items = new ArrayList<>(r.items.size());
+        r.items.forEach((id, cantidad) -> items.add(new ItemRetencion(id, cantidad)));
+        return new RetencionStock(r.id, items,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(r.vence), ZoneId.systemDefault()));
+    }
+}
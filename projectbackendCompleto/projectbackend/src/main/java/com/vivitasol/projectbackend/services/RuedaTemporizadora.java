@@ -0,0 +1,110 @@
+package com.vivitasol.projectbackend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda de tiempo con hash (hashed timing wheel). Cada ranura es un tick;
+ * un vencimiento cae en la ranura de su tick y guarda cuántas vueltas
+ * faltan para que le toque. Programar y cancelar cuestan O(1) y cada tick
+ * solo revisa su ranura, así que el costo no depende de cuántos
+ * vencimientos haya pendientes.
+ *
+ * Cancelar solo marca la tarea; se descarta la próxima vez que pase su
+ * ranura. No es segura entre hilos: quien la usa la protege con su lock.
+ */
+public final class RuedaTemporizadora<T> {
+
+    public static final class Tarea<T> {
+        private final T valor;
+        private final long vence;
+        private long vueltas;
+        private boolean cancelada;
+
+        private Tarea(T valor, long vence, long vueltas) {
+            this.valor = valor;
+            this.vence = vence;
+            this.vueltas = vueltas;
+        }
+
+        public T getValor() {
+            return valor;
+        }
+
+        public long getVence() {
+            return vence;
+        }
+
+        public void cancelar() {
+            cancelada = true;
+        }
+    }
+
+    private final List<List<Tarea<T>>> ranuras;
+    private final int mascara;
+    private final long tickMs;
+    private final long inicio;
+    // Último tick procesado
+    private long tick;
+    private int pendientes;
+
+    /** El número de ranuras se redondea a la potencia de dos siguiente. */
+    public RuedaTemporizadora(int numeroRanuras, long tickMs, long inicioMs) {
+        if (numeroRanuras <= 0 || tickMs <= 0) {
+            throw new IllegalArgumentException("La rueda necesita ranuras y un tick mayores que cero");
+        }
+        int tamano = 1;
+        while (tamano < numeroRanuras) {
+            tamano <<= 1;
+        }
+        this.ranuras = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            ranuras.add(new ArrayList<>());
+        }
+        this.mascara = tamano - 1;
+        this.tickMs = tickMs;
+        this.inicio = inicioMs;
+    }
+
+    /** Programa el valor para el primer tick que empiece en o después de venceMs. */
+    public Tarea<T> programar(T valor, long venceMs) {
+        long objetivo = Math.max(tick + 1, Math.ceilDiv(venceMs - inicio, tickMs));
+        long vueltas = (objetivo - tick - 1) / ranuras.size();
+        Tarea<T> tarea = new Tarea<>(valor, venceMs, vueltas);
+        ranuras.get((int) (objetivo & mascara)).add(tarea);
+        pendientes++;
+        return tarea;
+    }
+
+    /** Procesa los ticks transcurridos hasta ahoraMs y devuelve lo vencido. */
+    public List<T> avanzar(long ahoraMs) {
+        List<T> vencidos = new ArrayList<>();
+        while (inicio + (tick + 1) * tickMs <= ahoraMs) {
+            tick++;
+            List<Tarea<T>> ranura = ranuras.get((int) (tick & mascara));
+            int quedan = 0;
+            for (Tarea<T> tarea : ranura) {
+                if (tarea.cancelada) {
+                    pendientes--;
+                } else if (tarea.vueltas == 0) {
+                    vencidos.add(tarea.valor);
+                    pendientes--;
+                } else {
+                    tarea.vueltas--;
+                    ranura.set(quedan++, tarea);
+                }
+            }
+            ranura.subList(quedan, ranura.size()).clear();
+        }
+        return vencidos;
+    }
+
+    /** Tareas en la rueda, incluidas las canceladas que todavía no se descartan. */
+    public int pendientes() {
+        return pendientes;
+    }
+
+    public int numeroRanuras() {
+        return ranuras.size();
+    }
+}
@@ -0,0 +1,558 @@
+package com.vivitasol.projectbackend.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vivitasol.projectbackend.dto.EstadoStockCaliente;
+import com.vivitasol.projectbackend.entities.DiarioStockCaliente;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.DiarioStockCalienteRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Stock en memoria para los productos con más demanda ("calientes"). Una
+ * reserva es un compare-and-set sobre el contador del producto y se
+ * confirma sin tocar la fila; un hilo de fondo descuenta en la base de
+ * datos lo acumulado por cada producto en una sola transacción.
+ *
+ * Cada reserva se anota en un diario en disco (registros de id y cantidad)
+ * y no se confirma hasta que el registro está forzado a disco; las reservas
+ * simultáneas comparten el mismo force. En cada escritura el diario pasa a
+ * un segmento nuevo. Los descuentos y el número del último segmento
+ * aplicado se guardan en la misma transacción, así que al arrancar se
+ * reaplican solo los segmentos posteriores aunque la caída haya ocurrido
+ * entre el commit y el borrado de los archivos.
+ */
+@Component
+public class StockCaliente {
+
+    private static final Logger log = LoggerFactory.getLogger(StockCaliente.class);
+
+    // id (8 bytes) + cantidad (4 bytes, negativa en las devoluciones)
+    static final int TAMANO_REGISTRO = 12;
+    private static final String PREFIJO_SEGMENTO = "stock-caliente-";
+    private static final String SUFIJO_SEGMENTO = ".journal";
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private DiarioStockCalienteRepository diarioStockCalienteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${stock.caliente.directorio:stock-caliente}")
+    private String directorio;
+
+    @Value("${stock.caliente.intervalo-ms:200}")
+    private long intervaloMs;
+
+    private static final class Contador {
+        final AtomicInteger disponible;
+        final AtomicInteger pendiente = new AtomicInteger();
+
+        Contador(int disponible) {
+            this.disponible = new AtomicInteger(disponible);
+        }
+    }
+
+    private final Map<Long, Contador> calientes = new ConcurrentHashMap<>();
+
+    // Lectura: reservas y escrituras de stock por la base de datos.
+    // Escritura: promover, degradar y fijar, que cambian quién lleva el stock
+    private final ReentrantReadWriteLock modo = new ReentrantReadWriteLock();
+
+    // Segmento actual del diario y los ya cerrados que esperan su escritura
+    private final Object diario = new Object();
+    private final ByteBuffer registro = ByteBuffer.allocate(TAMANO_REGISTRO);
+    private final List<Path> porEscribir = new ArrayList<>();
+    private FileChannel segmento;
+    private long numeroSegmento = 1;
+    // Registros anotados desde el arranque y cuántos de ellos ya están forzados a disco
+    private long anotados;
+    private final AtomicLong forzados = new AtomicLong();
+    private final Object sincronizacion = new Object();
+
+    // Una escritura a la vez: otra podría borrar segmentos de una que después falla
+    private final ReentrantLock escritura = new ReentrantLock();
+
+    private volatile boolean activo;
+    private Thread escritor;
+
+    @PostConstruct
+    public void iniciar() {
+        // Los números no se reutilizan: un segmento nuevo con un número ya aplicado se saltaría
+        long aplicado = diarioStockCalienteRepository.findById(directorio)
+                .map(DiarioStockCaliente::getUltimoSegmento)
+                .orElse(0L);
+        numeroSegmento = aplicado + 1;
+        Path carpeta = Paths.get(directorio);
+        if (Files.isDirectory(carpeta)) {
+            List<Path> anteriores = segmentos(carpeta);
+            if (!anteriores.isEmpty()) {
+                numeroSegmento = Math.max(numeroSegmento, numero(anteriores.get(anteriores.size() - 1)) + 1);
+                recuperar(anteriores, aplicado);
+            }
+        }
+        activo = true;
+        escritor = Thread.ofVirtual().name("stock-caliente").start(this::escribirPeriodicamente);
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        if (escritor != null) {
+            LockSupport.unpark(escritor);
+            escritor.join(intervaloMs * 2 + 1000);
+        }
+        if (!calientes.isEmpty()) {
+            escribir();
+        }
+        synchronized (diario) {
+            cerrarSegmento();
+        }
+    }
+
+    private void escribirPeriodicamente() {
+        while (activo) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervaloMs));
+            if (activo && !calientes.isEmpty()) {
+                try {
+                    escribir();
+                } catch (RuntimeException e) {
+                    log.warn("No se pudo escribir el stock caliente; se reintenta en el próximo ciclo", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una escritura de stock sin que un producto cambie de modo
+     * mientras tanto. Quien decide por la base de datos debe emitir su
+     * UPDATE dentro de la acción: así promover, que bloquea la fila, ve
+     * el stock ya descontado.
+     */
+    public <T> T sinCambioDeModo(Supplier<T> accion) {
+        modo.readLock().lock();
+        try {
+            return accion.get();
+        } finally {
+            modo.readLock().unlock();
+        }
+    }
+
+    public boolean esCaliente(Long id) {
+        return calientes.containsKey(id);
+    }
+
+    /** Stock disponible según el libro, o null si el producto no es caliente. */
+    public Integer disponible(Long id) {
+        Contador c = calientes.get(id);
+        return c != null ? c.disponible.get() : null;
+    }
+
+    /** Reserva sin bloquear la fila; false si no alcanza el stock. */
+    public boolean reservar(Long id, int cantidad) {
+        modo.readLock().lock();
+        try {
+            Contador c = calientes.get(id);
+            if (c == null) {
+                throw new IllegalStateException("El producto no está en modo stock caliente");
+            }
+            int actual;
+            do {
+                actual = c.disponible.get();
+                if (actual < cantidad) {
+                    return false;
+                }
+            } while (!c.disponible.compareAndSet(actual, actual - cantidad));
+            long posicion;
+            synchronized (diario) {
+                try {
+                    posicion = anotar(id, cantidad);
+                } catch (UncheckedIOException e) {
+                    c.disponible.addAndGet(cantidad);
+                    throw e;
+                }
+                c.pendiente.addAndGet(cantidad);
+            }
+            try {
+                asegurar(posicion);
+            } catch (UncheckedIOException e) {
+                // La reserva no quedó en disco: se anula con un registro opuesto. Si ese
+                // tampoco se escribe, el diario descuenta de más, que no vende de más
+                synchronized (diario) {
+                    c.pendiente.addAndGet(-cantidad);
+                    try {
+                        anotar(id, -cantidad);
+                    } catch (UncheckedIOException ignorada) {
+                        log.warn("No se pudo anular en el diario la reserva de {} unidades del producto {}", cantidad, id);
+                    }
+                }
+                c.disponible.addAndGet(cantidad);
+                throw e;
+            }
+            return true;
+        } finally {
+            modo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve una reserva, por ejemplo si la orden se revierte. Si el
+     * producto dejó de ser caliente, lo reservado ya está en la base de
+     * datos y se devuelve ahí. La devolución no espera el force: si se
+     * pierde en una caída, el stock queda por debajo.
+     */
+    public void devolver(Long id, int cantidad) {
+        modo.readLock().lock();
+        try {
+            Contador c = calientes.get(id);
+            if (c != null) {
+                synchronized (diario) {
+                    anotar(id, -cantidad);
+                    c.pendiente.addAndGet(-cantidad);
+                }
+                c.disponible.addAndGet(cantidad);
+                return;
+            }
+            nuevaTransaccion().executeWithoutResult(s -> productoRepositories.ajustarStock(id, -cantidad));
+            productoRepositories.findById(id).ifPresent(p -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(p)));
+        } finally {
+            modo.readLock().unlock();
+        }
+    }
+
+    /** Pasa el producto al libro con el stock que tiene la base de datos. */
+    public void promover(Long id) {
+        modo.writeLock().lock();
+        try {
+            if (calientes.containsKey(id)) {
+                return;
+            }
+            // El bloqueo espera a las transacciones que ya descontaron esta fila
+            Integer stock = new TransactionTemplate(transactionManager).execute(s -> {
+                List<Producto> productos = productoRepositories.bloquearParaReserva(List.of(id));
+                if (productos.isEmpty()) {
+                    throw new NoSuchElementException("Producto no encontrado");
+                }
+                Integer actual = productos.get(0).getStock();
+                return actual != null ? actual : 0;
+            });
+            calientes.put(id, new Contador(stock));
+            log.info("Producto {} en modo stock caliente con {} unidades", id, stock);
+        } finally {
+            modo.writeLock().unlock();
+        }
+    }
+
+    /** Escribe lo pendiente y devuelve el producto al descuento por la base de datos. */
+    public void degradar(Long id) {
+        modo.writeLock().lock();
+        try {
+            if (!calientes.containsKey(id)) {
+                return;
+            }
+            if (!escribirPendientes()) {
+                throw new IllegalStateException("No se pudo escribir el stock pendiente; el producto sigue en modo caliente");
+            }
+            calientes.remove(id);
+            log.info("Producto {} vuelve al stock en la base de datos", id);
+        } finally {
+            modo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Escritura de un stock absoluto. En un producto caliente primero se
+     * escribe lo pendiente y el libro toma el valor nuevo.
+     */
+    public <T> T fijar(Long id, int cantidad, Supplier<T> escritura) {
+        if (!calientes.containsKey(id)) {
+            return sinCambioDeModo(escritura);
+        }
+        modo.writeLock().lock();
+        try {
+            Contador c = calientes.get(id);
+            if (c == null) {
+                return escritura.get();
+            }
+            if (!escribirPendientes()) {
+                throw new IllegalStateException("No se pudo escribir el stock pendiente");
+            }
+            T resultado = escritura.get();
+            c.disponible.set(cantidad);
+            return resultado;
+        } finally {
+            modo.writeLock().unlock();
+        }
+    }
+
+    public List<EstadoStockCaliente> estado() {
+        List<EstadoStockCaliente> estado = new ArrayList<>();
+        new TreeMap<>(calientes).forEach((id, c) ->
+                estado.add(new EstadoStockCaliente(id, c.disponible.get(), c.pendiente.get())));
+        return estado;
+    }
+
+    /**
+     * Un producto eliminado deja el libro. Lo pendiente se escribe antes
+     * (la fila ya no está, pero así los segmentos del diario se cierran y
+     * se borran); si no se puede, queda en el log lo que se descarta.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        if (evento.tipo() != ProductoCambiadoEvent.Tipo.ELIMINADO || !calientes.containsKey(evento.productoId())) {
+            return;
+        }
+        modo.writeLock().lock();
+        try {
+            Contador c = calientes.get(evento.productoId());
+            if (c == null) {
+                return;
+            }
+            if (c.pendiente.get() != 0 && !escribirPendientes()) {
+                log.warn("Producto {} eliminado en stock caliente: se descartan {} unidades sin escribir",
+                        evento.productoId(), c.pendiente.get());
+            }
+            calientes.remove(evento.productoId());
+            log.info("Producto {} eliminado; sale del stock caliente con {} unidades disponibles",
+                    evento.productoId(), c.disponible.get());
+        } finally {
+            modo.writeLock().unlock();
+        }
+    }
+
+    /** Descuenta en la base de datos lo reservado desde la última escritura. */
+    public boolean escribir() {
+        modo.readLock().lock();
+        try {
+            return escribirPendientes();
+        } finally {
+            modo.readLock().unlock();
+        }
+    }
+
+    // Requiere el modo tomado, en lectura o escritura
+    private boolean escribirPendientes() {
+        escritura.lock();
+        try {
+            return escribirPendientesEnOrden();
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private boolean escribirPendientesEnOrden() {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        List<Path> cerrados;
+        synchronized (diario) {
+            calientes.forEach((id, c) -> {
+                int d = c.pendiente.getAndSet(0);
+                if (d != 0) {
+                    deltas.put(id, d);
+                }
+            });
+            cerrarSegmento();
+            if (deltas.isEmpty() && porEscribir.isEmpty()) {
+                return true;
+            }
+            cerrados = new ArrayList<>(porEscribir);
+        }
+        try {
+            // Transacción propia: también se llama después del commit de la baja de un producto
+            nuevaTransaccion().executeWithoutResult(s -> {
+                deltas.forEach((id, d) -> productoRepositories.ajustarStock(id, d));
+                marcarAplicados(cerrados);
+            });
+        } catch (RuntimeException e) {
+            synchronized (diario) {
+                deltas.forEach((id, d) -> calientes.get(id).pendiente.addAndGet(d));
+            }
+            log.warn("No se pudo escribir el stock caliente en la base de datos", e);
+            return false;
+        }
+        synchronized (diario) {
+            porEscribir.removeAll(cerrados);
+        }
+        cerrados.forEach(StockCaliente::borrar);
+        if (!deltas.isEmpty()) {
+            // Cachés e índices se enteran una vez por escritura, no por reserva
+            productoRepositories.findAllById(deltas.keySet())
+                    .forEach(p -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(p)));
+        }
+        return true;
+    }
+
+    // Requiere el monitor del diario. Devuelve la posición del registro para asegurar()
+    private long anotar(long id, int cantidad) {
+        try {
+            if (segmento == null) {
+                Path carpeta = Files.createDirectories(Paths.get(directorio));
+                segmento = FileChannel.open(carpeta.resolve(PREFIJO_SEGMENTO + numeroSegmento++ + SUFIJO_SEGMENTO),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            registro.clear();
+            registro.putLong(id).putInt(cantidad).flip();
+            while (registro.hasRemaining()) {
+                segmento.write(registro);
+            }
+            return ++anotados;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el diario de stock caliente", e);
+        }
+    }
+
+    /**
+     * Espera a que el registro en la posición dada esté en disco. Un force
+     * cubre todo lo anotado hasta ese momento, así que con muchas reservas
+     * a la vez la mayoría encuentra el suyo ya forzado (group commit).
+     */
+    private void asegurar(long posicion) {
+        if (forzados.get() >= posicion) {
+            return;
+        }
+        synchronized (sincronizacion) {
+            if (forzados.get() >= posicion) {
+                return;
+            }
+            FileChannel canal;
+            long hasta;
+            synchronized (diario) {
+                canal = segmento;
+                hasta = anotados;
+            }
+            if (canal != null) {
+                try {
+                    canal.force(false);
+                    forzados.accumulateAndGet(hasta, Math::max);
+                } catch (ClosedChannelException e) {
+                    // Lo cerró una escritura, que lo fuerza antes de cerrarlo
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo forzar el diario de stock caliente", e);
+                }
+            }
+        }
+        if (forzados.get() < posicion) {
+            throw new UncheckedIOException(new IOException("El segmento del diario se cerró sin llegar a disco"));
+        }
+    }
+
+    // Requiere el monitor del diario. Cada escritura empieza un segmento nuevo
+    private void cerrarSegmento() {
+        if (segmento == null) {
+            return;
+        }
+        Path ruta = Paths.get(directorio, PREFIJO_SEGMENTO + (numeroSegmento - 1) + SUFIJO_SEGMENTO);
+        try {
+            segmento.force(false);
+            forzados.accumulateAndGet(anotados, Math::max);
+            segmento.close();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el segmento {} del diario", ruta, e);
+        }
+        segmento = null;
+        porEscribir.add(ruta);
+    }
+
+    // Guarda el número del último segmento aplicado; va en la transacción de los descuentos
+    private void marcarAplicados(List<Path> cerrados) {
+        cerrados.stream().mapToLong(StockCaliente::numero).max().ifPresent(ultimo ->
+                diarioStockCalienteRepository.save(new DiarioStockCaliente(directorio, ultimo)));
+    }
+
+    private void recuperar(List<Path> anteriores, long aplicado) {
+        Map<Long, Long> deltas = new TreeMap<>();
+        List<Path> sinAplicar = anteriores.stream().filter(ruta -> numero(ruta) > aplicado).toList();
+        for (Path ruta : sinAplicar) {
+            try {
+                // Un registro incompleto al final es una escritura cortada por la caída
+                ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(ruta));
+                while (datos.remaining() >= TAMANO_REGISTRO) {
+                    deltas.merge(datos.getLong(), (long) datos.getInt(), Long::sum);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer el diario de stock caliente " + ruta, e);
+            }
+        }
+        deltas.values().removeIf(d -> d == 0);
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            deltas.forEach((id, d) -> productoRepositories.ajustarStock(id, Math.toIntExact(d)));
+            marcarAplicados(sinAplicar);
+        });
+        anteriores.forEach(StockCaliente::borrar);
+        log.warn("Diario de stock caliente reaplicado: {} productos con descuentos sin escribir ({} segmentos ya aplicados)",
+                deltas.size(), anteriores.size() - sinAplicar.size());
+    }
+
+    private TransactionTemplate nuevaTransaccion() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+
+    private static List<Path> segmentos(Path carpeta) {
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos
+                    .filter(p -> p.getFileName().toString().matches(PREFIJO_SEGMENTO + "\\d+\\" + SUFIJO_SEGMENTO))
+                    .sorted(Comparator.comparingLong(StockCaliente::numero))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long numero(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO_SEGMENTO.length(), nombre.length() - SUFIJO_SEGMENTO.length()));
+    }
+
+    private static void borrar(Path ruta) {
+        try {
+            Files.deleteIfExists(ruta);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el segmento {} del diario", ruta, e);
+        }
+    }
+}
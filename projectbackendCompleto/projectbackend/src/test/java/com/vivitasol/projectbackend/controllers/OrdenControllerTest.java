@@ -1,5 +1,8 @@
 package com.vivitasol.projectbackend.controllers;
 
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
+import com.vivitasol.projectbackend.dto.OrdenResumen;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
 import com.vivitasol.projectbackend.entities.Orden;
 import com.vivitasol.projectbackend.entities.OrdenItem;
 import com.vivitasol.projectbackend.entities.Usuario;
@@ -15,12 +18,19 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -74,17 +84,72 @@ public class OrdenControllerTest {
     @Test
     @DisplayName("Debería listar todas las órdenes")
     public void testListarOrdenes() throws Exception {
-        List<Orden> ordenes = new ArrayList<>();
-        ordenes.add(orden);
-
-        when(ordenService.listarOrdenes()).thenReturn(ordenes);
+        when(ordenService.listarOrdenes()).thenReturn(List.of(orden));
 
         mockMvc.perform(get("/api/ordenes")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id").value(1L))
                 .andExpect(jsonPath("$[0].total").value(700000.0))
-                .andExpect(jsonPath("$[0].usuario.email").value("usuario@test.com"));
+                .andExpect(jsonPath("$[0].usuario.email").value("usuario@test.com"))
+                .andExpect(jsonPath("$[0].items[0].cantidad").value(2));
+    }
+
+    @Test
+    @DisplayName("Debería listar una página de órdenes")
+    public void testListarPaginaOrdenes() throws Exception {
+        List<OrdenResumen> ordenes = new ArrayList<>();
+        ordenes.add(new OrdenResumen(1L, orden.getFecha(), 700000.0, 1L, "Usuario Test", null));
+
+        when(ordenService.listarPaginado(any(), isNull(), eq(20), eq(false)))
+                .thenReturn(new PaginaCursor<>(ordenes, 1, false, null));
+
+        mockMvc.perform(get("/api/ordenes/pagina")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].id").value(1L))
+                .andExpect(jsonPath("$.contenido[0].total").value(700000.0))
+                .andExpect(jsonPath("$.contenido[0].usuarioNombre").value("Usuario Test"))
+                .andExpect(jsonPath("$.hayMas").value(false));
+    }
+
+    @Test
+    @DisplayName("Debería listar órdenes filtradas con sus items")
+    public void testListarOrdenesFiltradasConItems() throws Exception {
+        List<OrdenResumen> ordenes = new ArrayList<>();
+        ordenes.add(new OrdenResumen(1L, orden.getFecha(), 700000.0, 1L, "Usuario Test", orden.getItems()));
+
+        when(ordenService.listarPaginado(any(OrdenFiltro.class), eq("abc"), eq(10), eq(true)))
+                .thenReturn(new PaginaCursor<>(ordenes, 1, true, "def"));
+
+        mockMvc.perform(get("/api/ordenes/pagina")
+                .param("desde", "2025-01-01")
+                .param("hasta", "2025-01-31")
+                .param("usuarioId", "1")
+                .param("totalMin", "1000")
+                .param("cursor", "abc")
+                .param("tamano", "10")
+                .param("expand", "items"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].items[0].cantidad").value(2))
+                .andExpect(jsonPath("$.siguienteCursor").value("def"));
+
+        verify(ordenService).listarPaginado(
+                new OrdenFiltro(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), 1L, 1000.0), "abc", 10, true);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una expansión desconocida o un cursor inválido")
+    public void testListarOrdenesParametrosInvalidos() throws Exception {
+        mockMvc.perform(get("/api/ordenes/pagina").param("expand", "usuario"))
+                .andExpect(status().isBadRequest());
+
+        when(ordenService.listarPaginado(any(), eq("x"), eq(20), eq(false)))
+                .thenThrow(new IllegalArgumentException("Cursor inválido"));
+
+        mockMvc.perform(get("/api/ordenes/pagina").param("cursor", "x"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.mensaje").value("Cursor inválido"));
     }
 
     @Test
@@ -234,9 +299,7 @@ public class OrdenControllerTest {
     @Test
     @DisplayName("Debería retornar lista vacía cuando no hay órdenes")
     public void testListarOrdenesVacio() throws Exception {
-        List<Orden> ordenes = new ArrayList<>();
-
-        when(ordenService.listarOrdenes()).thenReturn(ordenes);
+        when(ordenService.listarOrdenes()).thenReturn(new ArrayList<>());
 
         mockMvc.perform(get("/api/ordenes")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -258,4 +321,108 @@ public class OrdenControllerTest {
                 .andExpect(jsonPath("$.usuario.email").value("usuario@test.com"))
                 .andExpect(jsonPath("$.usuario.rol").value("CLIENTE"));
     }
+
+    @Test
+    @DisplayName("Debería devolver la misma orden al repetir la Idempotency-Key")
+    public void testCrearOrdenConClaveRepetida() throws Exception {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden);
+        String ordenJson = "{\"usuario\": {\"id\": 1}, \"items\": [{\"producto\": {\"id\": 1}, \"cantidad\": 2}]}";
+
+        mockMvc.perform(post("/api/ordenes")
+                .header("Idempotency-Key", "checkout-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(ordenJson))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andExpect(jsonPath("$.id").value(1L));
+
+        mockMvc.perform(post("/api/ordenes")
+                .header("Idempotency-Key", "checkout-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(ordenJson))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(1L));
+
+        verify(ordenService, times(1)).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("Debería responder 422 al repetir la Idempotency-Key con otro cuerpo")
+    public void testCrearOrdenConClaveRepetidaYOtroCuerpo() throws Exception {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden);
+
+        mockMvc.perform(post("/api/ordenes")
+                .header("Idempotency-Key", "checkout-43")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usuario\": {\"id\": 1}, \"items\": [{\"producto\": {\"id\": 1}, \"cantidad\": 2}]}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/ordenes")
+                .header("Idempotency-Key", "checkout-43")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usuario\": {\"id\": 1}, \"items\": [{\"producto\": {\"id\": 1}, \"cantidad\": 5}]}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(ordenService, times(1)).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una Idempotency-Key vacía")
+    public void testCrearOrdenConClaveVacia() throws Exception {
+        mockMvc.perform(post("/api/ordenes")
+                .header("Idempotency-Key", " ")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"items\": []}"))
+                .andExpect(status().isBadRequest());
+
+        verify(ordenService, never()).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("Debería aceptar la orden asíncrona con 202 y publicar su estado")
+    public void testCrearOrdenAsincrona() throws Exception {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden);
+        String ordenJson = "{\"usuario\": {\"id\": 1}, \"items\": [{\"producto\": {\"id\": 1}, \"cantidad\": 2}]}";
+
+        String respuesta = mockMvc.perform(post("/api/ordenes?async=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(ordenJson))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.handle").exists())
+                .andReturn().getResponse().getContentAsString();
+        String handle = respuesta.replaceAll(".*\"handle\":\"([^\"]+)\".*", "$1");
+
+        String estado = "";
+        for (int i = 0; i < 100 && !estado.contains("CREADA"); i++) {
+            Thread.sleep(20);
+            estado = mockMvc.perform(get("/api/ordenes/" + handle + "/status"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+        }
+        assertTrue(estado.contains("\"ordenId\":1"), estado);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar con 400 una orden asíncrona sin cantidad y dar 404 a un handle desconocido")
+    public void testOrdenAsincronaInvalida() throws Exception {
+        mockMvc.perform(post("/api/ordenes?async=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"items\": [{\"producto\": {\"id\": 1}}]}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/ordenes/no-existe/status"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar con 400 una orden asíncrona con Idempotency-Key vacía")
+    public void testOrdenAsincronaConClaveVacia() throws Exception {
+        mockMvc.perform(post("/api/ordenes?async=true")
+                .header("Idempotency-Key", " ")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"items\": [{\"producto\": {\"id\": 1}, \"cantidad\": 2}]}"))
+                .andExpect(status().isBadRequest());
+    }
 }
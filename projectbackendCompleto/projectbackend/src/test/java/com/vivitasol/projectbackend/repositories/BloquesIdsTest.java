@@ -0,0 +1,77 @@
+package com.vivitasol.projectbackend.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class BloquesIdsTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bloques-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table orden (id bigint auto_increment primary key, total double)");
+    }
+
+    @Test
+    void tablaNuevaEmpiezaEnUnoYReservaDeAUnBloque() {
+        BloquesIds bloques = new BloquesIds(dataSource);
+
+        assertEquals(1, bloques.siguiente("orden"));
+        assertEquals(2, bloques.siguiente("orden"));
+        assertEquals(1 + BloquesIds.BLOQUE, contador("orden"));
+    }
+
+    @Test
+    void baseConAutoIncrementSigueDespuesDelIdMasAlto() {
+        jdbc.update("insert into orden (id, total) values (120, 1000)");
+
+        assertEquals(121, new BloquesIds(dataSource).siguiente("orden"));
+    }
+
+    @Test
+    void contadorAtrasadoSeCorrigeEnLaPrimeraReserva() {
+        new BloquesIds(dataSource).siguiente("orden");
+        // Alguien insertó con AUTO_INCREMENT por fuera de la aplicación
+        jdbc.update("insert into orden (id, total) values (500, 1000)");
+
+        assertEquals(501, new BloquesIds(dataSource).siguiente("orden"));
+    }
+
+    @Test
+    void dosInstanciasNoRecibenElMismoId() throws Exception {
+        BloquesIds a = new BloquesIds(dataSource);
+        BloquesIds b = new BloquesIds(dataSource);
+        Set<Long> ids = new HashSet<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Long>> futuros = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                BloquesIds instancia = i % 2 == 0 ? a : b;
+                futuros.add(hilos.submit(() -> instancia.siguiente("orden")));
+            }
+            for (Future<Long> f : futuros) {
+                ids.add(f.get());
+            }
+        }
+        assertEquals(500, ids.size());
+    }
+
+    private long contador(String tabla) {
+        return jdbc.queryForObject("select siguiente from secuencia_id where tabla = ?", Long.class, tabla);
+    }
+}
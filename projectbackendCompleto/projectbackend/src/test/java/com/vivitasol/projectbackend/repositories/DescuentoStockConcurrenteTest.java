@@ -0,0 +1,144 @@
+package com.vivitasol.projectbackend.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vivitasol.projectbackend.entities.Producto;
+
+/**
+ * Cientos de hilos virtuales comprando el mismo producto a la vez. Corre
+ * contra H2 en memoria; cada compra va en su propia transacción, por eso
+ * la clase no abre una transacción de prueba.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DescuentoStockConcurrenteTest {
+
+    private static final Logger log = LoggerFactory.getLogger(DescuentoStockConcurrenteTest.class);
+
+    private static final int STOCK_INICIAL = 200;
+    private static final int COMPRAS = 600;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long productoId;
+
+    @BeforeEach
+    void setUp() {
+        Producto producto = new Producto(null, "Oferta", "Producto de la venta flash", 990L, STOCK_INICIAL, null, true, null);
+        productoId = productoRepositories.save(producto).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productoRepositories.deleteAll();
+    }
+
+    @Test
+    void descuentoCondicional_noVendeMasQueElStock() throws InterruptedException {
+        Resultado r = comprarEnParalelo(() -> productoRepositories.descontarStock(productoId, 1) == 1);
+        log.info("UPDATE condicional: {} ventas de {} intentos con stock {} en {} ms ({} compras/s)",
+                r.ventas(), COMPRAS, STOCK_INICIAL, r.milisegundos(), r.porSegundo());
+
+        assertEquals(STOCK_INICIAL, r.ventas());
+        assertEquals(0, productoRepositories.findById(productoId).orElseThrow().getStock());
+    }
+
+    // La implementación anterior (leer, validar y guardar): dos compras que leen el
+    // mismo stock antes de que la otra confirme venden dos unidades y descuentan una
+    @Test
+    void leerValidarGuardar_pierdeUnaActualizacion() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch primeraLeyo = new CountDownLatch(1);
+        CountDownLatch segundaLeyo = new CountDownLatch(1);
+        CountDownLatch primeraConfirmo = new CountDownLatch(1);
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> primera = hilos.submit(() -> {
+                boolean vendio = tx.execute(estado -> leerValidarGuardar(primeraLeyo, segundaLeyo));
+                primeraConfirmo.countDown();
+                return vendio;
+            });
+            Future<Boolean> segunda = hilos.submit(() -> tx.execute(estado -> leerValidarGuardar(segundaLeyo, primeraConfirmo)));
+
+            assertTrue(primera.get(1, TimeUnit.MINUTES));
+            assertTrue(segunda.get(1, TimeUnit.MINUTES));
+        }
+        assertEquals(STOCK_INICIAL - 1, productoRepositories.findById(productoId).orElseThrow().getStock());
+    }
+
+    private boolean leerValidarGuardar(CountDownLatch leido, CountDownLatch antesDeGuardar) {
+        Producto p = productoRepositories.findById(productoId).orElseThrow();
+        leido.countDown();
+        try {
+            antesDeGuardar.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (p.getStock() < 1) {
+            return false;
+        }
+        p.setStock(p.getStock() - 1);
+        productoRepositories.save(p);
+        return true;
+    }
+
+    private record Resultado(int ventas, long milisegundos) {
+
+        long porSegundo() {
+            return COMPRAS * 1000L / Math.max(1, milisegundos);
+        }
+    }
+
+    private interface Compra {
+        boolean intentar();
+    }
+
+    private Resultado comprarEnParalelo(Compra compra) throws InterruptedException {
+        AtomicInteger ventas = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        long inicio;
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < COMPRAS; i++) {
+                hilos.submit(() -> {
+                    largada.await();
+                    if (compra.intentar()) {
+                        ventas.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            inicio = System.nanoTime();
+            largada.countDown();
+            hilos.shutdown();
+            hilos.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return new Resultado(ventas.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+}
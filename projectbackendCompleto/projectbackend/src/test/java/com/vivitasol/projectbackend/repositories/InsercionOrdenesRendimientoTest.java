@@ -0,0 +1,146 @@
+package com.vivitasol.projectbackend.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * INSERT de órdenes de 50 líneas con y sin lotes JDBC. Los ids salen por
+ * bloques de secuencia_id, así que Hibernate puede juntar los INSERT de
+ * orden_item en un lote; con IDENTITY necesitaba el id de cada fila y
+ * mandaba uno por uno. Corre contra H2 en memoria: sirve para comparar,
+ * contra MySQL cada viaje de ida y vuelta pesa bastante más. Solo corre
+ * con -Prendimiento.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("rendimiento")
+class InsercionOrdenesRendimientoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(InsercionOrdenesRendimientoTest.class);
+
+    private static final int LINEAS = 50;
+    private static final int ORDENES = 200;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Producto> productos = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < LINEAS; i++) {
+            productos.add(productoRepositories.save(new Producto(null, "Prod" + i, "Desc", 990L, 100, null, true, null)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from orden_item");
+        jdbcTemplate.update("delete from orden");
+        productoRepositories.deleteAll();
+    }
+
+    @Test
+    void insertarOrdenesDeCincuentaLineas_conYSinLotes() {
+        // Una vuelta sin medir para el JIT
+        insertar(50, ORDENES / 4);
+
+        Medicion sinLotes = insertar(1, ORDENES);
+        Medicion conLotes = insertar(50, ORDENES);
+        log.info("Sin lotes: {} órdenes de {} líneas en {} ms ({} órdenes/s, {} sentencias por orden)",
+                ORDENES, LINEAS, sinLotes.milisegundos(), sinLotes.porSegundo(), sinLotes.sentenciasPorOrden());
+        log.info("Con lotes de 50: {} órdenes de {} líneas en {} ms ({} órdenes/s, {} sentencias por orden)",
+                ORDENES, LINEAS, conLotes.milisegundos(), conLotes.porSegundo(), conLotes.sentenciasPorOrden());
+
+        assertEquals(ORDENES / 4 + 2L * ORDENES, ordenRepository.count());
+        // Sin lotes cada línea es su propio INSERT; con lotes la orden y sus líneas caben en pocos
+        assertTrue(sinLotes.sentenciasPorOrden() > LINEAS);
+        assertTrue(conLotes.sentenciasPorOrden() < 5);
+    }
+
+    private record Medicion(long milisegundos, long sentencias) {
+
+        long porSegundo() {
+            return ORDENES * 1000L / Math.max(1, milisegundos);
+        }
+
+        double sentenciasPorOrden() {
+            return (double) sentencias / ORDENES;
+        }
+    }
+
+    // Cada orden en su transacción, como en crearOrden
+    private Medicion insertar(int lote, int ordenes) {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long inicio = System.nanoTime();
+        for (int n = 0; n < ordenes; n++) {
+            tx.executeWithoutResult(s -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(lote);
+                ordenRepository.save(orden());
+            });
+        }
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        return new Medicion(milisegundos, estadisticas.getPrepareStatementCount());
+    }
+
+    private Orden orden() {
+        Orden orden = new Orden();
+        orden.setFecha(LocalDateTime.now());
+        List<OrdenItem> items = new ArrayList<>();
+        for (Producto producto : productos) {
+            items.add(new OrdenItem(null, orden, producto, 1, 990.0));
+        }
+        orden.setItems(items);
+        return orden;
+    }
+}
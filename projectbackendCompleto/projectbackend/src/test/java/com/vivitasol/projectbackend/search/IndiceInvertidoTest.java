@@ -0,0 +1,71 @@
+package com.vivitasol.projectbackend.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndiceInvertidoTest {
+
+    private IndiceInvertido indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceInvertido();
+        indice.indexar(1L, "Leche Entera", "Lácteos 1L", 4L, true);
+        indice.indexar(2L, "Yogurt Natural", "Lacteo 200g", 4L, true);
+        indice.indexar(3L, "Galletas Chocolate", "Paquete 200g", 2L, true);
+        indice.indexar(4L, "Torta Chocolate", "Porción con leche", 3L, false);
+    }
+
+    @Test
+    void normalizar_QuitaTildesYPlural() {
+        assertEquals(List.of("lacte"), NormalizadorTexto.tokens("Lácteos"));
+        assertEquals(NormalizadorTexto.tokens("leches"), NormalizadorTexto.tokens("LECHE"));
+        assertEquals(List.of("500ml"), NormalizadorTexto.tokens("de 500ml"));
+    }
+
+    @Test
+    void buscar_IgnoraTildes() {
+        assertArrayEquals(new long[] {1L, 2L}, indice.buscar("lacteos ", true, null, null, 10));
+    }
+
+    @Test
+    void buscar_NombrePesaMasQueDescripcion() {
+        long[] ids = indice.buscar("leche ", true, null, null, 10);
+        assertArrayEquals(new long[] {1L, 4L}, ids);
+    }
+
+    @Test
+    void buscar_UltimoTokenComoPrefijo() {
+        assertArrayEquals(new long[] {3L, 4L}, indice.buscar("choco", true, null, null, 10));
+    }
+
+    @Test
+    void buscar_AndYOr() {
+        assertArrayEquals(new long[] {4L}, indice.buscar("torta leche ", true, null, null, 10));
+        assertEquals(2, indice.buscar("torta yogurt ", false, null, null, 10).length);
+    }
+
+    @Test
+    void buscar_FiltraCategoriaYActivo() {
+        assertArrayEquals(new long[] {3L}, indice.buscar("chocolate", true, 2L, null, 10));
+        assertArrayEquals(new long[] {3L}, indice.buscar("chocolate", true, null, true, 10));
+    }
+
+    @Test
+    void buscar_RespetaLimite() {
+        assertEquals(1, indice.buscar("chocolate", true, null, null, 1).length);
+    }
+
+    @Test
+    void reindexar_YQuitar_ActualizanPostings() {
+        indice.indexar(3L, "Galletas Vainilla", "Paquete 200g", 2L, true);
+        assertArrayEquals(new long[] {4L}, indice.buscar("chocolate", true, null, null, 10));
+        indice.quitar(4L);
+        assertEquals(0, indice.buscar("chocolate", true, null, null, 10).length);
+        assertEquals(3, indice.tamano());
+    }
+}
@@ -0,0 +1,121 @@
+package com.vivitasol.projectbackend.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.vivitasol.projectbackend.search.IndiceSugerencias.Entrada;
+
+class IndiceSugerenciasTest {
+
+    private static Entrada producto(long id, String nombre, long vendidos) {
+        return new Entrada(IndiceSugerencias.PRODUCTO, id, nombre, vendidos);
+    }
+
+    @Test
+    void sugerir_OrdenaPorPopularidad() {
+        IndiceSugerencias indice = IndiceSugerencias.construir(List.of(
+                producto(1L, "Galletas Chocolate", 5),
+                producto(2L, "Galletas Vainilla", 20),
+                producto(3L, "Gaseosa", 1),
+                new Entrada(IndiceSugerencias.CATEGORIA, 7L, "Golosinas", 100)));
+
+        List<Entrada> r = indice.sugerir("ga", 10);
+
+        assertEquals(List.of(2L, 1L, 3L), r.stream().map(Entrada::id).toList());
+        assertEquals("Golosinas", indice.sugerir("go", 10).get(0).texto());
+    }
+
+    @Test
+    void sugerir_CoincideConCualquierPalabraSinTildes() {
+        IndiceSugerencias indice = IndiceSugerencias.construir(List.of(
+                producto(1L, "Torta Chocolate", 3),
+                producto(2L, "Café Molido", 1)));
+
+        assertEquals(1L, indice.sugerir("choc", 5).get(0).id());
+        assertEquals("Café Molido", indice.sugerir("CAFE", 5).get(0).texto());
+        assertTrue(indice.sugerir("xyz", 5).isEmpty());
+    }
+
+    @Test
+    void sugerir_NoRepiteEntradasYRespetaLimite() {
+        IndiceSugerencias indice = IndiceSugerencias.construir(List.of(
+                producto(1L, "Pan Pan Pan", 3),
+                producto(2L, "Pan Amasado", 2),
+                producto(3L, "Panqueque", 1)));
+
+        assertEquals(List.of(1L, 2L, 3L), indice.sugerir("pan", 10).stream().map(Entrada::id).toList());
+        assertEquals(2, indice.sugerir("pan", 2).size());
+    }
+
+    @Test
+    void popularidad_BuscaPorTipoEId() {
+        IndiceSugerencias indice = IndiceSugerencias.construir(List.of(producto(9L, "Agua", 42)));
+        assertEquals(42, indice.popularidad(IndiceSugerencias.PRODUCTO, 9L));
+        assertEquals(-1, indice.popularidad(IndiceSugerencias.CATEGORIA, 9L));
+    }
+
+    private static List<Entrada> catalogo(int productos) {
+        String[] palabras = {"leche", "pan", "queso", "galleta", "chocolate", "jugo", "agua", "yogurt",
+                "helado", "pizza", "torta", "papas", "barrita", "mantequilla", "croissant", "nuggets"};
+        Random random = new Random(42);
+        List<Entrada> entradas = new ArrayList<>(productos);
+        for (int i = 1; i <= productos; i++) {
+            String nombre = palabras[random.nextInt(palabras.length)] + " "
+                    + palabras[random.nextInt(palabras.length)] + " " + Integer.toString(i, 36);
+            entradas.add(producto(i, nombre, random.nextInt(10_000)));
+        }
+        return entradas;
+    }
+
+    @Test
+    void sugerir_CoincideConRecorridoCompleto() {
+        List<Entrada> entradas = catalogo(20_000);
+        IndiceSugerencias indice = IndiceSugerencias.construir(entradas);
+
+        for (String consulta : new String[] {"l", "le", "lec", "pa", "cho", "gal", "q", "yog", "pizza t", "1a", "zz"}) {
+            // Los más vendidos primero; a igual popularidad, por texto
+            List<Entrada> esperadas = entradas.stream()
+                    .filter(e -> IndiceSugerencias.claves(e.texto()).stream().anyMatch(c -> c.startsWith(consulta)))
+                    .sorted(Comparator.comparingLong(Entrada::popularidad).reversed().thenComparing(Entrada::texto))
+                    .limit(8)
+                    .toList();
+            assertEquals(esperadas.stream().map(Entrada::popularidad).toList(),
+                    indice.sugerir(consulta, 8).stream().map(Entrada::popularidad).toList(), consulta);
+        }
+    }
+
+    /**
+     * Microbenchmark: p99 de sugerir() por debajo de 1 ms. Corre con
+     * -Prendimiento; el tamaño del catálogo se puede subir con
+     * -Dsugerencias.benchmark.productos=1000000.
+     */
+    @Test
+    @Tag("rendimiento")
+    void sugerir_P99BajoUnMilisegundo() {
+        int productos = Integer.getInteger("sugerencias.benchmark.productos", 200_000);
+        IndiceSugerencias indice = IndiceSugerencias.construir(catalogo(productos));
+
+        String[] consultas = {"l", "le", "lec", "pa", "cho", "gal", "q", "yog", "he", "pizza t", "1a", "zz"};
+        for (int i = 0; i < 20_000; i++) {
+            indice.sugerir(consultas[i % consultas.length], 8);
+        }
+        int mediciones = 20_000;
+        long[] tiempos = new long[mediciones];
+        for (int i = 0; i < mediciones; i++) {
+            long t0 = System.nanoTime();
+            indice.sugerir(consultas[i % consultas.length], 8);
+            tiempos[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(tiempos);
+        long p99 = tiempos[(int) (mediciones * 0.99)];
+        assertTrue(p99 < 1_000_000, "p99 = " + p99 + " ns con " + productos + " productos");
+    }
+}
@@ -0,0 +1,85 @@
+package com.vivitasol.projectbackend.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndiceTrigramasTest {
+
+    private IndiceTrigramas indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceTrigramas();
+        indice.indexar(1L, "Galletas Chocolate", "Paquete 200g", 2L, true);
+        indice.indexar(2L, "Yogurt Natural", "200g", 4L, true);
+        indice.indexar(3L, "Torta Chocolate", "Porción", 3L, false);
+        indice.indexar(4L, "Leche Entera", "1L", 4L, true);
+    }
+
+    @Test
+    void trigramas_SonDistintosYOrdenados() {
+        int[] t = IndiceTrigramas.trigramas("aaa aaa");
+        for (int i = 1; i < t.length; i++) {
+            assertTrue(t[i - 1] < t[i]);
+        }
+        assertEquals(0, IndiceTrigramas.trigramas("  ").length);
+    }
+
+    @Test
+    void buscar_ToleraErroresDeTipeo() {
+        assertArrayEquals(new long[] {2L}, indice.buscar("yougurt", null, null, 10));
+        long[] chocolate = indice.buscar("chocolte", null, null, 10);
+        assertEquals(2, chocolate.length);
+    }
+
+    @Test
+    void buscar_DesempataPorTextoMasCorto() {
+        // Ambos contienen "chocolate"; "Torta Chocolate Porción" tiene menos trigramas
+        assertArrayEquals(new long[] {3L, 1L}, indice.buscar("chocolate", null, null, 10));
+    }
+
+    @Test
+    void buscar_FiltraCategoriaActivoYLimite() {
+        assertArrayEquals(new long[] {1L}, indice.buscar("chocolte", null, true, 10));
+        assertArrayEquals(new long[] {3L}, indice.buscar("chocolte", 3L, null, 10));
+        assertEquals(1, indice.buscar("chocolte", null, null, 1).length);
+    }
+
+    @Test
+    void buscar_SinCoincidenciasSuficientes_DevuelveVacio() {
+        assertEquals(0, indice.buscar("xyzw", null, null, 10).length);
+    }
+
+    @Test
+    void buscarSubcadena_EncuentraAMitadDePalabra() {
+        indice.indexar(5L, "Pulsera", "Plata", 1L, true);
+        assertArrayEquals(new long[] {5L}, indice.buscarSubcadena("ulser", null, null, 10));
+        assertArrayEquals(new long[] {1L, 3L}, indice.buscarSubcadena("colat", null, null, 10));
+        // Cruza palabras del mismo campo, no entre nombre y descripción
+        assertArrayEquals(new long[] {1L}, indice.buscarSubcadena("tas choc", null, null, 10));
+        assertEquals(0, indice.buscarSubcadena("chocolate paquete", null, null, 10).length);
+    }
+
+    @Test
+    void buscarSubcadena_ConfirmaLaCoincidenciaYFiltra() {
+        // Todos los trigramas están en "Galletas Chocolate" pero no contiguos
+        assertEquals(0, indice.buscarSubcadena("letcho", null, null, 10).length);
+        assertArrayEquals(new long[] {4L}, indice.buscarSubcadena("1l", null, null, 10));
+        assertArrayEquals(new long[] {1L, 2L}, indice.buscarSubcadena("200G", null, null, 10));
+        assertArrayEquals(new long[] {1L}, indice.buscarSubcadena("olat", null, true, 10));
+        assertArrayEquals(new long[] {3L}, indice.buscarSubcadena("porcion", 3L, null, 10));
+        assertEquals(1, indice.buscarSubcadena("g", null, null, 1).length);
+    }
+
+    @Test
+    void quitar_YReindexar() {
+        indice.quitar(2L);
+        assertEquals(0, indice.buscar("yogurt", null, null, 10).length);
+        indice.indexar(4L, "Leche Descremada", "1L", 4L, true);
+        assertEquals(0, indice.buscar("entera", null, null, 10).length);
+        assertArrayEquals(new long[] {4L}, indice.buscar("descremda", null, null, 10));
+        assertEquals(3, indice.tamano());
+    }
+}
@@ -0,0 +1,95 @@
+package com.vivitasol.projectbackend.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class RecorridoCatalogoTest {
+
+    private static List<Producto> productos(long desde, long hasta) {
+        return LongStream.rangeClosed(desde, hasta).mapToObj(id -> {
+            Producto p = new Producto();
+            p.setId(id);
+            return p;
+        }).toList();
+    }
+
+    // Registra lo que recibe; con falla = true rechaza el primer lote
+    private static final class Registro implements ReconstruiblePorCatalogo, ReconstruiblePorCatalogo.Reconstruccion {
+        final boolean falla;
+        final List<Long> ids = new ArrayList<>();
+        boolean terminado;
+        RuntimeException causa;
+
+        Registro(boolean falla) {
+            this.falla = falla;
+        }
+
+        @Override
+        public Reconstruccion empezarReconstruccion() {
+            return this;
+        }
+
+        @Override
+        public void agregar(List<Producto> lote) {
+            if (falla) {
+                throw new IllegalStateException("lote inválido");
+            }
+            lote.forEach(p -> ids.add(p.getId()));
+        }
+
+        @Override
+        public void terminar() {
+            terminado = true;
+        }
+
+        @Override
+        public void cancelar(RuntimeException causa) {
+            this.causa = causa;
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recorrer_UnaLecturaParaTodosLosIndices() {
+        ProductoRepositories repo = mock(ProductoRepositories.class);
+        when(repo.findBy(any(Specification.class), any()))
+                .thenReturn(productos(1, RecorridoCatalogo.TAMANO_LOTE))
+                .thenReturn(productos(RecorridoCatalogo.TAMANO_LOTE + 1, RecorridoCatalogo.TAMANO_LOTE + 3));
+        Registro a = new Registro(false);
+        Registro b = new Registro(false);
+
+        RecorridoCatalogo.recorrer(repo, List.of(a, b));
+
+        verify(repo, times(2)).findBy(any(Specification.class), any());
+        assertEquals(RecorridoCatalogo.TAMANO_LOTE + 3, a.ids.size());
+        assertEquals(a.ids, b.ids);
+        assertTrue(a.terminado && b.terminado);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recorrer_UnIndiceQueFallaNoDetieneALosDemas() {
+        ProductoRepositories repo = mock(ProductoRepositories.class);
+        when(repo.findBy(any(Specification.class), any())).thenReturn(productos(1, 3));
+        Registro falla = new Registro(true);
+        Registro sano = new Registro(false);
+
+        RecorridoCatalogo.recorrer(repo, List.of(falla, sano));
+
+        assertFalse(falla.terminado);
+        assertInstanceOf(IllegalStateException.class, falla.causa);
+        assertTrue(sano.terminado);
+        assertEquals(List.of(1L, 2L, 3L), sano.ids);
+    }
+}
@@ -0,0 +1,107 @@
+package com.vivitasol.projectbackend.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.repositories.CategoriaRepositories;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.search.IndiceSugerencias.Entrada;
+
+class SugerenciasProductosTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private CategoriaRepositories categoriaRepositories;
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @InjectMocks
+    private SugerenciasProductos sugerencias;
+
+    private final Categoria lacteos = new Categoria(4L, "Lácteos", null);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Producto leche = new Producto(1L, "Leche Entera", null, 990L, 10, null, true, lacteos, null);
+        List<Object[]> vendidos = new ArrayList<>();
+        vendidos.add(new Object[] {1L, 7L});
+        when(ordenRepository.unidadesVendidasPorProducto()).thenReturn(vendidos);
+        when(productoRepositories.findBy(any(Specification.class), any())).thenReturn(List.of(leche));
+        when(categoriaRepositories.findAll()).thenReturn(List.of(lacteos));
+        sugerencias.reconstruir();
+    }
+
+    private List<String> textos(String prefijo) {
+        return sugerencias.sugerir(prefijo, 5).stream().map(Entrada::texto).toList();
+    }
+
+    // La compactación corre en un hilo virtual
+    private void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void elTopeDeCambiosCreceConElCatalogo() {
+        assertEquals(SugerenciasProductos.MIN_CAMBIOS, sugerencias.maxCambios());
+
+        List<Entrada> entradas = new ArrayList<>();
+        for (long id = 1; id <= 50_000; id++) {
+            entradas.add(new Entrada(IndiceSugerencias.PRODUCTO, id, "Producto " + id, 0));
+        }
+        ReflectionTestUtils.setField(sugerencias, "indice", IndiceSugerencias.construir(entradas));
+
+        assertEquals(50_000 / SugerenciasProductos.FRACCION_CAMBIOS, sugerencias.maxCambios());
+    }
+
+    @Test
+    void renombrarCategoria_ActualizaLasSugerencias() throws InterruptedException {
+        assertEquals(List.of("Lácteos", "Leche Entera"), textos("l"));
+
+        when(categoriaRepositories.findAll()).thenReturn(List.of(new Categoria(4L, "Quesos y Yogures", null)));
+        sugerencias.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ACTUALIZADA, 4L));
+        esperarHasta(() -> textos("quesos").contains("Quesos y Yogures"));
+
+        assertEquals(List.of("Quesos y Yogures"), textos("yog"));
+        assertEquals(List.of("Leche Entera"), textos("l"));
+        // La popularidad de la categoría se conserva y no se vuelve a leer el catálogo
+        assertEquals(7, sugerencias.sugerir("quesos", 1).get(0).popularidad());
+        verify(productoRepositories, times(1)).findBy(any(Specification.class), any());
+        verify(productoRepositories, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void eliminarCategoria_LaQuitaDeLasSugerencias() throws InterruptedException {
+        when(categoriaRepositories.findAll()).thenReturn(List.of());
+        sugerencias.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ELIMINADA, 4L));
+        esperarHasta(() -> textos("l").size() == 1);
+
+        assertEquals(List.of("Leche Entera"), textos("l"));
+    }
+}
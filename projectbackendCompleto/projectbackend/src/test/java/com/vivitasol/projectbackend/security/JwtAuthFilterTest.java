@@ -0,0 +1,109 @@
+package com.vivitasol.projectbackend.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JwtAuthFilterTest {
+
+    private JwtUtil jwtUtil;
+    private TokensVerificados tokensVerificados;
+    private JwtAuthFilter filtro;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = spy(new JwtUtil());
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", "claveDePrueba");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpirationMs", 60_000L);
+        tokensVerificados = new TokensVerificados();
+        ReflectionTestUtils.setField(tokensVerificados, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(tokensVerificados, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tokensVerificados, "maximo", 100L);
+        tokensVerificados.iniciar();
+        filtro = new JwtAuthFilter();
+        ReflectionTestUtils.setField(filtro, "tokensVerificados", tokensVerificados);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String token(String rol) {
+        // generateToken escribe sobre el mapa de claims
+        return jwtUtil.generateToken("admin@tienda.com", new HashMap<>(Map.of("rol", rol, "id", 1, "nombre", "Administrador")));
+    }
+
+    private Authentication filtrar(String authorization) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/perfil");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void tokenValidoAutenticaConElRolDelToken() throws Exception {
+        Authentication auth = filtrar("Bearer " + token("admin"));
+
+        assertNotNull(auth);
+        assertEquals("admin@tienda.com", auth.getName());
+        assertEquals(List.of("ROLE_ADMIN"), auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        JwtPrincipal principal = (JwtPrincipal) auth.getPrincipal();
+        assertEquals(1L, principal.id());
+        assertEquals("Administrador", principal.nombre());
+    }
+
+    @Test
+    void mismoTokenSeVerificaUnaSolaVez() throws Exception {
+        String token = token("CLIENTE");
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(filtrar("Bearer " + token));
+        }
+
+        verify(jwtUtil, times(1)).verificar(token);
+        assertEquals(1, tokensVerificados.cantidad());
+    }
+
+    @Test
+    void tokenAlteradoNoAutenticaNiQuedaEnCache() throws Exception {
+        String token = token("ADMIN");
+        String alterado = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertNull(filtrar("Bearer " + alterado));
+        assertNull(filtrar("Basic " + token));
+        assertNull(filtrar(null));
+        assertEquals(0, tokensVerificados.cantidad());
+    }
+
+    @Test
+    void tokenVencidoNoAutenticaAunqueEsteEnCache() throws Exception {
+        // jjwt guarda la expiración en segundos: el token vence al pasar al segundo siguiente
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpirationMs", 1000L);
+        String token = token("ADMIN");
+        assertNotNull(filtrar("Bearer " + token));
+
+        Thread.sleep(2100);
+
+        assertNull(filtrar("Bearer " + token));
+        verify(jwtUtil, atMost(2)).verificar(token);
+    }
+}
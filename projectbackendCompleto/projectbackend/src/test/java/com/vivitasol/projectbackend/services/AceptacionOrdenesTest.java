@@ -0,0 +1,225 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vivitasol.projectbackend.dto.EstadoOrdenAsincrona;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AceptacionOrdenesTest {
+
+    @Mock
+    private OrdenService ordenService;
+
+    @Mock
+    private IdempotenciaOrdenes idempotenciaOrdenes;
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private AceptacionOrdenes aceptacion;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(aceptacion, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(aceptacion, "capacidad", 2);
+        ReflectionTestUtils.setField(aceptacion, "ttlEstadosMinutos", 5L);
+        ReflectionTestUtils.setField(aceptacion, "maximoEstados", 100L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        aceptacion.detener();
+    }
+
+    private void iniciarCon(int trabajadores) {
+        ReflectionTestUtils.setField(aceptacion, "trabajadores", trabajadores);
+        aceptacion.iniciar();
+    }
+
+    private static Orden pedido() {
+        Producto producto = new Producto();
+        producto.setId(1L);
+        Orden orden = new Orden();
+        orden.setItems(List.of(new OrdenItem(null, null, producto, 2, 990.0)));
+        return orden;
+    }
+
+    private EstadoOrdenAsincrona esperarFin(String handle) throws InterruptedException {
+        for (int i = 0; i < 250; i++) {
+            EstadoOrdenAsincrona estado = aceptacion.estado(handle);
+            if (estado.getTerminada() != null) {
+                return estado;
+            }
+            Thread.sleep(20);
+        }
+        fail("La orden " + handle + " no terminó");
+        return null;
+    }
+
+    @Test
+    void laOrdenSeCreaEnSegundoPlano() throws InterruptedException {
+        Orden creada = pedido();
+        creada.setId(12L);
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(creada);
+        iniciarCon(2);
+
+        EstadoOrdenAsincrona recibida = aceptacion.encolar(pedido(), null, null);
+        assertEquals(AceptacionOrdenes.EN_COLA, recibida.getEstado());
+
+        EstadoOrdenAsincrona fin = esperarFin(recibida.getHandle());
+        assertEquals(AceptacionOrdenes.CREADA, fin.getEstado());
+        assertEquals(12L, fin.getOrdenId());
+        assertEquals(1, meterRegistry.get("ordenes.async.espera").timer().count());
+        assertEquals(1, meterRegistry.get("ordenes.async.proceso").tag("resultado", "creada").timer().count());
+    }
+
+    @Test
+    void unRechazoQuedaEnElEstadoConSuMotivo() throws InterruptedException {
+        when(ordenService.crearOrden(any(Orden.class)))
+                .thenThrow(new StockInsuficienteException("No hay suficiente stock disponible"));
+        iniciarCon(1);
+
+        EstadoOrdenAsincrona fin = esperarFin(aceptacion.encolar(pedido(), null, null).getHandle());
+
+        assertEquals(AceptacionOrdenes.RECHAZADA, fin.getEstado());
+        assertEquals("No hay suficiente stock disponible", fin.getMensaje());
+        assertNull(fin.getOrdenId());
+    }
+
+    @Test
+    void unErrorMarcaLaOrdenFallidaYElHiloSigue() throws InterruptedException {
+        Orden creada = pedido();
+        creada.setId(8L);
+        when(ordenService.crearOrden(any(Orden.class)))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(creada);
+        iniciarCon(1);
+
+        EstadoOrdenAsincrona fallida = esperarFin(aceptacion.encolar(pedido(), null, null).getHandle());
+        EstadoOrdenAsincrona siguiente = esperarFin(aceptacion.encolar(pedido(), null, null).getHandle());
+
+        assertEquals(AceptacionOrdenes.RECHAZADA, fallida.getEstado());
+        assertEquals("Error interno al crear la orden", fallida.getMensaje());
+        assertEquals(8L, siguiente.getOrdenId());
+    }
+
+    @Test
+    void conClaveDeIdempotenciaPasaPorLaIdempotencia() throws InterruptedException {
+        Orden creada = pedido();
+        creada.setId(3L);
+        when(idempotenciaOrdenes.crearOrden(eq(5L), eq("k"), any(Orden.class)))
+                .thenReturn(new IdempotenciaOrdenes.Resultado(creada, false));
+        iniciarCon(1);
+
+        EstadoOrdenAsincrona fin = esperarFin(aceptacion.encolar(pedido(), 5L, "k").getHandle());
+
+        assertEquals(3L, fin.getOrdenId());
+        verify(ordenService, never()).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    void unaClaveInvalidaSeRechazaAntesDeEncolar() {
+        iniciarCon(0);
+
+        assertThrows(IllegalArgumentException.class, () -> aceptacion.encolar(pedido(), 5L, " "));
+        assertThrows(IllegalArgumentException.class, () -> aceptacion.encolar(pedido(), 5L, "k".repeat(101)));
+        assertEquals(0, aceptacion.enCola());
+    }
+
+    @Test
+    void elReintentoConLaMismaClaveRecibeElMismoHandle() {
+        iniciarCon(0);
+
+        EstadoOrdenAsincrona primera = aceptacion.encolar(pedido(), 5L, "k");
+        EstadoOrdenAsincrona reintento = aceptacion.encolar(pedido(), 5L, "k");
+        EstadoOrdenAsincrona otroUsuario = aceptacion.encolar(pedido(), 6L, "k");
+
+        assertEquals(primera.getHandle(), reintento.getHandle());
+        assertNotEquals(primera.getHandle(), otroUsuario.getHandle());
+        assertEquals(2, aceptacion.enCola());
+    }
+
+    @Test
+    void laMismaClaveConOtraOrdenSeRechaza() {
+        iniciarCon(0);
+        aceptacion.encolar(pedido(), 5L, "k");
+        Orden otra = pedido();
+        otra.getItems().get(0).setCantidad(3);
+
+        assertThrows(ClaveIdempotenciaReutilizadaException.class, () -> aceptacion.encolar(otra, 5L, "k"));
+        assertEquals(1, aceptacion.enCola());
+    }
+
+    @Test
+    void trasUnRechazoLaClaveSePuedeReintentar() throws InterruptedException {
+        when(idempotenciaOrdenes.crearOrden(eq(5L), eq("k"), any(Orden.class)))
+                .thenThrow(new StockInsuficienteException("No hay suficiente stock disponible"));
+        iniciarCon(1);
+        String rechazada = aceptacion.encolar(pedido(), 5L, "k").getHandle();
+        assertEquals(AceptacionOrdenes.RECHAZADA, esperarFin(rechazada).getEstado());
+
+        assertNotEquals(rechazada, aceptacion.encolar(pedido(), 5L, "k").getHandle());
+    }
+
+    @Test
+    void conLaColaLlenaSeRechazaSinEsperar() {
+        // Sin hilos la cola no se vacía
+        iniciarCon(0);
+        aceptacion.encolar(pedido(), null, null);
+        aceptacion.encolar(pedido(), null, null);
+
+        assertThrows(RejectedExecutionException.class, () -> aceptacion.encolar(pedido(), null, null));
+        assertEquals(2, meterRegistry.get("ordenes.async.cola").gauge().value());
+        assertEquals(1, meterRegistry.get("ordenes.async.saturada").counter().count());
+    }
+
+    @Test
+    void validaLosItemsAntesDeEncolar() {
+        iniciarCon(0);
+        Orden sinCantidad = pedido();
+        sinCantidad.getItems().get(0).setCantidad(null);
+
+        assertThrows(IllegalArgumentException.class, () -> aceptacion.encolar(sinCantidad, null, null));
+        assertThrows(IllegalArgumentException.class, () -> aceptacion.encolar(new Orden(), null, null));
+        assertEquals(0, aceptacion.enCola());
+    }
+
+    @Test
+    void alDetenerSeTerminaLoEncolado() throws InterruptedException {
+        when(ordenService.crearOrden(any(Orden.class))).thenAnswer(inv -> {
+            Thread.sleep(50);
+            return inv.getArgument(0);
+        });
+        iniciarCon(1);
+        String a = aceptacion.encolar(pedido(), null, null).getHandle();
+        String b = aceptacion.encolar(pedido(), null, null).getHandle();
+
+        aceptacion.detener();
+
+        assertEquals(AceptacionOrdenes.CREADA, aceptacion.estado(a).getEstado());
+        assertEquals(AceptacionOrdenes.CREADA, aceptacion.estado(b).getEstado());
+        assertThrows(RejectedExecutionException.class, () -> aceptacion.encolar(pedido(), null, null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.vivitasol.projectbackend.entities.Orden;
+
+class AgrupadorOrdenesTest {
+
+    private static Orden creada(Orden orden, long id) {
+        orden.setId(id);
+        return orden;
+    }
+
+    @Test
+    void unErrorDelGrupoLlegaAlLlamadorYElDespachadorSigue() throws InterruptedException {
+        AtomicInteger grupos = new AtomicInteger();
+        AgrupadorOrdenes agrupador = new AgrupadorOrdenes(1, 8, 5_000, ordenes -> {
+            if (grupos.incrementAndGet() == 1) {
+                throw new StackOverflowError();
+            }
+            return List.of(creada(ordenes.get(0), 2));
+        }, orden -> creada(orden, 3));
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> agrupador.crear(new Orden()));
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+
+            assertEquals(2L, agrupador.crear(new Orden()).getId());
+        } finally {
+            agrupador.detener();
+        }
+    }
+
+    @Test
+    void laEsperaTieneUnMaximo() throws Exception {
+        CountDownLatch soltar = new CountDownLatch(1);
+        AgrupadorOrdenes agrupador = new AgrupadorOrdenes(1, 1, 200, ordenes -> {
+            try {
+                soltar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(creada(ordenes.get(0), 1));
+        }, orden -> creada(orden, 1));
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            // La primera queda en un grupo que no termina; la segunda nunca sale de la cola
+            Future<?> primera = hilos.submit(() -> agrupador.crear(new Orden()));
+            Thread.sleep(50);
+            Future<?> segunda = hilos.submit(() -> agrupador.crear(new Orden()));
+
+            Exception e1 = assertThrows(Exception.class, () -> primera.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e1.getCause());
+            Exception e2 = assertThrows(Exception.class, () -> segunda.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e2.getCause());
+        } finally {
+            soltar.countDown();
+            agrupador.detener();
+        }
+    }
+
+    @Test
+    void detenidoRechazaLasOrdenesNuevas() throws InterruptedException {
+        AgrupadorOrdenes agrupador = new AgrupadorOrdenes(1, 8, 5_000,
+                ordenes -> ordenes.stream().<Object>map(o -> creada(o, 1)).toList(), orden -> creada(orden, 1));
+
+        agrupador.detener();
+
+        assertThrows(RejectedExecutionException.class, () -> agrupador.crear(new Orden()));
+    }
+}
@@ -0,0 +1,119 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+
+/**
+ * Bytes reservados en el heap por boleta, con la forma anterior (un
+ * Paragraph por item, fuentes por defecto y el PDF juntado en un byte[])
+ * y con {@link BoletaPdf}, que escribe directo en la salida. Se mide con
+ * el contador de asignaciones del hilo, así que no depende del GC.
+ * Solo corre con -Prendimiento.
+ */
+@Tag("rendimiento")
+class BoletaPdfRendimientoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BoletaPdfRendimientoTest.class);
+
+    private static final int VUELTAS = 20;
+
+    private final BoletaPdf boletaPdf = new BoletaPdf();
+
+    @Test
+    void bytesReservadosPorBoleta() throws IOException {
+        for (int items : new int[] { 5, 500 }) {
+            Orden orden = orden(items);
+            // Primero sin medir, para que el JIT y las clases de OpenPDF ya estén cargados
+            for (int i = 0; i < VUELTAS; i++) {
+                anterior(orden);
+                boletaPdf.escribir(orden, OutputStream.nullOutputStream());
+            }
+
+            long antes = reservados(() -> anterior(orden));
+            long ahora = reservados(() -> boletaPdf.escribir(orden, OutputStream.nullOutputStream()));
+            log.info("Boleta con {} items: {} KB por boleta antes, {} KB ahora",
+                    items, antes / 1024, ahora / 1024);
+            assertTrue(ahora < antes, "La boleta nueva reserva " + ahora + " bytes y la anterior " + antes);
+        }
+    }
+
+    private interface Generacion {
+        void ejecutar() throws IOException;
+    }
+
+    private static long reservados(Generacion generacion) throws IOException {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().threadId();
+        long inicio = hilos.getThreadAllocatedBytes(id);
+        for (int i = 0; i < VUELTAS; i++) {
+            generacion.ejecutar();
+        }
+        return (hilos.getThreadAllocatedBytes(id) - inicio) / VUELTAS;
+    }
+
+    // Como se generaba la boleta antes de dibujar los items sobre la página y de escribir directo en la respuesta
+    private static byte[] anterior(Orden orden) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try {
+            Document document = new Document();
+            PdfWriter.getInstance(document, salida);
+            document.open();
+            document.add(new Paragraph("Boleta de Compra"));
+            document.add(new Paragraph("Orden N°: " + orden.getId()));
+            document.add(new Paragraph("Fecha: " + orden.getFecha()));
+            document.add(new Paragraph("Cliente: " + orden.getUsuario().getNombre()));
+            document.add(new Paragraph(" "));
+            document.add(new Paragraph("Items:"));
+            for (OrdenItem item : orden.getItems()) {
+                document.add(new Paragraph("- " + item.getProducto().getNombre() + " x" + item.getCantidad() + " = $" + item.getSubtotal()));
+            }
+            document.add(new Paragraph(" "));
+            document.add(new Paragraph("Total: $" + orden.getTotal()));
+            document.close();
+        } catch (DocumentException e) {
+            throw new IOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private static Orden orden(int items) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Cliente Prueba");
+        Orden orden = new Orden();
+        orden.setId(1L);
+        orden.setFecha(LocalDateTime.of(2025, 10, 1, 12, 0));
+        orden.setUsuario(usuario);
+        List<OrdenItem> lista = new ArrayList<>();
+        double total = 0;
+        for (int i = 0; i < items; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto de prueba " + i);
+            lista.add(new OrdenItem(null, orden, producto, 1 + i % 3, 990.0 + i));
+            total += (1 + i % 3) * (990.0 + i);
+        }
+        orden.setItems(lista);
+        orden.setTotal(total);
+        return orden;
+    }
+}
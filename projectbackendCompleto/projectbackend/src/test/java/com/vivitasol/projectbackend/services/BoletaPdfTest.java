@@ -0,0 +1,74 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+
+class BoletaPdfTest {
+
+    private final BoletaPdf boletaPdf = new BoletaPdf();
+
+    @Test
+    void boletaLargaSigueEnOtrasPaginasConLaCabecera() throws IOException {
+        PdfReader reader = new PdfReader(generar(orden(120, "Producto")));
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+
+        assertTrue(reader.getNumberOfPages() > 1);
+        String primera = extractor.getTextFromPage(1);
+        assertTrue(primera.contains("Boleta de Compra"));
+        assertTrue(primera.contains("Cliente: Cliente Prueba"));
+        String ultima = extractor.getTextFromPage(reader.getNumberOfPages());
+        assertTrue(ultima.contains("Subtotal"));
+        assertTrue(ultima.contains("Producto 119"));
+        assertTrue(ultima.contains("Total: $"));
+    }
+
+    @Test
+    void nombreLargoSeCortaSinPisarLaCantidad() throws IOException {
+        String largo = "Producto con un nombre tan largo que no cabe en la columna de la boleta";
+        PdfReader reader = new PdfReader(generar(orden(1, largo)));
+        String texto = new PdfTextExtractor(reader).getTextFromPage(1);
+
+        assertFalse(texto.contains(largo));
+        assertTrue(texto.contains("Producto con un nombre"));
+        assertTrue(texto.contains("…"));
+    }
+
+    private byte[] generar(Orden orden) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        boletaPdf.escribir(orden, salida);
+        return salida.toByteArray();
+    }
+
+    private static Orden orden(int items, String nombre) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Cliente Prueba");
+        Orden orden = new Orden();
+        orden.setId(7L);
+        orden.setFecha(LocalDateTime.of(2025, 10, 1, 12, 0));
+        orden.setUsuario(usuario);
+        List<OrdenItem> lista = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Producto producto = new Producto();
+            producto.setNombre(items > 1 ? nombre + " " + i : nombre);
+            lista.add(new OrdenItem(null, orden, producto, 2, 990.0));
+        }
+        orden.setItems(lista);
+        orden.setTotal(items * 1980.0);
+        return orden;
+    }
+}
@@ -0,0 +1,166 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.events.OrdenEliminadaEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CacheBoletasTest {
+
+    @TempDir
+    Path carpeta;
+
+    private MeterRegistry meterRegistry;
+    private CacheBoletas cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = nuevaCache(DataSize.ofMegabytes(10));
+    }
+
+    private CacheBoletas nuevaCache(DataSize tamanoMaximo) throws IOException {
+        CacheBoletas nueva = new CacheBoletas();
+        ReflectionTestUtils.setField(nueva, "boletaPdf", new BoletaPdf());
+        ReflectionTestUtils.setField(nueva, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(nueva, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(nueva, "tamanoMaximo", tamanoMaximo);
+        nueva.iniciar();
+        return nueva;
+    }
+
+    private static Orden orden(Long id, double total) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Ana");
+        Producto producto = new Producto();
+        producto.setNombre("Jugo de Naranja");
+        Orden orden = new Orden(id, usuario, LocalDateTime.of(2025, 3, 10, 12, 0), total, null);
+        orden.setItems(List.of(new OrdenItem(1L, orden, producto, 2, total / 2)));
+        return orden;
+    }
+
+    private byte[] leer(Orden orden, long desde, long cantidad) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (CacheBoletas.BoletaEnDisco boleta = cache.abrir(orden)) {
+            cache.enviar(boleta, desde, cantidad < 0 ? boleta.tamano() : cantidad, salida);
+        }
+        return salida.toByteArray();
+    }
+
+    private double consultas(String resultado) {
+        return meterRegistry.counter("boletas.cache.consultas", "resultado", resultado).count();
+    }
+
+    private List<Path> pdfs() throws IOException {
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.filter(p -> p.toString().endsWith(".pdf")).toList();
+        }
+    }
+
+    @Test
+    void segundaLectura_SaleDelDiscoConLosMismosBytes() throws IOException {
+        byte[] primera = leer(orden(1L, 2000.0), 0, -1);
+        byte[] segunda = leer(orden(1L, 2000.0), 0, -1);
+
+        assertArrayEquals(primera, segunda);
+        assertTrue(new String(primera, 0, 5).startsWith("%PDF"));
+        assertEquals(1, consultas("fallo"));
+        assertEquals(1, consultas("acierto"));
+        assertEquals(2.0 * primera.length, meterRegistry.counter("boletas.cache.bytes.servidos").count());
+    }
+
+    @Test
+    void tramo_CopiaSoloEsosBytes() throws IOException {
+        byte[] completa = leer(orden(1L, 2000.0), 0, -1);
+        byte[] tramo = leer(orden(1L, 2000.0), 10, 20);
+
+        assertEquals(20, tramo.length);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(completa[10 + i], tramo[i]);
+        }
+    }
+
+    @Test
+    void ordenConOtrosDatos_CambiaEtagYReemplazaElArchivo() throws IOException {
+        String antes = cache.etag(orden(1L, 2000.0));
+        leer(orden(1L, 2000.0), 0, -1);
+        leer(orden(1L, 3000.0), 0, -1);
+
+        assertNotEquals(antes, cache.etag(orden(1L, 3000.0)));
+        assertEquals(1, pdfs().size());
+        assertEquals(1, cache.cantidad());
+    }
+
+    @Test
+    void sobreElTope_BorraLaMenosUsada() throws IOException {
+        long tamano = leer(orden(1L, 1000.0), 0, -1).length;
+        cache = nuevaCache(DataSize.ofBytes(tamano * 2 + tamano / 2));
+        leer(orden(2L, 1000.0), 0, -1);
+        // Se vuelve a usar la 1: la menos usada pasa a ser la 2
+        leer(orden(1L, 1000.0), 0, -1);
+        leer(orden(3L, 1000.0), 0, -1);
+
+        assertEquals(2, cache.cantidad());
+        List<String> nombres = pdfs().stream().map(p -> p.getFileName().toString()).toList();
+        assertTrue(nombres.stream().anyMatch(n -> n.startsWith("boleta-1-")));
+        assertTrue(nombres.stream().anyMatch(n -> n.startsWith("boleta-3-")));
+        assertTrue(cache.bytesEnCache() <= tamano * 2 + tamano / 2);
+    }
+
+    @Test
+    void alArrancar_RecuperaLasBoletasDeLaCarpeta() throws IOException {
+        leer(orden(1L, 2000.0), 0, -1);
+        Files.createFile(carpeta.resolve("boleta-123.tmp"));
+
+        cache = nuevaCache(DataSize.ofMegabytes(10));
+        leer(orden(1L, 2000.0), 0, -1);
+
+        assertEquals(1, consultas("acierto"));
+        assertFalse(Files.exists(carpeta.resolve("boleta-123.tmp")));
+    }
+
+    @Test
+    void ifNoneMatch_ComparaCadaEtiquetaCompleta() {
+        String etag = cache.etag(orden(1L, 2000.0));
+        String otra = cache.etag(orden(11L, 2000.0));
+
+        assertTrue(CacheBoletas.noModificado(otra + ", " + etag, etag));
+        assertTrue(CacheBoletas.noModificado("W/" + etag, etag));
+        assertTrue(CacheBoletas.noModificado("*", etag));
+        // Una etiqueta que contiene a la otra no coincide
+        assertFalse(CacheBoletas.noModificado("\"x" + etag.substring(1), etag));
+        assertFalse(CacheBoletas.noModificado(etag.substring(0, etag.length() - 1) + "0\"", etag));
+        assertFalse(CacheBoletas.noModificado(null, etag));
+    }
+
+    @Test
+    void eliminarOrden_BorraSuBoleta() throws IOException {
+        leer(orden(1L, 2000.0), 0, -1);
+        leer(orden(2L, 2000.0), 0, -1);
+
+        cache.alEliminarOrden(new OrdenEliminadaEvent(1L, null));
+
+        assertEquals(1, pdfs().size());
+        assertEquals(1, cache.cantidad());
+    }
+}
@@ -0,0 +1,192 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivitasol.projectbackend.dto.CambiosCatalogo;
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class CatalogoProductosTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private CatalogoProductos catalogo;
+
+    private Producto leche;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        leche = new Producto(1L, "Leche", "1L", 900L, 5, null, true, null);
+        when(productoRepositories.findAll(any(Sort.class))).thenReturn(List.of(leche));
+    }
+
+    @Test
+    void snapshot_SeReutilizaMientrasNoCambieLaVersion() {
+        CatalogoProductos.Snapshot primero = catalogo.snapshot();
+        assertSame(primero, catalogo.snapshot());
+        verify(productoRepositories, times(1)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void conFacetas_ReutilizaElSnapshot() throws IOException {
+        Facetas facetas = new Facetas(1L, 1L, List.of(), List.of());
+        byte[] cuerpo = catalogo.conFacetas(facetas);
+
+        JsonNode leido = objectMapper.readTree(cuerpo);
+        assertEquals(1, leido.get("productos").size());
+        assertEquals("Leche", leido.get("productos").get(0).get("nombre").asText());
+        assertEquals(1L, leido.get("facetas").get("total").asLong());
+        catalogo.conFacetas(facetas);
+        verify(productoRepositories, times(1)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void cambios_SubenLaVersionYReconstruyen() throws IOException {
+        CatalogoProductos.Snapshot antes = catalogo.snapshot();
+        leche.setStock(4);
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.stock(leche));
+        CatalogoProductos.Snapshot despues = catalogo.snapshot();
+
+        assertEquals(antes.version() + 1, despues.version());
+        assertNotEquals(antes.etag(), despues.etag());
+        assertTrue(new String(despues.json()).contains("\"stock\":4"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(despues.gzip()))) {
+            assertArrayEquals(despues.json(), in.readAllBytes());
+        }
+
+        catalogo.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ACTUALIZADA, 1L));
+        assertEquals(despues.version() + 1, catalogo.version());
+    }
+
+    @Test
+    void cambiosDeStock_NoRearmanAntesDelRetraso() {
+        ReflectionTestUtils.setField(catalogo, "retrasoStockMs", 60_000L);
+        CatalogoProductos.Snapshot antes = catalogo.snapshot();
+        for (int i = 0; i < 100; i++) {
+            catalogo.alCambiarProducto(ProductoCambiadoEvent.stock(leche));
+        }
+
+        assertSame(antes, catalogo.snapshot());
+        verify(productoRepositories, times(1)).findAll(any(Sort.class));
+        // El stock sigue llegando por la sincronización incremental
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(leche));
+        assertEquals(List.of(leche), catalogo.cambiosDesde(antes.version()).getProductos());
+
+        // Un cambio que no es de stock rearma enseguida
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.actualizado(leche));
+        assertEquals(catalogo.version(), catalogo.snapshot().version());
+        verify(productoRepositories, times(2)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void cambiosDeStock_SeRearmanPasadoElRetraso() throws InterruptedException {
+        ReflectionTestUtils.setField(catalogo, "retrasoStockMs", 50L);
+        CatalogoProductos.Snapshot antes = catalogo.snapshot();
+        leche.setStock(4);
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.stock(leche));
+        assertSame(antes, catalogo.snapshot());
+
+        Thread.sleep(60);
+
+        assertTrue(new String(catalogo.snapshot().json()).contains("\"stock\":4"));
+        assertEquals(catalogo.version(), catalogo.snapshot().version());
+    }
+
+    @Test
+    void etag_DependeSoloDelContenido() {
+        CatalogoProductos.Snapshot antes = catalogo.snapshot();
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.actualizado(leche));
+        assertEquals(antes.etag(), catalogo.snapshot().etag());
+    }
+
+    @Test
+    void noModificado_AceptaListasYVariantes() {
+        CatalogoProductos.Snapshot s = catalogo.snapshot();
+        assertTrue(s.etag().startsWith("\"") && s.etagGzip().endsWith("-gzip\""));
+        assertTrue(s.noModificado(s.etag()));
+        assertTrue(s.noModificado("\"otro\", W/" + s.etagGzip()));
+        assertTrue(s.noModificado("*"));
+        assertFalse(s.noModificado("\"otro\""));
+        assertFalse(s.noModificado(null));
+        assertFalse(Arrays.equals(s.json(), s.gzip()));
+    }
+
+    @Test
+    void cambiosDesde_DevuelveSoloLoModificadoYBajas() {
+        long desde = catalogo.version();
+        Producto pan = new Producto(2L, "Pan", "Unidad", 300L, 20, null, true, null);
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(pan, leche));
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.stock(leche));
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.creado(pan));
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.creado(new Producto(3L, "Queso", "", 1L, 1, null, true, null)));
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.eliminado(3L));
+
+        CambiosCatalogo cambios = catalogo.cambiosDesde(desde);
+        assertFalse(cambios.getCompleto());
+        assertEquals(desde + 4, cambios.getVersion());
+        assertEquals(List.of(1L, 2L), cambios.getProductos().stream().map(Producto::getId).toList());
+        assertEquals(List.of(3L), cambios.getEliminados());
+
+        CambiosCatalogo sinCambios = catalogo.cambiosDesde(cambios.getVersion());
+        assertTrue(sinCambios.getProductos().isEmpty());
+        assertTrue(sinCambios.getEliminados().isEmpty());
+    }
+
+    @Test
+    void cambiosDesde_ProductoBorradoDespuesDelRegistro_EsBaja() {
+        long desde = catalogo.version();
+        when(productoRepositories.findAllById(any())).thenReturn(List.of());
+        catalogo.alCambiarProducto(ProductoCambiadoEvent.actualizado(leche));
+        assertEquals(List.of(1L), catalogo.cambiosDesde(desde).getEliminados());
+    }
+
+    @Test
+    void cambiosDesde_ClienteMuyAtrasado_RecibeCatalogoCompleto() {
+        long desde = catalogo.version();
+        for (int i = 0; i <= CatalogoProductos.CAPACIDAD_REGISTRO; i++) {
+            catalogo.alCambiarProducto(ProductoCambiadoEvent.stock(leche));
+        }
+        CambiosCatalogo cambios = catalogo.cambiosDesde(desde);
+        assertTrue(cambios.getCompleto());
+        assertEquals(List.of(leche), cambios.getProductos());
+        assertFalse(catalogo.cambiosDesde(desde + 1).getCompleto());
+    }
+
+    @Test
+    void cambiosDesde_VersionDesconocidaOCambioDeCategoria_RecibeCatalogoCompleto() {
+        long desde = catalogo.version();
+        assertTrue(catalogo.cambiosDesde(0).getCompleto());
+        assertTrue(catalogo.cambiosDesde(desde + 100).getCompleto());
+        catalogo.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ACTUALIZADA, 1L));
+        assertTrue(catalogo.cambiosDesde(desde).getCompleto());
+        assertFalse(catalogo.cambiosDesde(catalogo.version()).getCompleto());
+    }
+}
@@ -0,0 +1,176 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.search.IndiceProductos;
+
+/**
+ * Órdenes por segundo con 1, 16 y 256 clientes, cada orden en su propia
+ * transacción y con el commit agrupado. Corre contra H2 en memoria, así
+ * que los números sirven para comparar los modos, no como capacidad real:
+ * contra MySQL el costo de cada commit (fsync) es mucho mayor. Solo corre
+ * con -Prendimiento.
+ */
+@DataJpaTest(properties = {
+    // Con 256 clientes en una sola CPU la espera por el bloqueo de fila pasa el segundo de H2
+    "spring.datasource.url=jdbc:h2:mem:rendimiento;LOCK_TIMEOUT=10000",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false",
+    "stock.caliente.directorio=target/stock-caliente-rendimiento"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ OrdenServiceImpl.class, ProductoServicesImpl.class, StockCaliente.class, RetencionesStock.class,
+        InvalidacionCacheProductos.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("rendimiento")
+class CommitAgrupadoRendimientoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitAgrupadoRendimientoTest.class);
+
+    private static final int PRODUCTOS = 100;
+    private static final int STOCK_INICIAL = 10_000;
+    private static final int ORDENES = 512;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private ProductoRepositories productoRepositories;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CategoriaServices categoriaServices;
+
+    @MockitoBean
+    private IndiceProductos indiceProductos;
+
+    @MockitoBean
+    private IndiceStock indiceStock;
+
+    @MockitoBean
+    private FacetasProductos facetasProductos;
+
+    @MockitoBean
+    private CacheManager cacheManager;
+
+    private final List<Long> productos = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Producto p = new Producto(null, "Prod" + i, "Desc", 990L, STOCK_INICIAL, null, true, null);
+            productos.add(productoRepositories.save(p).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        usarGrupo(false);
+        // orden_item no siempre apunta a su orden, por eso se borra aparte
+        jdbcTemplate.update("delete from orden_item");
+        jdbcTemplate.update("delete from orden");
+        productoRepositories.deleteAll();
+    }
+
+    // Los dos modos se miden intercalados, después de una vuelta sin medir para el JIT
+    @Test
+    void ordenesPorSegundo() throws InterruptedException {
+        crearEnParalelo(16);
+        usarGrupo(true);
+        crearEnParalelo(16);
+        int creadas = 2 * ORDENES;
+        for (int clientes : new int[] { 1, 16, 256 }) {
+            for (boolean agrupado : new boolean[] { false, true }) {
+                usarGrupo(agrupado);
+                long milisegundos = crearEnParalelo(clientes);
+                log.info("{}: {} órdenes con {} clientes en {} ms ({} órdenes/s)",
+                        agrupado ? "commit agrupado" : "una transacción por orden", ORDENES, clientes,
+                        milisegundos, ORDENES * 1000L / Math.max(1, milisegundos));
+                creadas += ORDENES;
+                assertEquals(creadas, ordenRepository.count());
+            }
+        }
+        int vendidas = productoRepositories.findAllById(productos).stream()
+                .mapToInt(p -> STOCK_INICIAL - p.getStock())
+                .sum();
+        assertEquals(creadas, vendidas);
+    }
+
+    private void usarGrupo(boolean activo) throws InterruptedException {
+        OrdenServiceImpl impl = AopTestUtils.getUltimateTargetObject(ordenService);
+        impl.detener();
+        ReflectionTestUtils.setField(impl, "agrupador", null);
+        ReflectionTestUtils.setField(impl, "grupoActivo", activo);
+        impl.iniciar();
+    }
+
+    private long crearEnParalelo(int clientes) throws InterruptedException {
+        AtomicInteger siguiente = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        long inicio;
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clientes; c++) {
+                hilos.submit(() -> {
+                    largada.await();
+                    for (int n = siguiente.getAndIncrement(); n < ORDENES; n = siguiente.getAndIncrement()) {
+                        try {
+                            ordenService.crearOrden(orden(productos.get(n % PRODUCTOS)));
+                        } catch (RuntimeException e) {
+                            log.error("Orden rechazada", e);
+                        }
+                    }
+                    return null;
+                });
+            }
+            inicio = System.nanoTime();
+            largada.countDown();
+            hilos.shutdown();
+            hilos.awaitTermination(2, TimeUnit.MINUTES);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    private static Orden orden(Long productoId) {
+        Producto producto = new Producto();
+        producto.setId(productoId);
+        Orden orden = new Orden();
+        orden.setItems(new ArrayList<>(List.of(new OrdenItem(null, null, producto, 1, 990.0))));
+        return orden;
+    }
+}
@@ -0,0 +1,185 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+class ExportadorBoletasTest {
+
+    @TempDir
+    Path carpeta;
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private ExportadorBoletas exportador;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CacheBoletas cacheBoletas;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        CacheBoletas cache = new CacheBoletas();
+        ReflectionTestUtils.setField(cache, "boletaPdf", new BoletaPdf());
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(cache, "tamanoMaximo", DataSize.ofMegabytes(10));
+        cache.iniciar();
+        cacheBoletas = spy(cache);
+        ReflectionTestUtils.setField(exportador, "cacheBoletas", cacheBoletas);
+        ReflectionTestUtils.setField(exportador, "hilos", 3);
+        ReflectionTestUtils.setField(exportador, "ventana", 4);
+        exportador.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        exportador.detener();
+    }
+
+    private static Orden orden(long id) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Ana");
+        return new Orden(id, usuario, LocalDateTime.of(2025, 3, 1, 9, 0).plusHours(id), 1980.0, null);
+    }
+
+    private void conOrdenes(List<Orden> ordenes) {
+        when(ordenRepository.recorrerEntre(any(), any())).thenReturn(ordenes.stream());
+        when(ordenRepository.itemsDeOrdenes(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            List<OrdenItem> items = new ArrayList<>();
+            for (Orden orden : ordenes) {
+                if (ids.contains(orden.getId())) {
+                    Producto producto = new Producto();
+                    producto.setNombre("Jugo " + orden.getId());
+                    items.add(new OrdenItem(orden.getId(), orden, producto, 2, 990.0));
+                }
+            }
+            return items;
+        });
+    }
+
+    private List<String> exportar() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportador.exportar(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31), salida);
+        List<String> nombres = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            for (ZipEntry entrada = zip.getNextEntry(); entrada != null; entrada = zip.getNextEntry()) {
+                byte[] pdf = zip.readAllBytes();
+                assertEquals("%PDF", new String(pdf, 0, 4), entrada.getName());
+                nombres.add(entrada.getName());
+            }
+        }
+        return nombres;
+    }
+
+    @Test
+    void unaEntradaPorOrdenEnElOrdenDelCursor() throws IOException {
+        conOrdenes(LongStream.rangeClosed(1, 10).mapToObj(ExportadorBoletasTest::orden).toList());
+
+        List<String> nombres = exportar();
+
+        assertEquals(LongStream.rangeClosed(1, 10).mapToObj(id -> "boleta_orden_" + id + ".pdf").toList(), nombres);
+        // Lotes de 4, 4 y 2: una consulta de items por lote y el contexto se vacía después de cada uno
+        verify(ordenRepository, times(3)).itemsDeOrdenes(anyCollection());
+        verify(entityManager, times(3)).clear();
+    }
+
+    @Test
+    void boletaLentaNoCambiaElOrdenDelZip() throws IOException {
+        conOrdenes(LongStream.rangeClosed(1, 6).mapToObj(ExportadorBoletasTest::orden).toList());
+        doAnswer(inv -> {
+            Orden orden = inv.getArgument(0);
+            if (orden.getId() == 1L) {
+                Thread.sleep(200);
+            }
+            return inv.callRealMethod();
+        }).when(cacheBoletas).abrirSinGuardar(any());
+
+        assertEquals(List.of("boleta_orden_1.pdf", "boleta_orden_2.pdf", "boleta_orden_3.pdf",
+                "boleta_orden_4.pdf", "boleta_orden_5.pdf", "boleta_orden_6.pdf"), exportar());
+    }
+
+    @Test
+    void reutilizaLasBoletasQueYaEstanEnDiscoSinGuardarLasNuevas() throws IOException {
+        List<Orden> ordenes = LongStream.rangeClosed(1, 3).mapToObj(ExportadorBoletasTest::orden).toList();
+        conOrdenes(ordenes);
+        exportar();
+        assertEquals(0, cacheBoletas.cantidad());
+
+        // La 1 se descargó sola, con sus items: queda en disco y la exportación la reutiliza
+        Orden primera = orden(1);
+        Producto producto = new Producto();
+        producto.setNombre("Jugo 1");
+        primera.setItems(List.of(new OrdenItem(1L, primera, producto, 2, 990.0)));
+        cacheBoletas.abrir(primera).close();
+        conOrdenes(LongStream.rangeClosed(1, 3).mapToObj(ExportadorBoletasTest::orden).toList());
+
+        exportar();
+
+        assertEquals(6, meterRegistry.counter("boletas.cache.consultas", "resultado", "fallo").count());
+        assertEquals(1, meterRegistry.counter("boletas.cache.consultas", "resultado", "acierto").count());
+        assertEquals(1, cacheBoletas.cantidad());
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            assertEquals(1, archivos.count());
+        }
+    }
+
+    @Test
+    void falloAlGenerarCortaLaExportacion() throws IOException {
+        conOrdenes(LongStream.rangeClosed(1, 6).mapToObj(ExportadorBoletasTest::orden).toList());
+        doThrow(new IOException("disco lleno")).when(cacheBoletas).abrirSinGuardar(argThat(o -> o.getId() == 3L));
+
+        IOException e = assertThrows(IOException.class,
+                () -> exportador.exportar(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31), new ByteArrayOutputStream()));
+        assertEquals("disco lleno", e.getMessage());
+    }
+
+    @Test
+    void desdePosteriorAHastaEsInvalido() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportadorBoletas.validarRango(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 3, 1)));
+        assertDoesNotThrow(() -> ExportadorBoletas.validarRango(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1)));
+    }
+}
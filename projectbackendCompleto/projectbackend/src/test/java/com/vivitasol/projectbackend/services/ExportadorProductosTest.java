@@ -0,0 +1,94 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+import jakarta.persistence.EntityManager;
+
+class ExportadorProductosTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ExportadorProductos exportador;
+
+    private final Categoria lacteos = new Categoria(4L, "Lacteos", null);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private String exportar(String formato) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportador.exportar(formato, salida);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void csv_EscapaCamposYUsaCabecera() throws IOException {
+        when(productoRepositories.recorrerTodos()).thenReturn(Stream.of(
+                new Producto(1L, "Leche", "Entera, 1L", 900L, 5, "/img/leche.svg", true, lacteos),
+                new Producto(2L, "Queso \"Chihuahua\"", null, null, 0, null, false, null)));
+        String csv = exportar(ExportadorProductos.CSV);
+        assertEquals("id,nombre,descripcion,precio,stock,activo,categoria_id,categoria,imagen_url\r\n"
+                + "1,Leche,\"Entera, 1L\",900,5,true,4,Lacteos,/img/leche.svg\r\n"
+                + "2,\"Queso \"\"Chihuahua\"\"\",,,0,false,,,\r\n", csv);
+    }
+
+    @Test
+    void ndjson_UnaLineaPorProducto() throws IOException {
+        when(productoRepositories.recorrerTodos()).thenReturn(Stream.of(
+                new Producto(1L, "Leche", "1L", 900L, 5, null, true, lacteos),
+                new Producto(2L, "Pan", "Unidad", 300L, 20, null, true, null)));
+        String[] lineas = exportar(ExportadorProductos.NDJSON).split("\n");
+        assertEquals(2, lineas.length);
+        assertEquals("Lacteos", objectMapper.readTree(lineas[0]).get("categoria").get("nombre").asText());
+        assertEquals(2L, objectMapper.readTree(lineas[1]).get("id").asLong());
+    }
+
+    @Test
+    void exportar_VaciaElContextoDePersistenciaPorLotes() throws IOException {
+        when(productoRepositories.recorrerTodos()).thenReturn(LongStream.rangeClosed(1, 2500)
+                .mapToObj(id -> new Producto(id, "P" + id, "", 100L, 1, null, true, null)));
+        exportar(ExportadorProductos.CSV);
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void exportar_FormatoInvalido_LanzaIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> exportar("xml"));
+        assertFalse(ExportadorProductos.formatoValido(null));
+    }
+
+    @Test
+    void campoCsv_SinCaracteresEspeciales_QuedaIgual() {
+        assertEquals("Pan", ExportadorProductos.campoCsv("Pan"));
+        assertEquals("\"a\nb\"", ExportadorProductos.campoCsv("a\nb"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.dto.Facetas;
+import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class FacetasProductosTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private CategoriaServices categoriaServices;
+
+    @InjectMocks
+    private FacetasProductos facetas;
+
+    private final Categoria bebidas = new Categoria(1L, "Bebidas", null);
+    private final Categoria snacks = new Categoria(2L, "Snacks", null);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(categoriaServices.listarTodas()).thenReturn(List.of(bebidas, snacks));
+        when(productoRepositories.findBy(any(Specification.class), any())).thenReturn(Arrays.asList(
+                new Producto(1L, "Jugo", "", 1200L, 10, null, true, bebidas),
+                new Producto(2L, "Agua", "", 500L, 0, null, true, bebidas),
+                new Producto(3L, "Papas", "", 1000L, 12, null, true, snacks),
+                new Producto(4L, "Galletas", "", 800L, 5, null, false, snacks)));
+        facetas.reconstruir();
+    }
+
+    private static long cantidad(Facetas f, Long categoriaId) {
+        return f.getCategorias().stream().filter(c -> Objects.equals(c.getId(), categoriaId))
+                .findFirst().map(Facetas.FacetaCategoria::getCantidad).orElse(-1L);
+    }
+
+    @Test
+    void globales_CuentaSoloActivos() {
+        Facetas f = facetas.globales(null);
+        assertEquals(3L, f.getTotal());
+        assertEquals(2L, f.getEnStock());
+        assertEquals(2L, cantidad(f, 1L));
+        assertEquals(1L, cantidad(f, 2L));
+        assertEquals(1L, f.getPrecios().get(0).getCantidad());
+        assertEquals(2L, f.getPrecios().get(1).getCantidad());
+        assertNull(f.getPrecios().get(FacetasProductos.LIMITES_PRECIO.length).getHasta());
+    }
+
+    @Test
+    void globales_ConCategoria_NoFiltraLosConteosPorCategoria() {
+        Facetas f = facetas.globales(2L);
+        assertEquals(1L, f.getTotal());
+        assertEquals(2L, cantidad(f, 1L));
+    }
+
+    @Test
+    void cambios_AjustanLosContadores() {
+        facetas.alCambiarProducto(ProductoCambiadoEvent.stock(new Producto(2L, "Agua", "", 500L, 8, null, true, bebidas)));
+        facetas.alCambiarProducto(ProductoCambiadoEvent.actualizado(new Producto(4L, "Galletas", "", 800L, 5, null, true, snacks)));
+        facetas.alCambiarProducto(ProductoCambiadoEvent.eliminado(1L));
+        Facetas f = facetas.globales(null);
+        assertEquals(3L, f.getTotal());
+        assertEquals(3L, f.getEnStock());
+        assertEquals(1L, cantidad(f, 1L));
+        assertEquals(2L, cantidad(f, 2L));
+    }
+
+    @Test
+    void eliminarCategoria_PasaSusProductosASinCategoria() {
+        facetas.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ELIMINADA, 1L));
+        when(categoriaServices.listarTodas()).thenReturn(List.of(snacks));
+        Facetas f = facetas.globales(null);
+        assertEquals(2L, cantidad(f, null));
+        assertEquals(3L, f.getTotal());
+        facetas.alCambiarProducto(ProductoCambiadoEvent.eliminado(2L));
+        assertEquals(1L, cantidad(facetas.globales(null), null));
+    }
+
+    @Test
+    void calcular_SobreResultadoDeBusqueda() {
+        Facetas f = facetas.calcular(List.of(new Producto(9L, "X", "", 20000L, 0, null, true, snacks)), null);
+        assertEquals(1L, f.getTotal());
+        assertEquals(0L, f.getEnStock());
+        assertEquals(0L, cantidad(f, 1L));
+        assertEquals(1L, f.getPrecios().get(FacetasProductos.LIMITES_PRECIO.length).getCantidad());
+    }
+
+    @Test
+    void rango_RespetaLimites() {
+        assertEquals(-1, FacetasProductos.rangoDePrecio(null));
+        assertEquals(0, FacetasProductos.rangoDePrecio(999L));
+        assertEquals(1, FacetasProductos.rangoDePrecio(1000L));
+        assertEquals(4, FacetasProductos.rangoDePrecio(10000L));
+    }
+}
@@ -0,0 +1,183 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vivitasol.projectbackend.entities.ClaveIdempotencia;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.repositories.ClaveIdempotenciaRepository;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+class IdempotenciaOrdenesTest {
+
+    @Mock
+    private OrdenService ordenService;
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @Mock
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @InjectMocks
+    private IdempotenciaOrdenes idempotencia;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(idempotencia, "maximo", 1_000L);
+        ReflectionTestUtils.setField(idempotencia, "ttlMinutos", 60L);
+        idempotencia.iniciar();
+    }
+
+    private static Orden orden(long id) {
+        Orden o = new Orden();
+        o.setId(id);
+        return o;
+    }
+
+    @Test
+    void lasRepeticionesConcurrentesEsperanALaPrimera() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        AtomicInteger creadas = new AtomicInteger();
+        when(ordenService.crearOrden(any(Orden.class))).thenAnswer(inv -> {
+            creadas.incrementAndGet();
+            enCurso.countDown();
+            soltar.await();
+            return orden(7);
+        });
+
+        List<Future<IdempotenciaOrdenes.Resultado>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            resultados.add(hilos.submit(() -> idempotencia.crearOrden(1L, "k", new Orden())));
+            enCurso.await();
+            for (int i = 0; i < 20; i++) {
+                resultados.add(hilos.submit(() -> idempotencia.crearOrden(1L, "k", new Orden())));
+            }
+            soltar.countDown();
+        }
+
+        assertEquals(1, creadas.get());
+        int repetidas = 0;
+        for (Future<IdempotenciaOrdenes.Resultado> r : resultados) {
+            assertEquals(7L, r.get().orden().getId());
+            repetidas += r.get().repetida() ? 1 : 0;
+        }
+        assertEquals(20, repetidas);
+        verifyNoInteractions(claveIdempotenciaRepository, ordenRepository);
+    }
+
+    @Test
+    void unErrorNoSeGuardaYLaClaveSePuedeReintentar() {
+        when(ordenService.crearOrden(any(Orden.class)))
+                .thenThrow(new StockInsuficienteException("No hay suficiente stock disponible"))
+                .thenReturn(orden(3));
+
+        assertThrows(StockInsuficienteException.class, () -> idempotencia.crearOrden(1L, "k", new Orden()));
+        IdempotenciaOrdenes.Resultado r = idempotencia.crearOrden(1L, "k", new Orden());
+
+        assertFalse(r.repetida());
+        assertEquals(3L, r.orden().getId());
+        verify(ordenService, times(2)).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    void clavesDistintasCreanOrdenesDistintas() {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden(1), orden(2));
+
+        assertEquals(1L, idempotencia.crearOrden(1L, "a", new Orden()).orden().getId());
+        assertEquals(2L, idempotencia.crearOrden(1L, "b", new Orden()).orden().getId());
+    }
+
+    @Test
+    void laMismaClaveDeOtroUsuarioEsOtraOrden() {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden(1), orden(2));
+
+        assertEquals(1L, idempotencia.crearOrden(1L, "k", new Orden()).orden().getId());
+        IdempotenciaOrdenes.Resultado r = idempotencia.crearOrden(2L, "k", new Orden());
+
+        assertFalse(r.repetida());
+        assertEquals(2L, r.orden().getId());
+    }
+
+    @Test
+    void laMismaClaveConOtroCuerpoSeRechaza() {
+        when(ordenService.crearOrden(any(Orden.class))).thenReturn(orden(1));
+        idempotencia.crearOrden(1L, "k", new Orden());
+        Orden otra = new Orden();
+        otra.setTotal(5000.0);
+
+        assertThrows(ClaveIdempotenciaReutilizadaException.class, () -> idempotencia.crearOrden(1L, "k", otra));
+        verify(ordenService, times(1)).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    void persistenteConOtroCuerpoSeRechaza() {
+        ReflectionTestUtils.setField(idempotencia, "persistente", true);
+        when(claveIdempotenciaRepository.findById("1:k"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("1:k", 9L, LocalDateTime.now(), "otra-huella")));
+
+        assertThrows(ClaveIdempotenciaReutilizadaException.class, () -> idempotencia.crearOrden(1L, "k", new Orden()));
+        verifyNoInteractions(ordenService);
+    }
+
+    @Test
+    void claveInvalidaSeRechaza() {
+        assertThrows(IllegalArgumentException.class, () -> idempotencia.crearOrden(1L, "", new Orden()));
+        assertThrows(IllegalArgumentException.class, () -> idempotencia.crearOrden(1L, "x".repeat(101), new Orden()));
+        verifyNoInteractions(ordenService);
+    }
+
+    @Test
+    void persistenteDevuelveLaOrdenQueRegistroOtraInstancia() {
+        ReflectionTestUtils.setField(idempotencia, "persistente", true);
+        when(claveIdempotenciaRepository.findById("1:k"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new ClaveIdempotencia("1:k", 9L, LocalDateTime.now(), IdempotenciaOrdenes.huella(new Orden()))));
+        when(ordenService.crearOrden(any(Orden.class), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'k'"));
+        when(ordenRepository.findById(9L)).thenReturn(Optional.of(orden(9)));
+
+        IdempotenciaOrdenes.Resultado r = idempotencia.crearOrden(1L, "k", new Orden());
+
+        assertTrue(r.repetida());
+        assertEquals(9L, r.orden().getId());
+        verify(ordenService, never()).crearOrden(any(Orden.class));
+    }
+
+    @Test
+    void persistenteConClaveNuevaLaRegistraAlCrear() {
+        ReflectionTestUtils.setField(idempotencia, "persistente", true);
+        when(claveIdempotenciaRepository.findById("1:k")).thenReturn(Optional.empty());
+        when(ordenService.crearOrden(any(Orden.class), eq("1:k"), anyString())).thenReturn(orden(4));
+
+        IdempotenciaOrdenes.Resultado r = idempotencia.crearOrden(1L, "k", new Orden());
+
+        assertFalse(r.repetida());
+        assertEquals(4L, r.orden().getId());
+        verify(claveIdempotenciaRepository).borrarAnteriores(any());
+    }
+}
@@ -0,0 +1,82 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class IndiceStockTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @InjectMocks
+    private IndiceStock indiceStock;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Producto conUmbral = producto(4L, 8);
+        conUmbral.setUmbralStock(10);
+        when(productoRepositories.findBy(any(Specification.class), any())).thenReturn(Arrays.asList(
+                producto(1L, 3), producto(2L, 0), producto(3L, 50), conUmbral, producto(5L, 3)));
+        indiceStock.reconstruir();
+    }
+
+    private static Producto producto(Long id, int stock) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre("P" + id);
+        p.setStock(stock);
+        return p;
+    }
+
+    @Test
+    void reconstruir_QuedaListo() {
+        assertTrue(indiceStock.isListo());
+    }
+
+    @Test
+    void stockBajo_OrdenaPorDistanciaAlUmbral() {
+        // Margen: 2 -> -3, 4 -> -2 (umbral propio 10), 1 y 5 -> 0
+        assertArrayEquals(new long[] {2L, 4L, 1L, 5L}, indiceStock.stockBajo(3));
+        assertEquals(4, indiceStock.contarStockBajo(3));
+    }
+
+    @Test
+    void stockBajo_UmbralPropioNoDependeDelGeneral() {
+        assertArrayEquals(new long[] {4L, 2L}, indiceStock.stockBajo(0));
+        assertEquals(5, indiceStock.contarStockBajo(50));
+    }
+
+    @Test
+    void cambiosDeStock_ActualizanElIndice() {
+        indiceStock.alCambiarProducto(ProductoCambiadoEvent.stock(producto(3L, 1)));
+        indiceStock.alCambiarProducto(ProductoCambiadoEvent.stock(producto(1L, 20)));
+        indiceStock.alCambiarProducto(ProductoCambiadoEvent.eliminado(2L));
+        assertArrayEquals(new long[] {3L, 4L, 5L}, indiceStock.stockBajo(3));
+    }
+
+    @Test
+    void cambioDeUmbral_MueveElProducto() {
+        Producto p = producto(4L, 8);
+        indiceStock.alCambiarProducto(ProductoCambiadoEvent.actualizado(p));
+        assertEquals(3, indiceStock.contarStockBajo(3));
+        p.setUmbralStock(8);
+        indiceStock.alCambiarProducto(ProductoCambiadoEvent.actualizado(p));
+        assertArrayEquals(new long[] {2L, 1L, 4L, 5L}, indiceStock.stockBajo(3));
+    }
+}
@@ -0,0 +1,68 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.events.OrdenEliminadaEvent;
+
+class InvalidacionCacheOrdenesTest {
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.ORDENES_USUARIO);
+
+    @InjectMocks
+    private InvalidacionCacheOrdenes invalidacion;
+
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = cacheManager.getCache(CacheConfig.ORDENES_USUARIO);
+        cache.put(1L, "páginas del usuario 1");
+        cache.put(2L, "páginas del usuario 2");
+    }
+
+    private static Orden orden(Long usuarioId) {
+        Orden orden = new Orden();
+        if (usuarioId != null) {
+            Usuario usuario = new Usuario();
+            usuario.setId(usuarioId);
+            orden.setUsuario(usuario);
+        }
+        return orden;
+    }
+
+    @Test
+    void ordenNueva_InvalidaSoloAlUsuarioQueCompro() {
+        invalidacion.alCrearOrden(new OrdenCreadaEvent(orden(1L)));
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+    }
+
+    @Test
+    void ordenSinUsuario_NoInvalidaNada() {
+        invalidacion.alCrearOrden(new OrdenCreadaEvent(orden(null)));
+        assertNotNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+    }
+
+    @Test
+    void ordenEliminada_InvalidaASuDueno() {
+        invalidacion.alEliminarOrden(new OrdenEliminadaEvent(10L, 2L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(1L));
+    }
+}
@@ -0,0 +1,73 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.CategoriaCambiadaEvent;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+
+class InvalidacionCacheProductosTest {
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.PRODUCTOS);
+
+    @InjectMocks
+    private InvalidacionCacheProductos invalidacion;
+
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        cache.put(1L, producto(1L, 10));
+        cache.put(2L, producto(2L, 5));
+    }
+
+    private static Producto producto(Long id, int stock) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setStock(stock);
+        return p;
+    }
+
+    @Test
+    void cambioDeStock_InvalidaSoloEseProducto() {
+        invalidacion.alCambiarProducto(ProductoCambiadoEvent.stock(producto(1L, 9)));
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+    }
+
+    @Test
+    void eliminar_InvalidaElProducto() {
+        invalidacion.alCambiarProducto(ProductoCambiadoEvent.eliminado(2L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(1L));
+    }
+
+    @Test
+    void cambioDeProducto_SubeSuGeneracion() {
+        long antes = invalidacion.generacion(1L);
+        invalidacion.alCambiarProducto(ProductoCambiadoEvent.stock(producto(1L, 9)));
+        assertNotEquals(antes, invalidacion.generacion(1L));
+    }
+
+    @Test
+    void renombrarCategoria_InvalidaTodosLosProductos() {
+        long antes = invalidacion.generacion(2L);
+        invalidacion.alCambiarCategoria(new CategoriaCambiadaEvent(CategoriaCambiadaEvent.Tipo.ACTUALIZADA, 4L));
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotEquals(antes, invalidacion.generacion(2L));
+    }
+}
@@ -0,0 +1,183 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
+
+import com.vivitasol.projectbackend.dto.OrdenFiltro;
+import com.vivitasol.projectbackend.dto.OrdenPerfil;
+import com.vivitasol.projectbackend.dto.OrdenResumen;
+import com.vivitasol.projectbackend.dto.PaginaCursor;
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+class OrdenPaginadoTest {
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.ORDENES_USUARIO);
+
+    @InjectMocks
+    private OrdenServiceImpl ordenService;
+
+    private final LocalDateTime ahora = LocalDateTime.of(2025, 3, 10, 12, 30, 15);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void cursor_IdaYVuelta() {
+        OrdenCursor cursor = new OrdenCursor(ahora, 42L);
+        assertEquals(cursor, OrdenCursor.decodificar(cursor.codificar()));
+    }
+
+    @Test
+    void cursor_Invalido_LanzaIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> OrdenCursor.decodificar("no-es-base64!"));
+        assertThrows(IllegalArgumentException.class, () -> OrdenCursor.decodificar(
+                new ProductoCursor("id", null, 1L).codificar()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void listarPaginado_ConMasFilas_DevuelveCursorSinCargarItems() {
+        when(ordenRepository.findBy(any(Specification.class), any())).thenReturn(List.of(
+                orden(3L, ahora), orden(2L, ahora), orden(1L, ahora.minusDays(1))));
+
+        PaginaCursor<OrdenResumen> pagina = ordenService.listarPaginado(new OrdenFiltro(), null, 2, false);
+
+        assertEquals(2, pagina.getContenido().size());
+        assertTrue(pagina.isHayMas());
+        assertEquals("Ana", pagina.getContenido().get(0).getUsuarioNombre());
+        assertNull(pagina.getContenido().get(0).getItems());
+        assertEquals(new OrdenCursor(ahora, 2L), OrdenCursor.decodificar(pagina.getSiguienteCursor()));
+        verify(ordenRepository, never()).itemsDeOrdenes(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void listarPaginado_ConItems_LosTraeEnUnaConsulta() {
+        Orden primera = orden(2L, ahora);
+        Orden segunda = orden(1L, ahora);
+        when(ordenRepository.findBy(any(Specification.class), any())).thenReturn(List.of(primera, segunda));
+        when(ordenRepository.itemsDeOrdenes(List.of(2L, 1L))).thenReturn(List.of(
+                new OrdenItem(10L, primera, null, 1, 100.0),
+                new OrdenItem(11L, primera, null, 2, 50.0)));
+
+        PaginaCursor<OrdenResumen> pagina = ordenService.listarPaginado(new OrdenFiltro(), null, 5, true);
+
+        assertFalse(pagina.isHayMas());
+        assertNull(pagina.getSiguienteCursor());
+        assertEquals(2, pagina.getContenido().get(0).getItems().size());
+        assertTrue(pagina.getContenido().get(1).getItems().isEmpty());
+        verify(ordenRepository, times(1)).itemsDeOrdenes(anyCollection());
+    }
+
+    @Test
+    void listarPaginado_ParametrosInvalidos_LanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ordenService.listarPaginado(new OrdenFiltro(), null, 0, false));
+        OrdenFiltro alReves = new OrdenFiltro(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1), null, null);
+        assertThrows(IllegalArgumentException.class,
+                () -> ordenService.listarPaginado(alReves, null, 20, false));
+    }
+
+    @Test
+    void listarDeUsuario_SegundaLecturaSaleDeLaCache() {
+        when(ordenRepository.ordenesDeUsuario(7L, Limit.of(3))).thenReturn(List.of(
+                new OrdenPerfil(3L, ahora, 1000.0, 2), new OrdenPerfil(2L, ahora, 500.0, 1),
+                new OrdenPerfil(1L, ahora.minusDays(1), 300.0, 1)));
+
+        PaginaCursor<OrdenPerfil> pagina = ordenService.listarDeUsuario(7L, null, 2);
+        assertSame(pagina, ordenService.listarDeUsuario(7L, null, 2));
+
+        assertEquals(2, pagina.getContenido().size());
+        assertEquals(2, pagina.getContenido().get(0).getCantidadItems());
+        assertEquals(new OrdenCursor(ahora, 2L), OrdenCursor.decodificar(pagina.getSiguienteCursor()));
+        verify(ordenRepository, times(1)).ordenesDeUsuario(7L, Limit.of(3));
+    }
+
+    @Test
+    void listarDeUsuario_ConCursor_SigueDesdeLaUltimaFila() {
+        when(ordenRepository.ordenesDeUsuarioAntesDe(7L, ahora, 2L, Limit.of(3))).thenReturn(List.of(
+                new OrdenPerfil(1L, ahora.minusDays(1), 300.0, 1)));
+
+        PaginaCursor<OrdenPerfil> pagina = ordenService.listarDeUsuario(
+                7L, new OrdenCursor(ahora, 2L).codificar(), 2);
+
+        assertFalse(pagina.isHayMas());
+        assertEquals(1L, pagina.getContenido().get(0).getId());
+    }
+
+    @Test
+    void listarDeUsuario_DespuesDeInvalidar_VuelveALaBase() {
+        when(ordenRepository.ordenesDeUsuario(7L, Limit.of(21))).thenReturn(List.of());
+        ordenService.listarDeUsuario(7L, null, 20);
+
+        cacheManager.getCache(CacheConfig.ORDENES_USUARIO).evict(7L);
+        ordenService.listarDeUsuario(7L, null, 20);
+
+        verify(ordenRepository, times(2)).ordenesDeUsuario(7L, Limit.of(21));
+    }
+
+    @Test
+    void ordenParaBoleta_TieneLaMismaHuellaQueLaEntidad() {
+        Orden entidad = orden(5L, ahora);
+        Producto producto = new Producto();
+        producto.setId(3L);
+        producto.setNombre("Polera");
+        entidad.setItems(List.of(new OrdenItem(10L, entidad, producto, 2, 500.0),
+                new OrdenItem(11L, entidad, null, 1, 0.0)));
+        when(ordenRepository.datosBoleta(5L)).thenReturn(List.of(
+                new Object[] { ahora, 7L, "Ana", 1000.0, 10L, 3L, "Polera", 2, 500.0 },
+                new Object[] { ahora, 7L, "Ana", 1000.0, 11L, null, null, 1, 0.0 }));
+
+        Orden armada = ordenService.ordenParaBoleta(5L);
+
+        BoletaPdf boletaPdf = new BoletaPdf();
+        assertEquals(boletaPdf.huella(entidad), boletaPdf.huella(armada));
+        verify(ordenRepository, never()).findById(any());
+    }
+
+    @Test
+    void ordenParaBoleta_SinItemsOInexistente() {
+        when(ordenRepository.datosBoleta(5L)).thenReturn(List.<Object[]>of(
+                new Object[] { ahora, null, null, 0.0, null, null, null, null, null }));
+
+        assertTrue(ordenService.ordenParaBoleta(5L).getItems().isEmpty());
+        assertNull(ordenService.ordenParaBoleta(5L).getUsuario());
+        assertNull(ordenService.ordenParaBoleta(6L));
+    }
+
+    private Orden orden(Long id, LocalDateTime fecha) {
+        Usuario usuario = new Usuario();
+        usuario.setId(7L);
+        usuario.setNombre("Ana");
+        return new Orden(id, usuario, fecha, 1000.0, null);
+    }
+}
@@ -0,0 +1,163 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.vivitasol.projectbackend.entities.Orden;
+import com.vivitasol.projectbackend.entities.OrdenItem;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.entities.Usuario;
+import com.vivitasol.projectbackend.events.OrdenCreadaEvent;
+import com.vivitasol.projectbackend.repositories.OrdenRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PreGeneracionBoletasTest {
+
+    @TempDir
+    Path carpeta;
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    @InjectMocks
+    private PreGeneracionBoletas preGeneracion;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CacheBoletas cacheBoletas;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        cacheBoletas = new CacheBoletas();
+        ReflectionTestUtils.setField(cacheBoletas, "boletaPdf", new BoletaPdf());
+        ReflectionTestUtils.setField(cacheBoletas, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cacheBoletas, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(cacheBoletas, "tamanoMaximo", DataSize.ofMegabytes(10));
+        cacheBoletas.iniciar();
+        ReflectionTestUtils.setField(preGeneracion, "cacheBoletas", cacheBoletas);
+        ReflectionTestUtils.setField(preGeneracion, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(preGeneracion, "activo", true);
+        ReflectionTestUtils.setField(preGeneracion, "hilos", 1);
+        ReflectionTestUtils.setField(preGeneracion, "capacidad", 1);
+        when(ordenRepository.existsById(anyLong())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        preGeneracion.detener();
+    }
+
+    private static Orden orden(Long id) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Ana");
+        Producto producto = new Producto();
+        producto.setNombre("Jugo de Naranja");
+        Orden orden = new Orden(id, usuario, LocalDateTime.of(2025, 3, 10, 12, 0), 1980.0, null);
+        orden.setItems(List.of(new OrdenItem(1L, orden, producto, 2, 990.0)));
+        return orden;
+    }
+
+    private double pregeneracion(String resultado) {
+        return meterRegistry.counter("boletas.pregeneracion", "resultado", resultado).count();
+    }
+
+    private void esperarLista(Long ordenId) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!preGeneracion.estado(ordenId).isLista() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void alConfirmarLaOrdenLaBoletaQuedaEnDisco() throws Exception {
+        when(ordenRepository.conItems(1L)).thenReturn(Optional.of(orden(1L)));
+        preGeneracion.iniciar();
+
+        // El evento trae la orden sin nombres: se vuelve a leer con sus items
+        preGeneracion.alCrearOrden(new OrdenCreadaEvent(new Orden(1L, null, null, null, null)));
+        esperarLista(1L);
+
+        assertEquals(PreGeneracionBoletas.LISTA, preGeneracion.estado(1L).getEstado());
+        assertTrue(cacheBoletas.contiene(1L));
+        assertEquals(1, pregeneracion("generada"));
+        // La descarga encuentra el mismo archivo
+        try (CacheBoletas.BoletaEnDisco boleta = cacheBoletas.abrir(orden(1L))) {
+            assertTrue(boleta.tamano() > 0);
+        }
+        assertEquals(1, meterRegistry.counter("boletas.cache.consultas", "resultado", "acierto").count());
+    }
+
+    @Test
+    void colaLlenaDejaLaBoletaParaLaDescarga() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        when(ordenRepository.conItems(anyLong())).thenAnswer(inv -> {
+            ocupado.countDown();
+            soltar.await(5, TimeUnit.SECONDS);
+            return Optional.of(orden(inv.getArgument(0)));
+        });
+        preGeneracion.iniciar();
+
+        assertTrue(preGeneracion.encolar(1L));
+        ocupado.await(5, TimeUnit.SECONDS);
+        // Un hilo ocupado con la 1 y lugar para una en la cola
+        assertTrue(preGeneracion.encolar(2L));
+        assertFalse(preGeneracion.encolar(3L));
+
+        assertEquals(1, pregeneracion("descartada"));
+        assertEquals(PreGeneracionBoletas.GENERANDO, preGeneracion.estado(2L).getEstado());
+        assertEquals(PreGeneracionBoletas.PENDIENTE, preGeneracion.estado(3L).getEstado());
+        soltar.countDown();
+        esperarLista(2L);
+        assertTrue(preGeneracion.estado(2L).isLista());
+        assertFalse(preGeneracion.estado(3L).isLista());
+    }
+
+    @Test
+    void ordenBorradaAntesDeGenerarseNoFalla() throws Exception {
+        when(ordenRepository.conItems(5L)).thenReturn(Optional.empty());
+        when(ordenRepository.existsById(5L)).thenReturn(false);
+        preGeneracion.iniciar();
+
+        preGeneracion.encolar(5L);
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (preGeneracion.estado(5L) != null && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertNull(preGeneracion.estado(5L));
+        assertEquals(0, pregeneracion("fallida"));
+        assertEquals(0, cacheBoletas.cantidad());
+    }
+
+    @Test
+    void desactivadaNoEncolaNada() {
+        ReflectionTestUtils.setField(preGeneracion, "activo", false);
+        preGeneracion.iniciar();
+
+        preGeneracion.alCrearOrden(new OrdenCreadaEvent(orden(1L)));
+
+        verifyNoInteractions(ordenRepository);
+        assertEquals(PreGeneracionBoletas.PENDIENTE, preGeneracion.estado(1L).getEstado());
+    }
+}
@@ -0,0 +1,135 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vivitasol.projectbackend.dto.PaginaCursor;
+import com.vivitasol.projectbackend.dto.ProductoFiltro;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+import com.vivitasol.projectbackend.search.IndiceProductos;
+
+class ProductoPaginadoTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private CategoriaServices categoriaServices;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private IndiceProductos indiceProductos;
+
+    @InjectMocks
+    private ProductoServicesImpl productoServices;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void cursor_IdaYVuelta() {
+        ProductoCursor cursor = new ProductoCursor(ProductoCursor.ORDEN_PRECIO, 1500L, 42L);
+        ProductoCursor leido = ProductoCursor.decodificar(cursor.codificar());
+        assertEquals(cursor, leido);
+    }
+
+    @Test
+    void cursor_Invalido_LanzaIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> ProductoCursor.decodificar("no-es-base64!"));
+        assertThrows(IllegalArgumentException.class, () -> ProductoCursor.decodificar(
+                new ProductoCursor("nombre", null, 1L).codificar()));
+    }
+
+    @Test
+    void buscar_SinFiltros_UsaListarTodas() {
+        when(productoRepositories.findAll()).thenReturn(List.of());
+        productoServices.buscar(new ProductoFiltro());
+        verify(productoRepositories).findAll();
+        verify(productoRepositories, never()).findAll(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void buscar_SinPalabraDeTresLetras_UsaElLike() {
+        when(indiceProductos.isListo()).thenReturn(true);
+
+        productoServices.buscar(new ProductoFiltro("ch", null, null, null, null));
+
+        verify(indiceProductos, never()).buscarSubcadena(anyString(), any(), any(), anyInt());
+        verify(productoRepositories).findAll(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void buscar_ConDemasiadasCoincidencias_UsaElLike() {
+        when(indiceProductos.isListo()).thenReturn(true);
+        long[] muchos = new long[ProductoServicesImpl.TAMANO_MAXIMO_PAGINA + 1];
+        Arrays.setAll(muchos, i -> i + 1);
+        when(indiceProductos.buscarSubcadena(eq("choco"), any(), any(), eq(ProductoServicesImpl.TAMANO_MAXIMO_PAGINA + 1)))
+                .thenReturn(muchos);
+
+        productoServices.buscar(new ProductoFiltro("choco", null, null, null, null));
+
+        verify(productoRepositories, never()).findAllById(any());
+        verify(productoRepositories).findAll(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void buscar_PocasCoincidencias_CargaSoloEsas() {
+        when(indiceProductos.isListo()).thenReturn(true);
+        when(indiceProductos.buscarSubcadena(eq("choco"), any(), any(), anyInt())).thenReturn(new long[] {2L, 1L});
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(
+            new Producto(1L, "Chocolate", "", 100L, 1, null, true, null),
+            new Producto(2L, "Chocolatada", "", 900L, 1, null, true, null)));
+
+        List<Producto> productos = productoServices.buscar(new ProductoFiltro("choco", null, null, null, 500L));
+
+        assertEquals(List.of(1L), productos.stream().map(Producto::getId).toList());
+        verify(productoRepositories, never()).findAll(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void listarPaginado_ConMasFilas_DevuelveCursor() {
+        List<Producto> filas = Arrays.asList(
+            new Producto(1L, "A", "", 100L, 1, null, true, null),
+            new Producto(2L, "B", "", 200L, 1, null, true, null),
+            new Producto(3L, "C", "", 300L, 1, null, true, null));
+        when(productoRepositories.findBy(any(Specification.class), any())).thenReturn(filas);
+
+        PaginaCursor<Producto> pagina = productoServices.listarPaginado(new ProductoFiltro(), "precio", null, 2);
+
+        assertEquals(2, pagina.getContenido().size());
+        assertTrue(pagina.isHayMas());
+        ProductoCursor siguiente = ProductoCursor.decodificar(pagina.getSiguienteCursor());
+        assertEquals(200L, siguiente.precio());
+        assertEquals(2L, siguiente.id());
+    }
+
+    @Test
+    void listarPaginado_TamanoInvalido_LanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productoServices.listarPaginado(new ProductoFiltro(), "id", null, 0));
+    }
+}
@@ -1,9 +1,11 @@
 package com.vivitasol.projectbackend.services;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Arrays;
@@ -15,8 +17,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import jakarta.persistence.EntityManager;
+
 import com.vivitasol.projectbackend.entities.Producto;
 import com.vivitasol.projectbackend.repositories.ProductoRepositories;
 import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
@@ -30,6 +35,12 @@ public class ProductoServicesImplTest {
     @Mock
     private CategoriaServices categoriaServices;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
     @InjectMocks
     private ProductoServicesImpl productoServices;
 
@@ -37,6 +48,7 @@ public class ProductoServicesImplTest {
 
     @BeforeEach
     void setUp() {
+        StockPorBaseDeDatos.completar(productoServices);
         producto = new Producto();
         producto.setId(1L);
         producto.setNombre("Test Producto");
@@ -70,24 +82,35 @@ public class ProductoServicesImplTest {
 
     @Test
     void deberiaReducirStockCuandoHaySuficiente() {
+        when(productoRepositories.descontarStock(1L, 5)).thenReturn(1);
+        producto.setStock(5);
         when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
-        when(productoRepositories.save(any(Producto.class))).thenReturn(producto);
 
         Producto resultado = productoServices.reducirStock(1L, 5);
 
         assertEquals(5, resultado.getStock());
-        verify(productoRepositories, times(1)).save(any(Producto.class));
+        verify(productoRepositories, times(1)).descontarStock(1L, 5);
+        verify(productoRepositories, never()).save(any(Producto.class));
     }
 
     @Test
     void deberiaLanzarExcepcionCuandoNoHayStockSuficiente() {
-        when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
+        when(productoRepositories.descontarStock(1L, 15)).thenReturn(0);
+        when(productoRepositories.existsById(1L)).thenReturn(true);
 
         assertThrows(StockInsuficienteException.class, () -> {
             productoServices.reducirStock(1L, 15);
         });
     }
 
+    @Test
+    void deberiaRechazarCantidadNoPositivaAlReducirStock() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            productoServices.reducirStock(1L, 0);
+        });
+        verify(productoRepositories, never()).descontarStock(any(), anyInt());
+    }
+
     @Test
     void deberiaDesactivarProducto() {
         when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
@@ -4,12 +4,15 @@ import static org.mockito.Mockito.*;
 
 import java.util.Optional;
 
+import jakarta.persistence.EntityManager;
+
 import com.vivitasol.projectbackend.entities.Producto;
 import com.vivitasol.projectbackend.repositories.ProductoRepositories;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.mockito.MockitoAnnotations;
 
 class ProductoServicesMoreTest {
@@ -17,12 +20,19 @@ class ProductoServicesMoreTest {
     @Mock
     private ProductoRepositories productoRepositories;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
     @InjectMocks
     private ProductoServicesImpl productoServices;
 
     @BeforeEach
     void setUp(){
         MockitoAnnotations.openMocks(this);
+        StockPorBaseDeDatos.completar(productoServices);
     }
 
     @Test
@@ -36,21 +46,31 @@ class ProductoServicesMoreTest {
 
     @Test
     void reducirStock_valido() {
-        Producto p = new Producto(4L, "Prod4", "Desc4", 300L, 10, "url4", true, null);
+        Producto p = new Producto(4L, "Prod4", "Desc4", 300L, 6, "url4", true, null);
+        when(productoRepositories.descontarStock(4L, 4)).thenReturn(1);
         when(productoRepositories.findById(4L)).thenReturn(Optional.of(p));
-        when(productoRepositories.save(any())).thenAnswer(i -> i.getArgument(0));
         Producto res = productoServices.reducirStock(4L, 4);
         org.junit.jupiter.api.Assertions.assertEquals(6, res.getStock());
+        verify(eventPublisher).publishEvent(any(com.vivitasol.projectbackend.events.ProductoCambiadoEvent.class));
     }
 
     @Test
     void reducirStock_insuficiente_lanzaExcepcion() {
-        Producto p = new Producto(5L, "Prod5", "Desc5", 500L, 2, "url5", true, null);
-        when(productoRepositories.findById(5L)).thenReturn(Optional.of(p));
+        when(productoRepositories.descontarStock(5L, 3)).thenReturn(0);
+        when(productoRepositories.existsById(5L)).thenReturn(true);
         org.junit.jupiter.api.function.Executable code = () -> productoServices.reducirStock(5L, 3);
         org.junit.jupiter.api.Assertions.assertThrows(com.vivitasol.projectbackend.exceptions.StockInsuficienteException.class, code);
     }
 
+    @Test
+    void reducirStock_noExiste_lanzaRuntime() {
+        when(productoRepositories.descontarStock(98L, 1)).thenReturn(0);
+        when(productoRepositories.existsById(98L)).thenReturn(false);
+        org.junit.jupiter.api.function.Executable code = () -> productoServices.reducirStock(98L, 1);
+        RuntimeException e = org.junit.jupiter.api.Assertions.assertThrows(RuntimeException.class, code);
+        org.junit.jupiter.api.Assertions.assertFalse(e instanceof com.vivitasol.projectbackend.exceptions.StockInsuficienteException);
+    }
+
     @Test
     void eliminar_noExiste_lanzaRuntime() {
         when(productoRepositories.existsById(99L)).thenReturn(false);
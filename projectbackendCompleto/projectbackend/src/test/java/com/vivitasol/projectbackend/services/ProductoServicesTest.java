@@ -7,14 +7,24 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.EntityManager;
+
+import com.vivitasol.projectbackend.config.CacheConfig;
 import com.vivitasol.projectbackend.entities.Producto;
 import com.vivitasol.projectbackend.entities.Categoria;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
 import com.vivitasol.projectbackend.repositories.ProductoRepositories;
 import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.mockito.MockitoAnnotations;
 
 class ProductoServicesTest {
@@ -25,12 +35,26 @@ class ProductoServicesTest {
     @Mock
     private CategoriaServices categoriaServices;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.PRODUCTOS);
+
+    @Spy
+    private InvalidacionCacheProductos invalidacionCacheProductos = new InvalidacionCacheProductos();
+
     @InjectMocks
     private ProductoServicesImpl productoServices;
 
     @BeforeEach
     void setUp(){
         MockitoAnnotations.openMocks(this);
+        StockPorBaseDeDatos.completar(productoServices);
+        ReflectionTestUtils.setField(invalidacionCacheProductos, "cacheManager", cacheManager);
     }
 
     @Test
@@ -67,6 +91,77 @@ class ProductoServicesTest {
         assertEquals("Coca Cola", resultado.getNombre());
     }
 
+    @Test
+    void obtenerId_DevuelveCopiasQueNoTocanLaCache() {
+        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 10, "/img/coca.jpg", true,
+                new Categoria(1L, "Bebidas", null));
+        when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
+
+        Producto primera = productoServices.obtenerId(1L);
+        primera.setNombre("Modificado");
+        primera.getCategoria().setNombre("Modificada");
+        Producto segunda = productoServices.obtenerId(1L);
+
+        assertNotSame(producto, primera);
+        assertEquals("Coca Cola", segunda.getNombre());
+        assertEquals("Bebidas", segunda.getCategoria().getNombre());
+        assertEquals("Coca Cola", producto.getNombre());
+        verify(productoRepositories, times(1)).findById(1L);
+    }
+
+    @Test
+    void obtenerId_CambioDuranteLaLectura_NoQuedaEnCache() {
+        Producto anterior = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 10, "/img/coca.jpg", true, null);
+        when(productoRepositories.findById(1L)).thenReturn(Optional.of(anterior));
+        // Un cambio se confirma (e invalida) mientras la lectura todavía trae la fila anterior
+        doReturn(4L).doReturn(5L).when(invalidacionCacheProductos).generacion(1L);
+
+        assertEquals(10, productoServices.obtenerId(1L).getStock());
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCTOS).get(1L));
+    }
+
+    @Test
+    void obtenerId_DentroDeUnaTransaccion_NoLlenaLaCache() {
+        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 10, "/img/coca.jpg", true, null);
+        when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("Coca Cola", productoServices.obtenerId(1L).getNombre());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCTOS).get(1L));
+        productoServices.obtenerId(1L);
+        assertNotNull(cacheManager.getCache(CacheConfig.PRODUCTOS).get(1L));
+    }
+
+    @Test
+    void obtenerId_DentroDeUnaTransaccion_VeElCambioPropio() {
+        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 10, "/img/coca.jpg", true, null);
+        when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
+        productoServices.obtenerId(1L);
+
+        // La transacción cambió la entidad y todavía no confirma: la copia en caché es la anterior
+        producto.setPrecio(1990L);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals(1990L, productoServices.obtenerId(1L).getPrecio());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertEquals(1500L, productoServices.obtenerId(1L).getPrecio());
+    }
+
+    @Test
+    void obtenerId_NoEncontrado_LanzaLaMismaExcepcion() {
+        when(productoRepositories.findById(9L)).thenReturn(Optional.empty());
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> productoServices.obtenerId(9L));
+        assertEquals("Producto no encontrado", e.getMessage());
+    }
+
     @Test
     void desactivarProducto_DebeCambiarEstadoActivo() {
         // Arrange
@@ -130,23 +225,23 @@ class ProductoServicesTest {
     @Test
     void reducirStock_ConStockSuficiente_DebeReducirStock() {
         // Arrange
-        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 10, "/img/coca.jpg", true, null);
+        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 7, "/img/coca.jpg", true, null);
+        when(productoRepositories.descontarStock(1L, 3)).thenReturn(1);
         when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
-        when(productoRepositories.save(any())).thenAnswer(i -> i.getArgument(0));
 
         // Act
         Producto resultado = productoServices.reducirStock(1L, 3);
 
         // Assert
         assertEquals(7, resultado.getStock());
-        verify(productoRepositories).save(producto);
+        verify(productoRepositories).descontarStock(1L, 3);
     }
 
     @Test
     void reducirStock_ConStockInsuficiente_DebeLanzarExcepcion() {
         // Arrange
-        Producto producto = new Producto(1L, "Coca Cola", "Refresco 600ml", 1500L, 5, "/img/coca.jpg", true, null);
-        when(productoRepositories.findById(1L)).thenReturn(Optional.of(producto));
+        when(productoRepositories.descontarStock(1L, 10)).thenReturn(0);
+        when(productoRepositories.existsById(1L)).thenReturn(true);
 
         // Act & Assert
         assertThrows(StockInsuficienteException.class, () -> {
@@ -0,0 +1,217 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+import jakarta.persistence.EntityManager;
+
+class ReservaStockTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Session session;
+
+    // Sin productos calientes salvo en las pruebas que los stubean
+    @Spy
+    private StockCaliente stockCaliente = new StockCaliente();
+
+    @InjectMocks
+    private ProductoServicesImpl productoServices;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        StockPorBaseDeDatos.completar(productoServices);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+    }
+
+    private static Producto producto(long id, int stock) {
+        return new Producto(id, "Prod" + id, "Desc", 1000L, stock, null, true, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void reservaTodasLasLineasConUnBloqueoEnOrdenDeId() {
+        Map<Long, Integer> cantidades = new LinkedHashMap<>();
+        cantidades.put(9L, 2);
+        cantidades.put(3L, 1);
+        cantidades.put(5L, 4);
+        when(productoRepositories.bloquearParaReserva(any()))
+                .thenReturn(List.of(producto(3, 10), producto(5, 4), producto(9, 7)));
+        when(session.getJdbcBatchSize()).thenReturn(25);
+
+        List<Producto> reservados = productoServices.reservarStock(cantidades);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productoRepositories, times(1)).bloquearParaReserva(ids.capture());
+        assertEquals(List.of(3L, 5L, 9L), new ArrayList<>(ids.getValue()));
+        assertEquals(List.of(9, 0, 5), reservados.stream().map(Producto::getStock).toList());
+
+        // Un lote del tamaño del pedido para el flush y luego el tamaño anterior
+        verify(session).setJdbcBatchSize(3);
+        verify(entityManager, times(1)).flush();
+        verify(session).setJdbcBatchSize(25);
+        verify(productoRepositories, never()).save(any());
+        verify(eventPublisher, times(3)).publishEvent(any(ProductoCambiadoEvent.class));
+    }
+
+    @Test
+    void stockInsuficienteNombraTodasLasLineasYNoDescuentaNada() {
+        Producto a = producto(1, 1);
+        Producto b = producto(2, 50);
+        Producto c = producto(3, 0);
+        when(productoRepositories.bloquearParaReserva(any())).thenReturn(List.of(a, b, c));
+
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class,
+                () -> productoServices.reservarStock(Map.of(1L, 2, 2L, 5, 3L, 1)));
+
+        assertTrue(e.getMessage().contains("id 1"));
+        assertTrue(e.getMessage().contains("id 3"));
+        assertFalse(e.getMessage().contains("id 2"));
+        assertEquals(1, a.getStock());
+        assertEquals(50, b.getStock());
+        verify(entityManager, never()).flush();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void productoInexistenteLanzaRuntime() {
+        when(productoRepositories.bloquearParaReserva(any())).thenReturn(List.of(producto(1, 5)));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> productoServices.reservarStock(Map.of(1L, 1, 77L, 1)));
+
+        assertTrue(e.getMessage().contains("77"));
+        verify(entityManager, never()).flush();
+    }
+
+    @Test
+    void productoCalienteSeReservaEnMemoriaSinBloquearSuFila() {
+        doReturn(true).when(stockCaliente).esCaliente(9L);
+        doReturn(true).when(stockCaliente).reservar(9L, 2);
+        doReturn(5).when(stockCaliente).disponible(9L);
+        when(productoRepositories.bloquearParaReserva(any())).thenReturn(List.of(producto(3, 10)));
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(producto(9, 7)));
+
+        List<Producto> reservados = productoServices.reservarStock(Map.of(3L, 1, 9L, 2));
+
+        verify(productoRepositories).bloquearParaReserva(argThat(ids -> ids.size() == 1 && ids.contains(3L)));
+        assertEquals(List.of(9, 5), reservados.stream().map(Producto::getStock).toList());
+        verify(eventPublisher, times(1)).publishEvent(any(ProductoCambiadoEvent.class));
+    }
+
+    @Test
+    void faltaDeStockCalienteDevuelveLoReservado() {
+        doReturn(true).when(stockCaliente).esCaliente(any());
+        doReturn(true).when(stockCaliente).reservar(1L, 1);
+        doReturn(false).when(stockCaliente).reservar(2L, 4);
+        doReturn(3).when(stockCaliente).disponible(2L);
+        doNothing().when(stockCaliente).devolver(any(), anyInt());
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(producto(1, 5), producto(2, 3)));
+
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class,
+                () -> productoServices.reservarStock(Map.of(1L, 1, 2L, 4)));
+
+        assertTrue(e.getMessage().contains("id 2"));
+        verify(stockCaliente).devolver(1L, 1);
+        verify(productoRepositories, never()).bloquearParaReserva(any());
+        verify(entityManager, never()).flush();
+    }
+
+    @Test
+    void grupoValidaCadaOrdenContraLoQueDejaronLasAnteriores() {
+        Producto a = producto(1, 5);
+        Producto b = producto(2, 10);
+        when(productoRepositories.bloquearParaReserva(any())).thenReturn(List.of(a, b));
+        when(session.getJdbcBatchSize()).thenReturn(25);
+
+        // La segunda orden ya no alcanza: la primera se llevó 4 de las 5 unidades
+        List<RuntimeException> errores = productoServices.reservarStockEnGrupo(List.of(
+                Map.of(1L, 4, 2L, 1), Map.of(1L, 2), Map.of(2L, 3)));
+
+        assertNull(errores.get(0));
+        assertInstanceOf(StockInsuficienteException.class, errores.get(1));
+        assertTrue(errores.get(1).getMessage().contains("disponibles 1"));
+        assertNull(errores.get(2));
+        assertEquals(1, a.getStock());
+        assertEquals(6, b.getStock());
+
+        // Un solo bloqueo y un solo lote con una fila por producto
+        verify(productoRepositories, times(1)).bloquearParaReserva(any());
+        verify(session).setJdbcBatchSize(2);
+        verify(entityManager, times(1)).flush();
+        verify(eventPublisher, times(2)).publishEvent(any(ProductoCambiadoEvent.class));
+    }
+
+    @Test
+    void grupoAislaLaOrdenConProductoInexistenteOCantidadInvalida() {
+        when(productoRepositories.bloquearParaReserva(any())).thenReturn(List.of(producto(1, 5)));
+
+        List<RuntimeException> errores = productoServices.reservarStockEnGrupo(List.of(
+                Map.of(1L, 1, 77L, 1), Map.of(1L, 0), Map.of(1L, 2)));
+
+        assertTrue(errores.get(0).getMessage().contains("77"));
+        assertInstanceOf(IllegalArgumentException.class, errores.get(1));
+        assertNull(errores.get(2));
+        verify(entityManager, times(1)).flush();
+    }
+
+    @Test
+    void grupoDevuelveLoCalienteDeLaOrdenQueNoAlcanza() {
+        doReturn(true).when(stockCaliente).esCaliente(any());
+        doReturn(true).when(stockCaliente).reservar(1L, 1);
+        doReturn(false).when(stockCaliente).reservar(2L, 4);
+        doReturn(3).when(stockCaliente).disponible(2L);
+        doNothing().when(stockCaliente).devolver(any(), anyInt());
+        when(productoRepositories.findAllById(any())).thenReturn(List.of(producto(1, 5), producto(2, 3)));
+
+        Map<Long, Integer> segunda = new LinkedHashMap<>();
+        segunda.put(1L, 1);
+        segunda.put(2L, 4);
+        List<RuntimeException> errores = productoServices.reservarStockEnGrupo(List.of(Map.of(1L, 1), segunda));
+
+        assertNull(errores.get(0));
+        assertInstanceOf(StockInsuficienteException.class, errores.get(1));
+        verify(stockCaliente, times(1)).devolver(1L, 1);
+        verify(productoRepositories, never()).bloquearParaReserva(any());
+        verify(entityManager, never()).flush();
+    }
+
+    @Test
+    void cantidadNoPositivaSeRechazaSinConsultar() {
+        assertThrows(IllegalArgumentException.class, () -> productoServices.reservarStock(Map.of(1L, 0)));
+        verify(productoRepositories, never()).bloquearParaReserva(any());
+    }
+}
@@ -0,0 +1,275 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.vivitasol.projectbackend.dto.ItemRetencion;
+import com.vivitasol.projectbackend.dto.RetencionStock;
+import com.vivitasol.projectbackend.entities.LineaRetencion;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.exceptions.StockInsuficienteException;
+import com.vivitasol.projectbackend.repositories.LineaRetencionRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class RetencionesStockTest {
+
+    private static final long MINUTO = TimeUnit.MINUTES.toMillis(1);
+    private static final String ANA = "ana@correo.cl";
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private LineaRetencionRepository lineaRetencionRepository;
+
+    @Mock
+    private StockCaliente stockCaliente;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private RetencionesStock retenciones;
+
+    // Stock de la base de datos; el UPDATE condicional se simula sobre este mapa
+    private final Map<Long, Integer> stock = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        configurar(retenciones);
+        stock.put(1L, 5);
+        stock.put(2L, 2);
+        Map<Long, String> nombres = Map.of(1L, "Polera", 2L, "Gorro");
+        when(productoRepositories.findAllById(any())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.stream().filter(stock::containsKey)
+                    .map(id -> new Producto(id, nombres.get(id), "", 4990L, stock.get(id), null, true, null))
+                    .toList();
+        });
+        when(productoRepositories.descontarStock(anyLong(), anyInt())).thenAnswer(inv -> {
+            Long id = inv.getArgument(0);
+            int cantidad = inv.getArgument(1);
+            if (stock.getOrDefault(id, 0) < cantidad) {
+                return 0;
+            }
+            stock.merge(id, -cantidad, Integer::sum);
+            return 1;
+        });
+        when(lineaRetencionRepository.borrarRetencion(any())).thenReturn(1);
+        when(stockCaliente.sinCambioDeModo(any())).thenAnswer(inv -> ((Supplier<?>) inv.getArgument(0)).get());
+        retenciones.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        retenciones.detener();
+    }
+
+    private void configurar(RetencionesStock r) {
+        // Tick largo: en las pruebas los vencimientos se procesan a mano
+        ReflectionTestUtils.setField(r, "tickMs", 1_000L);
+        ReflectionTestUtils.setField(r, "minutosPorDefecto", 10);
+        ReflectionTestUtils.setField(r, "minutosMaximos", 30);
+    }
+
+    private RetencionStock retener(long productoId, int cantidad, Integer minutos) {
+        return retenciones.crear(ANA, List.of(new ItemRetencion(productoId, cantidad)), minutos);
+    }
+
+    @Test
+    void retenerDescuentaElStockYGuardaLasLineas() {
+        retener(1L, 3, null);
+
+        assertEquals(2, stock.get(1L));
+        assertEquals(3, retenciones.retenido(1L));
+        verify(lineaRetencionRepository).save(any(LineaRetencion.class));
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class, () -> retener(1L, 3, null));
+        assertTrue(e.getMessage().contains("disponibles 2"));
+        retener(1L, 2, null);
+        assertEquals(0, stock.get(1L));
+        assertEquals(5, retenciones.retenido(1L));
+    }
+
+    @Test
+    void siUnaLineaNoAlcanzaNoSeRetieneNada() {
+        assertThrows(StockInsuficienteException.class, () -> retenciones.crear(ANA,
+                List.of(new ItemRetencion(1L, 1), new ItemRetencion(2L, 3)), null));
+
+        verify(transactionManager).rollback(any());
+        verify(lineaRetencionRepository, never()).save(any());
+        assertEquals(0, retenciones.retenido(1L));
+        assertEquals(0, retenciones.activas());
+    }
+
+    @Test
+    void siFallaUnaLineaSeDevuelveLoReservadoEnElLibro() {
+        when(stockCaliente.esCaliente(1L)).thenReturn(true);
+        when(stockCaliente.reservar(1L, 1)).thenReturn(true);
+
+        assertThrows(StockInsuficienteException.class, () -> retenciones.crear(ANA,
+                List.of(new ItemRetencion(1L, 1), new ItemRetencion(2L, 3)), null));
+
+        verify(stockCaliente).devolver(1L, 1);
+    }
+
+    @Test
+    void elStockCalienteSeReservaEnElLibro() {
+        when(stockCaliente.esCaliente(1L)).thenReturn(true);
+        when(stockCaliente.reservar(1L, 2)).thenReturn(false);
+        when(stockCaliente.disponible(1L)).thenReturn(1);
+
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class, () -> retener(1L, 2, null));
+        assertTrue(e.getMessage().contains("disponibles 1"));
+
+        when(stockCaliente.reservar(1L, 1)).thenReturn(true);
+        retener(1L, 1, null);
+        verify(productoRepositories, never()).descontarStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void alVencerSeBorranLasFilasYSeDevuelvenLasUnidades() {
+        String corta = retener(1L, 2, 1).getId();
+        retener(1L, 1, 5);
+
+        assertEquals(0, retenciones.vencer(System.currentTimeMillis()));
+        assertEquals(1, retenciones.vencer(System.currentTimeMillis() + 2 * MINUTO));
+        verify(lineaRetencionRepository).borrarRetencion(corta);
+        verify(stockCaliente).devolver(1L, 2);
+        assertEquals(1, retenciones.retenido(1L));
+        assertThrows(RuntimeException.class, () -> retenciones.obtener(corta, ANA));
+
+        assertEquals(1, retenciones.vencer(System.currentTimeMillis() + 6 * MINUTO));
+        assertEquals(0, retenciones.retenido(1L));
+        assertEquals(0, retenciones.activas());
+    }
+
+    @Test
+    void siOtraInstanciaYaBorroLasFilasNoSeDevuelveDosVeces() {
+        retener(1L, 2, 1);
+        when(lineaRetencionRepository.borrarRetencion(any())).thenReturn(0);
+
+        assertEquals(1, retenciones.vencer(System.currentTimeMillis() + 2 * MINUTO));
+
+        verify(stockCaliente, never()).devolver(any(), anyInt());
+    }
+
+    @Test
+    void liberarDevuelveLasUnidadesAntesDeVencer() {
+        String id = retener(2L, 2, null).getId();
+
+        retenciones.liberar(id, ANA);
+
+        assertEquals(0, retenciones.retenido(2L));
+        verify(stockCaliente).devolver(2L, 2);
+        assertThrows(RuntimeException.class, () -> retenciones.liberar(id, ANA));
+    }
+
+    @Test
+    void otroUsuarioNoVeNiTocaLaRetencion() {
+        String id = retener(1L, 2, null).getId();
+
+        assertThrows(RuntimeException.class, () -> retenciones.obtener(id, "otro@correo.cl"));
+        assertThrows(RuntimeException.class, () -> retenciones.liberar(id, "otro@correo.cl"));
+        assertThrows(RuntimeException.class, () -> retenciones.iniciarConfirmacion(id, "otro@correo.cl"));
+
+        assertEquals(1, retenciones.activas());
+        verify(stockCaliente, never()).devolver(any(), anyInt());
+    }
+
+    @Test
+    void mientrasSeConfirmaNoVenceYSiFallaVuelveALaRueda() {
+        String id = retener(1L, 2, 1).getId();
+
+        assertEquals(Map.of(1L, 2), retenciones.iniciarConfirmacion(id, ANA));
+        assertThrows(IllegalStateException.class, () -> retenciones.iniciarConfirmacion(id, ANA));
+        assertEquals(0, retenciones.vencer(System.currentTimeMillis() + 2 * MINUTO));
+        assertEquals(2, retenciones.retenido(1L));
+
+        // La orden falló después del vencimiento: vence en el próximo tick
+        retenciones.terminarConfirmacion(id, false);
+        assertEquals(1, retenciones.vencer(System.currentTimeMillis() + 3 * MINUTO));
+        assertEquals(0, retenciones.retenido(1L));
+        verify(stockCaliente).devolver(1L, 2);
+    }
+
+    @Test
+    void confirmadaLaOrdenLasUnidadesNoVuelven() {
+        String id = retener(1L, 2, null).getId();
+        retenciones.iniciarConfirmacion(id, ANA);
+
+        retenciones.consumir(id);
+        retenciones.terminarConfirmacion(id, true);
+
+        verify(lineaRetencionRepository).borrarRetencion(id);
+        verify(stockCaliente, never()).devolver(any(), anyInt());
+        assertEquals(3, stock.get(1L));
+        assertEquals(0, retenciones.activas());
+    }
+
+    @Test
+    void consumirFallaSiLaRetencionYaNoEstaEnLaBase() {
+        when(lineaRetencionRepository.borrarRetencion("vieja")).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> retenciones.consumir("vieja"));
+    }
+
+    @Test
+    void alArrancarSeRecuperanLasRetencionesGuardadas() throws InterruptedException {
+        LocalDateTime vence = LocalDateTime.now().plusMinutes(5);
+        when(lineaRetencionRepository.findAll()).thenReturn(List.of(
+                new LineaRetencion(1L, "r1", 1L, 2, ANA, vence),
+                new LineaRetencion(2L, "r1", 2L, 1, ANA, vence)));
+        RetencionesStock reiniciado = new RetencionesStock();
+        ReflectionTestUtils.setField(reiniciado, "lineaRetencionRepository", lineaRetencionRepository);
+        ReflectionTestUtils.setField(reiniciado, "stockCaliente", stockCaliente);
+        ReflectionTestUtils.setField(reiniciado, "transactionManager", transactionManager);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        try {
+            assertEquals(1, reiniciado.activas());
+            assertEquals(2, reiniciado.retenido(1L));
+            assertEquals(2, reiniciado.obtener("r1", ANA).getItems().size());
+
+            assertEquals(1, reiniciado.vencer(System.currentTimeMillis() + 6 * MINUTO));
+            verify(stockCaliente).devolver(1L, 2);
+            verify(stockCaliente).devolver(2L, 1);
+        } finally {
+            reiniciado.detener();
+        }
+    }
+
+    @Test
+    void validaCantidadesDuracionYProductos() {
+        assertThrows(IllegalArgumentException.class, () -> retener(1L, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> retener(1L, 1, 31));
+        assertThrows(IllegalArgumentException.class, () -> retenciones.crear(ANA, List.of(), null));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> retener(9L, 1, null));
+        assertTrue(e.getMessage().contains("9"));
+    }
+}
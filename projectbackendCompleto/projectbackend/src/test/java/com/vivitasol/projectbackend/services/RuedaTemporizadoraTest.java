@@ -0,0 +1,79 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RuedaTemporizadoraTest {
+
+    @Test
+    void venceEnElPrimerTickQueAlcanzaLaHora() {
+        RuedaTemporizadora<String> rueda = new RuedaTemporizadora<>(8, 100, 0);
+        rueda.programar("a", 250);
+
+        assertTrue(rueda.avanzar(299).isEmpty());
+        assertEquals(List.of("a"), rueda.avanzar(300));
+        assertEquals(0, rueda.pendientes());
+    }
+
+    @Test
+    void losVencimientosLejanosDanVariasVueltas() {
+        RuedaTemporizadora<String> rueda = new RuedaTemporizadora<>(4, 10, 0);
+        // Ticks 2, 6 y 10 caen en la misma ranura
+        rueda.programar("cerca", 20);
+        rueda.programar("una vuelta", 60);
+        rueda.programar("dos vueltas", 100);
+
+        assertEquals(List.of("cerca"), rueda.avanzar(20));
+        assertEquals(List.of(), rueda.avanzar(59));
+        assertEquals(List.of("una vuelta"), rueda.avanzar(60));
+        assertEquals(List.of("dos vueltas"), rueda.avanzar(1_000));
+    }
+
+    @Test
+    void loCanceladoNoVenceYSaleDeLaRueda() {
+        RuedaTemporizadora<String> rueda = new RuedaTemporizadora<>(8, 10, 0);
+        RuedaTemporizadora.Tarea<String> tarea = rueda.programar("a", 30);
+        rueda.programar("b", 30);
+        tarea.cancelar();
+
+        assertEquals(List.of("b"), rueda.avanzar(30));
+        assertEquals(0, rueda.pendientes());
+    }
+
+    @Test
+    void loYaVencidoSeProgramaParaElProximoTick() {
+        RuedaTemporizadora<String> rueda = new RuedaTemporizadora<>(8, 10, 0);
+        rueda.avanzar(50);
+        rueda.programar("atrasado", 5);
+
+        assertEquals(List.of("atrasado"), rueda.avanzar(60));
+    }
+
+    @Test
+    void lasRanurasSeRedondeanAPotenciaDeDos() {
+        assertEquals(512, new RuedaTemporizadora<>(500, 1, 0).numeroRanuras());
+        assertEquals(1, new RuedaTemporizadora<>(1, 1, 0).numeroRanuras());
+    }
+
+    @Test
+    void unMillonDeVencimientos() {
+        RuedaTemporizadora<Integer> rueda = new RuedaTemporizadora<>(512, 1_000, 0);
+        int total = 1_000_000;
+        // Repartidos en 30 minutos, como retenciones de carrito
+        for (int i = 0; i < total; i++) {
+            rueda.programar(i, (i % 1_800) * 1_000L + 1);
+        }
+        assertEquals(total, rueda.pendientes());
+
+        List<Integer> vencidos = new ArrayList<>();
+        for (long ahora = 0; ahora <= 1_801_000; ahora += 60_000) {
+            vencidos.addAll(rueda.avanzar(ahora));
+        }
+        assertEquals(total, vencidos.size());
+        assertEquals(0, rueda.pendientes());
+    }
+}
@@ -0,0 +1,275 @@
+package com.vivitasol.projectbackend.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.vivitasol.projectbackend.dto.EstadoStockCaliente;
+import com.vivitasol.projectbackend.entities.DiarioStockCaliente;
+import com.vivitasol.projectbackend.entities.Producto;
+import com.vivitasol.projectbackend.events.ProductoCambiadoEvent;
+import com.vivitasol.projectbackend.repositories.DiarioStockCalienteRepository;
+import com.vivitasol.projectbackend.repositories.ProductoRepositories;
+
+class StockCalienteTest {
+
+    @Mock
+    private ProductoRepositories productoRepositories;
+
+    @Mock
+    private DiarioStockCalienteRepository diarioStockCalienteRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private StockCaliente stockCaliente;
+
+    @TempDir
+    Path carpeta;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        configurar(stockCaliente);
+        stockCaliente.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        stockCaliente.detener();
+    }
+
+    // Intervalo largo: en las pruebas la escritura se llama a mano
+    private void configurar(StockCaliente s) {
+        ReflectionTestUtils.setField(s, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(s, "intervaloMs", 60_000L);
+    }
+
+    private void promoverCon(long id, int stock) {
+        when(productoRepositories.bloquearParaReserva(List.of(id)))
+                .thenReturn(List.of(new Producto(id, "Oferta", "", 990L, stock, null, true, null)));
+        stockCaliente.promover(id);
+    }
+
+    private StockCaliente reiniciar() {
+        StockCaliente reiniciado = new StockCaliente();
+        ReflectionTestUtils.setField(reiniciado, "productoRepositories", productoRepositories);
+        ReflectionTestUtils.setField(reiniciado, "diarioStockCalienteRepository", diarioStockCalienteRepository);
+        ReflectionTestUtils.setField(reiniciado, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(reiniciado, "eventPublisher", eventPublisher);
+        configurar(reiniciado);
+        return reiniciado;
+    }
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.toList();
+        }
+    }
+
+    @Test
+    void reservasConcurrentesNoSuperanElStock() throws Exception {
+        promoverCon(1L, 200);
+        AtomicInteger ventas = new AtomicInteger();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 600; i++) {
+                hilos.submit(() -> {
+                    if (stockCaliente.reservar(1L, 1)) {
+                        ventas.incrementAndGet();
+                    }
+                });
+            }
+        }
+
+        assertEquals(200, ventas.get());
+        assertEquals(0, stockCaliente.disponible(1L));
+        assertEquals(List.of(new EstadoStockCaliente(1L, 0, 200)), stockCaliente.estado());
+        verify(productoRepositories, never()).ajustarStock(any(), anyInt());
+
+        // Las 200 reservas llegan a la base de datos como un solo descuento
+        assertTrue(stockCaliente.escribir());
+        verify(productoRepositories, times(1)).ajustarStock(1L, 200);
+        assertEquals(List.of(new EstadoStockCaliente(1L, 0, 0)), stockCaliente.estado());
+        assertTrue(segmentos().isEmpty());
+    }
+
+    @Test
+    void alArrancarReaplicaElDiarioSinEscribir() throws Exception {
+        promoverCon(1L, 10);
+        promoverCon(2L, 10);
+        assertTrue(stockCaliente.reservar(1L, 3));
+        assertTrue(stockCaliente.reservar(2L, 2));
+        assertTrue(stockCaliente.reservar(1L, 2));
+        stockCaliente.devolver(1L, 1);
+        assertFalse(segmentos().isEmpty());
+
+        // Se cae sin escribir: otra instancia con la misma carpeta recupera los descuentos
+        StockCaliente reiniciado = new StockCaliente();
+        ReflectionTestUtils.setField(reiniciado, "productoRepositories", productoRepositories);
+        ReflectionTestUtils.setField(reiniciado, "diarioStockCalienteRepository", diarioStockCalienteRepository);
+        ReflectionTestUtils.setField(reiniciado, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(reiniciado, "eventPublisher", eventPublisher);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        reiniciado.detener();
+
+        verify(productoRepositories).ajustarStock(1L, 4);
+        verify(productoRepositories).ajustarStock(2L, 2);
+        assertTrue(segmentos().isEmpty());
+        assertFalse(reiniciado.esCaliente(1L));
+    }
+
+    @Test
+    void registroCortadoAlFinalSeIgnora() throws Exception {
+        ByteBuffer datos = ByteBuffer.allocate(StockCaliente.TAMANO_REGISTRO + 5);
+        datos.putLong(7L).putInt(4).put(new byte[] {0, 0, 0, 0, 8});
+        Files.write(carpeta.resolve("stock-caliente-3.journal"), datos.array());
+
+        StockCaliente reiniciado = new StockCaliente();
+        ReflectionTestUtils.setField(reiniciado, "productoRepositories", productoRepositories);
+        ReflectionTestUtils.setField(reiniciado, "diarioStockCalienteRepository", diarioStockCalienteRepository);
+        ReflectionTestUtils.setField(reiniciado, "transactionManager", transactionManager);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        reiniciado.detener();
+
+        verify(productoRepositories).ajustarStock(7L, 4);
+        verify(productoRepositories, times(1)).ajustarStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void laEscrituraGuardaElUltimoSegmentoAplicado() {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 3));
+        assertTrue(stockCaliente.escribir());
+
+        verify(diarioStockCalienteRepository).save(new DiarioStockCaliente(carpeta.toString(), 1L));
+    }
+
+    @Test
+    void alArrancarSaltaLosSegmentosYaAplicados() throws Exception {
+        // La caída fue entre el commit del segmento 4 y el borrado de los archivos
+        ByteBuffer aplicado = ByteBuffer.allocate(StockCaliente.TAMANO_REGISTRO);
+        aplicado.putLong(7L).putInt(4);
+        Files.write(carpeta.resolve("stock-caliente-4.journal"), aplicado.array());
+        ByteBuffer sinAplicar = ByteBuffer.allocate(StockCaliente.TAMANO_REGISTRO);
+        sinAplicar.putLong(7L).putInt(2);
+        Files.write(carpeta.resolve("stock-caliente-5.journal"), sinAplicar.array());
+        when(diarioStockCalienteRepository.findById(carpeta.toString()))
+                .thenReturn(Optional.of(new DiarioStockCaliente(carpeta.toString(), 4L)));
+
+        StockCaliente reiniciado = reiniciar();
+        reiniciado.iniciar();
+        reiniciado.detener();
+
+        verify(productoRepositories).ajustarStock(7L, 2);
+        verify(productoRepositories, times(1)).ajustarStock(anyLong(), anyInt());
+        verify(diarioStockCalienteRepository).save(new DiarioStockCaliente(carpeta.toString(), 5L));
+        assertTrue(segmentos().isEmpty());
+    }
+
+    @Test
+    void losNumerosDeSegmentoSiguenDespuesDelAplicado() throws Exception {
+        when(diarioStockCalienteRepository.findById(carpeta.toString()))
+                .thenReturn(Optional.of(new DiarioStockCaliente(carpeta.toString(), 9L)));
+        StockCaliente reiniciado = reiniciar();
+        reiniciado.iniciar();
+        when(productoRepositories.bloquearParaReserva(List.of(1L)))
+                .thenReturn(List.of(new Producto(1L, "Oferta", "", 990L, 5, null, true, null)));
+        reiniciado.promover(1L);
+        assertTrue(reiniciado.reservar(1L, 1));
+
+        assertEquals(List.of(carpeta.resolve("stock-caliente-10.journal")), segmentos());
+        reiniciado.detener();
+    }
+
+    @Test
+    void eliminarUnProductoCalienteEscribeLoPendiente() {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 3));
+
+        stockCaliente.alCambiarProducto(ProductoCambiadoEvent.eliminado(1L));
+
+        verify(productoRepositories).ajustarStock(1L, 3);
+        assertFalse(stockCaliente.esCaliente(1L));
+    }
+
+    @Test
+    void siLaEscrituraFallaLoPendienteSeConserva() throws Exception {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 3));
+        when(productoRepositories.ajustarStock(1L, 3)).thenThrow(new RuntimeException("sin conexión"));
+
+        assertFalse(stockCaliente.escribir());
+        assertEquals(3, stockCaliente.estado().get(0).getPendiente());
+        assertFalse(segmentos().isEmpty());
+
+        doReturn(1).when(productoRepositories).ajustarStock(1L, 3);
+        assertTrue(stockCaliente.escribir());
+        assertEquals(0, stockCaliente.estado().get(0).getPendiente());
+        assertTrue(segmentos().isEmpty());
+    }
+
+    @Test
+    void degradarEscribeLoPendienteYQuitaElProducto() {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 4));
+
+        stockCaliente.degradar(1L);
+
+        verify(productoRepositories).ajustarStock(1L, 4);
+        assertFalse(stockCaliente.esCaliente(1L));
+        assertThrows(IllegalStateException.class, () -> stockCaliente.reservar(1L, 1));
+    }
+
+    @Test
+    void devolverUnProductoYaDegradadoVuelveALaBase() {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 4));
+        stockCaliente.degradar(1L);
+
+        stockCaliente.devolver(1L, 4);
+
+        verify(productoRepositories).ajustarStock(1L, -4);
+    }
+
+    @Test
+    void fijarReemplazaElDisponibleDelLibro() {
+        promoverCon(1L, 10);
+        assertTrue(stockCaliente.reservar(1L, 4));
+
+        stockCaliente.fijar(1L, 50, () -> null);
+
+        verify(productoRepositories).ajustarStock(1L, 4);
+        assertEquals(50, stockCaliente.disponible(1L));
+        verify(productoRepositories, never()).ajustarStock(anyLong(), eq(-50));
+    }
+}
@@ -0,0 +1,25 @@
+package com.vivitasol.projectbackend.services;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Completa las dependencias de stock de un ProductoServicesImpl armado con
+ * {@code @InjectMocks}: sin productos calientes ni retenciones, todo el
+ * stock va por la base de datos. Lo que la prueba ya haya puesto (por
+ * ejemplo un {@code @Spy StockCaliente}) se respeta.
+ */
+final class StockPorBaseDeDatos {
+
+    private StockPorBaseDeDatos() {
+    }
+
+    static ProductoServicesImpl completar(ProductoServicesImpl servicio) {
+        if (ReflectionTestUtils.getField(servicio, "stockCaliente") == null) {
+            ReflectionTestUtils.setField(servicio, "stockCaliente", new StockCaliente());
+        }
+        if (ReflectionTestUtils.getField(servicio, "retencionesStock") == null) {
+            ReflectionTestUtils.setField(servicio, "retencionesStock", new RetencionesStock());
+        }
+        return servicio;
+    }
+}